@@ -0,0 +1,93 @@
+package com.nexon.yt2spotify.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifyTracksSearchResultDto;
+import com.nexon.yt2spotify.dto.yt.YoutubePlaylistItemListResponseDto;
+import com.nexon.yt2spotify.service.SpotifySearchResultDecoder;
+import com.nexon.yt2spotify.service.StreamingJsonDecoder;
+import com.nexon.yt2spotify.service.YoutubePlaylistItemsDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the two response bodies we receive most: a 50-item playlistItems page and a
+ * limit=1 search result. Compares full Jackson DTO binding of the whole body with the incremental
+ * {@link StreamingJsonDecoder}s fed in network-sized chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiPayloadDeserializationBenchmark {
+
+    private ObjectReader playlistItemsReader;
+    private ObjectReader searchResultReader;
+    private byte[] playlistItemsPage;
+    private byte[] searchResult;
+    private byte[][] playlistItemsChunks;
+    private byte[][] searchResultChunks;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        playlistItemsReader = mapper.readerFor(YoutubePlaylistItemListResponseDto.class);
+        searchResultReader = mapper.readerFor(SpotifyTracksSearchResultDto.class);
+        playlistItemsPage = BenchmarkPayloads.youtubePlaylistItemsPage(50, 7).getBytes(StandardCharsets.UTF_8);
+        searchResult = BenchmarkPayloads.spotifySearchResult(7).getBytes(StandardCharsets.UTF_8);
+        playlistItemsChunks = chunks(playlistItemsPage, 8192);
+        searchResultChunks = chunks(searchResult, 8192);
+    }
+
+    private static byte[][] chunks(byte[] body, int chunkSize) {
+        byte[][] chunks = new byte[(body.length + chunkSize - 1) / chunkSize][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(body, i * chunkSize, Math.min(body.length, (i + 1) * chunkSize));
+        }
+        return chunks;
+    }
+
+    private static <T> T stream(StreamingJsonDecoder<T> decoder, byte[][] chunks) {
+        for (byte[] chunk : chunks) {
+            decoder.feed(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+        }
+        return decoder.finish();
+    }
+
+    @Benchmark
+    public YoutubePlaylistItemListResponseDto youtubePlaylistItemsPage() throws IOException {
+        return playlistItemsReader.readValue(playlistItemsPage);
+    }
+
+    @Benchmark
+    public SpotifyTracksSearchResultDto spotifySearchResult() throws IOException {
+        return searchResultReader.readValue(searchResult);
+    }
+
+    @Benchmark
+    public YoutubePlaylistItemsDecoder.Page youtubePlaylistItemsPageStreaming() {
+        return stream(new YoutubePlaylistItemsDecoder(), playlistItemsChunks);
+    }
+
+    @Benchmark
+    public SpotifyTrackDto spotifySearchResultStreaming() {
+        return stream(new SpotifySearchResultDecoder(), searchResultChunks);
+    }
+}
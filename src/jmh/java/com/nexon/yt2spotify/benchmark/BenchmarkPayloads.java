@@ -0,0 +1,97 @@
+package com.nexon.yt2spotify.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic but realistically shaped inputs for the benchmarks: YouTube-style titles with the usual
+ * noise, API response bodies matching the 'fields' filters we request, and Spotify track URIs.
+ */
+public final class BenchmarkPayloads {
+
+    private static final String[] ARTISTS = {
+            "Daft Punk", "Beyoncé", "Arctic Monkeys", "Tame Impala", "Rosalía", "The Weeknd",
+            "Billie Eilish", "Radiohead", "Kendrick Lamar", "Fleetwood Mac", "Stromae", "BLACKPINK"
+    };
+    private static final String[] SONGS = {
+            "Get Lucky", "Halo", "Do I Wanna Know?", "The Less I Know The Better", "MALAMENTE",
+            "Blinding Lights", "bad guy", "Karma Police", "HUMBLE.", "Dreams", "Papaoutai", "How You Like That"
+    };
+    private static final String[] NOISE = {
+            " (Official Music Video)", " [Official Video]", " (Lyrics)", " - Lyric Video", " (Audio)",
+            " [HD]", " (Live at Glastonbury 2019)", "", " {Remastered}", " | Official Video"
+    };
+    private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    private BenchmarkPayloads() {
+    }
+
+    public static List<String> youtubeQueries(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String artist = ARTISTS[random.nextInt(ARTISTS.length)];
+            String title = artist + " - " + SONGS[random.nextInt(SONGS.length)] + NOISE[random.nextInt(NOISE.length)];
+            String channel = random.nextBoolean() ? artist + "VEVO" : artist + " - Topic";
+            queries.add(title + " " + channel);
+        }
+        return queries;
+    }
+
+    /** One full page (50 items) of playlistItems, as returned for our 'fields' filter. */
+    public static String youtubePlaylistItemsPage(int items, long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(items * 260);
+        json.append("{\"nextPageToken\":\"EAAaBlBUOkNESQ\",\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String artist = ARTISTS[random.nextInt(ARTISTS.length)];
+            json.append("{\"id\":\"").append(randomId(random, 48)).append("\",")
+                    .append("\"snippet\":{\"title\":\"").append(artist).append(" - ")
+                    .append(SONGS[random.nextInt(SONGS.length)]).append(NOISE[random.nextInt(NOISE.length)]).append("\",")
+                    .append("\"resourceId\":{\"videoId\":\"").append(randomId(random, 11)).append("\"},")
+                    .append("\"videoOwnerChannelTitle\":\"").append(artist).append("VEVO\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /** A search response for limit=1, including fields Spotify returns despite the 'fields' hint. */
+    public static String spotifySearchResult(long seed) {
+        Random random = new Random(seed);
+        String trackId = randomId(random, 22);
+        String artist = ARTISTS[random.nextInt(ARTISTS.length)];
+        return "{\"tracks\":{\"href\":\"https://api.spotify.com/v1/search?query=x&type=track&offset=0&limit=1\","
+                + "\"items\":[{\"album\":{\"album_type\":\"album\",\"id\":\"" + randomId(random, 22) + "\",\"name\":\"Album\","
+                + "\"images\":[{\"height\":640,\"url\":\"https://i.scdn.co/image/ab67616d0000b273\",\"width\":640}],"
+                + "\"release_date\":\"2013-05-17\"},"
+                + "\"artists\":[{\"id\":\"" + randomId(random, 22) + "\",\"name\":\"" + artist + "\",\"type\":\"artist\","
+                + "\"uri\":\"spotify:artist:" + randomId(random, 22) + "\"}],"
+                + "\"available_markets\":[\"AD\",\"AE\",\"AR\",\"AT\",\"AU\",\"BE\",\"BG\",\"BR\",\"CA\",\"CH\",\"DE\",\"US\"],"
+                + "\"disc_number\":1,\"duration_ms\":248413,\"explicit\":false,"
+                + "\"external_ids\":{\"isrc\":\"USQX91300108\"},\"id\":\"" + trackId + "\",\"is_local\":false,"
+                + "\"name\":\"" + SONGS[random.nextInt(SONGS.length)] + "\",\"popularity\":83,"
+                + "\"track_number\":8,\"type\":\"track\",\"uri\":\"spotify:track:" + trackId + "\"}],"
+                + "\"limit\":1,\"next\":\"https://api.spotify.com/v1/search?query=x&type=track&offset=1&limit=1\","
+                + "\"offset\":0,\"previous\":null,\"total\":912}}";
+    }
+
+    public static List<String> trackUris(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> uris = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uris.add("spotify:track:" + randomId(random, 22));
+        }
+        return uris;
+    }
+
+    static String randomId(Random random, int length) {
+        char[] id = new char[length];
+        for (int i = 0; i < length; i++) {
+            id[i] = BASE62.charAt(random.nextInt(BASE62.length()));
+        }
+        return new String(id);
+    }
+}
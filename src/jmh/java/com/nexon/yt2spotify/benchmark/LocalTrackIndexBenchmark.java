@@ -0,0 +1,81 @@
+package com.nexon.yt2spotify.benchmark;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import com.nexon.yt2spotify.model.TrackMatch;
+import com.nexon.yt2spotify.service.LocalTrackIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate lookup of {@link LocalTrackIndex}, done for every item before it is searched, over an index
+ * of {@code tracks} synthetic tracks. Words are drawn with a skew, so common ones have long posting lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalTrackIndexBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int ARTISTS = 30_000;
+
+    @Param({"10000", "300000"})
+    private int tracks;
+
+    private LocalTrackIndex index;
+    private List<String> queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] artists = new String[ARTISTS];
+        for (int i = 0; i < ARTISTS; i++) {
+            artists[i] = word(random) + (random.nextBoolean() ? " " + word(random) : "");
+        }
+        List<TrackMatch> matches = new ArrayList<>(tracks);
+        for (int i = 0; i < tracks; i++) {
+            StringBuilder name = new StringBuilder(word(random));
+            for (int words = random.nextInt(3); words >= 0; words--) {
+                name.append(' ').append(word(random));
+            }
+            matches.add(new TrackMatch("video" + i, BenchmarkPayloads.randomId(random, 22),
+                    artists[random.nextInt(ARTISTS)], name.toString(), 180_000 + random.nextInt(120_000)));
+        }
+        index = new LocalTrackIndex(null, true);
+        index.addAll(matches);
+
+        queries = new ArrayList<>(1024);
+        for (int i = 0; i < 1024; i++) {
+            TrackMatch match = matches.get(random.nextInt(tracks));
+            // Half of the lookups are for songs the index doesn't know
+            String name = i % 2 == 0 ? match.getTrackName() : word(random) + " " + word(random);
+            queries.add(match.getArtistName() + " - " + name + " (Official Video)");
+        }
+    }
+
+    @Benchmark
+    public List<SpotifyTrackDto> candidates() {
+        return index.candidates(queries.get(next++ & 1023), 8);
+    }
+
+    private static String word(Random random) {
+        return "w" + random.nextInt(random.nextInt(VOCABULARY) + 1); // Low numbers are the common words
+    }
+}
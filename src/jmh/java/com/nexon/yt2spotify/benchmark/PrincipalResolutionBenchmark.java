@@ -0,0 +1,71 @@
+package com.nexon.yt2spotify.benchmark;
+
+import com.nexon.yt2spotify.model.User;
+import com.nexon.yt2spotify.repository.UserRepository;
+import com.nexon.yt2spotify.service.AuthorizationHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Principal -> linked user resolution done by {@link AuthorizationHelper} on every API request.
+ * The repository is an in-memory stand-in so only our own logic is measured, not the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalResolutionBenchmark {
+
+    private static final String GOOGLE_PRINCIPAL = "108273645512093847561";
+    private static final String SPOTIFY_PRINCIPAL = "31kx7ylqbc2xmq4dzbtw3example";
+
+    private AuthorizationHelper authorizationHelper;
+
+    @Setup
+    public void setUp() {
+        User user = new User();
+        user.setId(1L);
+        user.setGoogleId(GOOGLE_PRINCIPAL);
+        user.setSpotifyId(SPOTIFY_PRINCIPAL);
+        user.setDisplayName("Benchmark User");
+        Map<String, User> byGoogleId = new HashMap<>(Map.of(GOOGLE_PRINCIPAL, user));
+        Map<String, User> bySpotifyId = new HashMap<>(Map.of(SPOTIFY_PRINCIPAL, user));
+
+        UserRepository repository = (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByGoogleId" -> Optional.ofNullable(byGoogleId.get((String) args[0]));
+                    case "findBySpotifyId" -> Optional.ofNullable(bySpotifyId.get((String) args[0]));
+                    case "findByEmail" -> Optional.empty();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        authorizationHelper = new AuthorizationHelper(null, repository, null, null);
+    }
+
+    @Benchmark
+    public User googlePrincipal() {
+        return authorizationHelper.findLinkedUser(GOOGLE_PRINCIPAL);
+    }
+
+    @Benchmark
+    public User spotifyPrincipal() {
+        return authorizationHelper.findLinkedUser(SPOTIFY_PRINCIPAL);
+    }
+}
@@ -0,0 +1,42 @@
+package com.nexon.yt2spotify.benchmark;
+
+import com.nexon.yt2spotify.service.SpotifyApiService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query cleaning done by {@link SpotifyApiService#searchTrack} for every playlist item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryNormalizationBenchmark {
+
+    private List<String> queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        queries = BenchmarkPayloads.youtubeQueries(1024, 42);
+    }
+
+    @Benchmark
+    public String normalizeQuery() {
+        String query = queries.get(next++ & 1023);
+        return SpotifyApiService.normalizeQuery(query);
+    }
+}
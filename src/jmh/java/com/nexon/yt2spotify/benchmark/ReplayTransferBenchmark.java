@@ -0,0 +1,184 @@
+package com.nexon.yt2spotify.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nexon.yt2spotify.benchmark.stub.ReplayExchangeFunction;
+import com.nexon.yt2spotify.config.HttpRecordingFilter;
+import com.nexon.yt2spotify.config.OutboundCallFilter;
+import com.nexon.yt2spotify.config.RecordedExchange;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import com.nexon.yt2spotify.service.InMemoryTrackMatchRepository;
+import com.nexon.yt2spotify.service.LocalTrackIndex;
+import com.nexon.yt2spotify.service.SpotifyApiService;
+import com.nexon.yt2spotify.service.SpotifyPlaylistWriter;
+import com.nexon.yt2spotify.service.TrackMatcher;
+import com.nexon.yt2spotify.service.TransferJob;
+import com.nexon.yt2spotify.service.TransferService;
+import com.nexon.yt2spotify.service.YoutubeApiService;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * End-to-end transfers of real playlists, replayed offline from exchanges recorded by
+ * {@link HttpRecordingFilter}, so each build's throughput and allocation can be compared on the same data.
+ * <p>
+ * Record by running the app with {@code yt2spotify.recording.dir} set and transferring the playlists once
+ * (a transfer that hit the playlist's title and items also fills in the other calls). Each playlist is then
+ * transferred {@code bench.replay.iterations} times, one after the other, after one warm-up transfer; the
+ * report shows per playlist the items, matches, p50/mean transfer time, tracks/sec, bytes allocated per
+ * transfer (all threads) and requests that had no recording. Tunables (system properties):
+ * <ul>
+ *     <li>{@code bench.replay.dir} - the recordings (default target/recordings)</li>
+ *     <li>{@code bench.replay.playlists} - comma separated YouTube playlist IDs (default all recorded ones)</li>
+ *     <li>{@code bench.replay.timeScale} - recorded response times are scaled by this; 0 = no delay, to
+ *     measure the app's own cost (default 1)</li>
+ *     <li>{@code bench.replay.iterations} - measured transfers per playlist (default 5)</li>
+ *     <li>{@code bench.writeConcurrency} / {@code bench.hedgeMaxExtraSearches} / {@code bench.localIndex} -
+ *     as in {@link TransferThroughputBenchmark}; hedging and the local index only find what was recorded</li>
+ *     <li>{@code bench.result.file} - JSON report (default target/replay-transfer.json)</li>
+ * </ul>
+ * Run with: {@code mvn -Pbenchmark -DskipTests test-compile exec:exec@replay-transfer}
+ */
+public class ReplayTransferBenchmark {
+
+    // Same as application.yml
+    private static final String SPOTIFY_BASE_URL = "https://api.spotify.com/v1";
+    private static final String YOUTUBE_BASE_URL = "https://www.googleapis.com/youtube/v3";
+    private static final Set<String> SKIP_CATEGORY_IDS = Set.of("2", "17", "19", "20", "25", "26", "27", "28", "29");
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        Path directory = Path.of(System.getProperty("bench.replay.dir", "target/recordings"));
+        double timeScale = Double.parseDouble(System.getProperty("bench.replay.timeScale", "1"));
+        int iterations = Integer.getInteger("bench.replay.iterations", 5);
+        int writeConcurrency = Integer.getInteger("bench.writeConcurrency", 4);
+        double hedgeMaxExtraSearches = Double.parseDouble(System.getProperty("bench.hedgeMaxExtraSearches", "0.2"));
+        boolean localIndex = Boolean.getBoolean("bench.localIndex");
+        File resultFile = new File(System.getProperty("bench.result.file", "target/replay-transfer.json"));
+
+        ReplayExchangeFunction replay = new ReplayExchangeFunction(ReplayExchangeFunction.load(directory), timeScale);
+        String playlistsProperty = System.getProperty("bench.replay.playlists", "");
+        List<String> playlistIds = playlistsProperty.isBlank() ? recordedPlaylistIds(replay.exchanges())
+                : Arrays.stream(playlistsProperty.split(",")).map(String::trim).toList();
+        if (playlistIds.isEmpty()) {
+            throw new IllegalStateException("No recorded transfers in " + directory.toAbsolutePath());
+        }
+
+        WebClient webClient = WebClient.builder().exchangeFunction(replay).filter(new OutboundCallFilter()).build();
+        SpotifyApiService spotifyApiService = new SpotifyApiService(webClient, SPOTIFY_BASE_URL, 8);
+        // Nothing stored is found, so every transfer searches like the recorded one
+        TrackMatchRepository trackMatchRepository = new InMemoryTrackMatchRepository(false).repository();
+        LocalTrackIndex localTrackIndex = new LocalTrackIndex(trackMatchRepository, localIndex);
+        TransferService transferService = new TransferService(
+                spotifyApiService,
+                new TrackMatcher(spotifyApiService, localTrackIndex, 0.6, hedgeMaxExtraSearches, 0.9),
+                new YoutubeApiService(webClient, YOUTUBE_BASE_URL),
+                new SpotifyPlaylistWriter(webClient, SPOTIFY_BASE_URL, writeConcurrency, 3),
+                trackMatchRepository,
+                localTrackIndex,
+                SKIP_CATEGORY_IDS, 1800, Duration.ZERO);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("Replayed transfers: %d recorded exchanges from %s, time scale %s, %d iterations%n",
+                replay.exchanges().size(), directory.toAbsolutePath(), timeScale, iterations);
+        System.out.printf("%-36s %7s %8s %7s %10s %11s %12s %14s %7s%n",
+                "playlist", "items", "matched", "added", "p50 (ms)", "mean (ms)", "tracks/sec", "alloc/transfer", "misses");
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String playlistId : playlistIds) {
+            transfer(transferService, playlistId); // Warm-up
+            long missesBefore = replay.misses();
+            long[] durations = new long[iterations];
+            long allocatedBytes = 0;
+            TransferJob job = null;
+            for (int i = 0; i < iterations; i++) {
+                long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+                long start = System.nanoTime();
+                job = transfer(transferService, playlistId);
+                durations[i] = System.nanoTime() - start;
+                allocatedBytes += threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+            }
+            long misses = replay.misses() - missesBefore;
+
+            Arrays.sort(durations);
+            double p50 = durations[percentileIndex(iterations, 0.50)] / 1e6;
+            double mean = Arrays.stream(durations).average().orElse(0) / 1e6;
+            double tracksPerSecond = mean > 0 ? job.getTotalItems() / (mean / 1e3) : 0;
+            long allocatedPerTransfer = allocatedBytes / iterations;
+            System.out.printf("%-36s %7d %8d %7d %10.1f %11.1f %12.1f %14s %7d%n", playlistId, job.getTotalItems(),
+                    job.getMatchedCount(), job.getAddedCount(), p50, mean, tracksPerSecond, megabytes(allocatedPerTransfer), misses);
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("playlistId", playlistId);
+            row.put("status", job.getStatus().name());
+            row.put("items", job.getTotalItems());
+            row.put("tracksMatched", job.getMatchedCount());
+            row.put("itemsSkipped", job.getSkippedCount());
+            row.put("tracksAdded", job.getAddedCount());
+            row.put("localMatches", job.getLocalMatches());
+            row.put("p50TransferMs", p50);
+            row.put("meanTransferMs", mean);
+            row.put("tracksPerSecond", tracksPerSecond);
+            row.put("allocatedBytesPerTransfer", allocatedPerTransfer);
+            row.put("misses", misses);
+            results.add(row);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", "replay-transfer");
+        report.put("recordings", directory.toAbsolutePath().toString());
+        report.put("recordedExchanges", replay.exchanges().size());
+        report.put("timeScale", timeScale);
+        report.put("iterations", iterations);
+        report.put("writeConcurrency", writeConcurrency);
+        report.put("hedgeMaxExtraSearches", hedgeMaxExtraSearches);
+        report.put("localIndex", localIndex);
+        report.put("results", results);
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, report);
+        System.out.println("Report written to " + resultFile.getAbsolutePath());
+    }
+
+    private static TransferJob transfer(TransferService transferService, String playlistId) {
+        TransferJob job = new TransferJob(UUID.randomUUID().toString(), "bench", playlistId, 256);
+        // Called directly (no Spring proxy), so this runs synchronously on this thread
+        transferService.transferYoutubePlaylistAsync(job, "replay-spotify-token", "replay-google-token");
+        return job;
+    }
+
+    /** The playlists whose items were fetched, in recording order. */
+    private static List<String> recordedPlaylistIds(List<RecordedExchange> exchanges) {
+        return exchanges.stream()
+                .map(exchange -> URI.create(exchange.url()))
+                .filter(url -> url.getPath().endsWith("/playlistItems"))
+                .map(url -> UriComponentsBuilder.fromUri(url).build().getQueryParams().getFirst("playlistId"))
+                .filter(id -> id != null && !id.isBlank())
+                .distinct()
+                .toList();
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / 1e6);
+    }
+
+    private static int percentileIndex(int count, double percentile) {
+        return Math.min(count - 1, (int) Math.ceil(percentile * count) - 1);
+    }
+}
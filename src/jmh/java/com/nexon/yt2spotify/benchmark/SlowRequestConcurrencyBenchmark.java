@@ -0,0 +1,290 @@
+package com.nexon.yt2spotify.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nexon.yt2spotify.benchmark.stub.LatencyModel;
+import com.nexon.yt2spotify.benchmark.stub.StubApiServer;
+import com.nexon.yt2spotify.config.CallTimeoutFilter;
+import com.nexon.yt2spotify.config.HttpRecordingFilter;
+import com.nexon.yt2spotify.config.ProviderGuardFilter;
+import com.nexon.yt2spotify.config.SecurityConfig;
+import com.nexon.yt2spotify.config.SpotifyRateBudgetFilter;
+import com.nexon.yt2spotify.service.YoutubeApiService;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How many slow requests the servlet container serves at once, with Tomcat's default pool of 200
+ * platform threads and with virtual threads ({@code spring.threads.virtual.enabled}).
+ * <p>
+ * Each request runs the blocking {@link YoutubeApiService#getCurrentUserPlaylists} call, as the
+ * controllers do, against {@link StubApiServer} answering after {@code bench.latency}. For each level,
+ * that many requests are sent at once; the report shows how many were in flight at the same time,
+ * their p50/p99 latency, and how long a request that needs no upstream call took while they ran.
+ * The WebClient is the app's own ({@link SecurityConfig#webClient}: connection pool, bulkheads,
+ * circuit breakers, timeouts), configured from {@code application.yml}, so the bulkheads bound the
+ * upstream calls as they do in the app. Any {@code yt2spotify.*} or {@code server.tomcat.max-connections}
+ * setting can be overridden as a system property, e.g. {@code -Dyt2spotify.resilience.youtube-max-concurrent=1000}.
+ * Tunables (system properties):
+ * <ul>
+ *     <li>{@code bench.slowRequests.concurrency} - comma separated levels (default 200,1000,4000); each request
+ *     takes about four sockets in this one process, so raise {@code ulimit -n} for higher levels</li>
+ *     <li>{@code bench.latency} - {@link LatencyModel} spec of the stub (default fixed:1000)</li>
+ *     <li>{@code bench.slowRequests.modes} - platform,virtual (default both)</li>
+ *     <li>{@code bench.result.file} - JSON report (default target/slow-requests.json)</li>
+ * </ul>
+ * Run with: {@code mvn -Pbenchmark -DskipTests test-compile exec:exec@slow-requests}
+ */
+public class SlowRequestConcurrencyBenchmark {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+    private static final int PROBES = 5;
+
+    private record Result(String mode, int concurrency, int ok, int failed, int peakInFlight,
+                         double p50Ms, double p99Ms, double wallMs, double probeMs) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+        java.util.logging.Logger.getLogger("org.apache").setLevel(java.util.logging.Level.WARNING); // Tomcat logs through JUL
+
+        int[] levels = Arrays.stream(System.getProperty("bench.slowRequests.concurrency", "200,1000,4000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        List<String> modes = Arrays.stream(System.getProperty("bench.slowRequests.modes", "platform,virtual").split(","))
+                .map(String::trim).toList();
+        LatencyModel latency = LatencyModel.parse(System.getProperty("bench.latency", "fixed:1000"));
+        File resultFile = new File(System.getProperty("bench.result.file", "target/slow-requests.json"));
+        Properties config = applicationConfig();
+        int maxConnections = Integer.parseInt(config.getProperty("server.tomcat.max-connections"));
+        ProviderGuardFilter providerGuardFilter = providerGuardFilter(config);
+
+        System.out.printf("Slow requests: upstream latency %s, YouTube bulkhead %s (max wait %s), %d connections per host%n",
+                latency, config.getProperty("yt2spotify.resilience.youtube-max-concurrent"),
+                config.getProperty("yt2spotify.resilience.bulkhead-max-wait"), providerGuardFilter.maxConcurrentPerProvider());
+        System.out.printf("%9s %12s %8s %8s %12s %10s %10s %10s %12s%n",
+                "mode", "concurrency", "ok", "failed", "in flight", "p50 (ms)", "p99 (ms)", "wall (ms)", "probe (ms)");
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (StubApiServer stub = new StubApiServer().start();
+             ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            stub.latency(latency);
+            SecurityConfig securityConfig = new SecurityConfig(null);
+            ConnectionProvider connections = securityConfig.providerConnections(providerGuardFilter);
+            WebClient webClient = securityConfig.webClient(connections,
+                    new SpotifyRateBudgetFilter(null, null, false, 20, Duration.ofSeconds(2), Duration.ofSeconds(30), 0.2), // No Spotify calls here
+                    providerGuardFilter,
+                    new CallTimeoutFilter(duration(config, "yt2spotify.timeouts.response"),
+                            config.getProperty("yt2spotify.timeouts.response-per-operation", "")),
+                    new HttpRecordingFilter(""),
+                    duration(config, "yt2spotify.timeouts.connect"), duration(config, "yt2spotify.timeouts.read"));
+            YoutubeApiService youtubeApiService = new YoutubeApiService(webClient, stub.youtubeBaseUrl());
+            java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            for (String mode : modes) {
+                AtomicInteger inFlight = new AtomicInteger();
+                AtomicInteger peakInFlight = new AtomicInteger();
+                WebServer server = server(mode.equals("virtual"), maxConnections, youtubeApiService, inFlight, peakInFlight);
+                server.start();
+                try {
+                    URI slow = URI.create("http://127.0.0.1:" + server.getPort() + "/slow");
+                    URI fast = URI.create("http://127.0.0.1:" + server.getPort() + "/fast");
+                    send(client, List.of(slow), fast, 0, new AtomicInteger()); // Warm-up
+                    for (int concurrency : levels) {
+                        peakInFlight.set(0);
+                        Result level = level(mode, concurrency, client, slow, fast, peakInFlight);
+                        System.out.printf("%9s %12d %8d %8d %12d %10.0f %10.0f %10.0f %12.1f%n", level.mode(), level.concurrency(),
+                                level.ok(), level.failed(), level.peakInFlight(), level.p50Ms(), level.p99Ms(), level.wallMs(), level.probeMs());
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        row.put("mode", level.mode());
+                        row.put("concurrency", level.concurrency());
+                        row.put("ok", level.ok());
+                        row.put("failed", level.failed());
+                        row.put("peakInFlight", level.peakInFlight());
+                        row.put("p50Ms", level.p50Ms());
+                        row.put("p99Ms", level.p99Ms());
+                        row.put("wallMs", level.wallMs());
+                        row.put("probeMs", level.probeMs());
+                        results.add(row);
+                    }
+                } finally {
+                    server.stop();
+                    server.destroy(); // Also ends Tomcat's utility threads, which would keep the JVM alive
+                }
+            }
+            connections.dispose();
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", "slow-requests");
+        report.put("latency", latency.toString());
+        report.put("maxConnections", maxConnections);
+        report.put("youtubeMaxConcurrent", Integer.parseInt(config.getProperty("yt2spotify.resilience.youtube-max-concurrent")));
+        report.put("bulkheadMaxWait", config.getProperty("yt2spotify.resilience.bulkhead-max-wait"));
+        report.put("results", results);
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, report);
+        System.out.println("Report written to " + resultFile.getAbsolutePath());
+    }
+
+    private static Result level(String mode, int concurrency, java.net.http.HttpClient client, URI slow, URI fast,
+                               AtomicInteger peakInFlight) throws Exception {
+        List<URI> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            requests.add(slow);
+        }
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        Sample sample = send(client, requests, fast, PROBES, failed);
+        double wallMs = (System.nanoTime() - start) / 1e6;
+
+        long[] latencies = sample.latencies();
+        Arrays.sort(latencies);
+        int ok = concurrency - failed.get();
+        double p50 = ok > 0 ? latencies[percentileIndex(ok, 0.50)] / 1e6 : 0;
+        double p99 = ok > 0 ? latencies[percentileIndex(ok, 0.99)] / 1e6 : 0;
+        return new Result(mode, concurrency, ok, failed.get(), peakInFlight.get(), p50, p99, wallMs, sample.probeMs());
+    }
+
+    private record Sample(long[] latencies, double probeMs) {
+    }
+
+    /**
+     * Sends all {@code requests} at once and, once they are queued up, {@code probes} requests that need
+     * no upstream call, one after the other. Returns the latencies of the successful requests.
+     */
+    private static Sample send(java.net.http.HttpClient client, List<URI> requests, URI probe, int probes,
+                               AtomicInteger failed) throws Exception {
+        long[] latencies = new long[requests.size()];
+        AtomicInteger succeeded = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>(requests.size());
+        for (URI uri : requests) {
+            long sent = System.nanoTime();
+            futures.add(client.sendAsync(HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (error == null && response.statusCode() == 200) {
+                            latencies[succeeded.getAndIncrement()] = System.nanoTime() - sent;
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        return null;
+                    }));
+        }
+        double probeMs = 0;
+        if (probes > 0) {
+            Thread.sleep(200); // Let the slow requests reach the server first
+            long probeNanos = 0;
+            for (int i = 0; i < probes; i++) {
+                long sent = System.nanoTime();
+                client.send(HttpRequest.newBuilder(probe).timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.discarding());
+                probeNanos += System.nanoTime() - sent;
+            }
+            probeMs = probeNanos / 1e6 / probes;
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return new Sample(Arrays.copyOf(latencies, succeeded.get()), probeMs);
+    }
+
+    /** Tomcat as Spring Boot sets it up, with or without {@code spring.threads.virtual.enabled}. */
+    private static WebServer server(boolean virtualThreads, int maxConnections, YoutubeApiService youtubeApiService,
+                                    AtomicInteger inFlight, AtomicInteger peakInFlight) {
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.addConnectorCustomizers(connector ->
+                ((AbstractProtocol<?>) connector.getProtocolHandler()).setMaxConnections(maxConnections));
+        if (virtualThreads) {
+            new TomcatVirtualThreadsWebServerFactoryCustomizer().customize(factory);
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        HttpServlet slow = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Object playlists = youtubeApiService.getCurrentUserPlaylists("stub-google-token"); // Blocks, like the controllers
+                    response.setContentType("application/json");
+                    objectMapper.writeValue(response.getOutputStream(), playlists);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        HttpServlet fast = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.setContentType("application/json");
+                response.getWriter().write("{}");
+            }
+        };
+        return factory.getWebServer(context -> {
+            context.addServlet("slow", slow).addMapping("/slow");
+            context.addServlet("fast", fast).addMapping("/fast");
+        });
+    }
+
+    /** application.yml as shipped, with system properties taking precedence. */
+    private static Properties applicationConfig() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties config = yaml.getObject();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("yt2spotify.") || name.startsWith("server."))
+                .forEach(name -> config.setProperty(name, System.getProperty(name)));
+        return config;
+    }
+
+    private static ProviderGuardFilter providerGuardFilter(Properties config) {
+        String prefix = "yt2spotify.resilience.";
+        return new ProviderGuardFilter(
+                Integer.parseInt(config.getProperty(prefix + "circuit-window")),
+                Integer.parseInt(config.getProperty(prefix + "circuit-minimum-calls")),
+                Integer.parseInt(config.getProperty(prefix + "circuit-failure-rate")),
+                duration(config, prefix + "circuit-slow-call-threshold"),
+                Integer.parseInt(config.getProperty(prefix + "circuit-slow-call-rate")),
+                duration(config, prefix + "circuit-open-duration"),
+                Integer.parseInt(config.getProperty(prefix + "circuit-half-open-calls")),
+                Integer.parseInt(config.getProperty(prefix + "spotify-max-concurrent")),
+                Integer.parseInt(config.getProperty(prefix + "youtube-max-concurrent")),
+                Integer.parseInt(config.getProperty(prefix + "interactive-reserved-permits")),
+                duration(config, prefix + "bulkhead-max-wait"));
+    }
+
+    private static Duration duration(Properties config, String name) {
+        return DurationStyle.detectAndParse(config.getProperty(name));
+    }
+
+    private static int percentileIndex(int count, double percentile) {
+        return Math.min(count - 1, (int) Math.ceil(percentile * count) - 1);
+    }
+}
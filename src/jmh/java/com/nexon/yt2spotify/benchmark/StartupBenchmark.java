@@ -0,0 +1,201 @@
+package com.nexon.yt2spotify.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cold start of the packaged app, per launch variant: time until Spring reports it started, and the
+ * latency of the first and second HTTP request (the first one also initializes the DispatcherServlet
+ * and the security filter chain).
+ * <p>
+ * Variants, all with the {@code prod} profile:
+ * <ul>
+ *     <li>{@code jar} - the fat jar, as before the fast-startup build</li>
+ *     <li>{@code extracted} - the extracted jar (plain class path, no nested jar loading)</li>
+ *     <li>{@code aot} - extracted, with the AOT-generated bean definitions</li>
+ *     <li>{@code aot-cds} - extracted, AOT and the AppCDS archive from the training run</li>
+ * </ul>
+ * The app needs no database to start with the {@code prod} profile, so the numbers are repeatable on
+ * any machine. Tunables (system properties):
+ * <ul>
+ *     <li>{@code bench.startup.variants} - comma separated (default jar,extracted,aot,aot-cds)</li>
+ *     <li>{@code bench.startup.runs} - launches per variant, the median is reported (default 5)</li>
+ *     <li>{@code bench.startup.jar} / {@code bench.startup.applicationDir} - fat jar and extraction directory
+ *     (defaults from the fast-startup profile)</li>
+ *     <li>{@code bench.result.file} - JSON report (default target/startup.json)</li>
+ * </ul>
+ * Run with: {@code mvn -Pbenchmark,fast-startup -DskipTests package exec:exec@startup}
+ */
+public class StartupBenchmark {
+
+    private static final Pattern STARTED = Pattern.compile("Started Yt2spotifyApplication in ([0-9.]+) seconds \\(process running for ([0-9.]+)\\)");
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(120);
+
+    private record Run(double startedMs, double jvmReportedMs, double firstRequestMs, double secondRequestMs) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> variants = Arrays.stream(System.getProperty("bench.startup.variants", "jar,extracted,aot,aot-cds").split(","))
+                .map(String::trim).toList();
+        int runs = Integer.getInteger("bench.startup.runs", 5);
+        File jar = new File(System.getProperty("bench.startup.jar", "target/yt2spotify-0.0.1-SNAPSHOT.jar"));
+        File applicationDir = new File(System.getProperty("bench.startup.applicationDir", "target/application"));
+        File resultFile = new File(System.getProperty("bench.result.file", "target/startup.json"));
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+
+        System.out.printf("Startup: %d runs per variant, median reported%n", runs);
+        System.out.printf("%12s %14s %18s %18s %18s%n", "variant", "started (ms)", "JVM uptime (ms)", "1st request (ms)", "2nd request (ms)");
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String variant : variants) {
+            List<String> command = command(variant, java, jar, applicationDir);
+            List<Run> samples = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                samples.add(launch(command));
+            }
+            Run median = new Run(
+                    median(samples.stream().mapToDouble(Run::startedMs).toArray()),
+                    median(samples.stream().mapToDouble(Run::jvmReportedMs).toArray()),
+                    median(samples.stream().mapToDouble(Run::firstRequestMs).toArray()),
+                    median(samples.stream().mapToDouble(Run::secondRequestMs).toArray()));
+            System.out.printf("%12s %14.0f %18.0f %18.1f %18.1f%n",
+                    variant, median.startedMs(), median.jvmReportedMs(), median.firstRequestMs(), median.secondRequestMs());
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("variant", variant);
+            row.put("runs", runs);
+            row.put("startedMs", median.startedMs());
+            row.put("jvmReportedMs", median.jvmReportedMs());
+            row.put("firstRequestMs", median.firstRequestMs());
+            row.put("secondRequestMs", median.secondRequestMs());
+            row.put("command", String.join(" ", command));
+            results.add(row);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", "startup");
+        report.put("java", System.getProperty("java.version"));
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("results", results);
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, report);
+        System.out.println("Report written to " + resultFile.getAbsolutePath());
+    }
+
+    private static List<String> command(String variant, String java, File jar, File applicationDir) {
+        File extractedJar = new File(applicationDir, jar.getName());
+        List<String> command = new ArrayList<>(List.of(java, "-Dspring.profiles.active=prod"));
+        switch (variant) {
+            case "jar" -> command.addAll(List.of("-jar", jar.getPath()));
+            case "extracted" -> command.addAll(List.of("-jar", extractedJar.getPath()));
+            case "aot" -> command.addAll(List.of("-Dspring.aot.enabled=true", "-jar", extractedJar.getPath()));
+            case "aot-cds" -> command.addAll(List.of("-XX:SharedArchiveFile=" + new File(applicationDir, "application.jsa").getPath(),
+                    "-Dspring.aot.enabled=true", "-jar", extractedJar.getPath()));
+            default -> throw new IllegalArgumentException("Unknown variant " + variant + ", expected jar, extracted, aot or aot-cds");
+        }
+        return command;
+    }
+
+    private static Run launch(List<String> baseCommand) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(baseCommand);
+        command.add("--server.port=" + port);
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        // Placeholders: nothing is called on Google / Spotify
+        builder.environment().putIfAbsent("SPOTIFY_CLIENT_ID", "startup-benchmark");
+        builder.environment().putIfAbsent("SPOTIFY_CLIENT_SECRET", "startup-benchmark");
+        builder.environment().putIfAbsent("GOOGLE_CLIENT_ID", "startup-benchmark");
+        builder.environment().putIfAbsent("GOOGLE_CLIENT_SECRET", "startup-benchmark");
+
+        long launchedAt = System.nanoTime();
+        Process process = builder.start();
+        try {
+            CompletableFuture<double[]> started = new CompletableFuture<>();
+            List<String> output = new ArrayList<>();
+            Thread reader = new Thread(() -> readOutput(process, launchedAt, started, output), "startup-output");
+            reader.setDaemon(true);
+            reader.start();
+
+            double[] startup;
+            try {
+                startup = started.get(STARTUP_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            } catch (Exception e) {
+                synchronized (output) {
+                    output.subList(0, Math.max(0, output.size() - 40)).clear();
+                    System.err.println(String.join("\n", output));
+                }
+                throw new IllegalStateException("App did not start: " + String.join(" ", command), e);
+            }
+            // Not following the redirect to the OAuth login: this measures our own stack only
+            HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+            URI uri = URI.create("http://localhost:" + port + "/api/youtube/playlists");
+            double first = request(client, uri);
+            double second = request(client, uri);
+            return new Run(startup[0], startup[1], first, second);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static void readOutput(Process process, long launchedAt, CompletableFuture<double[]> started, List<String> output) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                synchronized (output) {
+                    output.add(line);
+                }
+                Matcher matcher = STARTED.matcher(line);
+                if (matcher.find()) {
+                    double wallMs = (System.nanoTime() - launchedAt) / 1e6;
+                    started.complete(new double[]{wallMs, Double.parseDouble(matcher.group(2)) * 1000});
+                }
+            }
+            started.completeExceptionally(new IllegalStateException("Process exited before it started"));
+        } catch (IOException e) {
+            started.completeExceptionally(e);
+        }
+    }
+
+    private static double request(HttpClient client, URI uri) throws Exception {
+        long start = System.nanoTime();
+        client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
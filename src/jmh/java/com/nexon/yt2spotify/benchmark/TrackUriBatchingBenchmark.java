@@ -0,0 +1,48 @@
+package com.nexon.yt2spotify.benchmark;
+
+import com.nexon.yt2spotify.service.SpotifyApiService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting matched track URIs into 100-URI add-tracks batches, including the request body map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackUriBatchingBenchmark {
+
+    @Param({"100", "3000", "10000"})
+    public int trackCount;
+
+    private List<String> uris;
+
+    @Setup
+    public void setUp() {
+        uris = BenchmarkPayloads.trackUris(trackCount, 11);
+    }
+
+    @Benchmark
+    public void splitIntoRequestBodies(Blackhole blackhole) {
+        for (List<String> batch : SpotifyApiService.batches(uris, SpotifyApiService.ADD_TRACKS_BATCH_SIZE)) {
+            blackhole.consume(Collections.singletonMap("uris", batch));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.nexon.yt2spotify.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nexon.yt2spotify.benchmark.stub.LatencyModel;
+import com.nexon.yt2spotify.benchmark.stub.StubApiServer;
+import com.nexon.yt2spotify.config.OutboundCallFilter;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import com.nexon.yt2spotify.service.InMemoryTrackMatchRepository;
+import com.nexon.yt2spotify.service.LocalTrackIndex;
+import com.nexon.yt2spotify.service.SpotifyApiService;
+import com.nexon.yt2spotify.service.SpotifyPlaylistWriter;
+import com.nexon.yt2spotify.service.TrackMatcher;
+import com.nexon.yt2spotify.service.TransferJob;
+import com.nexon.yt2spotify.service.TransferService;
+import com.nexon.yt2spotify.service.YoutubeApiService;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end throughput of {@link TransferService} against {@link StubApiServer}, as concurrency grows.
+ * <p>
+ * For each concurrency level a batch of transfers runs on that many threads; the report shows tracks/sec,
+ * p50/p99 job duration and API calls per track. Tunables (system properties):
+ * <ul>
+ *     <li>{@code bench.items} - items per playlist (default 500)</li>
+ *     <li>{@code bench.concurrency} - comma separated levels (default 1,4,16,64)</li>
+ *     <li>{@code bench.jobsPerThread} - transfers per thread at each level (default 2)</li>
+ *     <li>{@code bench.writeConcurrency} - add-tracks batches in flight per playlist (default 4)</li>
+ *     <li>{@code bench.latency} - {@link LatencyModel} spec (default lognormal:30:0.5)</li>
+ *     <li>{@code bench.rateLimitProbability} / {@code bench.serverErrorProbability} - fault injection (default 0)</li>
+ *     <li>{@code bench.searchMissProbability} - fraction of searches with no result (default 0.1)</li>
+ *     <li>{@code bench.hedgeMaxExtraSearches} - hedging budget per transfer, as a share of its items
+ *     (default 0.2, 0 = no hedging); run with both to compare hit rate and job duration</li>
+ *     <li>{@code bench.localIndex} - match videos of tracks matched by earlier transfers from the local track
+ *     index, without searching (default false)</li>
+ *     <li>{@code bench.reuseMatches} - keep track matches between transfers, so repeat transfers revalidate
+ *     them in batches instead of searching (default false)</li>
+ *     <li>{@code bench.goneTrackProbability} - fraction of stored tracks reported gone on revalidation (default 0)</li>
+ *     <li>{@code bench.nonMusicProbability} / {@code bench.unavailableProbability} - fraction of videos in a
+ *     non-music category / deleted, skipped before searching (default 0)</li>
+ *     <li>{@code bench.result.file} - JSON report (default target/transfer-throughput.json)</li>
+ * </ul>
+ * Run with: {@code mvn -Pbenchmark -DskipTests test-compile exec:exec@transfer-throughput}
+ */
+public class TransferThroughputBenchmark {
+
+    // Same as application.yml
+    private static final Set<String> SKIP_CATEGORY_IDS = Set.of("2", "17", "19", "20", "25", "26", "27", "28", "29");
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+
+        int items = Integer.getInteger("bench.items", 500);
+        int jobsPerThread = Integer.getInteger("bench.jobsPerThread", 2);
+        int writeConcurrency = Integer.getInteger("bench.writeConcurrency", 4);
+        int[] levels = Arrays.stream(System.getProperty("bench.concurrency", "1,4,16,64").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        LatencyModel latency = LatencyModel.parse(System.getProperty("bench.latency", "lognormal:30:0.5"));
+        double rateLimitProbability = Double.parseDouble(System.getProperty("bench.rateLimitProbability", "0"));
+        double serverErrorProbability = Double.parseDouble(System.getProperty("bench.serverErrorProbability", "0"));
+        double searchMissProbability = Double.parseDouble(System.getProperty("bench.searchMissProbability", "0.1"));
+        double hedgeMaxExtraSearches = Double.parseDouble(System.getProperty("bench.hedgeMaxExtraSearches", "0.2"));
+        boolean localIndex = Boolean.getBoolean("bench.localIndex");
+        boolean reuseMatches = Boolean.getBoolean("bench.reuseMatches");
+        double goneTrackProbability = Double.parseDouble(System.getProperty("bench.goneTrackProbability", "0"));
+        double nonMusicProbability = Double.parseDouble(System.getProperty("bench.nonMusicProbability", "0"));
+        double unavailableProbability = Double.parseDouble(System.getProperty("bench.unavailableProbability", "0"));
+        File resultFile = new File(System.getProperty("bench.result.file", "target/transfer-throughput.json"));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (StubApiServer stub = new StubApiServer().start()) {
+            stub.latency(latency)
+                    .rateLimitProbability(rateLimitProbability)
+                    .serverErrorProbability(serverErrorProbability)
+                    .searchMissProbability(searchMissProbability)
+                    .goneTrackProbability(goneTrackProbability)
+                    .nonMusicVideoProbability(nonMusicProbability)
+                    .unavailableVideoProbability(unavailableProbability)
+                    .retryAfterSeconds(0);
+
+            WebClient webClient = WebClient.builder().filter(new OutboundCallFilter()).build();
+            SpotifyApiService spotifyApiService = new SpotifyApiService(webClient, stub.spotifyBaseUrl(), 8);
+            // Without reuse, every transfer searches each item like a first-time transfer
+            TrackMatchRepository trackMatchRepository = new InMemoryTrackMatchRepository(reuseMatches).repository();
+            LocalTrackIndex localTrackIndex = new LocalTrackIndex(trackMatchRepository, localIndex);
+            TransferService transferService = new TransferService(
+                    spotifyApiService,
+                    new TrackMatcher(spotifyApiService, localTrackIndex, 0.6, hedgeMaxExtraSearches, 0.9),
+                    new YoutubeApiService(webClient, stub.youtubeBaseUrl()),
+                    new SpotifyPlaylistWriter(webClient, stub.spotifyBaseUrl(), writeConcurrency, 3),
+                    trackMatchRepository,
+                    localTrackIndex,
+                    SKIP_CATEGORY_IDS, 1800, Duration.ZERO);
+            String playlistId = StubApiServer.syntheticPlaylistId(items);
+
+            System.out.printf("Transfer throughput: %d items/playlist, latency %s, 429 p=%.3f, 5xx p=%.3f%n",
+                    items, latency, rateLimitProbability, serverErrorProbability);
+            System.out.printf("%12s %8s %12s %14s %14s %16s%n",
+                    "concurrency", "jobs", "tracks/sec", "p50 job (ms)", "p99 job (ms)", "API calls/track");
+
+            for (int concurrency : levels) {
+                int jobs = concurrency * jobsPerThread;
+                stub.resetCounters();
+                long[] durations = new long[jobs];
+                LongAdder matched = new LongAdder();
+                LongAdder committed = new LongAdder();
+                LongAdder skipped = new LongAdder();
+                LongAdder hedgedItems = new LongAdder();
+                LongAdder hedgeWins = new LongAdder();
+                LongAdder localMatches = new LongAdder();
+                ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+                long start = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>(jobs);
+                for (int j = 0; j < jobs; j++) {
+                    int index = j;
+                    futures.add(pool.submit(() -> {
+                        TransferJob job = new TransferJob(UUID.randomUUID().toString(), "bench", playlistId, 256);
+                        long jobStart = System.nanoTime();
+                        // Called directly (no Spring proxy), so this runs synchronously on the pool thread
+                        transferService.transferYoutubePlaylistAsync(job, "stub-spotify-token", "stub-google-token");
+                        durations[index] = System.nanoTime() - jobStart;
+                        matched.add(job.getMatchedCount());
+                        committed.add(job.getAddedCount());
+                        skipped.add(job.getSkippedCount());
+                        hedgedItems.add(job.getHedgedItems());
+                        hedgeWins.add(job.getHedgeWins());
+                        localMatches.add(job.getLocalMatches());
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                long wallNanos = System.nanoTime() - start;
+                pool.shutdown();
+
+                Arrays.sort(durations);
+                long tracks = (long) jobs * items;
+                double tracksPerSecond = tracks / (wallNanos / 1e9);
+                double p50 = durations[percentileIndex(jobs, 0.50)] / 1e6;
+                double p99 = durations[percentileIndex(jobs, 0.99)] / 1e6;
+                double callsPerTrack = (double) stub.totalCalls() / tracks;
+                System.out.printf("%12d %8d %12.1f %14.1f %14.1f %16.3f%n",
+                        concurrency, jobs, tracksPerSecond, p50, p99, callsPerTrack);
+
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("concurrency", concurrency);
+                row.put("jobs", jobs);
+                row.put("itemsPerJob", items);
+                row.put("tracksPerSecond", tracksPerSecond);
+                row.put("p50JobMs", p50);
+                row.put("p99JobMs", p99);
+                row.put("apiCallsPerTrack", callsPerTrack);
+                row.put("apiCalls", stub.totalCalls());
+                row.put("tracksMatched", matched.sum());
+                row.put("itemsSkipped", skipped.sum());
+                row.put("hitRate", (double) matched.sum() / (tracks - skipped.sum()));
+                row.put("hedgedItems", hedgedItems.sum());
+                row.put("hedgeWins", hedgeWins.sum());
+                row.put("localMatches", localMatches.sum());
+                row.put("searches", stub.calls(StubApiServer.Endpoint.SPOTIFY_SEARCH));
+                row.put("tracksCommitted", committed.sum());
+                row.put("tracksAdded", stub.tracksAdded());
+                row.put("injectedRateLimits", stub.injectedRateLimits());
+                row.put("injectedServerErrors", stub.injectedServerErrors());
+                results.add(row);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", "transfer-throughput");
+        report.put("itemsPerPlaylist", items);
+        report.put("latency", latency.toString());
+        report.put("writeConcurrency", writeConcurrency);
+        report.put("rateLimitProbability", rateLimitProbability);
+        report.put("serverErrorProbability", serverErrorProbability);
+        report.put("searchMissProbability", searchMissProbability);
+        report.put("hedgeMaxExtraSearches", hedgeMaxExtraSearches);
+        report.put("localIndex", localIndex);
+        report.put("reuseMatches", reuseMatches);
+        report.put("nonMusicProbability", nonMusicProbability);
+        report.put("unavailableProbability", unavailableProbability);
+        report.put("results", results);
+        resultFile.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, report);
+        System.out.println("Report written to " + resultFile.getAbsolutePath());
+    }
+
+    private static int percentileIndex(int count, double percentile) {
+        return Math.min(count - 1, (int) Math.ceil(percentile * count) - 1);
+    }
+}
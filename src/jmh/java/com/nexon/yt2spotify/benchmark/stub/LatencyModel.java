@@ -0,0 +1,78 @@
+package com.nexon.yt2spotify.benchmark.stub;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency distribution applied by {@link StubApiServer} before answering a request.
+ * <p>
+ * Parsed from a compact spec so it can be passed as a system property:
+ * <ul>
+ *     <li>{@code none}</li>
+ *     <li>{@code fixed:40} - always 40 ms</li>
+ *     <li>{@code uniform:20:80} - uniformly between 20 and 80 ms</li>
+ *     <li>{@code lognormal:40:0.6} - log-normal with a 40 ms median and sigma 0.6 (long tail, like real APIs)</li>
+ * </ul>
+ */
+public abstract class LatencyModel {
+
+    public static final LatencyModel NONE = fixed(0);
+
+    /** Next delay in milliseconds. */
+    public abstract long nextMillis();
+
+    public static LatencyModel fixed(long millis) {
+        return new LatencyModel() {
+            @Override
+            public long nextMillis() {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed:" + millis;
+            }
+        };
+    }
+
+    public static LatencyModel uniform(long minMillis, long maxMillis) {
+        return new LatencyModel() {
+            @Override
+            public long nextMillis() {
+                return ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+            }
+
+            @Override
+            public String toString() {
+                return "uniform:" + minMillis + ":" + maxMillis;
+            }
+        };
+    }
+
+    public static LatencyModel logNormal(double medianMillis, double sigma) {
+        double mu = Math.log(medianMillis);
+        return new LatencyModel() {
+            @Override
+            public long nextMillis() {
+                return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal:" + medianMillis + ":" + sigma;
+            }
+        };
+    }
+
+    public static LatencyModel parse(String spec) {
+        if (spec == null || spec.isBlank() || spec.equals("none")) {
+            return NONE;
+        }
+        String[] parts = spec.split(":");
+        return switch (parts[0]) {
+            case "fixed" -> fixed(Long.parseLong(parts[1]));
+            case "uniform" -> uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            case "lognormal" -> logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            default -> throw new IllegalArgumentException("Unknown latency model: " + spec);
+        };
+    }
+}
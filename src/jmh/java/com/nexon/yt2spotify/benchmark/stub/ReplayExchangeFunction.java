@@ -0,0 +1,160 @@
+package com.nexon.yt2spotify.benchmark.stub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexon.yt2spotify.config.HttpRecordingFilter;
+import com.nexon.yt2spotify.config.RecordedExchange;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Serves the exchanges {@link HttpRecordingFilter} recorded, in place of the real Spotify / YouTube APIs,
+ * so a transfer of a real playlist can be repeated offline with the same responses and timing.
+ * <p>
+ * A request gets the recordings of the same method, URL and body in recorded order (429s and retries
+ * included), starting over once they run out, so a playlist can be transferred again and again. A
+ * request recorded with another body (the playlist name, the positions of an add-tracks batch), or with
+ * another query, gets a successful recording of the same path instead. Anything else is a 404 and counted
+ * as a miss. Each response comes after the recorded duration times {@code timeScale} (0 = at once).
+ */
+public class ReplayExchangeFunction implements ExchangeFunction {
+
+    private static final ExchangeStrategies STRATEGIES = ExchangeStrategies.withDefaults();
+
+    private final Map<String, Recordings> byRequest = new HashMap<>();
+    private final Map<String, Recordings> byUrl = new HashMap<>();
+    private final Map<String, Recordings> byPath = new HashMap<>();
+    private final List<RecordedExchange> exchanges;
+    private final double timeScale;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ReplayExchangeFunction(List<RecordedExchange> exchanges, double timeScale) {
+        this.exchanges = List.copyOf(exchanges);
+        this.timeScale = timeScale;
+        for (RecordedExchange exchange : this.exchanges) {
+            byRequest.computeIfAbsent(exchange.method() + " " + exchange.url() + " " + exchange.requestBody(), key -> new Recordings()).add(exchange);
+            if (exchange.status() >= 200 && exchange.status() < 300) {
+                byUrl.computeIfAbsent(exchange.method() + " " + exchange.url(), key -> new Recordings()).add(exchange);
+                byPath.computeIfAbsent(exchange.method() + " " + URI.create(exchange.url()).getPath(), key -> new Recordings()).add(exchange);
+            }
+        }
+    }
+
+    /** All recordings in {@code directory}, file by file in name order (so in recording order). */
+    public static List<RecordedExchange> load(Path directory) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<RecordedExchange> exchanges = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".ndjson")).sorted(Comparator.naturalOrder()).toList()) {
+                for (String line : Files.readAllLines(file)) {
+                    if (!line.isBlank()) {
+                        exchanges.add(objectMapper.readValue(line, RecordedExchange.class));
+                    }
+                }
+            }
+        }
+        return exchanges;
+    }
+
+    public List<RecordedExchange> exchanges() {
+        return exchanges;
+    }
+
+    public long served() {
+        return served.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    @Override
+    public Mono<ClientResponse> exchange(ClientRequest request) {
+        String url = RecordedExchange.scrub(request.url());
+        String method = request.method().name();
+        RecordedExchange exchange = Optional.ofNullable(byRequest.get(method + " " + url + " " + body(request)))
+                .or(() -> Optional.ofNullable(byUrl.get(method + " " + url)))
+                .or(() -> Optional.ofNullable(byPath.get(method + " " + request.url().getPath())))
+                .map(Recordings::next)
+                .orElse(null);
+        if (exchange == null) {
+            misses.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND, STRATEGIES).build());
+        }
+        served.incrementAndGet();
+        Mono<ClientResponse> response = exchange.status() == 0
+                ? Mono.error(new WebClientRequestException(new IOException(exchange.error()), request.method(), request.url(), request.headers()))
+                : Mono.fromSupplier(() -> {
+                    ClientResponse.Builder builder = ClientResponse.create(HttpStatus.valueOf(exchange.status()), STRATEGIES)
+                            .headers(headers -> exchange.headers().forEach(headers::set));
+                    return exchange.body() != null ? builder.body(exchange.body()).build() : builder.build();
+                });
+        long delayMs = Math.round(exchange.durationMs() * timeScale);
+        return delayMs > 0 ? Mono.delay(Duration.ofMillis(delayMs)).then(response) : response;
+    }
+
+    /** The request body as recorded, or null for requests without one. */
+    private static String body(ClientRequest request) {
+        if (request.method() == HttpMethod.GET) {
+            return null;
+        }
+        MockClientHttpRequest mock = new MockClientHttpRequest(request.method(), request.url());
+        request.body().insert(mock, new BodyInserter.Context() {
+            @Override
+            public List<HttpMessageWriter<?>> messageWriters() {
+                return STRATEGIES.messageWriters();
+            }
+
+            @Override
+            public Optional<ServerHttpRequest> serverRequest() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Map<String, Object> hints() {
+                return Map.of();
+            }
+        }).block();
+        return mock.getBodyAsString().onErrorResume(e -> Mono.empty()).defaultIfEmpty("").map(body -> body.isEmpty() ? null : body).block();
+    }
+
+    /** The recordings of one request, served round-robin. */
+    private static final class Recordings {
+        private final List<RecordedExchange> exchanges = new ArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        void add(RecordedExchange exchange) {
+            exchanges.add(exchange);
+        }
+
+        RecordedExchange next() {
+            return exchanges.get(Math.floorMod(next.getAndIncrement(), exchanges.size()));
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.nexon.yt2spotify.benchmark.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for the parts of the YouTube Data API and the Spotify Web API that a transfer
+ * touches, for load tests that must not hit (or be rate limited by) the real services.
+ * <p>
+ * Point the services at it with {@code yt2spotify.youtube.api-base-url=}{@link #youtubeBaseUrl()} and
+ * {@code yt2spotify.spotify.api-base-url=}{@link #spotifyBaseUrl()}.
+ * <ul>
+ *     <li>Playlists are synthetic: {@code PLsynthetic-10000} has 10,000 items, generated page by page
+ *     so even huge playlists cost no memory. Other IDs get {@link #defaultPlaylistSize(int)} items.</li>
+ *     <li>videos.list derives each video's category and availability from its ID, so a given share of
+ *     a playlist is consistently non-music or gone across runs.</li>
+ *     <li>Latency follows a configurable {@link LatencyModel}, globally or per endpoint.</li>
+ *     <li>429 (with Retry-After) and 5xx responses are injected with configurable probabilities.</li>
+ *     <li>Every request is counted per endpoint, so callers can compute API calls per track.</li>
+ *     <li>Created playlists keep their tracks. Adding honours {@code position} and, like Spotify,
+ *     rejects a position past the end with a 400.</li>
+ * </ul>
+ * Requests are served on virtual threads, so simulated latency never limits the server's own concurrency.
+ */
+public class StubApiServer implements AutoCloseable {
+
+    public enum Endpoint {
+        YOUTUBE_PLAYLISTS,
+        YOUTUBE_PLAYLIST_ITEMS,
+        YOUTUBE_VIDEOS,
+        SPOTIFY_SEARCH,
+        SPOTIFY_ME,
+        SPOTIFY_CREATE_PLAYLIST,
+        SPOTIFY_ADD_TRACKS,
+        SPOTIFY_TRACKS,
+        UNKNOWN
+    }
+
+    public static final String SYNTHETIC_PLAYLIST_PREFIX = "PLsynthetic-";
+    private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final String SPOTIFY_BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String[] ARTISTS = {
+            "Daft Punk", "Beyonce", "Arctic Monkeys", "Tame Impala", "Rosalia", "The Weeknd",
+            "Billie Eilish", "Radiohead", "Kendrick Lamar", "Fleetwood Mac", "Stromae", "BLACKPINK"
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Endpoint, LongAdder> calls = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LatencyModel> endpointLatency = new ConcurrentHashMap<>();
+    private final LongAdder tracksAdded = new LongAdder();
+    private final LongAdder injectedRateLimits = new LongAdder();
+    private final LongAdder injectedServerErrors = new LongAdder();
+    private final AtomicLong playlistSequence = new AtomicLong();
+    private final Map<String, List<String>> spotifyPlaylists = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile LatencyModel latency = LatencyModel.NONE;
+    private volatile double rateLimitProbability;
+    private volatile double serverErrorProbability;
+    private volatile double searchMissProbability;
+    private volatile double goneTrackProbability;
+    private volatile double nonMusicVideoProbability;
+    private volatile double unavailableVideoProbability;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int defaultPlaylistSize = 100;
+
+    public StubApiServer() throws IOException {
+        this(0);
+    }
+
+    public StubApiServer(int port) throws IOException {
+        for (Endpoint endpoint : Endpoint.values()) {
+            calls.put(endpoint, new LongAdder());
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/youtube/v3/", this::handle);
+        server.createContext("/v1/", this::handle);
+    }
+
+    public StubApiServer start() {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String youtubeBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/youtube/v3";
+    }
+
+    public String spotifyBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    // ---- Configuration (fluent, safe to change while running) ----
+
+    public StubApiServer latency(LatencyModel latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public StubApiServer latency(Endpoint endpoint, LatencyModel latency) {
+        endpointLatency.put(endpoint, latency);
+        return this;
+    }
+
+    public StubApiServer rateLimitProbability(double probability) {
+        this.rateLimitProbability = probability;
+        return this;
+    }
+
+    public StubApiServer serverErrorProbability(double probability) {
+        this.serverErrorProbability = probability;
+        return this;
+    }
+
+    public StubApiServer searchMissProbability(double probability) {
+        this.searchMissProbability = probability;
+        return this;
+    }
+
+    /** Fraction of tracks that {@code GET /tracks?ids=} reports as gone ({@code null}). */
+    public StubApiServer goneTrackProbability(double probability) {
+        this.goneTrackProbability = probability;
+        return this;
+    }
+
+    /** Fraction of videos that videos.list reports in a non-music category (Gaming). */
+    public StubApiServer nonMusicVideoProbability(double probability) {
+        this.nonMusicVideoProbability = probability;
+        return this;
+    }
+
+    /** Fraction of videos that videos.list doesn't return (deleted / private). */
+    public StubApiServer unavailableVideoProbability(double probability) {
+        this.unavailableVideoProbability = probability;
+        return this;
+    }
+
+    public StubApiServer retryAfterSeconds(int seconds) {
+        this.retryAfterSeconds = seconds;
+        return this;
+    }
+
+    public StubApiServer defaultPlaylistSize(int size) {
+        this.defaultPlaylistSize = size;
+        return this;
+    }
+
+    // ---- Counters ----
+
+    public long calls(Endpoint endpoint) {
+        return calls.get(endpoint).sum();
+    }
+
+    public long totalCalls() {
+        long total = 0;
+        for (LongAdder adder : calls.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public long tracksAdded() {
+        return tracksAdded.sum();
+    }
+
+    public long injectedRateLimits() {
+        return injectedRateLimits.sum();
+    }
+
+    public long injectedServerErrors() {
+        return injectedServerErrors.sum();
+    }
+
+    /** Tracks currently in a playlist created through the stub, in playlist order. */
+    public List<String> spotifyPlaylistTracks(String playlistId) {
+        List<String> tracks = spotifyPlaylists.getOrDefault(playlistId, List.of());
+        synchronized (tracks) {
+            return new ArrayList<>(tracks);
+        }
+    }
+
+    /** Clears counters and created playlists (tracks matched by earlier runs stay valid). */
+    public void resetCounters() {
+        spotifyPlaylists.clear();
+        calls.values().forEach(LongAdder::reset);
+        tracksAdded.reset();
+        injectedRateLimits.reset();
+        injectedServerErrors.reset();
+    }
+
+    public static String syntheticPlaylistId(int size) {
+        return SYNTHETIC_PLAYLIST_PREFIX + size;
+    }
+
+    // ---- Request handling ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String body = readBody(exchange.getRequestBody());
+            Endpoint endpoint = route(exchange.getRequestMethod(), path);
+            calls.get(endpoint).increment();
+
+            sleep(endpointLatency.getOrDefault(endpoint, latency).nextMillis());
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < rateLimitProbability) {
+                injectedRateLimits.increment();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                send(exchange, 429, "{\"error\":{\"status\":429,\"message\":\"API rate limit exceeded\"}}");
+                return;
+            }
+            if (random.nextDouble() < serverErrorProbability) {
+                injectedServerErrors.increment();
+                send(exchange, random.nextBoolean() ? 502 : 503, "{\"error\":{\"status\":503,\"message\":\"Service unavailable\"}}");
+                return;
+            }
+
+            switch (endpoint) {
+                case YOUTUBE_PLAYLISTS -> send(exchange, 200, youtubePlaylists(query));
+                case YOUTUBE_PLAYLIST_ITEMS -> send(exchange, 200, youtubePlaylistItems(query));
+                case YOUTUBE_VIDEOS -> send(exchange, 200, youtubeVideos(query.getOrDefault("id", "")));
+                case SPOTIFY_SEARCH -> send(exchange, 200, spotifySearch(query.getOrDefault("q", "")));
+                case SPOTIFY_ME -> send(exchange, 200, "{\"id\":\"stub-user\",\"display_name\":\"Stub User\"}");
+                case SPOTIFY_CREATE_PLAYLIST -> {
+                    String playlistId = "stubpl" + playlistSequence.incrementAndGet();
+                    spotifyPlaylists.put(playlistId, new ArrayList<>());
+                    send(exchange, 201, "{\"id\":\"" + playlistId + "\",\"name\":\"Stub playlist\"}");
+                }
+                case SPOTIFY_ADD_TRACKS -> addTracks(exchange, path, body);
+                case SPOTIFY_TRACKS -> send(exchange, 200, spotifyTracks(query.getOrDefault("ids", "")));
+                default -> send(exchange, 404, "{\"error\":{\"status\":404,\"message\":\"Not found\"}}");
+            }
+        }
+    }
+
+    private static Endpoint route(String method, String path) {
+        if (path.startsWith("/youtube/v3/")) {
+            return switch (path.substring("/youtube/v3/".length())) {
+                case "playlists" -> Endpoint.YOUTUBE_PLAYLISTS;
+                case "playlistItems" -> Endpoint.YOUTUBE_PLAYLIST_ITEMS;
+                case "videos" -> Endpoint.YOUTUBE_VIDEOS;
+                default -> Endpoint.UNKNOWN;
+            };
+        }
+        if (path.equals("/v1/search")) {
+            return Endpoint.SPOTIFY_SEARCH;
+        }
+        if (path.equals("/v1/me")) {
+            return Endpoint.SPOTIFY_ME;
+        }
+        if ("POST".equals(method) && path.startsWith("/v1/users/") && path.endsWith("/playlists")) {
+            return Endpoint.SPOTIFY_CREATE_PLAYLIST;
+        }
+        if ("POST".equals(method) && path.startsWith("/v1/playlists/") && path.endsWith("/tracks")) {
+            return Endpoint.SPOTIFY_ADD_TRACKS;
+        }
+        if ("GET".equals(method) && path.equals("/v1/tracks")) {
+            return Endpoint.SPOTIFY_TRACKS;
+        }
+        return Endpoint.UNKNOWN;
+    }
+
+    private String youtubePlaylists(Map<String, String> query) {
+        String ids = query.get("id");
+        String[] playlistIds = ids != null ? ids.split(",")
+                : new String[]{syntheticPlaylistId(50), syntheticPlaylistId(500), syntheticPlaylistId(5000)};
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < playlistIds.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String id = playlistIds[i];
+            json.append("{\"id\":\"").append(id).append("\",\"etag\":\"").append(id).append("-etag\",")
+                    .append("\"snippet\":{\"title\":\"Synthetic ").append(id)
+                    .append("\",\"description\":\"Generated by StubApiServer\"},")
+                    .append("\"contentDetails\":{\"itemCount\":").append(playlistSize(id)).append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String youtubePlaylistItems(Map<String, String> query) {
+        String playlistId = query.getOrDefault("playlistId", "");
+        int size = playlistSize(playlistId);
+        int offset = query.containsKey("pageToken") ? Integer.parseInt(query.get("pageToken")) : 0;
+        int pageSize = Integer.parseInt(query.getOrDefault("maxResults", "50"));
+        int end = Math.min(size, offset + pageSize);
+
+        StringBuilder json = new StringBuilder(64 + (end - offset) * 220).append('{');
+        if (end < size) {
+            json.append("\"nextPageToken\":\"").append(end).append("\",");
+        }
+        json.append("\"items\":[");
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                json.append(',');
+            }
+            String artist = ARTISTS[Math.floorMod(i * 31 + playlistId.hashCode(), ARTISTS.length)];
+            json.append("{\"id\":\"").append(playlistId).append('-').append(i).append("\",")
+                    .append("\"snippet\":{\"title\":\"").append(artist).append(" - Song ").append(i)
+                    .append(" (Official Video)\",\"resourceId\":{\"videoId\":\"")
+                    .append(randomId(playlistId.hashCode() * 1_000_003L + i, 11)).append("\"},")
+                    .append("\"videoOwnerChannelTitle\":\"").append(artist).append("VEVO\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String youtubeVideos(String ids) {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        boolean firstItem = true;
+        for (String videoId : ids.isEmpty() ? new String[0] : ids.split(",")) {
+            // Stable per video: the same IDs are skipped on every run
+            double unavailable = Math.floorMod(videoId.hashCode(), 10_000) / 10_000.0;
+            double nonMusic = Math.floorMod(videoId.hashCode() * 31 + 7, 10_000) / 10_000.0;
+            if (unavailable < unavailableVideoProbability) {
+                continue;
+            }
+            if (!firstItem) {
+                json.append(',');
+            }
+            firstItem = false;
+            json.append("{\"id\":\"").append(escape(videoId)).append("\",")
+                    .append("\"snippet\":{\"categoryId\":\"").append(nonMusic < nonMusicVideoProbability ? "20" : "10").append("\"},")
+                    .append("\"contentDetails\":{\"duration\":\"PT").append(3 + Math.floorMod(videoId.hashCode(), 3))
+                    .append('M').append(Math.floorMod(videoId.hashCode(), 60)).append("S\"},")
+                    .append("\"status\":{\"uploadStatus\":\"processed\",\"privacyStatus\":\"public\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String spotifySearch(String q) {
+        if (ThreadLocalRandom.current().nextDouble() < searchMissProbability) {
+            return "{\"tracks\":{\"items\":[],\"limit\":1,\"offset\":0,\"total\":0}}";
+        }
+        String trackId = trackId(q.hashCode());
+        return "{\"tracks\":{\"items\":[{\"id\":\"" + trackId + "\",\"name\":\"" + escape(q) + "\","
+                + "\"uri\":\"spotify:track:" + trackId + "\",\"duration_ms\":" + (180_000 + Math.floorMod(q.hashCode(), 120_000))
+                + ",\"artists\":[{\"id\":\"" + randomId(q.hashCode() * 7L, 22)
+                + "\",\"name\":\"Stub Artist\"}]}],\"limit\":1,\"offset\":0,\"total\":1}}";
+    }
+
+    private String spotifyTracks(String ids) {
+        StringBuilder json = new StringBuilder("{\"tracks\":[");
+        String[] trackIds = ids.isEmpty() ? new String[0] : ids.split(",");
+        for (int i = 0; i < trackIds.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            if (ThreadLocalRandom.current().nextDouble() < goneTrackProbability) {
+                json.append("null");
+                continue;
+            }
+            json.append("{\"id\":\"").append(escape(trackIds[i])).append("\",\"name\":\"Stub track\",")
+                    .append("\"uri\":\"spotify:track:").append(escape(trackIds[i])).append("\",\"is_playable\":true}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private void addTracks(HttpExchange exchange, String path, String body) throws IOException {
+        String playlistId = path.substring("/v1/playlists/".length(), path.length() - "/tracks".length());
+        JsonNode request = objectMapper.readTree(body);
+        List<String> uris = new ArrayList<>();
+        request.path("uris").forEach(uri -> uris.add(uri.asText()));
+        List<String> tracks = spotifyPlaylists.computeIfAbsent(playlistId, id -> new ArrayList<>());
+        synchronized (tracks) {
+            int position = request.has("position") ? request.get("position").asInt() : tracks.size();
+            if (position < 0 || position > tracks.size()) {
+                send(exchange, 400, "{\"error\":{\"status\":400,\"message\":\"Index out of bounds\"}}");
+                return;
+            }
+            tracks.addAll(position, uris);
+        }
+        tracksAdded.add(uris.size());
+        send(exchange, 201, "{\"snapshot_id\":\"" + randomId(ThreadLocalRandom.current().nextLong(), 32) + "\"}");
+    }
+
+    private int playlistSize(String playlistId) {
+        if (playlistId.startsWith(SYNTHETIC_PLAYLIST_PREFIX)) {
+            try {
+                return Integer.parseInt(playlistId.substring(SYNTHETIC_PLAYLIST_PREFIX.length()));
+            } catch (NumberFormatException ignored) {
+                // Fall through to the default size
+            }
+        }
+        return defaultPlaylistSize;
+    }
+
+    // ---- Helpers ----
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /** Deterministic base62 ID derived from a seed, so the same input always maps to the same ID. */
+    static String randomId(long seed, int length) {
+        char[] id = new char[length];
+        long state = seed ^ 0x5DEECE66DL;
+        for (int i = 0; i < length; i++) {
+            state = state * 6364136223846793005L + 1442695040888963407L;
+            id[i] = BASE62.charAt((int) ((state >>> 33) % BASE62.length()));
+        }
+        return new String(id);
+    }
+
+    /** Like {@link #randomId}, but always a valid Spotify ID: 128 random bits in 22 base62 chars. */
+    static String trackId(long seed) {
+        long high = seed * 6364136223846793005L + 1442695040888963407L;
+        long low = high * 6364136223846793005L + 1442695040888963407L;
+        long[] limbs = {high >>> 32, high & 0xFFFFFFFFL, low >>> 32, low & 0xFFFFFFFFL};
+        char[] id = new char[22];
+        for (int pos = id.length - 1; pos >= 0; pos--) {
+            long remainder = 0;
+            for (int l = 0; l < limbs.length; l++) {
+                long current = (remainder << 32) | limbs[l];
+                limbs[l] = current / 62;
+                remainder = current % 62;
+            }
+            id[pos] = SPOTIFY_BASE62.charAt((int) remainder);
+        }
+        return new String(id);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,11 +4,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling // Lease renewals (SpotifyRateBudgetFilter), checks of watched playlists (PlaylistWatchScheduler)
 public class AsyncConfig {
 
     // Define the primary TaskExecutor bean Spring should use for @Async
@@ -0,0 +1,74 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.TransferTimeline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * WebClient filter that bounds the wait for a Spotify / YouTube response, per operation:
+ * {@code yt2spotify.timeouts.response}, or the operation's entry in {@code response-per-operation}
+ * (e.g. {@code SPOTIFY_SEARCH=10s}). A call without response headers by then is cancelled and fails
+ * with a {@link WebClientRequestException}, like an I/O error, and the circuit breaker counts it as a
+ * failure. The request may still have been applied: the playlist writer checks whether a timed-out batch
+ * landed before it re-sends it.
+ * <p>
+ * Registered inside {@link ProviderGuardFilter}, so the timeout applies per attempt and doesn't
+ * include the wait for a bulkhead permit or the rate budget. Connect and read timeouts (a body that
+ * stops arriving) are set on the connector, see {@code SecurityConfig}.
+ */
+@Component
+public class CallTimeoutFilter implements ExchangeFilterFunction {
+
+    private final Map<TransferTimeline.Operation, Duration> responseTimeouts = new EnumMap<>(TransferTimeline.Operation.class);
+
+    public CallTimeoutFilter(
+            @Value("${yt2spotify.timeouts.response:20s}") Duration responseTimeout,
+            @Value("${yt2spotify.timeouts.response-per-operation:}") String perOperation) {
+        for (TransferTimeline.Operation operation : TransferTimeline.Operation.values()) {
+            responseTimeouts.put(operation, responseTimeout);
+        }
+        for (String entry : perOperation.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            try {
+                responseTimeouts.put(TransferTimeline.Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT).replace('-', '_')),
+                        DurationStyle.detectAndParse(parts[1].trim()));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid yt2spotify.timeouts.response-per-operation entry '" + entry.trim()
+                        + "', expected OPERATION=duration such as SPOTIFY_SEARCH=10s", e);
+            }
+        }
+    }
+
+    Duration responseTimeout(TransferTimeline.Operation operation) {
+        return responseTimeouts.get(operation);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        Duration timeout = responseTimeouts.get(TransferTimeline.Operation.classify(request.url().getPath()));
+        if (timeout.isZero() || timeout.isNegative()) {
+            return next.exchange(request);
+        }
+        return next.exchange(request)
+                .timeout(timeout)
+                .onErrorMap(TimeoutException.class, e -> new WebClientRequestException(
+                        new TimeoutException("No response within " + timeout.toMillis() + " ms"),
+                        request.method(), request.url(), request.headers()));
+    }
+}
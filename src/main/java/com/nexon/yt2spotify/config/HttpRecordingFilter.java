@@ -0,0 +1,154 @@
+package com.nexon.yt2spotify.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records every Spotify / YouTube exchange to {@code yt2spotify.recording.dir} as newline-delimited
+ * {@link RecordedExchange}s, one file per run, so real playlists can later be replayed offline with
+ * their original timing (see ReplayTransferBenchmark). Off unless the directory is set.
+ * <p>
+ * Registered innermost, so every attempt that reaches the provider, 429s and retries included, is
+ * recorded as it happened. Request headers (the bearer token) are never written.
+ */
+@Slf4j
+@Component
+public class HttpRecordingFilter implements ExchangeFilterFunction {
+
+    private static final List<String> RECORDED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER);
+
+    private final Path file;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private BufferedWriter writer; // Opened on the first call, guarded by this
+
+    public HttpRecordingFilter(@Value("${yt2spotify.recording.dir:}") String directory) {
+        this.file = directory.isBlank() ? null : Path.of(directory,
+                "exchanges-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".ndjson");
+        if (file != null) {
+            log.warn("Recording all Spotify / YouTube exchanges to {}", file.toAbsolutePath());
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (file == null) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> {
+            long startedAtMs = System.currentTimeMillis();
+            long start = System.nanoTime();
+            ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+            ClientRequest recorded = ClientRequest.from(request)
+                    .body((outputMessage, context) -> request.body().insert(capturing(outputMessage, requestBody), context))
+                    .build();
+            return next.exchange(recorded)
+                    .map(response -> {
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        AtomicBoolean written = new AtomicBoolean();
+                        return response.mutate()
+                                .body(flux -> flux
+                                        .doOnNext(buffer -> copy(buffer, body))
+                                        .doFinally(signal -> {
+                                            if (written.compareAndSet(false, true)) {
+                                                write(new RecordedExchange(startedAtMs, request.method().name(), RecordedExchange.scrub(request.url()),
+                                                        text(requestBody), response.statusCode().value(), headers(response),
+                                                        body.toString(StandardCharsets.UTF_8), (System.nanoTime() - start) / 1_000_000, null));
+                                            }
+                                        }))
+                                .build();
+                    })
+                    .doOnError(e -> write(new RecordedExchange(startedAtMs, request.method().name(), RecordedExchange.scrub(request.url()),
+                            text(requestBody), 0, Map.of(), null, (System.nanoTime() - start) / 1_000_000, e.getMessage())));
+        });
+    }
+
+    private static ClientHttpRequest capturing(ClientHttpRequest outputMessage, ByteArrayOutputStream sink) {
+        return new ClientHttpRequestDecorator(outputMessage) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return super.writeWith(Flux.from(body).doOnNext(buffer -> copy(buffer, sink)));
+            }
+        };
+    }
+
+    private static void copy(DataBuffer buffer, ByteArrayOutputStream sink) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(bytes), 0, bytes.length);
+        synchronized (sink) {
+            sink.writeBytes(bytes);
+        }
+    }
+
+    private static String text(ByteArrayOutputStream bytes) {
+        return bytes.size() > 0 ? bytes.toString(StandardCharsets.UTF_8) : null;
+    }
+
+    private static Map<String, String> headers(ClientResponse response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        HttpHeaders all = response.headers().asHttpHeaders();
+        for (String name : RECORDED_HEADERS) {
+            if (all.getFirst(name) != null) {
+                headers.put(name, all.getFirst(name));
+            }
+        }
+        return headers;
+    }
+
+    private synchronized void write(RecordedExchange exchange) {
+        try {
+            if (writer == null) {
+                Files.createDirectories(file.getParent());
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+            writer.write(objectMapper.writeValueAsString(exchange));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Could not record {} {}: {}", exchange.method(), exchange.url(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.CallPriority;
+import com.nexon.yt2spotify.service.TransferTimeline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * WebClient filter applied to every outbound Spotify / YouTube call.
+ * <ul>
+ *     <li>Retries 429 responses a few times, honouring the {@code Retry-After} header.</li>
+ *     <li>When the calling thread is running a transfer, records the call (duration, status,
+ *     retries, rate-limit wait and bytes received) on that transfer's {@link TransferTimeline}.</li>
+ *     <li>Settles the call's {@link CallPriority} for the filters registered inside this one: the one
+ *     captured in the subscriber's context if there is one, otherwise the one the request was tagged
+ *     with when it was built.</li>
+ * </ul>
+ */
+@Slf4j
+public class OutboundCallFilter implements ExchangeFilterFunction {
+
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(30);
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest call, ExchangeFunction next) {
+        // Captured on the subscribing thread, i.e. the transfer thread calling block()
+        TransferTimeline timeline = TransferTimeline.current();
+        return Mono.deferContextual(context -> {
+            CallPriority priority = context.<CallPriority>getOrEmpty(CallPriority.ATTRIBUTE).orElseGet(() -> CallPriority.of(call));
+            return tracedExchange(ClientRequest.from(call).attribute(CallPriority.ATTRIBUTE, priority).build(), next, timeline);
+        });
+    }
+
+    private Mono<ClientResponse> tracedExchange(ClientRequest request, ExchangeFunction next, TransferTimeline timeline) {
+        CallTrace trace = new CallTrace(timeline, TransferTimeline.Operation.classify(request.url().getPath()));
+
+        Mono<ClientResponse> exchange = Mono.defer(() -> {
+            trace.start();
+            return exchange(request, next, trace, 0);
+        });
+        if (timeline == null) {
+            return exchange;
+        }
+        return exchange
+                .map(response -> {
+                    trace.status = response.statusCode().value();
+                    return response.mutate()
+                            .body(body -> body
+                                    .doOnNext(buffer -> trace.bytes += buffer.readableByteCount())
+                                    .doOnTerminate(trace::record)
+                                    .doOnCancel(trace::record))
+                            .build();
+                })
+                .doOnError(e -> trace.record());
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, CallTrace trace, int attempt) {
+        return next.exchange(request).flatMap(response -> {
+            if (response.statusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value() || attempt >= MAX_RATE_LIMIT_RETRIES) {
+                return Mono.just(response);
+            }
+            Duration wait = retryAfter(response.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            trace.retries++;
+            trace.waitNanos += wait.toNanos();
+            log.warn("Rate limited on {} {} (attempt {}), retrying in {} ms",
+                    request.method(), request.url().getPath(), attempt + 1, wait.toMillis());
+            return response.releaseBody()
+                    .then(Mono.delay(wait))
+                    .then(Mono.defer(() -> exchange(request, next, trace, attempt + 1)));
+        });
+    }
+
+    static Duration retryAfter(String header) {
+        if (header == null || header.isBlank()) {
+            return DEFAULT_RETRY_AFTER;
+        }
+        try {
+            Duration wait = Duration.ofSeconds(Long.parseLong(header.trim()));
+            return wait.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : wait;
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETRY_AFTER; // HTTP-date form is not used by Spotify or YouTube
+        }
+    }
+
+    /**
+     * Mutable per-call accumulator; only touched by the reactive chain of a single exchange.
+     */
+    private static final class CallTrace {
+        private final TransferTimeline timeline;
+        private final TransferTimeline.Operation operation;
+        private final int item;
+        private long start;
+        private int status;
+        private int retries;
+        private long waitNanos;
+        private long bytes;
+        private boolean recorded;
+
+        private CallTrace(TransferTimeline timeline, TransferTimeline.Operation operation) {
+            this.timeline = timeline;
+            this.operation = operation;
+            this.item = timeline != null ? timeline.currentItem() : -1;
+        }
+
+        private void start() {
+            start = timeline != null ? timeline.now() : 0;
+        }
+
+        private void record() {
+            if (timeline == null || recorded) {
+                return;
+            }
+            recorded = true;
+            timeline.recordCall(operation, item, start, timeline.now() - start, status, retries, waitNanos, bytes);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.CallPriority;
+import com.nexon.yt2spotify.service.ProviderUnavailableException;
+import com.nexon.yt2spotify.service.TransferTimeline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebClient filter that keeps one provider's incident from using up the app.
+ * <ul>
+ *     <li><b>Circuit breaker per operation</b> (Spotify search, YouTube playlistItems, ...): over the
+ *     last {@code circuit-window} calls, when the share of failures (5xx, I/O errors) or of calls
+ *     slower than {@code circuit-slow-call-threshold} crosses its limit, the circuit opens and calls
+ *     fail at once with {@link ProviderUnavailableException}. After {@code circuit-open-duration} a
+ *     few probe calls are let through; if they all succeed the circuit closes, otherwise it opens
+ *     again.</li>
+ *     <li><b>Bulkhead per provider</b>: at most {@code max-concurrent} Spotify and, separately,
+ *     YouTube calls in flight. Further calls wait without holding a thread, and fail after
+ *     {@code bulkhead-max-wait}, so a slow YouTube can't take the capacity Spotify calls need.
+ *     Waiting calls get a freed permit by {@link CallPriority}, and transfers leave
+ *     {@code interactive-reserved-permits} to interactive calls (re-syncs half of what is left), so
+ *     a user's search doesn't queue behind a big transfer.</li>
+ * </ul>
+ * Registered inside {@link OutboundCallFilter}, so every 429 retry is a call of its own here and
+ * no permit is held while waiting out a {@code Retry-After}.
+ */
+@Slf4j
+@Component
+public class ProviderGuardFilter implements ExchangeFilterFunction {
+
+    enum Provider { SPOTIFY, YOUTUBE }
+
+    private final Map<TransferTimeline.Operation, CircuitBreaker> circuits = new EnumMap<>(TransferTimeline.Operation.class);
+    private final Map<Provider, Bulkhead> bulkheads = new EnumMap<>(Provider.class);
+    private final long slowCallThresholdNanos;
+    private final Duration bulkheadMaxWait;
+    private final int maxConcurrentPerProvider;
+
+    public ProviderGuardFilter(
+            @Value("${yt2spotify.resilience.circuit-window:20}") int window,
+            @Value("${yt2spotify.resilience.circuit-minimum-calls:10}") int minimumCalls,
+            @Value("${yt2spotify.resilience.circuit-failure-rate:50}") int failureRatePercent,
+            @Value("${yt2spotify.resilience.circuit-slow-call-threshold:5s}") Duration slowCallThreshold,
+            @Value("${yt2spotify.resilience.circuit-slow-call-rate:80}") int slowCallRatePercent,
+            @Value("${yt2spotify.resilience.circuit-open-duration:30s}") Duration openDuration,
+            @Value("${yt2spotify.resilience.circuit-half-open-calls:3}") int halfOpenCalls,
+            @Value("${yt2spotify.resilience.spotify-max-concurrent:32}") int spotifyMaxConcurrent,
+            @Value("${yt2spotify.resilience.youtube-max-concurrent:16}") int youtubeMaxConcurrent,
+            @Value("${yt2spotify.resilience.interactive-reserved-permits:4}") int interactiveReservedPermits,
+            @Value("${yt2spotify.resilience.bulkhead-max-wait:10s}") Duration bulkheadMaxWait) {
+        for (TransferTimeline.Operation operation : TransferTimeline.Operation.values()) {
+            if (provider(operation) != null) {
+                circuits.put(operation, new CircuitBreaker(operation, window, minimumCalls, failureRatePercent,
+                        slowCallRatePercent, openDuration.toNanos(), halfOpenCalls));
+            }
+        }
+        bulkheads.put(Provider.SPOTIFY, new Bulkhead(spotifyMaxConcurrent, interactiveReservedPermits));
+        bulkheads.put(Provider.YOUTUBE, new Bulkhead(youtubeMaxConcurrent, interactiveReservedPermits));
+        this.slowCallThresholdNanos = slowCallThreshold.toNanos();
+        this.bulkheadMaxWait = bulkheadMaxWait;
+        this.maxConcurrentPerProvider = Math.max(spotifyMaxConcurrent, youtubeMaxConcurrent);
+    }
+
+    /** Size of the larger bulkhead: the most calls in flight to one provider. */
+    public int maxConcurrentPerProvider() {
+        return maxConcurrentPerProvider;
+    }
+
+    static Provider provider(TransferTimeline.Operation operation) {
+        return operation.name().startsWith("SPOTIFY_") ? Provider.SPOTIFY
+                : operation.name().startsWith("YOUTUBE_") ? Provider.YOUTUBE
+                : null;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        TransferTimeline.Operation operation = TransferTimeline.Operation.classify(request.url().getPath());
+        CircuitBreaker circuit = circuits.get(operation);
+        if (circuit == null) {
+            return next.exchange(request); // Not a Spotify / YouTube API call
+        }
+        Bulkhead bulkhead = bulkheads.get(provider(operation));
+        return Mono.defer(() -> {
+            if (!circuit.tryAcquire(System.nanoTime())) {
+                return Mono.error(new ProviderUnavailableException("Circuit open for " + operation + ", not calling " + request.url().getPath()));
+            }
+            return bulkhead.acquire(CallPriority.of(request))
+                    .timeout(bulkheadMaxWait)
+                    .onErrorMap(TimeoutException.class, e -> new ProviderUnavailableException(
+                            provider(operation) + " bulkhead full for " + bulkheadMaxWait.toSeconds() + " s, not calling " + request.url().getPath()))
+                    .doOnError(e -> circuit.release())
+                    .doOnCancel(circuit::release) // Gave up while waiting for a permit
+                    .then(Mono.defer(() -> exchange(request, next, circuit, bulkhead)));
+        });
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, CircuitBreaker circuit, Bulkhead bulkhead) {
+        long start = System.nanoTime();
+        AtomicBoolean done = new AtomicBoolean(); // The permit is held until the body is consumed
+        Runnable releasePermit = () -> {
+            if (done.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        };
+        return next.exchange(request)
+                .doOnNext(response -> {
+                    long now = System.nanoTime();
+                    circuit.record(response.statusCode().is5xxServerError(), now - start > slowCallThresholdNanos, now);
+                })
+                .doOnError(e -> {
+                    circuit.record(true, false, System.nanoTime());
+                    releasePermit.run();
+                })
+                .doOnCancel(() -> {
+                    circuit.release();
+                    releasePermit.run();
+                })
+                .map(response -> response.mutate()
+                        .body(body -> body.doFinally(signal -> releasePermit.run()))
+                        .build());
+    }
+
+    /** Count-based circuit breaker over the outcomes of the last {@code window} calls. */
+    static final class CircuitBreaker {
+
+        enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final TransferTimeline.Operation operation;
+        private final boolean[] failed;
+        private final boolean[] slow;
+        private final int minimumCalls;
+        private final int failureRatePercent;
+        private final int slowCallRatePercent;
+        private final long openNanos;
+        private final int halfOpenCalls;
+
+        private State state = State.CLOSED;
+        private int next;
+        private int recorded;
+        private int failures;
+        private int slowCalls;
+        private long openedAt;
+        private int probesLeft; // HALF_OPEN: probes not yet sent
+        private int probesPassed;
+
+        CircuitBreaker(TransferTimeline.Operation operation, int window, int minimumCalls, int failureRatePercent,
+                       int slowCallRatePercent, long openNanos, int halfOpenCalls) {
+            this.operation = operation;
+            this.failed = new boolean[window];
+            this.slow = new boolean[window];
+            this.minimumCalls = Math.min(minimumCalls, window);
+            this.failureRatePercent = failureRatePercent;
+            this.slowCallRatePercent = slowCallRatePercent;
+            this.openNanos = openNanos;
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            if (state == State.OPEN && now - openedAt >= openNanos) {
+                state = State.HALF_OPEN;
+                probesLeft = halfOpenCalls;
+                probesPassed = 0;
+                log.info("Circuit for {} half-open, letting {} probe calls through", operation, halfOpenCalls);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesLeft == 0) {
+                    return false;
+                }
+                probesLeft--;
+            }
+            return state != State.OPEN;
+        }
+
+        /** A call that was let through ended without an outcome (cancelled, or never sent). */
+        synchronized void release() {
+            if (state == State.HALF_OPEN && probesLeft + probesPassed < halfOpenCalls) {
+                probesLeft++;
+            }
+        }
+
+        synchronized void record(boolean failure, boolean slowCall, long now) {
+            switch (state) {
+                case CLOSED -> {
+                    if (recorded == failed.length) {
+                        failures -= failed[next] ? 1 : 0;
+                        slowCalls -= slow[next] ? 1 : 0;
+                    } else {
+                        recorded++;
+                    }
+                    failed[next] = failure;
+                    slow[next] = slowCall;
+                    failures += failure ? 1 : 0;
+                    slowCalls += slowCall ? 1 : 0;
+                    next = (next + 1) % failed.length;
+                    if (recorded >= minimumCalls
+                            && (failures * 100 >= failureRatePercent * recorded || slowCalls * 100 >= slowCallRatePercent * recorded)) {
+                        log.warn("Circuit for {} opened: {} failed and {} slow of the last {} calls, failing fast for {} s",
+                                operation, failures, slowCalls, recorded, Duration.ofNanos(openNanos).toSeconds());
+                        open(now);
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (failure || slowCall) {
+                        log.warn("Circuit for {} re-opened, probe call {}", operation, failure ? "failed" : "was slow");
+                        open(now);
+                    } else if (++probesPassed == halfOpenCalls) {
+                        log.info("Circuit for {} closed, probe calls succeeded", operation);
+                        state = State.CLOSED;
+                        reset();
+                    }
+                }
+                case OPEN -> { } // A call from before the circuit opened
+            }
+        }
+
+        private void open(long now) {
+            state = State.OPEN;
+            openedAt = now;
+            reset();
+        }
+
+        private void reset() {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+            Arrays.fill(failed, false);
+            Arrays.fill(slow, false);
+        }
+    }
+
+    /**
+     * Non-blocking permit pool: waiting callers are parked as sinks, not threads. A call of a lower
+     * priority only takes a permit while its class is under its limit and no call of its own or a
+     * higher class is waiting; a freed permit goes to the highest class waiting.
+     */
+    static final class Bulkhead {
+
+        private final int[] limits = new int[CallPriority.values().length];
+        private final Map<CallPriority, Deque<MonoSink<Void>>> waiting = new EnumMap<>(CallPriority.class);
+        private int inUse;
+
+        Bulkhead(int maxConcurrent, int interactiveReservedPermits) {
+            int shared = Math.max(1, maxConcurrent - Math.max(0, interactiveReservedPermits));
+            limits[CallPriority.INTERACTIVE.ordinal()] = maxConcurrent;
+            limits[CallPriority.TRANSFER.ordinal()] = shared;
+            limits[CallPriority.BACKGROUND.ordinal()] = Math.max(1, shared / 2);
+            for (CallPriority priority : CallPriority.values()) {
+                waiting.put(priority, new ArrayDeque<>());
+            }
+        }
+
+        synchronized int inUse() {
+            return inUse;
+        }
+
+        Mono<Void> acquire(CallPriority priority) {
+            return Mono.create(sink -> {
+                boolean immediately;
+                synchronized (this) {
+                    immediately = inUse < limits[priority.ordinal()] && !waitingAtOrAbove(priority);
+                    if (immediately) {
+                        inUse++;
+                    } else {
+                        waiting.get(priority).addLast(sink);
+                    }
+                }
+                sink.onCancel(() -> {
+                    boolean stillWaiting;
+                    List<MonoSink<Void>> granted;
+                    synchronized (this) {
+                        stillWaiting = waiting.get(priority).remove(sink);
+                        granted = grant(); // Calls of a lower class may have waited only behind this one
+                    }
+                    granted.forEach(MonoSink::success);
+                    if (!stillWaiting && !immediately) {
+                        release(); // Handed a permit just as it gave up waiting
+                    }
+                });
+                if (immediately) {
+                    sink.success();
+                }
+            });
+        }
+
+        void release() {
+            List<MonoSink<Void>> granted;
+            synchronized (this) {
+                inUse--;
+                granted = grant();
+            }
+            granted.forEach(MonoSink::success);
+        }
+
+        /** Hands out free permits, highest class first; a class still waiting holds up the ones below it. */
+        private List<MonoSink<Void>> grant() {
+            List<MonoSink<Void>> granted = new ArrayList<>();
+            for (CallPriority priority : CallPriority.values()) {
+                Deque<MonoSink<Void>> queue = waiting.get(priority);
+                while (!queue.isEmpty() && inUse < limits[priority.ordinal()]) {
+                    inUse++;
+                    granted.add(queue.pollFirst());
+                }
+                if (!queue.isEmpty()) {
+                    break;
+                }
+            }
+            return granted;
+        }
+
+        private boolean waitingAtOrAbove(CallPriority priority) {
+            for (CallPriority higher : CallPriority.values()) {
+                if (!waiting.get(higher).isEmpty()) {
+                    return true;
+                }
+                if (higher == priority) {
+                    break;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.nexon.yt2spotify.config;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One Spotify / YouTube call as {@link HttpRecordingFilter} writes it, one JSON object per line, and
+ * as the benchmarks' replay serves it back. No request headers are kept, so no bearer token ends up
+ * on disk; query parameters that carry credentials are redacted.
+ *
+ * @param url          Redacted with {@link #scrub(URI)}.
+ * @param requestBody  For POST / PUT, else null.
+ * @param status       0 if the call failed without a response, see {@code error}.
+ * @param headers      The response headers the services look at (content type, ETag, Retry-After).
+ * @param durationMs   From sending the request to the last byte of the response.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RecordedExchange(long startedAtMs, String method, String url, String requestBody, int status,
+                               Map<String, String> headers, String body, long durationMs, String error) {
+
+    private static final Set<String> REDACTED_PARAMS = Set.of("key", "access_token", "token");
+    static final String REDACTED = "REDACTED";
+
+    /** The URL without credentials; applied to recorded and replayed requests alike, so they still match. */
+    public static String scrub(URI url) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUri(url);
+        Map<String, ?> params = builder.build().getQueryParams();
+        for (String param : REDACTED_PARAMS) {
+            if (params.containsKey(param)) {
+                builder.replaceQueryParam(param, REDACTED);
+            }
+        }
+        return builder.build().toUriString();
+    }
+}
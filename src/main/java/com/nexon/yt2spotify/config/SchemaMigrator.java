@@ -0,0 +1,195 @@
+package com.nexon.yt2spotify.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned SQL scripts under {@code classpath:db/migration} ({@code V<version>__<description>.sql},
+ * Flyway's naming) in version order, each in its own transaction, and records them in
+ * {@code schema_migrations}. Runs before the JPA EntityManagerFactory, which then only validates the
+ * schema.
+ * <p>
+ * A Postgres advisory lock is held while migrating, so nodes starting at the same time apply each
+ * script once. A script that was changed after it was applied fails startup (checksum mismatch):
+ * applied migrations are never edited, a new version is added instead.
+ * <p>
+ * {@code yt2spotify.schema.migrate} is read at runtime, not as a bean condition, so an AOT-processed
+ * build can still turn it on or off.
+ */
+@Slf4j
+@Component(SchemaMigrator.BEAN_NAME)
+public class SchemaMigrator implements InitializingBean {
+
+    static final String BEAN_NAME = "schemaMigrator";
+
+    private static final String LOCATION = "classpath:db/migration/V*__*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final long ADVISORY_LOCK_KEY = 0x79743273706f7479L; // "yt2spoty"
+
+    record Migration(int version, String description, Resource script, int checksum) {
+    }
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    public SchemaMigrator(DataSource dataSource, @Value("${yt2spotify.schema.migrate:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            log.info("Schema migrations disabled (yt2spotify.schema.migrate=false)");
+            return;
+        }
+        List<Migration> migrations = migrations();
+        try (Connection connection = dataSource.getConnection()) {
+            lock(connection);
+            try {
+                migrate(connection, migrations);
+            } finally {
+                unlock(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Schema migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    static List<Migration> migrations() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+            Map<Integer, Migration> byVersion = new HashMap<>();
+            for (Resource resource : resources) {
+                Matcher matcher = FILE_NAME.matcher(resource.getFilename());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                Migration migration = new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                        resource, checksum(resource));
+                Migration duplicate = byVersion.put(migration.version(), migration);
+                if (duplicate != null) {
+                    throw new IllegalStateException("Two migrations with version " + migration.version() + ": "
+                            + duplicate.script().getFilename() + ", " + resource.getFilename());
+                }
+            }
+            return byVersion.values().stream().sorted(Comparator.comparingInt(Migration::version)).toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read migrations from " + LOCATION + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void migrate(Connection connection, List<Migration> migrations) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_migrations (
+                        version      INT PRIMARY KEY,
+                        description  VARCHAR(200) NOT NULL,
+                        checksum     INT NOT NULL,
+                        installed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+                    )""");
+        }
+        Map<Integer, Integer> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rows.next()) {
+                applied.put(rows.getInt(1), rows.getInt(2));
+            }
+        }
+
+        int count = 0;
+        for (Migration migration : migrations) {
+            Integer checksum = applied.get(migration.version());
+            if (checksum != null) {
+                if (checksum != migration.checksum()) {
+                    throw new IllegalStateException("Migration " + migration.script().getFilename()
+                            + " was changed after it was applied (checksum " + migration.checksum() + ", applied " + checksum + ")");
+                }
+                continue;
+            }
+            apply(connection, migration);
+            count++;
+        }
+        int version = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+        log.info("Schema at version {}, {} migration(s) applied", version, count);
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        log.info("Applying migration V{} - {}", migration.version(), migration.description());
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.script(), StandardCharsets.UTF_8));
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+                insert.setInt(1, migration.version());
+                insert.setString(2, migration.description());
+                insert.setInt(3, migration.checksum());
+                insert.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        log.info("Applied migration V{} in {} ms", migration.version(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void lock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_lock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            statement.execute();
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            statement.execute();
+        }
+    }
+
+    private static int checksum(Resource resource) throws IOException {
+        // Line endings normalized, so a checkout with CRLF doesn't count as a change
+        String script = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        CRC32 crc = new CRC32();
+        crc.update(script.getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    /** Makes the EntityManagerFactory wait for the migrations, so Hibernate validates the migrated schema. */
+    @Component
+    static class EntityManagerFactoryDependsOnSchemaMigrator extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnSchemaMigrator() {
+            super(BEAN_NAME);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.nexon.yt2spotify.config;
 
 
+import com.nexon.yt2spotify.service.CallPriority;
 import com.nexon.yt2spotify.service.CustomOAuth2UserService;
+import io.netty.channel.ChannelOption;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -16,8 +20,11 @@ import org.springframework.security.oauth2.client.registration.ClientRegistratio
 import org.springframework.security.oauth2.client.web.DefaultOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.web.SecurityFilterChain;
-import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @EnableWebSecurity
 @Configuration
@@ -75,15 +82,39 @@ public class SecurityConfig {
         return authorizedClientManager;
     }
 
+    /**
+     * Connections to the Spotify and YouTube APIs, pooled per host. There is one for every bulkhead
+     * permit, so calls wait in the bulkhead (served by priority, given up after its max wait) and never
+     * in the pool; the default pool of twice the cores would cap both providers far below the bulkheads.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider providerConnections(ProviderGuardFilter providerGuardFilter) {
+        return ConnectionProvider.builder("provider-calls")
+                .maxConnections(providerGuardFilter.maxConcurrentPerProvider())
+                .pendingAcquireMaxCount(-1)
+                .build();
+    }
+
     // **** MOVED WebClient BEAN HERE ****
+    // No raised maxInMemorySize: playlistItems and search bodies are decoded incrementally
+    // (StreamingJsonDecoder), the remaining small responses fit the default 256 KB codec limit.
     @Bean
-    WebClient webClient() {
-        final int size = 16 * 1024 * 1024; // 16 MB buffer size
-        final ExchangeStrategies strategies = ExchangeStrategies.builder()
-                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(size))
-                .build();
+    public WebClient webClient(ConnectionProvider providerConnections, SpotifyRateBudgetFilter spotifyRateBudgetFilter,
+                               ProviderGuardFilter providerGuardFilter, CallTimeoutFilter callTimeoutFilter,
+                               HttpRecordingFilter httpRecordingFilter,
+                               @Value("${yt2spotify.timeouts.connect:5s}") Duration connectTimeout,
+                               @Value("${yt2spotify.timeouts.read:60s}") Duration readTimeout) {
+        HttpClient httpClient = HttpClient.create(providerConnections)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout); // Longest silence while a response (headers or body) is read
         return WebClient.builder()
-                .exchangeStrategies(strategies) // Apply buffer size config
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultRequest(CallPriority::tag) // Priority of the thread building the request
+                .filter(new OutboundCallFilter()) // 429 retries + per-transfer timeline recording
+                .filter(spotifyRateBudgetFilter) // Cluster-wide Spotify rate, paced before taking a bulkhead permit
+                .filter(providerGuardFilter) // Circuit breakers + per-provider bulkheads, once per attempt
+                .filter(callTimeoutFilter) // Response timeout per operation, per attempt
+                .filter(httpRecordingFilter) // Exchanges as sent, for offline replay; off unless yt2spotify.recording.dir is set
                 .build();
     }
 
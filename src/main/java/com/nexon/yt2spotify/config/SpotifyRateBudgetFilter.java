@@ -0,0 +1,325 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.CallPriority;
+import com.nexon.yt2spotify.service.ProviderUnavailableException;
+import com.nexon.yt2spotify.service.TransferJobRegistry;
+import com.nexon.yt2spotify.service.TransferTimeline;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps the Spotify calls of all nodes together under one app-wide rate: Spotify rate-limits our
+ * client ID, not each node.
+ * <p>
+ * Every {@code lease-interval} each node heartbeats its queued work (waiting calls plus the items
+ * its transfers still have to process) to {@code rate_budget_nodes} and leases its share of
+ * {@code requests-per-second} for the next intervals, in proportion to its queued work among the
+ * live nodes (those with a recent heartbeat). Between leases calls are paced locally, without a
+ * database round trip. A node that can't renew its lease falls back to an equal share once the
+ * lease expires.
+ * <p>
+ * Calls wait for their turn without holding a thread, and fail with {@link ProviderUnavailableException}
+ * rather than wait longer than {@code max-wait}. Waiting calls are served by {@link CallPriority}, and
+ * transfers and re-syncs leave {@code interactive-reserved-share} of a second's calls unused, so an
+ * interactive search goes out at once even while transfers use up the node's share. Registered inside
+ * {@link OutboundCallFilter}, so a 429 retry takes a turn of its own.
+ */
+@Slf4j
+@Component
+public class SpotifyRateBudgetFilter implements ExchangeFilterFunction {
+
+    private static final int LEASE_INTERVALS = 3; // A lease outlives two missed renewals
+    private static final Duration STALE_NODE_RETENTION = Duration.ofMinutes(10);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransferJobRegistry jobRegistry;
+    private final boolean enabled;
+    private final double appRate;
+    private final Duration leaseInterval;
+    private final long maxWaitNanos;
+    private final String nodeId;
+    private final RateLimiter limiter;
+
+    private volatile long leaseExpiresAtNanos;
+    private volatile int lastLiveNodes = 1;
+    private volatile boolean renewalFailing;
+
+    public SpotifyRateBudgetFilter(
+            JdbcTemplate jdbcTemplate,
+            TransferJobRegistry jobRegistry,
+            @Value("${yt2spotify.spotify.rate-budget.enabled:true}") boolean enabled,
+            @Value("${yt2spotify.spotify.rate-budget.requests-per-second:20}") double appRate,
+            @Value("${yt2spotify.spotify.rate-budget.lease-interval:2s}") Duration leaseInterval,
+            @Value("${yt2spotify.spotify.rate-budget.max-wait:30s}") Duration maxWait,
+            @Value("${yt2spotify.spotify.rate-budget.interactive-reserved-share:0.2}") double interactiveReservedShare) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobRegistry = jobRegistry;
+        this.enabled = enabled;
+        this.appRate = appRate;
+        this.leaseInterval = leaseInterval;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.nodeId = System.getenv().getOrDefault("HOSTNAME", "node") + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.limiter = new RateLimiter(appRate, interactiveReservedShare, System.nanoTime()); // Until the first lease, right after startup
+        this.leaseExpiresAtNanos = System.nanoTime();
+    }
+
+    /** A node's share of the app-wide rate: by queued work, plus one so an idle node can still make a call. */
+    static double share(double appRate, int queuedWork, int liveNodes, long totalQueuedWork) {
+        return appRate * (queuedWork + 1) / (totalQueuedWork + Math.max(1, liveNodes));
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!enabled || ProviderGuardFilter.provider(TransferTimeline.Operation.classify(request.url().getPath()))
+                != ProviderGuardFilter.Provider.SPOTIFY) {
+            return next.exchange(request);
+        }
+        CallPriority priority = CallPriority.of(request);
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            if (now - leaseExpiresAtNanos > 0) {
+                limiter.setRate(appRate / lastLiveNodes, now); // Lease expired: equal share of the last known cluster
+            }
+            return limiter.acquire(priority, maxWaitNanos)
+                    .timeout(Duration.ofNanos(maxWaitNanos)) // Calls of a higher class went first
+                    .onErrorMap(TimeoutException.class, e -> new ProviderUnavailableException(
+                            "Spotify rate budget of this node (" + String.format("%.1f", limiter.rate()) + "/s) is booked for more than "
+                                    + Duration.ofNanos(maxWaitNanos).toSeconds() + " s, not calling " + request.url().getPath()))
+                    .then(Mono.defer(() -> next.exchange(request)));
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${yt2spotify.spotify.rate-budget.lease-interval:2s}")
+    public void renewLease() {
+        if (!enabled) {
+            return;
+        }
+        int queuedWork = limiter.waiting() + jobRegistry.queuedWork();
+        Duration leaseDuration = leaseInterval.multipliedBy(LEASE_INTERVALS);
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO rate_budget_nodes (node_id, queued_work, heartbeat_at) VALUES (?, ?, now())
+                    ON CONFLICT (node_id) DO UPDATE SET queued_work = EXCLUDED.queued_work, heartbeat_at = EXCLUDED.heartbeat_at""",
+                    nodeId, queuedWork);
+            Map<String, Object> cluster = jdbcTemplate.queryForMap("""
+                    SELECT count(*) AS live_nodes, coalesce(sum(queued_work), 0) AS queued_work FROM rate_budget_nodes
+                    WHERE heartbeat_at > now() - make_interval(secs => ?)""", leaseDuration.toMillis() / 1000.0);
+            int liveNodes = ((Number) cluster.get("live_nodes")).intValue();
+            long totalQueuedWork = ((Number) cluster.get("queued_work")).longValue();
+            double rate = share(appRate, queuedWork, liveNodes, totalQueuedWork);
+
+            jdbcTemplate.update("UPDATE rate_budget_nodes SET leased_rate = ?, lease_expires_at = now() + make_interval(secs => ?) WHERE node_id = ?",
+                    rate, leaseDuration.toMillis() / 1000.0, nodeId);
+            jdbcTemplate.update("DELETE FROM rate_budget_nodes WHERE heartbeat_at < now() - make_interval(secs => ?)",
+                    (double) STALE_NODE_RETENTION.toSeconds());
+
+            long now = System.nanoTime();
+            limiter.setRate(rate, now);
+            leaseExpiresAtNanos = now + leaseDuration.toNanos();
+            lastLiveNodes = Math.max(1, liveNodes);
+            if (renewalFailing) {
+                renewalFailing = false;
+                log.info("Spotify rate budget lease renewed again");
+            }
+            log.debug("Leased {}/s of the Spotify rate budget ({} queued here, {} on {} live nodes)",
+                    String.format("%.2f", rate), queuedWork, totalQueuedWork, liveNodes);
+        } catch (DataAccessException e) {
+            if (!renewalFailing) {
+                renewalFailing = true; // Logged once per outage, the schedule keeps retrying
+                log.warn("Failed to renew the Spotify rate budget lease, falling back to 1/{} of {}/s once it expires: {}",
+                        lastLiveNodes, appRate, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void releaseLease() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM rate_budget_nodes WHERE node_id = ?", nodeId); // Others take over the share
+        } catch (DataAccessException e) {
+            log.debug("Failed to release the Spotify rate budget lease of {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Token bucket holding up to one second of calls, refilled at the leased rate. An interactive call
+     * needs one token; a transfer or re-sync call needs the reserved tokens on top of it, so in steady
+     * transfer load the reserve stays in the bucket for interactive calls. Calls that can't go at once
+     * wait in a queue per {@link CallPriority}, and each token is handed to the highest class waiting.
+     */
+    static final class RateLimiter {
+
+        private final double reservedShare;
+        private final Map<CallPriority, Deque<MonoSink<Void>>> waiting = new EnumMap<>(CallPriority.class);
+        private double ratePerSecond;
+        private double tokens = 1; // The first call goes at once, the rest are paced
+        private long refilledAt;
+        private Disposable drain;
+        private long drainAt;
+
+        RateLimiter(double ratePerSecond, double reservedShare, long now) {
+            this.ratePerSecond = ratePerSecond;
+            this.reservedShare = Math.max(0, Math.min(reservedShare, 0.9));
+            this.refilledAt = now;
+            for (CallPriority priority : CallPriority.values()) {
+                waiting.put(priority, new ArrayDeque<>());
+            }
+        }
+
+        synchronized double rate() {
+            return ratePerSecond;
+        }
+
+        synchronized int waiting() {
+            return waiting.values().stream().mapToInt(Deque::size).sum();
+        }
+
+        synchronized void setRate(double ratePerSecond, long now) {
+            refill(now); // Tokens saved up so far are kept, at the old rate
+            this.ratePerSecond = ratePerSecond;
+            tokens = Math.min(tokens, capacity());
+        }
+
+        /** Takes a token if a call of this class may go now, without queueing. */
+        synchronized boolean tryAcquire(CallPriority priority, long now) {
+            refill(now);
+            if (tokens < threshold(priority)) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        /**
+         * Completes when the call may go. Fails at once with a {@link TimeoutException} when the calls
+         * of this class and above that are already waiting take up more than {@code maxWaitNanos}.
+         */
+        Mono<Void> acquire(CallPriority priority, long maxWaitNanos) {
+            return Mono.create(sink -> {
+                boolean immediately;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    int ahead = waitingAtOrAbove(priority);
+                    immediately = ahead == 0 && tokens >= threshold(priority);
+                    if (immediately) {
+                        tokens--;
+                    } else if (nanosUntil(threshold(priority) + ahead) > maxWaitNanos) {
+                        sink.error(new TimeoutException());
+                        return;
+                    } else {
+                        waiting.get(priority).addLast(sink);
+                        scheduleDrain(now);
+                    }
+                }
+                if (immediately) {
+                    sink.success();
+                    return;
+                }
+                sink.onCancel(() -> {
+                    synchronized (this) {
+                        waiting.get(priority).remove(sink);
+                    }
+                });
+            });
+        }
+
+        private void drain() {
+            List<MonoSink<Void>> granted = new ArrayList<>();
+            synchronized (this) {
+                drain = null;
+                long now = System.nanoTime();
+                refill(now);
+                for (CallPriority priority : CallPriority.values()) {
+                    Deque<MonoSink<Void>> queue = waiting.get(priority);
+                    while (!queue.isEmpty() && tokens >= threshold(priority)) {
+                        tokens--;
+                        granted.add(queue.pollFirst());
+                    }
+                    if (!queue.isEmpty()) {
+                        break; // Lower classes wait behind this one
+                    }
+                }
+                scheduleDrain(now);
+            }
+            granted.forEach(MonoSink::success);
+        }
+
+        /** Wakes up when the highest class waiting can have its next token, earlier than planned if need be. */
+        private void scheduleDrain(long now) {
+            for (CallPriority priority : CallPriority.values()) {
+                if (!waiting.get(priority).isEmpty()) {
+                    long due = now + nanosUntil(threshold(priority));
+                    if (drain != null && drainAt - due <= 0) {
+                        return;
+                    }
+                    if (drain != null) {
+                        drain.dispose();
+                    }
+                    drainAt = due;
+                    drain = Schedulers.parallel().schedule(this::drain, due - now, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+        }
+
+        private int waitingAtOrAbove(CallPriority priority) {
+            int count = 0;
+            for (CallPriority higher : CallPriority.values()) {
+                count += waiting.get(higher).size();
+                if (higher == priority) {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity(), tokens + (now - refilledAt) * ratePerSecond / 1_000_000_000d);
+            refilledAt = now;
+        }
+
+        private long nanosUntil(double neededTokens) {
+            return neededTokens <= tokens ? 0 : (long) Math.ceil((neededTokens - tokens) * 1_000_000_000d / ratePerSecond);
+        }
+
+        private double threshold(CallPriority priority) {
+            return priority == CallPriority.INTERACTIVE ? 1 : 1 + reserve();
+        }
+
+        private double reserve() {
+            return reservedShare * ratePerSecond;
+        }
+
+        private double capacity() {
+            return Math.max(ratePerSecond, 1 + reserve()); // One second of calls
+        }
+    }
+}
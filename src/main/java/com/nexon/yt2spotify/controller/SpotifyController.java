@@ -1,5 +1,7 @@
 package com.nexon.yt2spotify.controller;
 
+import com.nexon.yt2spotify.dto.sotify.SpotifyBatchSearchRequestDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifyBatchSearchResultDto;
 import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
 import com.nexon.yt2spotify.service.AuthorizationHelper;
 import com.nexon.yt2spotify.service.SpotifyApiService;
@@ -7,12 +9,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.ILoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.ClientAuthorizationRequiredException;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 
 import java.util.Optional;
 
@@ -55,4 +63,39 @@ public class SpotifyController {
             return ResponseEntity.internalServerError().body("Error during search: " + e.getMessage());
         }
     }
+
+    /**
+     * Searches for up to {@value SpotifyApiService#SEARCH_BATCH_MAX_QUERIES} queries with a single token
+     * lookup, several at a time. Results come back in query order: as one JSON array, or row by row with
+     * {@code Accept: application/x-ndjson} / {@code text/event-stream}.
+     */
+    @PostMapping(value = "/search/batch",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<Flux<SpotifyBatchSearchResultDto>> searchSpotifyTracks(
+            @RequestBody SpotifyBatchSearchRequestDto request,
+            Authentication authentication) {
+        int queryCount = request.getQueries() != null ? request.getQueries().size() : 0;
+        log.info("Request received for /api/spotify/search/batch ({} queries) by user {}", queryCount, (authentication != null ? authentication.getName() : "UNKNOWN"));
+        if (queryCount == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Queries cannot be empty.");
+        }
+        if (queryCount > SpotifyApiService.SEARCH_BATCH_MAX_QUERIES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + SpotifyApiService.SEARCH_BATCH_MAX_QUERIES + " queries per request, got " + queryCount + ".");
+        }
+        String accessToken;
+        try {
+            accessToken = authorizationHelper.getAccessToken(authentication, "spotify");
+        } catch (Exception e) {
+            log.error("Error getting Spotify token for user {}: {}", (authentication != null ? authentication.getName() : "UNKNOWN"), e.getMessage(), e);
+            if (e instanceof RuntimeException && e.getMessage() != null && e.getMessage().contains("authorization failed") || e instanceof ClientAuthorizationRequiredException) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authorization failed: " + e.getMessage(), e);
+            }
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error getting Spotify token: " + e.getMessage(), e);
+        }
+        if (accessToken == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Spotify authorization failed or token missing.");
+        }
+        return ResponseEntity.ok(spotifyApiService.searchTracks(request.getQueries(), accessToken));
+    }
 }
@@ -0,0 +1,228 @@
+package com.nexon.yt2spotify.controller;
+
+import com.nexon.yt2spotify.dto.transfer.TransferProgressEventDto;
+import com.nexon.yt2spotify.service.AuthorizationHelper;
+import com.nexon.yt2spotify.service.TransferJob;
+import com.nexon.yt2spotify.service.TransferJobRegistry;
+import com.nexon.yt2spotify.service.TransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/transfers")
+@RequiredArgsConstructor
+public class TransferController {
+
+    private final TransferService transferService;
+    private final TransferJobRegistry transferJobRegistry;
+    private final AuthorizationHelper authorizationHelper;
+    @Value("${yt2spotify.transfer.preview-ttl:1h}")
+    private final Duration previewTtl; // Older previews can't be committed, their matches may be stale
+    @Value("${yt2spotify.transfer.events-heartbeat:15s}")
+    private final Duration eventsHeartbeat; // Comment line on a quiet event stream; 0 = none
+
+    @PostMapping("/youtube/{playlistId}")
+    public ResponseEntity<?> startTransfer(
+            @PathVariable String playlistId,
+            Authentication authentication) {
+        log.info("Request received for /api/transfers/youtube/{} by user {}", playlistId, (authentication != null ? authentication.getName() : "UNKNOWN"));
+        try {
+            if (playlistId == null || playlistId.isBlank()) {
+                return ResponseEntity.badRequest().body("Playlist ID cannot be blank.");
+            }
+            // 1. Resolve both tokens up front, the async job has no access to the session
+            String googleToken = authorizationHelper.getAccessToken(authentication, "google");
+            String spotifyToken = authorizationHelper.getAccessToken(authentication, "spotify");
+
+            // 2. Register the job and hand it over to the executor
+            TransferJob job = transferJobRegistry.create(authentication.getName(), playlistId);
+            transferService.transferYoutubePlaylistAsync(job, spotifyToken, googleToken);
+            return ResponseEntity.accepted().body(job.toDto());
+
+        } catch (Exception e) {
+            log.error("Error starting transfer of YouTube playlist {} for user {}: {}",
+                    playlistId, (authentication != null ? authentication.getName() : "UNKNOWN"), e.getMessage(), e);
+            if (e instanceof RuntimeException && e.getMessage().contains("authorization failed") || e instanceof org.springframework.security.oauth2.client.ClientAuthorizationRequiredException) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authorization failed: " + e.getMessage());
+            }
+            return ResponseEntity.internalServerError().body("Error starting transfer: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a match preview: the playlist is fetched and matched as for a transfer, but nothing is
+     * written to Spotify. Review the outcome with {@code GET /{jobId}/items}, then commit it.
+     */
+    @PostMapping("/youtube/{playlistId}/preview")
+    public ResponseEntity<?> startPreview(@PathVariable String playlistId, Authentication authentication) {
+        log.info("Request received for /api/transfers/youtube/{}/preview by user {}", playlistId, authentication.getName());
+        try {
+            if (playlistId == null || playlistId.isBlank()) {
+                return ResponseEntity.badRequest().body("Playlist ID cannot be blank.");
+            }
+            String googleToken = authorizationHelper.getAccessToken(authentication, "google");
+            String spotifyToken = authorizationHelper.getAccessToken(authentication, "spotify"); // Searches only
+
+            TransferJob job = transferJobRegistry.createPreview(authentication.getName(), playlistId);
+            transferService.transferYoutubePlaylistAsync(job, spotifyToken, googleToken);
+            return ResponseEntity.accepted().body(job.toDto());
+
+        } catch (Exception e) {
+            log.error("Error starting match preview of YouTube playlist {} for user {}: {}",
+                    playlistId, authentication.getName(), e.getMessage(), e);
+            if (e instanceof RuntimeException && e.getMessage().contains("authorization failed") || e instanceof org.springframework.security.oauth2.client.ClientAuthorizationRequiredException) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authorization failed: " + e.getMessage());
+            }
+            return ResponseEntity.internalServerError().body("Error starting match preview: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Transfers the playlist of a completed preview, reusing its matches: only videos added to the
+     * playlist since the preview are searched. Returns the new transfer job. A preview is committed
+     * once; committing it again is a 409 with the transfer job of the first commit.
+     */
+    @PostMapping("/{previewJobId}/commit")
+    public ResponseEntity<?> commitPreview(@PathVariable String previewJobId, Authentication authentication) {
+        TransferJob preview = transferJobRegistry.find(previewJobId, authentication.getName()).orElse(null);
+        if (preview == null || !preview.isPreview()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (preview.getStatus() != TransferJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Preview " + previewJobId + " is " + preview.getStatus() + ", only a completed preview can be committed.");
+        }
+        if (preview.getCommitJobId() != null) {
+            return alreadyCommitted(preview, authentication);
+        }
+        if (preview.getFinishedAt().plus(previewTtl).isBefore(Instant.now())) {
+            return ResponseEntity.status(HttpStatus.GONE).body("Preview " + previewJobId + " is older than " + previewTtl.toMinutes() + " minutes, start a new one.");
+        }
+        try {
+            String googleToken = authorizationHelper.getAccessToken(authentication, "google");
+            String spotifyToken = authorizationHelper.getAccessToken(authentication, "spotify");
+
+            TransferJob job = transferJobRegistry.createCommit(preview).orElse(null);
+            if (job == null) {
+                return alreadyCommitted(preview, authentication); // Lost the race against a concurrent commit
+            }
+            transferService.commitPreviewAsync(job, preview, spotifyToken, googleToken);
+            return ResponseEntity.accepted().body(job.toDto());
+
+        } catch (Exception e) {
+            log.error("Error committing preview {} for user {}: {}", previewJobId, authentication.getName(), e.getMessage(), e);
+            if (e instanceof RuntimeException && e.getMessage().contains("authorization failed") || e instanceof org.springframework.security.oauth2.client.ClientAuthorizationRequiredException) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authorization failed: " + e.getMessage());
+            }
+            return ResponseEntity.internalServerError().body("Error committing preview: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> alreadyCommitted(TransferJob preview, Authentication authentication) {
+        return transferJobRegistry.find(preview.getCommitJobId(), authentication.getName())
+                .<ResponseEntity<?>>map(job -> ResponseEntity.status(HttpStatus.CONFLICT).body(job.toDto()))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("Preview " + preview.getId() + " was already committed by transfer " + preview.getCommitJobId() + "."));
+    }
+
+    /**
+     * Cancels a queued or running transfer, preview or sync. It stops within moments: calls in flight
+     * are cancelled and no further batch is written, but the tracks already added stay in the Spotify
+     * playlist. The job ends as CANCELLED.
+     */
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<?> cancelTransfer(@PathVariable String jobId, Authentication authentication) {
+        TransferJob job = transferJobRegistry.find(jobId, authentication.getName()).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.cancel("Cancelled by the user")) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Transfer " + jobId + " is already " + job.getStatus() + ".");
+        }
+        log.info("Transfer {} cancelled by user {}", jobId, authentication.getName());
+        return ResponseEntity.accepted().body(job.toDto());
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getTransfer(@PathVariable String jobId, Authentication authentication) {
+        return transferJobRegistry.find(jobId, authentication.getName())
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(job.toDto()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /** Every item of a finished transfer or preview with its outcome (match, not found, skipped, ...). */
+    @GetMapping("/{jobId}/items")
+    public ResponseEntity<?> getTransferItems(@PathVariable String jobId, Authentication authentication) {
+        TransferJob job = transferJobRegistry.find(jobId, authentication.getName()).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.isFinished()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Transfer " + jobId + " is still " + job.getStatus() + ".");
+        }
+        return ResponseEntity.ok(job.itemDtos());
+    }
+
+    /**
+     * Timeline of a transfer: stage durations, call / retry / rate-limit totals and the slowest items.
+     * Pass {@code events=true} to also get the raw events still held in the job's ring buffer.
+     */
+    @GetMapping("/{jobId}/timeline")
+    public ResponseEntity<?> getTransferTimeline(
+            @PathVariable String jobId,
+            @RequestParam(name = "events", defaultValue = "false") boolean includeEvents,
+            Authentication authentication) {
+        return transferJobRegistry.find(jobId, authentication.getName())
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(job.timelineDto(includeEvents)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Live progress of a transfer as Server-Sent Events: a snapshot first, then stage changes, item
+     * outcomes and added batches, ending with {@code FINISHED}. Any number of clients can listen; a slow
+     * one skips intermediate events rather than holding up the transfer.
+     * <p>
+     * The stream stays open as long as the job runs, with no request timeout (Spring MVC sets none on
+     * streamed responses). A {@code :heartbeat} comment goes out every {@code events-heartbeat} so proxies
+     * don't close a quiet stream and a client that went away is noticed. A client that loses the stream
+     * reconnects (an {@code EventSource} does so itself) and starts again from a fresh snapshot.
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<TransferProgressEventDto>>> streamTransferEvents(
+            @PathVariable String jobId, Authentication authentication) {
+        return transferJobRegistry.find(jobId, authentication.getName())
+                .map(job -> ResponseEntity.ok(withHeartbeats(job.progressEvents()
+                        .map(event -> ServerSentEvent.builder(event)
+                                .id(Long.toString(event.getSequence()))
+                                .event(event.getType().name())
+                                .build()))))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private Flux<ServerSentEvent<TransferProgressEventDto>> withHeartbeats(Flux<ServerSentEvent<TransferProgressEventDto>> events) {
+        if (eventsHeartbeat.isZero()) {
+            return events;
+        }
+        Flux<ServerSentEvent<TransferProgressEventDto>> heartbeats = Flux.interval(eventsHeartbeat, eventsHeartbeat)
+                .map(tick -> ServerSentEvent.<TransferProgressEventDto>builder().comment("heartbeat").build());
+        // The progress events end with FINISHED; the heartbeats end with them
+        return Flux.merge(events, heartbeats)
+                .takeUntil(event -> TransferProgressEventDto.Type.FINISHED.name().equals(event.event()));
+    }
+}
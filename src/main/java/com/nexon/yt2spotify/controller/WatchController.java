@@ -0,0 +1,91 @@
+package com.nexon.yt2spotify.controller;
+
+import com.nexon.yt2spotify.dto.transfer.WatchedPlaylistDto;
+import com.nexon.yt2spotify.model.WatchedPlaylist;
+import com.nexon.yt2spotify.service.PlaylistWatchService;
+import com.nexon.yt2spotify.service.TransferJob;
+import com.nexon.yt2spotify.service.TransferJobRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Watched YouTube playlists: their new videos are synced into a Spotify playlist in the background
+ * (see PlaylistWatchScheduler).
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/watches")
+@RequiredArgsConstructor
+public class WatchController {
+
+    private final PlaylistWatchService playlistWatchService;
+    private final TransferJobRegistry transferJobRegistry;
+
+    /**
+     * Watches a YouTube playlist. With {@code transferJobId}, a finished transfer of the playlist, new
+     * videos are appended to that transfer's Spotify playlist; without, the first sync creates one
+     * with every video of the playlist.
+     */
+    @PostMapping("/youtube/{playlistId}")
+    public ResponseEntity<?> watch(@PathVariable String playlistId,
+                                   @RequestParam(required = false) String transferJobId,
+                                   Authentication authentication) {
+        log.info("Request received for /api/watches/youtube/{} by user {}", playlistId, authentication.getName());
+        if (playlistId == null || playlistId.isBlank()) {
+            return ResponseEntity.badRequest().body("Playlist ID cannot be blank.");
+        }
+        TransferJob transfer = null;
+        if (transferJobId != null) {
+            transfer = transferJobRegistry.find(transferJobId, authentication.getName()).orElse(null);
+            if (transfer == null || transfer.isPreview() || !transfer.getYoutubePlaylistId().equals(playlistId)) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!transfer.isFinished() || transfer.getSpotifyPlaylistId() == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Transfer " + transferJobId + " is " + transfer.getStatus()
+                        + " without a Spotify playlist, only a finished transfer can be watched on.");
+            }
+        }
+        return playlistWatchService.watch(authentication.getName(), playlistId, transfer)
+                .<ResponseEntity<?>>map(watch -> ResponseEntity.status(HttpStatus.CREATED).body(toDto(watch)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).body("YouTube playlist " + playlistId + " is already watched."));
+    }
+
+    @GetMapping
+    public List<WatchedPlaylistDto> getWatches(Authentication authentication) {
+        return playlistWatchService.watches(authentication.getName()).stream().map(WatchController::toDto).toList();
+    }
+
+    /** Stops syncing the playlist; the Spotify playlist is left as it is. */
+    @DeleteMapping("/{watchId}")
+    public ResponseEntity<Void> unwatch(@PathVariable long watchId, Authentication authentication) {
+        return playlistWatchService.unwatch(authentication.getName(), watchId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private static WatchedPlaylistDto toDto(WatchedPlaylist watch) {
+        return WatchedPlaylistDto.builder()
+                .watchId(watch.getId())
+                .youtubePlaylistId(watch.getYoutubePlaylistId())
+                .spotifyPlaylistId(watch.getSpotifyPlaylistId())
+                .itemCount(watch.getItemCount())
+                .lastSyncJobId(watch.getLastSyncJobId())
+                .createdAt(watch.getCreatedAt())
+                .lastCheckedAt(watch.getLastCheckedAt())
+                .lastSyncedAt(watch.getLastSyncedAt())
+                .nextCheckAt(watch.getNextCheckAt())
+                .build();
+    }
+}
@@ -1,20 +1,26 @@
 package com.nexon.yt2spotify.controller;
 
-import com.nexon.yt2spotify.dto.yt.YoutubePlaylistItemDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoItemDto;
 import com.nexon.yt2spotify.dto.yt.YoutubeSimplifiedPlaylistDto;
 import com.nexon.yt2spotify.service.AuthorizationHelper;
+import com.nexon.yt2spotify.service.ReadResponseCache;
 import com.nexon.yt2spotify.service.YoutubeApiService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 
-import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
@@ -23,17 +29,19 @@ import java.util.List;
 public class YoutubeController {
     private final YoutubeApiService youtubeApiService;
     private final AuthorizationHelper authorizationHelper; // Use the helper
+    private final ReadResponseCache readResponseCache;
 
+    /**
+     * The user's playlists. Cached per user for a short TTL with a strong ETag, so a repeated or
+     * conditional request ({@code If-None-Match}) is answered without calling YouTube.
+     */
     @GetMapping("/playlists")
     public ResponseEntity<?> getCurrentUserPlaylists(Authentication authentication) {
         log.info("Request received for /api/youtube/playlists by user {}", (authentication != null ? authentication.getName() : "UNKNOWN"));
         try {
-            // 1. Get Google Token using Helper
-            String accessToken = authorizationHelper.getAccessToken(authentication, "google");
-
-            // 2. Call Service with Token
-            List<YoutubeSimplifiedPlaylistDto> playlists = youtubeApiService.getCurrentUserPlaylists(accessToken);
-            return ResponseEntity.ok(playlists);
+            // Token and YouTube are only needed when the cache has nothing fresh
+            return cachedJson(authentication, "youtube:playlists", () ->
+                    youtubeApiService.getCurrentUserPlaylists(authorizationHelper.getAccessToken(authentication, "google")));
 
         } catch (Exception e) {
             log.error("Error getting YouTube playlists for user {}: {}", (authentication != null ? authentication.getName() : "UNKNOWN"), e.getMessage(), e);
@@ -45,6 +53,7 @@ public class YoutubeController {
         }
     }
 
+    /** Items of one playlist, cached like {@link #getCurrentUserPlaylists}. */
     @GetMapping("/playlists/{playlistId}/items")
     public ResponseEntity<?> getPlaylistItems(
             Authentication authentication,
@@ -54,12 +63,8 @@ public class YoutubeController {
             if (playlistId == null || playlistId.isBlank()) {
                 return ResponseEntity.badRequest().body("Playlist ID cannot be blank.");
             }
-            // 1. Get Google Token using Helper
-            String accessToken = authorizationHelper.getAccessToken(authentication, "google");
-
-            // 2. Call Service with Token
-            List<YoutubePlaylistItemDto> items = youtubeApiService.getPlaylistItems(playlistId, accessToken);
-            return ResponseEntity.ok(items);
+            return cachedJson(authentication, "youtube:playlist-items:" + playlistId, () ->
+                    youtubeApiService.getPlaylistItems(playlistId, authorizationHelper.getAccessToken(authentication, "google")));
 
         } catch (Exception e) {
             log.error("Error getting YouTube playlist items for user {} and playlist {}: {}",
@@ -70,4 +75,60 @@ public class YoutubeController {
             return ResponseEntity.internalServerError().body("Error fetching YouTube playlist items: " + e.getMessage());
         }
     }
+
+    /**
+     * Streaming variant of {@link #getCurrentUserPlaylists}, picked with {@code Accept: application/x-ndjson}
+     * or {@code text/event-stream}. Each playlist is written as soon as its YouTube page arrives, and the
+     * servlet thread is released while the pages are fetched.
+     */
+    @GetMapping(value = "/playlists", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<Flux<YoutubeSimplifiedPlaylistDto>> streamCurrentUserPlaylists(Authentication authentication) {
+        log.info("Streaming request received for /api/youtube/playlists by user {}", (authentication != null ? authentication.getName() : "UNKNOWN"));
+        String accessToken = streamingAccessToken(authentication);
+        return ResponseEntity.ok(youtubeApiService.streamCurrentUserPlaylists(accessToken));
+    }
+
+    /**
+     * Streaming variant of {@link #getPlaylistItems}, picked with {@code Accept: application/x-ndjson} or
+     * {@code text/event-stream}. Items are written page by page as YouTube returns them, so the first 50
+     * show up after one round trip and the full list is never held in memory. The next page is only
+     * requested once the client has taken the previous one.
+     */
+    @GetMapping(value = "/playlists/{playlistId}/items", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<Flux<YoutubeVideoItemDto>> streamPlaylistItems(
+            Authentication authentication,
+            @PathVariable String playlistId) {
+        log.info("Streaming request received for /api/youtube/playlists/{}/items by user {}", playlistId, (authentication != null ? authentication.getName() : "UNKNOWN"));
+        if (playlistId == null || playlistId.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Playlist ID cannot be blank.");
+        }
+        String accessToken = streamingAccessToken(authentication);
+        return ResponseEntity.ok(youtubeApiService.streamPlaylistItems(playlistId, accessToken));
+    }
+
+    // Spring answers 304 by itself when If-None-Match matches the ETag. "no-cache" makes the browser
+    // revalidate every time, so it never shows data older than this cache
+    private ResponseEntity<byte[]> cachedJson(Authentication authentication, String key, Supplier<?> loader) {
+        ReadResponseCache.Entry entry = readResponseCache.get(authentication.getName(), key, loader);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(entry.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT) // Same URL streams with another Accept
+                .body(entry.body());
+    }
+
+    // Resolved before streaming starts: the session is only available on the request thread, and a
+    // failure can still be reported with a proper status
+    private String streamingAccessToken(Authentication authentication) {
+        try {
+            return authorizationHelper.getAccessToken(authentication, "google");
+        } catch (Exception e) {
+            log.error("Error getting Google token for user {}: {}", (authentication != null ? authentication.getName() : "UNKNOWN"), e.getMessage(), e);
+            if (e instanceof RuntimeException && e.getMessage().contains("authorization failed") || e instanceof org.springframework.security.oauth2.client.ClientAuthorizationRequiredException) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authorization failed: " + e.getMessage(), e);
+            }
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error getting Google token: " + e.getMessage(), e);
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package com.nexon.yt2spotify.dto.sotify;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SpotifyBatchSearchRequestDto {
+    private List<String> queries; // Searched as with GET /api/spotify/search, results come back in this order
+}
@@ -0,0 +1,24 @@
+package com.nexon.yt2spotify.dto.sotify;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one query of a batch search. {@code ERROR} means the search itself failed (after the
+ * rate-limit retries), so retrying the query later may still find it; {@code NOT_FOUND} is final.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SpotifyBatchSearchResultDto {
+
+    public enum Status { FOUND, NOT_FOUND, ERROR }
+
+    private int index; // Position of the query in the request
+    private String query;
+    private Status status;
+    private SpotifyTrackDto track; // FOUND only
+}
@@ -9,5 +9,7 @@ public class SpotifyPlaylistDto {
 
     private String id;
     private String name;
+    private String snapshot_id;
+    private SpotifyPagingObject<Object> tracks; // Only its total, requested with fields=tracks.total
 }
 
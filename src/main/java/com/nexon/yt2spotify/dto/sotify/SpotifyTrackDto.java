@@ -1,6 +1,7 @@
 package com.nexon.yt2spotify.dto.sotify;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 import java.util.List;
@@ -13,6 +14,7 @@ public class SpotifyTrackDto {
     private List<SpotifyArtistDto> artists; // Assuming SpotifyArtistDto (id, name) exists
     private String uri; // spotify:track:ID
     // private SpotifyAlbumDto album; // Optional: include if needed for matching
-    // private int durationMs; // Optional: include if needed for matching
+    @JsonProperty("duration_ms")
+    private Integer durationMs; // Used to pick between search candidates when the video's duration is known
     // private boolean is_local; // Handled previously
 }
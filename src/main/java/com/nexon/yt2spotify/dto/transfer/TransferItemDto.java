@@ -0,0 +1,24 @@
+package com.nexon.yt2spotify.dto.transfer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** One YouTube item of a transfer or match preview, with its outcome. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferItemDto {
+
+    private int index;
+    private String videoId;
+    private String title;
+    private String channelTitle;
+    private String status; // PENDING, MATCHED, NOT_FOUND, ADDED, FAILED or SKIPPED
+    private String spotifyTrackId; // Matched (or added) items only
+    private String artistName;
+}
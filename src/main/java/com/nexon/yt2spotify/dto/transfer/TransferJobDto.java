@@ -0,0 +1,42 @@
+package com.nexon.yt2spotify.dto.transfer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferJobDto {
+
+    private String jobId;
+    private String status;
+    private String youtubePlaylistId;
+    private Boolean preview; // Match preview, nothing written to Spotify (absent for transfers)
+    private String previewJobId; // The preview this transfer commits
+    private String commitJobId; // The transfer that committed this preview
+    private Long watchId; // The watched playlist this job syncs
+    private String spotifyPlaylistId;
+    private String spotifySnapshotId; // Playlist version after the last committed batch
+    private int totalItems;
+    private int processedItems;
+    private int matchedCount;
+    private int notFoundCount;
+    private int skippedCount; // Not music or not available on YouTube, never searched
+    private int addedCount;
+    private int hedgedItems; // Low-confidence items searched again with alternative queries
+    private int hedgeSearches; // Alternative queries sent, capped per transfer
+    private int hedgeWins; // Hedged items that got a better match
+    private int localMatches; // Items matched from tracks known from earlier transfers, without a search
+    private int alreadySyncedCount; // Items of a sync that an earlier sync handled, left alone
+    private Instant createdAt;
+    private Instant finishedAt;
+    private String failureReason; // Or why it was cancelled
+    private Boolean cancelRequested; // Cancelled but still stopping (absent otherwise)
+}
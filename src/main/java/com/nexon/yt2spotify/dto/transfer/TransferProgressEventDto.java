@@ -0,0 +1,38 @@
+package com.nexon.yt2spotify.dto.transfer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One progress event of a running transfer, pushed over {@code GET /api/transfers/{jobId}/events}.
+ * Besides what just happened, every event carries the job's running totals, so a client that only
+ * receives the latest of several events (slow consumers are coalesced) still has a correct picture.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferProgressEventDto {
+
+    public enum Type { SNAPSHOT, STAGE_CHANGED, ITEM_MATCHED, ITEM_NOT_FOUND, ITEM_SKIPPED, BATCH_ADDED, FINISHED }
+
+    private long sequence; // Increases with every event of the job, 0 for the initial snapshot of a job that hasn't published yet
+    private Type type;
+    private String jobId;
+    private String status;
+    private String stage;
+    private Integer itemIndex; // Item events only
+    private String itemTitle;
+    private Integer batchSize; // BATCH_ADDED only
+    private int totalItems;
+    private int processedItems;
+    private int matchedCount;
+    private int notFoundCount;
+    private int skippedCount;
+    private int addedCount;
+    private String failureReason;
+}
@@ -0,0 +1,63 @@
+package com.nexon.yt2spotify.dto.transfer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferTimelineDto {
+
+    private String jobId;
+    private String status;
+    private Instant startedAt;
+    private long elapsedMs;
+    private long callCount;
+    private long retryCount;
+    private long rateLimitWaitMs;
+    private long bytesReceived;
+    private long eventsRecorded;
+    private long eventsDropped; // Older events overwritten in the ring buffer
+    private List<StageDto> stages;
+    private List<SlowItemDto> slowestItems;
+    private List<EventDto> events; // Only present when explicitly requested
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class StageDto {
+        private String stage;
+        private long startMs;
+        private long durationMs;
+        private boolean running;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class SlowItemDto {
+        private int itemIndex;
+        private String title;
+        private long durationMs;
+        private int calls;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class EventDto {
+        private String kind;
+        private String name;
+        private int itemIndex;
+        private long startMs;
+        private long durationMs;
+        private int httpStatus;
+        private int retries;
+        private long rateLimitWaitMs;
+        private long bytes;
+    }
+}
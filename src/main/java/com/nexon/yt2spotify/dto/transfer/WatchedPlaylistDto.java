@@ -0,0 +1,27 @@
+package com.nexon.yt2spotify.dto.transfer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WatchedPlaylistDto {
+
+    private Long watchId;
+    private String youtubePlaylistId;
+    private String spotifyPlaylistId; // Absent until the first sync creates it
+    private Integer itemCount; // At the last complete sync
+    private String lastSyncJobId; // See GET /api/transfers/{jobId} while this node still has it
+    private Instant createdAt;
+    private Instant lastCheckedAt;
+    private Instant lastSyncedAt;
+    private Instant nextCheckAt;
+}
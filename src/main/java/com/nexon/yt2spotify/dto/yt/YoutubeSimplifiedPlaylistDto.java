@@ -7,6 +7,7 @@ import lombok.Data;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class YoutubeSimplifiedPlaylistDto {
     private String id;
+    private String etag; // Changes with the playlist's items, what watched playlists are checked by
     private YoutubeMinimalPlaylistSnippetDto snippet;
     private YoutubeMinimalPlaylistContentDetailsDto contentDetails;
 }
@@ -0,0 +1,18 @@
+package com.nexon.yt2spotify.dto.yt;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the transfer needs from videos.list to decide whether an item is worth a Spotify search.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YoutubeVideoDetailsDto {
+    private String videoId;
+    private String categoryId; // snippet.categoryId, "10" is Music
+    private int durationSeconds; // contentDetails.duration, 0 for live streams / unknown
+    private boolean available; // false when deleted, private, or not (yet) processed
+}
@@ -0,0 +1,19 @@
+package com.nexon.yt2spotify.dto.yt;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flat view of a playlist item holding only what the transfer uses. Decoded straight from the
+ * playlistItems stream instead of the nested snippet / resourceId DTOs.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class YoutubeVideoItemDto {
+    private String videoId;
+    private String title;
+    private String channelTitle; // snippet.videoOwnerChannelTitle
+    private String itemId; // The playlist item's own ID
+}
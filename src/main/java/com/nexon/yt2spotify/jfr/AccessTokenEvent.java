@@ -0,0 +1,26 @@
+package com.nexon.yt2spotify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Resolution of an OAuth access token: linked user lookup plus the authorized client manager
+ * (which may refresh the token against the provider).
+ */
+@Name("com.nexon.yt2spotify.AccessToken")
+@Label("Access Token Resolution")
+@Description("Lookup or refresh of a provider access token for the current principal")
+@Category({"yt2spotify", "Security"})
+@StackTrace(false)
+public class AccessTokenEvent extends Event {
+
+    @Label("Client Registration ID")
+    public String clientRegistrationId;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,34 @@
+package com.nexon.yt2spotify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One batch POST to a Spotify playlist's tracks endpoint.
+ */
+@Name("com.nexon.yt2spotify.SpotifyAddTracks")
+@Label("Spotify Add Tracks")
+@Description("A batch of tracks added to a Spotify playlist")
+@Category({"yt2spotify", "HTTP"})
+@StackTrace(false)
+public class SpotifyAddTracksEvent extends Event {
+
+    @Label("Spotify Playlist ID")
+    public String playlistId;
+
+    @Label("Batch Start Index")
+    public int itemIndex;
+
+    @Label("Playlist Position")
+    public int position;
+
+    @Label("Track Count")
+    public int trackCount;
+
+    @Label("HTTP Status")
+    public int httpStatus;
+}
@@ -0,0 +1,35 @@
+package com.nexon.yt2spotify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call to Spotify's search endpoint. Playlist ID and item index are only set when the
+ * search runs as part of a transfer; interactive searches leave them empty / -1.
+ */
+@Name("com.nexon.yt2spotify.SpotifySearch")
+@Label("Spotify Search")
+@Description("A Spotify track search request")
+@Category({"yt2spotify", "HTTP"})
+@StackTrace(false)
+public class SpotifySearchEvent extends Event {
+
+    @Label("YouTube Playlist ID")
+    public String playlistId;
+
+    @Label("Item Index")
+    public int itemIndex;
+
+    @Label("Query Length")
+    public int queryLength;
+
+    @Label("HTTP Status")
+    public int httpStatus;
+
+    @Label("Found")
+    public boolean found;
+}
@@ -0,0 +1,35 @@
+package com.nexon.yt2spotify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Processing of a single playlist item inside a transfer (query building + Spotify search).
+ */
+@Name("com.nexon.yt2spotify.TransferItem")
+@Label("Transfer Item")
+@Description("Matching of one YouTube playlist item against Spotify")
+@Category({"yt2spotify", "Transfer"})
+@StackTrace(false)
+public class TransferItemEvent extends Event {
+
+    @Label("YouTube Playlist ID")
+    public String playlistId;
+
+    @Label("Item Index")
+    public int itemIndex;
+
+    @Label("Query Length")
+    public int queryLength;
+
+    @Label("Matched")
+    public boolean matched;
+
+    @Label("Hedge Searches")
+    @Description("Alternative queries sent because the first result looked wrong")
+    public int hedgeSearches;
+}
@@ -0,0 +1,37 @@
+package com.nexon.yt2spotify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One whole YouTube -> Spotify transfer, from the moment the executor picks it up until it ends.
+ */
+@Name("com.nexon.yt2spotify.Transfer")
+@Label("Transfer")
+@Description("A complete YouTube to Spotify playlist transfer")
+@Category({"yt2spotify", "Transfer"})
+@StackTrace(false)
+public class TransferJobEvent extends Event {
+
+    @Label("Job ID")
+    public String jobId;
+
+    @Label("YouTube Playlist ID")
+    public String playlistId;
+
+    @Label("Total Items")
+    public int totalItems;
+
+    @Label("Matched Items")
+    public int matchedItems;
+
+    @Label("Added Tracks")
+    public int addedTracks;
+
+    @Label("Status")
+    public String status;
+}
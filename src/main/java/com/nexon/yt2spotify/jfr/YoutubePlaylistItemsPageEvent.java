@@ -0,0 +1,34 @@
+package com.nexon.yt2spotify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One page (up to 50 items) fetched from YouTube's playlistItems endpoint.
+ */
+@Name("com.nexon.yt2spotify.YoutubePlaylistItemsPage")
+@Label("YouTube Playlist Items Page")
+@Description("A page of items fetched from a YouTube playlist")
+@Category({"yt2spotify", "HTTP"})
+@StackTrace(false)
+public class YoutubePlaylistItemsPageEvent extends Event {
+
+    @Label("YouTube Playlist ID")
+    public String playlistId;
+
+    @Label("Page Index")
+    public int pageIndex;
+
+    @Label("First Item Index")
+    public int itemIndex;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("HTTP Status")
+    public int httpStatus;
+}
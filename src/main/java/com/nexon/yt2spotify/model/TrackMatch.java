@@ -0,0 +1,51 @@
+package com.nexon.yt2spotify.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A YouTube video that was matched to a Spotify track by a previous transfer. Later transfers
+ * revalidate the stored track instead of searching for the video again.
+ */
+@Entity
+@Table(name = "track_matches")
+@Data
+@NoArgsConstructor
+public class TrackMatch {
+
+    @Id
+    @Column(length = 64)
+    private String videoId;
+
+    @Column(nullable = false, length = 64)
+    private String spotifyTrackId;
+
+    private String artistName;
+
+    private String trackName; // With the duration, what LocalTrackIndex matches videos against
+
+    private Integer durationMs;
+
+    @Column(nullable = false)
+    private Instant matchedAt;
+
+    @Column(nullable = false)
+    private Instant validatedAt; // Last time Spotify confirmed the track is still playable
+
+    public TrackMatch(String videoId, String spotifyTrackId, String artistName) {
+        this(videoId, spotifyTrackId, artistName, null, null);
+    }
+
+    public TrackMatch(String videoId, String spotifyTrackId, String artistName, String trackName, Integer durationMs) {
+        this.videoId = videoId;
+        this.spotifyTrackId = spotifyTrackId;
+        this.artistName = artistName;
+        this.trackName = trackName;
+        this.durationMs = durationMs;
+        this.matchedAt = Instant.now();
+        this.validatedAt = this.matchedAt;
+    }
+}
@@ -0,0 +1,58 @@
+package com.nexon.yt2spotify.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A YouTube playlist whose new videos are synced into a Spotify playlist in the background. The video
+ * IDs synced so far (table {@code watched_playlist_video}) are not mapped: they are only needed by a
+ * sync, see {@link com.nexon.yt2spotify.repository.WatchedPlaylistRepository#findSyncedVideoIds}.
+ */
+@Entity
+@Table(name = "watched_playlists")
+@Data
+@NoArgsConstructor
+public class WatchedPlaylist {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 200)
+    private String ownerName;
+
+    @Column(nullable = false, length = 64)
+    private String youtubePlaylistId;
+
+    @Column(length = 64)
+    private String spotifyPlaylistId; // Null until the first sync creates it
+
+    @Column(length = 100)
+    private String etag; // Of the YouTube playlist at the last complete sync; null forces a sync
+
+    private Integer itemCount;
+
+    @Column(length = 36)
+    private String lastSyncJobId;
+
+    @Column(nullable = false)
+    private Instant nextCheckAt;
+
+    private Instant lastCheckedAt;
+
+    private Instant lastSyncedAt;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public WatchedPlaylist(String ownerName, String youtubePlaylistId, String spotifyPlaylistId, Instant nextCheckAt) {
+        this.ownerName = ownerName;
+        this.youtubePlaylistId = youtubePlaylistId;
+        this.spotifyPlaylistId = spotifyPlaylistId;
+        this.nextCheckAt = nextCheckAt;
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,13 @@
+package com.nexon.yt2spotify.repository;
+
+import com.nexon.yt2spotify.model.TrackMatch;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface TrackMatchRepository extends JpaRepository<TrackMatch, String> {
+
+    /** Keyset paging over the matches that have a track name, for loading LocalTrackIndex. */
+    List<TrackMatch> findByVideoIdGreaterThanAndTrackNameIsNotNullOrderByVideoId(String videoId, Limit limit);
+}
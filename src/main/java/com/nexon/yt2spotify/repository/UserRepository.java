@@ -1,13 +1,25 @@
 package com.nexon.yt2spotify.repository;
 
 import com.nexon.yt2spotify.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findBySpotifyId(String spotifyId);
     Optional<User> findByGoogleId(String googleId);
-    Optional<User> findByEmail(String email);
+
+    // lower(email) on both sides, so idx_app_users_email_lower is used (see V2 migration)
+    @Query("select u from User u where lower(u.email) = lower(:email) order by u.id")
+    List<User> findByEmailIgnoreCase(@Param("email") String email, Limit limit);
+
+    /** The oldest account with this email, in any case. */
+    default Optional<User> findByEmail(String email) {
+        return findByEmailIgnoreCase(email, Limit.of(1)).stream().findFirst();
+    }
 }
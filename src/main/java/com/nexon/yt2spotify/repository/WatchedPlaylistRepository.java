@@ -0,0 +1,49 @@
+package com.nexon.yt2spotify.repository;
+
+import com.nexon.yt2spotify.model.WatchedPlaylist;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface WatchedPlaylistRepository extends JpaRepository<WatchedPlaylist, Long> {
+
+    List<WatchedPlaylist> findByOwnerNameOrderById(String ownerName);
+
+    Optional<WatchedPlaylist> findByIdAndOwnerName(Long id, String ownerName);
+
+    boolean existsByOwnerNameAndYoutubePlaylistId(String ownerName, String youtubePlaylistId);
+
+    /**
+     * The playlists due for a check, most overdue first, locked until the calling transaction ends.
+     * Rows another node has locked are skipped, so concurrent pollers claim disjoint sets.
+     */
+    @Query(value = """
+            SELECT * FROM watched_playlists WHERE next_check_at <= :now
+            ORDER BY next_check_at LIMIT :limit FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    List<WatchedPlaylist> findDueForUpdate(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Query(value = "SELECT video_id FROM watched_playlist_video WHERE watch_id = :id", nativeQuery = true)
+    List<String> findSyncedVideoIds(@Param("id") Long id);
+
+    /** Adds videos to the synced ones; those already there are left alone. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO watched_playlist_video (watch_id, video_id)
+            SELECT :id, unnest(string_to_array(:videoIds, ','))
+            ON CONFLICT DO NOTHING""", nativeQuery = true)
+    int addSyncedVideoIds(@Param("id") Long id, @Param("videoIds") String commaSeparatedVideoIds);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM watched_playlist_video
+            WHERE watch_id = :id AND video_id = ANY (string_to_array(:videoIds, ','))""", nativeQuery = true)
+    int removeSyncedVideoIds(@Param("id") Long id, @Param("videoIds") String commaSeparatedVideoIds);
+}
@@ -1,5 +1,6 @@
 package com.nexon.yt2spotify.service;
 
+import com.nexon.yt2spotify.jfr.AccessTokenEvent;
 import com.nexon.yt2spotify.model.User;
 import com.nexon.yt2spotify.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,10 +10,16 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.client.ClientAuthorizationRequiredException;
 import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +28,9 @@ public class AuthorizationHelper {
 
     private final OAuth2AuthorizedClientManager authorizedClientManager;
     private final UserRepository userRepository;
+    private final OAuth2AuthorizedClientService authorizedClientService;
+    private final ClientRegistrationRepository clientRegistrationRepository;
+    private volatile OAuth2AuthorizedClientManager backgroundClientManager; // See backgroundClientManager()
 
 
      /**
@@ -37,17 +47,50 @@ public class AuthorizationHelper {
      */
 
      public String getAccessToken(Authentication authentication, String clientRegistrationId) throws ClientAuthorizationRequiredException {
+         return recorded(clientRegistrationId, () -> resolveAccessToken(authentication, clientRegistrationId));
+     }
 
-         if(authentication == null){
-             log.error("Cannot Authorized : Authentication is null");
-             throw new RuntimeException("User must be authenticated to perform this action.");
+     /**
+      * Same as {@link #getAccessToken(Authentication, String)} for work that runs without a request
+      * of the user, e.g. syncs of watched playlists: the stored token of the user with this principal
+      * name, refreshed if it expired.
+      */
+     public String getAccessToken(String principalName, String clientRegistrationId) {
+         return recorded(clientRegistrationId, () -> {
+             User user = findLinkedUser(principalName);
+             String providerId = providerId(user, principalName, clientRegistrationId);
+             return authorize(backgroundClientManager(), clientRegistrationId, user,
+                     UsernamePasswordAuthenticationToken.authenticated(providerId, null, List.of()));
+         });
+     }
+
+     private String recorded(String clientRegistrationId, Supplier<String> resolver) {
+         AccessTokenEvent event = new AccessTokenEvent();
+         boolean success = false;
+         event.begin();
+         try {
+             String accessToken = resolver.get();
+             success = true;
+             return accessToken;
+         } finally {
+             event.end();
+             if (event.shouldCommit()) {
+                 event.clientRegistrationId = clientRegistrationId;
+                 event.success = success;
+                 event.commit();
+             }
          }
-         String currentPrincipalName = authentication.getName();
-         log.debug("Attempting to get token for client : {} and principal : {}", clientRegistrationId, currentPrincipalName);
+     }
 
-         // -- FInd the linked  USER entity ----
+     /**
+      * Finds the linked {@link User} for a principal name, which is either a Google "sub" (all digits)
+      * or a Spotify user ID depending on which provider the user logged in with last.
+      *
+      * @throws RuntimeException if no user is linked to the principal name.
+      */
+     public User findLinkedUser(String currentPrincipalName) {
          // Determine if the current princial name seems like Google ID or spotify ID
-         boolean isGooglePrinicpal = currentPrincipalName.matches("\\d+");
+         boolean isGooglePrinicpal = isGooglePrincipal(currentPrincipalName);
          Optional<User> userOptional = isGooglePrinicpal ? userRepository.findByGoogleId(currentPrincipalName) : userRepository.findBySpotifyId(currentPrincipalName);
 
 
@@ -61,8 +104,47 @@ public class AuthorizationHelper {
                  throw new RuntimeException("Could not find associated user data for principal: " + currentPrincipalName);
              }
          }
+         return userOptional.get();
+     }
+
+     /**
+      * Google "sub" claims are purely numeric, Spotify user IDs are not. Same check as the former
+      * {@code matches("\\d+")}, without compiling a regex on every request.
+      */
+     static boolean isGooglePrincipal(String principalName) {
+         if (principalName.isEmpty()) {
+             return false;
+         }
+         for (int i = 0; i < principalName.length(); i++) {
+             char c = principalName.charAt(i);
+             if (c < '0' || c > '9') {
+                 return false;
+             }
+         }
+         return true;
+     }
+
+     private String resolveAccessToken(Authentication authentication, String clientRegistrationId) {
+
+         if(authentication == null){
+             log.error("Cannot Authorized : Authentication is null");
+             throw new RuntimeException("User must be authenticated to perform this action.");
+         }
+         String currentPrincipalName = authentication.getName();
+         log.debug("Attempting to get token for client : {} and principal : {}", clientRegistrationId, currentPrincipalName);
+
+         // -- FInd the linked  USER entity ----
+         User user = findLinkedUser(currentPrincipalName);
+         String providerId = providerId(user, currentPrincipalName, clientRegistrationId);
+
+         // --- Authorize using the correct Provider ID ---
+         // Create a temporary Authentication principal with the correct name (providerId)
+         Authentication targetPrincipal = UsernamePasswordAuthenticationToken.authenticated(providerId, null, authentication.getAuthorities());
+         return authorize(authorizedClientManager, clientRegistrationId, user, targetPrincipal);
+     }
 
-         User user = userOptional.get();
+     /** The ID the user is known by at the target service, i.e. the principal name of its stored token. */
+     private String providerId(User user, String currentPrincipalName, String clientRegistrationId) {
          String providerId; // THe ID required for the "target" service
          // ---- GET the correct Provider ID for the TARGET Service ----
          if("spotify".equalsIgnoreCase(clientRegistrationId)){
@@ -86,11 +168,12 @@ public class AuthorizationHelper {
          }
 
          log.debug("Using provider ID '{}' for client '{}' lookup, based on linked User ID {}", providerId, clientRegistrationId, user.getId());
+         return providerId;
+     }
 
-         // --- Authorize using the correct Provider ID ---
-         // Create a temporary Authentication principal with the correct name (providerId)
-         Authentication targetPrincipal = UsernamePasswordAuthenticationToken.authenticated(providerId, null, authentication.getAuthorities());
-
+     private String authorize(OAuth2AuthorizedClientManager authorizedClientManager, String clientRegistrationId, User user,
+                              Authentication targetPrincipal) {
+         String providerId = targetPrincipal.getName();
          OAuth2AuthorizeRequest authorizeRequest = OAuth2AuthorizeRequest
                  .withClientRegistrationId(clientRegistrationId)
                  .principal(targetPrincipal) // Use principal with the correct name for lookup
@@ -118,4 +201,21 @@ public class AuthorizationHelper {
 
      }
 
+     /**
+      * The web manager (SecurityConfig) needs the current servlet request; this one works on any thread,
+      * straight on the stored tokens, refreshing them like the web one does.
+      */
+     private OAuth2AuthorizedClientManager backgroundClientManager() {
+         OAuth2AuthorizedClientManager manager = backgroundClientManager;
+         if (manager == null) {
+             AuthorizedClientServiceOAuth2AuthorizedClientManager serviceManager =
+                     new AuthorizedClientServiceOAuth2AuthorizedClientManager(clientRegistrationRepository, authorizedClientService);
+             serviceManager.setAuthorizedClientProvider(OAuth2AuthorizedClientProviderBuilder.builder()
+                     .refreshToken()
+                     .build());
+             backgroundClientManager = manager = serviceManager;
+         }
+         return manager;
+     }
+
 }
@@ -0,0 +1,63 @@
+package com.nexon.yt2spotify.service;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.util.context.Context;
+
+/**
+ * Priority class of an outbound Spotify / YouTube call, highest first. Where calls compete for a
+ * provider's capacity (the Spotify rate budget, the bulkheads), waiting calls of a higher class are
+ * served before those of a lower one, and part of the capacity is kept free for interactive calls.
+ * <p>
+ * Bound to the thread running a transfer or re-sync, like {@link TransferTimeline}; everything else,
+ * i.e. calls made while serving a user's request, is interactive. The thread's priority is captured
+ * when a request is built ({@link #tag}, the WebClient's default request) and stored in the
+ * {@link #ATTRIBUTE} request attribute, so retries on other threads keep it. Chains that build or
+ * subscribe requests on Reactor threads (flatMap fan-outs, hedges) carry it in their context instead,
+ * see {@link #capture()}; the outermost WebClient filter lets that win over the attribute.
+ */
+public enum CallPriority {
+
+    /** A user is waiting for the response: searches, playlist lists, ... */
+    INTERACTIVE,
+    /** A running transfer or commit. */
+    TRANSFER,
+    /** Scheduled re-syncs: only gets what transfers leave. */
+    BACKGROUND;
+
+    public static final String ATTRIBUTE = CallPriority.class.getName();
+
+    private static final ThreadLocal<CallPriority> CURRENT = new ThreadLocal<>();
+
+    public static void bind(CallPriority priority) {
+        CURRENT.set(priority);
+    }
+
+    public static CallPriority current() {
+        CallPriority priority = CURRENT.get();
+        return priority != null ? priority : INTERACTIVE;
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /** Tags a request with the priority of the thread building it. */
+    public static void tag(WebClient.RequestHeadersSpec<?> request) {
+        request.attribute(ATTRIBUTE, current());
+    }
+
+    /**
+     * The calling thread's priority as a Reactor context, under the {@link #ATTRIBUTE} key:
+     * {@code .contextWrite(CallPriority.capture())} on a chain whose requests are built or subscribed
+     * on other threads.
+     */
+    public static Context capture() {
+        return Context.of(ATTRIBUTE, current());
+    }
+
+    /** The priority the call was tagged with; untagged calls are interactive. */
+    public static CallPriority of(ClientRequest request) {
+        return request.attribute(ATTRIBUTE).map(CallPriority.class::cast).orElse(INTERACTIVE);
+    }
+}
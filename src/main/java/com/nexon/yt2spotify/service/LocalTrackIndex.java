@@ -0,0 +1,366 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyArtistDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import com.nexon.yt2spotify.model.TrackMatch;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the Spotify tracks earlier transfers matched, so {@link TrackMatcher} can resolve
+ * a video of a known song without searching.
+ * <p>
+ * Tracks are kept in parallel arrays by ordinal, without an object per track: the name and artist as
+ * UTF-8 bytes in one shared buffer addressed by offset (decoded only for a candidate), and the track ID
+ * in a {@link StringTable}, whose ID for it is the ordinal. Every word of a track's normalized name and
+ * artist gets an ID from a second {@link StringTable} and maps to a posting list of ordinals
+ * ({@code int[]}, ascending since ordinals only grow).
+ * A lookup merges the posting lists of the query's words and returns the tracks sharing the most of
+ * them; scoring is left to the matcher. The index is loaded from {@code track_matches} once the app
+ * is up, and grows as transfers store new matches; tracks found gone on revalidation are dropped.
+ */
+@Slf4j
+@Component
+public class LocalTrackIndex {
+
+    private static final int LOAD_PAGE_SIZE = 5_000;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final TrackMatchRepository trackMatchRepository;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // --- Tracks, by ordinal: name bytes from the previous artist end to nameEnds, artist bytes up to artistEnds ---
+    private final StringTable trackIds = new StringTable();
+    private byte[] text = new byte[INITIAL_CAPACITY * 32];
+    private int[] nameEnds = new int[INITIAL_CAPACITY];
+    private int[] artistEnds = new int[INITIAL_CAPACITY]; // Same as the name end: no artist
+    private int[] durations = new int[INITIAL_CAPACITY]; // 0 = unknown
+    private final BitSet removed = new BitSet();
+    private int size;
+
+    // --- Inverted index: word -> ordinals of the tracks whose name or artist has it ---
+    private final StringTable wordIds = new StringTable();
+    private int[][] postings = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+
+    public LocalTrackIndex(TrackMatchRepository trackMatchRepository,
+                           @Value("${yt2spotify.transfer.local-index.enabled:true}") boolean enabled) {
+        this.trackMatchRepository = trackMatchRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - removed.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Loads the stored matches in the background; lookups just find less until it is done. */
+    @Async("taskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        int rows = 0;
+        try {
+            String after = "";
+            List<TrackMatch> page;
+            do {
+                page = trackMatchRepository.findByVideoIdGreaterThanAndTrackNameIsNotNullOrderByVideoId(after, Limit.of(LOAD_PAGE_SIZE));
+                addAll(page);
+                rows += page.size();
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1).getVideoId();
+                }
+            } while (page.size() == LOAD_PAGE_SIZE);
+            log.info("Local track index loaded: {} tracks from {} stored matches in {} ms",
+                    size(), rows, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            // Only an optimization: matching falls back to searching
+            log.warn("Could not load the local track index after {} stored matches: {}", rows, e.getMessage());
+        }
+    }
+
+    /** Adds the tracks of new matches (those without a track name are skipped). */
+    public void addAll(Collection<TrackMatch> matches) {
+        if (!enabled || matches.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (TrackMatch match : matches) {
+                if (match.getTrackName() != null && match.getSpotifyTrackId() != null) {
+                    add(match.getSpotifyTrackId(), match.getTrackName(), match.getArtistName(),
+                            match.getDurationMs() != null ? match.getDurationMs() : 0);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops tracks Spotify no longer has. */
+    public void removeAll(Collection<String> trackIds) {
+        if (!enabled || trackIds.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (String trackId : trackIds) {
+                int ordinal = this.trackIds.find(trackId);
+                if (ordinal >= 0) {
+                    removed.set(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The tracks that share the most words with {@code text}, at most {@code limit}, best first. A track
+     * must share at least half of the known words to be a candidate.
+     */
+    public List<SpotifyTrackDto> candidates(String text, int limit) {
+        Set<String> words = TrackMatcher.words(text);
+        if (!enabled || words.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int[][] lists = new int[words.size()][];
+            int[] lengths = new int[words.size()];
+            int count = 0;
+            for (String word : words) {
+                int wordId = wordIds.find(word);
+                if (wordId >= 0) {
+                    lists[count] = postings[wordId];
+                    lengths[count++] = postingSizes[wordId];
+                }
+            }
+            if (count == 0) {
+                return List.of();
+            }
+            int minHits = Math.max(1, (count + 1) / 2);
+            int[] best = new int[limit];
+            int[] bestHits = new int[limit];
+            int found = merge(lists, lengths, count, minHits, best, bestHits);
+
+            List<SpotifyTrackDto> tracks = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                tracks.add(track(best[i]));
+            }
+            return tracks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the ascending posting lists side by side, counting for each ordinal how many of them hold
+     * it, and keeps the {@code best.length} ordinals with the most hits. Returns how many were kept.
+     */
+    private int merge(int[][] lists, int[] lengths, int count, int minHits, int[] best, int[] bestHits) {
+        int[] cursors = new int[count];
+        int found = 0;
+        while (true) {
+            int ordinal = Integer.MAX_VALUE;
+            for (int l = 0; l < count; l++) {
+                if (cursors[l] < lengths[l] && lists[l][cursors[l]] < ordinal) {
+                    ordinal = lists[l][cursors[l]];
+                }
+            }
+            if (ordinal == Integer.MAX_VALUE) {
+                return found;
+            }
+            int hits = 0;
+            for (int l = 0; l < count; l++) {
+                if (cursors[l] < lengths[l] && lists[l][cursors[l]] == ordinal) {
+                    hits++;
+                    cursors[l]++;
+                }
+            }
+            if (hits < minHits || removed.get(ordinal) || (found == best.length && hits <= bestHits[found - 1])) {
+                continue;
+            }
+            // Insertion into the small best-first array; ties keep the older track first
+            int at = found < best.length ? found++ : found - 1;
+            while (at > 0 && bestHits[at - 1] < hits) {
+                best[at] = best[at - 1];
+                bestHits[at] = bestHits[at - 1];
+                at--;
+            }
+            best[at] = ordinal;
+            bestHits[at] = hits;
+        }
+    }
+
+    private void add(String trackId, String name, String artist, int durationMs) {
+        int existing = trackIds.find(trackId);
+        if (existing >= 0) {
+            removed.clear(existing); // Matched again, so playable again
+            return;
+        }
+        int ordinal = size++;
+        trackIds.add(trackId); // Gets the ordinal as its ID
+        if (ordinal == nameEnds.length) {
+            int capacity = nameEnds.length * 2;
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+            artistEnds = Arrays.copyOf(artistEnds, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+        int start = ordinal == 0 ? 0 : artistEnds[ordinal - 1];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] artistBytes = artist != null ? artist.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (start + nameBytes.length + artistBytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, start + nameBytes.length + artistBytes.length));
+        }
+        System.arraycopy(nameBytes, 0, text, start, nameBytes.length);
+        System.arraycopy(artistBytes, 0, text, start + nameBytes.length, artistBytes.length);
+        nameEnds[ordinal] = start + nameBytes.length;
+        artistEnds[ordinal] = nameEnds[ordinal] + artistBytes.length;
+        durations[ordinal] = durationMs;
+
+        for (String word : TrackMatcher.words(name + " " + (artist != null ? artist : ""))) {
+            int wordId = wordIds.find(word);
+            if (wordId < 0) {
+                wordId = wordIds.add(word);
+            }
+            if (wordId == postings.length) {
+                postings = Arrays.copyOf(postings, wordId * 2);
+                postingSizes = Arrays.copyOf(postingSizes, wordId * 2);
+            }
+            int[] posting = postings[wordId];
+            if (posting == null) {
+                posting = postings[wordId] = new int[2];
+            } else if (postingSizes[wordId] == posting.length) {
+                posting = postings[wordId] = Arrays.copyOf(posting, posting.length * 2);
+            }
+            posting[postingSizes[wordId]++] = ordinal;
+        }
+    }
+
+    private SpotifyTrackDto track(int ordinal) {
+        SpotifyTrackDto track = new SpotifyTrackDto();
+        String trackId = trackIds.get(ordinal);
+        int start = ordinal == 0 ? 0 : artistEnds[ordinal - 1];
+        track.setId(trackId);
+        track.setName(new String(text, start, nameEnds[ordinal] - start, StandardCharsets.UTF_8));
+        track.setUri(TransferItemStore.TRACK_URI_PREFIX + trackId);
+        track.setDurationMs(durations[ordinal] > 0 ? durations[ordinal] : null);
+        if (artistEnds[ordinal] > nameEnds[ordinal]) {
+            SpotifyArtistDto artist = new SpotifyArtistDto();
+            artist.setName(new String(text, nameEnds[ordinal], artistEnds[ordinal] - nameEnds[ordinal], StandardCharsets.UTF_8));
+            track.setArtists(List.of(artist));
+        }
+        return track;
+    }
+
+    /**
+     * Strings numbered 0, 1, ... in the order they are added, without an object per string: their chars
+     * are kept back to back in one array, and an open-addressing hash table (linear probing, at most half
+     * full) holds just their numbers. Nothing is ever removed. Guarded by the index's lock.
+     */
+    static final class StringTable {
+
+        private char[] chars = new char[INITIAL_CAPACITY * 16];
+        private int[] ends = new int[INITIAL_CAPACITY]; // String i spans ends[i - 1] (or 0) to ends[i]
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private int[] slots = new int[INITIAL_CAPACITY * 2]; // Number + 1; 0 = free
+        private int size;
+
+        /** The number of {@code string}, or -1 if it was never added. */
+        int find(String string) {
+            int mask = slots.length - 1;
+            for (int slot = spread(string.hashCode()) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (matches(slots[slot] - 1, string)) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /** Adds a string that isn't in the table yet and returns its number. */
+        int add(String string) {
+            int number = size++;
+            if (number == ends.length) {
+                ends = Arrays.copyOf(ends, number * 2);
+                hashes = Arrays.copyOf(hashes, number * 2);
+            }
+            int start = number == 0 ? 0 : ends[number - 1];
+            if (start + string.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, start + string.length()));
+            }
+            string.getChars(0, string.length(), chars, start);
+            ends[number] = start + string.length();
+            hashes[number] = string.hashCode();
+            if (size * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                for (int i = 0; i < number; i++) {
+                    insert(i);
+                }
+            }
+            insert(number);
+            return number;
+        }
+
+        String get(int number) {
+            int start = number == 0 ? 0 : ends[number - 1];
+            return new String(chars, start, ends[number] - start);
+        }
+
+        private void insert(int number) {
+            int mask = slots.length - 1;
+            int slot = spread(hashes[number]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = number + 1;
+        }
+
+        private boolean matches(int number, String string) {
+            int start = number == 0 ? 0 : ends[number - 1];
+            if (ends[number] - start != string.length() || hashes[number] != string.hashCode()) {
+                return false;
+            }
+            for (int i = 0; i < string.length(); i++) {
+                if (chars[start + i] != string.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Fibonacci hashing, folded so the low bits used for the slot depend on every bit of the hash. */
+        private static int spread(int hash) {
+            int mixed = hash * 0x9E3779B9;
+            return mixed ^ (mixed >>> 16);
+        }
+    }
+}
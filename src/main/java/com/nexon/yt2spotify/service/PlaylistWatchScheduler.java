@@ -0,0 +1,161 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.yt.YoutubeSimplifiedPlaylistDto;
+import com.nexon.yt2spotify.model.WatchedPlaylist;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Syncs new videos of watched YouTube playlists into their Spotify playlists.
+ * <p>
+ * Each poll claims the playlists due for a check and asks YouTube for their etag and item count with
+ * playlists.list, 50 playlists per call (one quota unit) and per owner, since a private playlist can
+ * only be read with its owner's token. Only a playlist whose etag or item count differs from the last
+ * complete sync is synced: its items are fetched and the videos not synced before are matched and
+ * appended, as a job of the {@link TransferJobRegistry} on the transfer executor, with
+ * {@link CallPriority#BACKGROUND} priority. An unchanged playlist costs its share of one call.
+ */
+@Slf4j
+@Component
+public class PlaylistWatchScheduler {
+
+    private final PlaylistWatchService watchService;
+    private final YoutubeApiService youtubeApiService;
+    private final AuthorizationHelper authorizationHelper;
+    private final TransferJobRegistry transferJobRegistry;
+    private final TransferService transferService;
+    private final TaskExecutor taskExecutor;
+    private final boolean enabled;
+    private final int maxChecksPerPoll;
+    private final int maxSyncsPerPoll;
+
+    public PlaylistWatchScheduler(
+            PlaylistWatchService watchService,
+            YoutubeApiService youtubeApiService,
+            AuthorizationHelper authorizationHelper,
+            TransferJobRegistry transferJobRegistry,
+            TransferService transferService,
+            @Qualifier("taskExecutor") TaskExecutor taskExecutor,
+            @Value("${yt2spotify.watch.enabled:true}") boolean enabled,
+            @Value("${yt2spotify.watch.max-checks-per-poll:500}") int maxChecksPerPoll,
+            @Value("${yt2spotify.watch.max-syncs-per-poll:2}") int maxSyncsPerPoll) {
+        this.watchService = watchService;
+        this.youtubeApiService = youtubeApiService;
+        this.authorizationHelper = authorizationHelper;
+        this.transferJobRegistry = transferJobRegistry;
+        this.transferService = transferService;
+        this.taskExecutor = taskExecutor;
+        this.enabled = enabled;
+        this.maxChecksPerPoll = maxChecksPerPoll;
+        this.maxSyncsPerPoll = maxSyncsPerPoll;
+    }
+
+    @Scheduled(fixedDelayString = "${yt2spotify.watch.poll-interval:30s}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        List<WatchedPlaylist> due;
+        try {
+            due = watchService.claimDue(maxChecksPerPoll);
+        } catch (Exception e) {
+            log.warn("Could not claim watched playlists for a check: {}", e.getMessage());
+            return;
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        Map<String, List<WatchedPlaylist>> byOwner = new LinkedHashMap<>();
+        for (WatchedPlaylist watch : due) {
+            byOwner.computeIfAbsent(watch.getOwnerName(), owner -> new ArrayList<>()).add(watch);
+        }
+
+        CallPriority.bind(CallPriority.BACKGROUND);
+        int changed = 0;
+        int syncs = 0;
+        try {
+            for (Map.Entry<String, List<WatchedPlaylist>> owner : byOwner.entrySet()) {
+                Map<String, YoutubeSimplifiedPlaylistDto> states;
+                try {
+                    String googleToken = authorizationHelper.getAccessToken(owner.getKey(), "google");
+                    states = youtubeApiService.getPlaylistStates(
+                            owner.getValue().stream().map(WatchedPlaylist::getYoutubePlaylistId).toList(), googleToken);
+                } catch (Exception e) {
+                    log.warn("Could not check {} watched playlists of {}, checking again later: {}",
+                            owner.getValue().size(), owner.getKey(), e.getMessage());
+                    continue; // Their next check is already scheduled
+                }
+                for (WatchedPlaylist watch : owner.getValue()) {
+                    YoutubeSimplifiedPlaylistDto state = states.get(watch.getYoutubePlaylistId());
+                    if (state == null) {
+                        log.warn("Watched YouTube playlist {} of {} is gone or no longer visible", watch.getYoutubePlaylistId(), owner.getKey());
+                        continue;
+                    }
+                    if (!changed(watch, state)) {
+                        continue;
+                    }
+                    changed++;
+                    if (syncs < maxSyncsPerPoll && startSync(watch, state)) {
+                        syncs++;
+                    } else {
+                        watchService.retrySoon(watch.getId()); // Checked and synced at a later poll
+                    }
+                }
+            }
+        } finally {
+            CallPriority.unbind();
+        }
+        log.info("Checked {} watched playlists of {} users: {} changed, {} syncs started", due.size(), byOwner.size(), changed, syncs);
+    }
+
+    /** Etag and item count both change with the items; a watch without an etag was never synced in full. */
+    static boolean changed(WatchedPlaylist watch, YoutubeSimplifiedPlaylistDto state) {
+        Integer itemCount = state.getContentDetails() != null ? state.getContentDetails().getItemCount() : null;
+        return watch.getEtag() == null || !watch.getEtag().equals(state.getEtag()) || !Objects.equals(watch.getItemCount(), itemCount);
+    }
+
+    private boolean startSync(WatchedPlaylist watch, YoutubeSimplifiedPlaylistDto state) {
+        try {
+            taskExecutor.execute(() -> sync(watch, state));
+            return true;
+        } catch (TaskRejectedException e) {
+            log.info("Transfer executor is busy, syncing watched playlist {} later", watch.getYoutubePlaylistId());
+            return false;
+        }
+    }
+
+    private void sync(WatchedPlaylist watch, YoutubeSimplifiedPlaylistDto state) {
+        Set<String> syncedVideoIds = watchService.beginSync(watch.getId());
+        if (syncedVideoIds == null) {
+            return; // Unwatched meanwhile
+        }
+        TransferJob job = transferJobRegistry.createSync(watch.getOwnerName(), watch.getYoutubePlaylistId(), watch.getId(),
+                watch.getSpotifyPlaylistId());
+        try {
+            String spotifyToken = authorizationHelper.getAccessToken(watch.getOwnerName(), "spotify");
+            String googleToken = authorizationHelper.getAccessToken(watch.getOwnerName(), "google");
+            transferService.sync(job, syncedVideoIds, spotifyToken, googleToken);
+        } catch (Exception e) {
+            log.warn("Could not sync watched playlist {} of {}: {}", watch.getYoutubePlaylistId(), watch.getOwnerName(), e.getMessage());
+            job.fail(e.getMessage());
+        } finally {
+            try {
+                watchService.finishSync(watch.getId(), job, state, syncedVideoIds);
+            } catch (Exception e) {
+                log.warn("Could not record sync {} of watched playlist {}, it is retried: {}", job.getId(), watch.getYoutubePlaylistId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.yt.YoutubeSimplifiedPlaylistDto;
+import com.nexon.yt2spotify.model.WatchedPlaylist;
+import com.nexon.yt2spotify.repository.WatchedPlaylistRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Watched playlists and their check schedule. Every check pushes the next one out by
+ * {@code check-interval}, give or take {@code check-jitter}, so checks that started out together
+ * drift apart and the polls see a steady trickle of due playlists rather than bursts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PlaylistWatchService {
+
+    private final WatchedPlaylistRepository watchedPlaylistRepository;
+    @Value("${yt2spotify.watch.check-interval:15m}")
+    private final Duration checkInterval;
+    @Value("${yt2spotify.watch.check-jitter:0.2}")
+    private final double checkJitter; // Share of the interval the next check moves by, either way
+    @Value("${yt2spotify.watch.sync-lease:1h}")
+    private final Duration syncLease; // A sync not finished by then (its node died) is retried
+
+    /**
+     * Watches a playlist. Taken over from a finished transfer of it, syncs append to that transfer's
+     * Spotify playlist and leave the videos it handled alone; otherwise the first sync creates the
+     * Spotify playlist. Either way the first check is due right away.
+     *
+     * @return The new watch, or empty if the user already watches the playlist.
+     */
+    @Transactional
+    public Optional<WatchedPlaylist> watch(String ownerName, String youtubePlaylistId, TransferJob transfer) {
+        if (watchedPlaylistRepository.existsByOwnerNameAndYoutubePlaylistId(ownerName, youtubePlaylistId)) {
+            return Optional.empty();
+        }
+        WatchedPlaylist watch = watchedPlaylistRepository.save(new WatchedPlaylist(ownerName, youtubePlaylistId,
+                transfer != null ? transfer.getSpotifyPlaylistId() : null, Instant.now()));
+        if (transfer != null) {
+            Set<String> handled = handledVideoIds(transfer);
+            if (!handled.isEmpty()) {
+                watchedPlaylistRepository.addSyncedVideoIds(watch.getId(), String.join(",", handled));
+            }
+        }
+        log.info("User {} watches YouTube playlist {} (watch {}, Spotify playlist {})", ownerName, youtubePlaylistId,
+                watch.getId(), watch.getSpotifyPlaylistId());
+        return Optional.of(watch);
+    }
+
+    public List<WatchedPlaylist> watches(String ownerName) {
+        return watchedPlaylistRepository.findByOwnerNameOrderById(ownerName);
+    }
+
+    @Transactional
+    public boolean unwatch(String ownerName, long watchId) {
+        Optional<WatchedPlaylist> watch = watchedPlaylistRepository.findByIdAndOwnerName(watchId, ownerName);
+        watch.ifPresent(watchedPlaylistRepository::delete);
+        return watch.isPresent();
+    }
+
+    /**
+     * Claims up to {@code limit} due playlists for a check: their next check is scheduled before the
+     * rows are unlocked, so no other node picks them up meanwhile.
+     */
+    @Transactional
+    public List<WatchedPlaylist> claimDue(int limit) {
+        Instant now = Instant.now();
+        List<WatchedPlaylist> due = watchedPlaylistRepository.findDueForUpdate(now, limit);
+        for (WatchedPlaylist watch : due) {
+            watch.setLastCheckedAt(now);
+            watch.setNextCheckAt(nextCheck(now));
+        }
+        return due;
+    }
+
+    /**
+     * Holds off checks of the playlist for the sync's lease, and returns the videos synced so far.
+     *
+     * @return Null if the playlist is no longer watched.
+     */
+    @Transactional
+    public Set<String> beginSync(long watchId) {
+        Optional<WatchedPlaylist> watch = watchedPlaylistRepository.findById(watchId);
+        if (watch.isEmpty()) {
+            return null;
+        }
+        watch.get().setNextCheckAt(Instant.now().plus(syncLease));
+        return new HashSet<>(watchedPlaylistRepository.findSyncedVideoIds(watchId));
+    }
+
+    /**
+     * Records what a sync did. The videos it handled are synced from now on: only those not synced
+     * before are inserted, and after a complete sync the earlier ones it didn't see (removed from the
+     * playlist) are deleted. The playlist's state is only recorded when nothing failed, so anything
+     * left over is retried at the next check.
+     */
+    @Transactional
+    public void finishSync(long watchId, TransferJob job, YoutubeSimplifiedPlaylistDto state, Set<String> syncedBefore) {
+        Optional<WatchedPlaylist> found = watchedPlaylistRepository.findById(watchId);
+        if (found.isEmpty()) {
+            return; // Unwatched meanwhile
+        }
+        WatchedPlaylist watch = found.get();
+        Instant now = Instant.now();
+        watch.setLastSyncJobId(job.getId());
+        watch.setNextCheckAt(nextCheck(now));
+        if (job.getSpotifyPlaylistId() != null) {
+            watch.setSpotifyPlaylistId(job.getSpotifyPlaylistId()); // Created by the first sync, even if it failed later
+        }
+        boolean completed = job.getStatus() == TransferJob.Status.COMPLETED;
+        Set<String> synced = handledVideoIds(job);
+        if (completed) {
+            Set<String> removed = new LinkedHashSet<>(syncedBefore);
+            removed.removeAll(synced);
+            if (!removed.isEmpty()) {
+                watchedPlaylistRepository.removeSyncedVideoIds(watchId, String.join(",", removed));
+            }
+        }
+        synced.removeAll(syncedBefore);
+        if (!synced.isEmpty()) {
+            watchedPlaylistRepository.addSyncedVideoIds(watchId, String.join(",", synced));
+        }
+        if (completed && job.getItems().count(TransferItemStore.ItemStatus.FAILED) == 0) {
+            watch.setEtag(state.getEtag());
+            watch.setItemCount(state.getContentDetails() != null ? state.getContentDetails().getItemCount() : null);
+            watch.setLastSyncedAt(now);
+        }
+    }
+
+    /** Makes the playlist due again, for the next poll. */
+    @Transactional
+    public void retrySoon(long watchId) {
+        watchedPlaylistRepository.findById(watchId).ifPresent(watch -> watch.setNextCheckAt(Instant.now()));
+    }
+
+    private Instant nextCheck(Instant now) {
+        double factor = 1 + checkJitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return now.plusMillis((long) (checkInterval.toMillis() * factor));
+    }
+
+    /**
+     * Videos of a finished job that need no further sync: added to Spotify, not found there, skipped,
+     * or synced before. Failed and unfinished items are left out, so they are tried again.
+     */
+    static Set<String> handledVideoIds(TransferJob job) {
+        TransferItemStore items = job.getItems();
+        Set<String> videoIds = new LinkedHashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            switch (items.status(i)) {
+                case ADDED, NOT_FOUND, SKIPPED, SYNCED -> {
+                    if (items.videoId(i) != null) {
+                        videoIds.add(items.videoId(i));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return videoIds;
+    }
+}
@@ -0,0 +1,52 @@
+package com.nexon.yt2spotify.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Outcome of {@link SpotifyPlaylistWriter#write}: exactly which of the requested URIs ended up in the
+ * playlist (in request order) and which didn't.
+ *
+ * @param trackUris      The URIs that were requested, in order.
+ * @param committed      Bit {@code i} is set when {@code trackUris.get(i)} was committed.
+ * @param snapshotIds    Snapshot ID returned for each committed batch, in batch order.
+ * @param lastSnapshotId Snapshot ID of the last committed batch, i.e. the playlist version that contains
+ *                       every committed batch. Null if nothing was committed.
+ * @param requests       POSTs sent, including retries and out-of-order rejections.
+ * @param retries        Batches re-sent after a transient failure.
+ */
+public record PlaylistWriteResult(
+        List<String> trackUris,
+        BitSet committed,
+        List<String> snapshotIds,
+        String lastSnapshotId,
+        int requests,
+        int retries) {
+
+    public int committedCount() {
+        return committed.cardinality();
+    }
+
+    public boolean isComplete() {
+        return committedCount() == trackUris.size();
+    }
+
+    public List<String> committedUris() {
+        return select(true);
+    }
+
+    public List<String> failedUris() {
+        return select(false);
+    }
+
+    private List<String> select(boolean wanted) {
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < trackUris.size(); i++) {
+            if (committed.get(i) == wanted) {
+                uris.add(trackUris.get(i));
+            }
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,13 @@
+package com.nexon.yt2spotify.service;
+
+/**
+ * An outbound call that was not sent: the circuit of its operation is open, or its provider's
+ * bulkhead stayed full for too long (see {@code ProviderGuardFilter}). Expected during an incident,
+ * so callers log it without a stack trace.
+ */
+public class ProviderUnavailableException extends RuntimeException {
+
+    public ProviderUnavailableException(String message) {
+        super(message);
+    }
+}
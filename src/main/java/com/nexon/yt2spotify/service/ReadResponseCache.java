@@ -0,0 +1,96 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived, per-user cache of serialized read responses (YouTube playlists, playlist items), each
+ * with a strong ETag over its exact bytes.
+ * <p>
+ * While an entry is fresh, a request is answered without a token lookup or upstream call, and a
+ * browser revalidating with {@code If-None-Match} gets a 304. After the TTL the data is fetched again;
+ * if it hasn't changed, the ETag is the same and the browser still gets a 304. Nothing in this app
+ * changes YouTube data, so entries are never invalidated: a change made on YouTube shows up within the
+ * TTL. Expired entries, and users left without any, are evicted every TTL.
+ */
+@Slf4j
+@Component
+public class ReadResponseCache {
+
+    /** Serialized JSON body and its quoted, strong ETag. */
+    public record Entry(byte[] body, String etag, long expiresAtNanos) {
+    }
+
+    private final Map<String, Map<String, Entry>> entriesByOwner = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper;
+    private final long ttlNanos;
+    private final int maxEntriesPerOwner;
+
+    public ReadResponseCache(
+            ObjectMapper objectMapper,
+            @Value("${yt2spotify.cache.read-ttl:60s}") Duration ttl,
+            @Value("${yt2spotify.cache.max-entries-per-user:64}") int maxEntriesPerOwner) {
+        this.objectMapper = objectMapper;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntriesPerOwner = maxEntriesPerOwner;
+    }
+
+    /**
+     * The cached response for {@code key}, or the serialized result of {@code loader} if there is none
+     * or it expired. The loader runs on the calling thread; failures are not cached.
+     */
+    public Entry get(String ownerName, String key, Supplier<?> loader) {
+        Map<String, Entry> entries = entriesByOwner.computeIfAbsent(ownerName, owner -> new ConcurrentHashMap<>());
+        Entry entry = entries.get(key);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.expiresAtNanos() < 0) {
+            log.debug("Serving '{}' for user {} from the read cache", key, ownerName);
+            return entry;
+        }
+        entry = serialize(loader.get(), now + ttlNanos);
+        if (entries.size() >= maxEntriesPerOwner && !entries.containsKey(key)) {
+            entries.values().removeIf(e -> now - e.expiresAtNanos() >= 0);
+            if (entries.size() >= maxEntriesPerOwner) {
+                entries.clear(); // Many distinct playlists in one TTL: start over rather than track usage
+            }
+        }
+        entries.put(key, entry);
+        return entry;
+    }
+
+    // A get() racing with the removal of its user's map may put an entry into the removed map: a later miss
+    @Scheduled(fixedDelayString = "${yt2spotify.cache.read-ttl:60s}")
+    void evictExpired() {
+        long now = System.nanoTime();
+        for (String ownerName : entriesByOwner.keySet()) {
+            entriesByOwner.computeIfPresent(ownerName, (owner, entries) -> {
+                entries.values().removeIf(entry -> now - entry.expiresAtNanos() >= 0);
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+    }
+
+    /** Entries held, of all users. */
+    int size() {
+        return entriesByOwner.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private Entry serialize(Object value, long expiresAtNanos) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            return new Entry(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"", expiresAtNanos);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize response: " + e.getMessage(), e);
+        }
+    }
+}
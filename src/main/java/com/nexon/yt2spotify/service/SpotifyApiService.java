@@ -1,18 +1,30 @@
 package com.nexon.yt2spotify.service;
 
 import com.nexon.yt2spotify.dto.sotify.*;
+import com.nexon.yt2spotify.jfr.SpotifySearchEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Collections;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -20,7 +32,38 @@ import java.util.Optional;
 public class SpotifyApiService {
 
     private final WebClient webClient;
-    private final String SPOTIFY_API_BASE_URL = "https://api.spotify.com/v1"; // Correct base URL
+    @Value("${yt2spotify.spotify.api-base-url:https://api.spotify.com/v1}")
+    private final String spotifyApiBaseUrl; // Configurable so load tests can point at a local stub
+    @Value("${yt2spotify.spotify.search-concurrency:8}")
+    private final int searchConcurrency; // Searches in flight per batch search request
+    public static final int ADD_TRACKS_BATCH_SIZE = 100; // Spotify API limit
+    public static final int TRACKS_LOOKUP_BATCH_SIZE = 50; // Spotify API limit for GET /tracks?ids=
+    public static final int SEARCH_BATCH_MAX_QUERIES = 500; // Per batch search request
+    private static final int DURATION_MATCH_CANDIDATES = 5; // Search results compared by duration
+
+    // Compiled once, searchTrack runs for every item of every transfer
+    private static final Pattern VIDEO_NOISE = Pattern.compile("(?i)\\b(official music video|music video|official video|video|lyrics|lyric video)\\b");
+    private static final Pattern BRACKETS = Pattern.compile("[\\(\\)\\[\\]\\{\\}]");
+
+    /**
+     * Strips common YouTube title noise ("Official Video", "Lyrics", brackets) from a search query.
+     */
+    public static String normalizeQuery(String query) {
+        String cleaned = VIDEO_NOISE.matcher(query).replaceAll("");
+        return BRACKETS.matcher(cleaned).replaceAll("").trim();
+    }
+
+    /**
+     * Splits URIs (or IDs) into consecutive batches of at most {@code batchSize}. The batches are views
+     * on the given list, nothing is copied.
+     */
+    public static List<List<String>> batches(List<String> uris, int batchSize) {
+        List<List<String>> batches = new ArrayList<>((uris.size() + batchSize - 1) / batchSize);
+        for (int i = 0; i < uris.size(); i += batchSize) {
+            batches.add(uris.subList(i, Math.min(i + batchSize, uris.size())));
+        }
+        return batches;
+    }
 
 
     /**
@@ -32,42 +75,34 @@ public class SpotifyApiService {
      * @return An Optional containing the SpotifyTrackDto if found, otherwise empty Optional.
      */
     public Optional<SpotifyTrackDto> searchTrack(String query, String accessToken) {
-        // Basic query cleaning (can be improved)
-        String cleanedQuery = query.replaceAll("(?i)\\b(official music video|music video|official video|video|lyrics|lyric video)\\b", "")
-                .replaceAll("[\\(\\)\\[\\]\\{\\}]", "") // Remove brackets
-                .trim();
-        log.info("Searching Spotify for track with cleaned query: '{}'", cleanedQuery);
+        return searchTrack(query, 0, accessToken);
+    }
 
-        // Request only necessary fields for the track item
-        final String fields = "tracks.items(id,name,uri,artists(name))";
-        final int limit = 1; // Only request the top result
+    /**
+     * Same as {@link #searchTrack(String, String)}, but when the source video's duration is known a few
+     * candidates are requested and the one closest in duration is preferred over the top hit, which
+     * keeps live versions, remixes and extended cuts from winning over the actual track.
+     *
+     * @param expectedDurationMs Duration of the YouTube video in milliseconds, or 0 if unknown.
+     */
+    public Optional<SpotifyTrackDto> searchTrack(String query, int expectedDurationMs, String accessToken) {
+        // Basic query cleaning (can be improved)
+        String cleanedQuery = normalizeQuery(query);
+        log.debug("Searching Spotify for track with cleaned query: '{}'", cleanedQuery);
 
+        SpotifySearchEvent event = new SpotifySearchEvent();
+        int httpStatus = 0;
+        boolean found = false;
+        event.begin();
         try {
-            UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(SPOTIFY_API_BASE_URL + "/search")
-                    .queryParam("q", cleanedQuery)
-                    .queryParam("type", "track") // Search only for tracks
-                    .queryParam("limit", limit)   // Limit to 1 result
-                    .queryParam("fields", fields); // Request minimal fields
-
-            String url = uriBuilder.encode().toUriString();
-            log.debug("Requesting Spotify search from URL: {}", url);
-
-            // Directly deserialize into the tracks wrapper DTO
-            SpotifyTracksSearchResultDto searchResult = this.webClient.get()
-                    .uri(url)
-                    .headers(h -> h.setBearerAuth(accessToken))
-                    .retrieve()
-                    .bodyToMono(SpotifyTracksSearchResultDto.class)
-                    .block();
+            ResponseEntity<SpotifyTrackDto> response = searchResponse(cleanedQuery, expectedDurationMs, accessToken).block();
+            httpStatus = response != null ? response.getStatusCode().value() : 0;
+            SpotifyTrackDto foundTrack = response != null ? response.getBody() : null;
 
-            if (searchResult != null &&
-                    searchResult.getTracks() != null &&
-                    searchResult.getTracks().getItems() != null &&
-                    !searchResult.getTracks().getItems().isEmpty())
-            {
+            if (foundTrack != null) {
                 // Return the first track found
-                SpotifyTrackDto foundTrack = searchResult.getTracks().getItems().get(0);
-                log.info("Found Spotify track for query '{}': ID={}, Name='{}'", cleanedQuery, foundTrack.getId(), foundTrack.getName());
+                log.debug("Found Spotify track for query '{}': ID={}, Name='{}'", cleanedQuery, foundTrack.getId(), foundTrack.getName());
+                found = true;
                 return Optional.of(foundTrack);
             } else {
                 log.warn("No Spotify track found for query: '{}'", cleanedQuery);
@@ -75,20 +110,180 @@ public class SpotifyApiService {
             }
 
         } catch (WebClientResponseException wcre) {
+            httpStatus = wcre.getStatusCode().value();
             log.error("WebClient Error searching Spotify for query '{}': Status {}, Body {}", cleanedQuery, wcre.getStatusCode(), wcre.getResponseBodyAsString(), wcre);
             // Don't throw, failing to find is acceptable
+        } catch (ProviderUnavailableException e) {
+            log.warn("Skipped Spotify search for query '{}': {}", cleanedQuery, e.getMessage()); // Incident, no stack trace
         } catch (Exception e) {
+            TransferCancelledException.rethrowIfInterrupted(e);
             log.error("Generic Error searching Spotify for query '{}': {}", cleanedQuery, e.getMessage(), e);
             // Don't throw
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                TransferTimeline timeline = TransferTimeline.current();
+                event.playlistId = timeline != null ? timeline.playlistId() : null;
+                event.itemIndex = timeline != null ? timeline.currentItem() : -1;
+                event.queryLength = cleanedQuery.length();
+                event.httpStatus = httpStatus;
+                event.found = found;
+                event.commit();
+            }
         }
 
         return Optional.empty(); // Return empty if error or no results
     }
 
-    // --- Placeholders for Spotify write methods (getCurrentSpotifyUser, createPlaylist, addTracksToPlaylist) --
-    //-`
+    /**
+     * Searches for many queries with one token, {@code yt2spotify.spotify.search-concurrency} at a time
+     * (429s are retried by the WebClient filter, as for every call). Results are emitted in query order,
+     * each as soon as it and all before it are done, so they can be streamed. Queries that are the same
+     * after {@link #normalizeQuery} are only searched once.
+     */
+    public Flux<SpotifyBatchSearchResultDto> searchTracks(List<String> queries, String accessToken) {
+        return Flux.defer(() -> {
+            Map<String, Mono<SearchOutcome>> searches = new HashMap<>();
+            List<Mono<SpotifyBatchSearchResultDto>> results = new ArrayList<>(queries.size());
+            for (int i = 0; i < queries.size(); i++) {
+                int index = i;
+                String query = queries.get(i);
+                String cleanedQuery = query != null ? normalizeQuery(query) : "";
+                Mono<SearchOutcome> search = cleanedQuery.isEmpty()
+                        ? Mono.just(new SearchOutcome(SpotifyBatchSearchResultDto.Status.NOT_FOUND, null))
+                        : searches.computeIfAbsent(cleanedQuery, q -> batchSearch(q, accessToken));
+                results.add(search.map(outcome -> new SpotifyBatchSearchResultDto(index, query, outcome.status(), outcome.track())));
+            }
+            log.debug("Batch search: {} queries, {} distinct", queries.size(), searches.size());
+            return Flux.fromIterable(results).flatMapSequential(result -> result, searchConcurrency);
+        }).contextWrite(CallPriority.capture()); // Later searches are subscribed from Reactor threads
+    }
+
+    /**
+     * One search for an already normalized query, not blocking, for callers that run several at once
+     * (see {@link TrackMatcher}). Errors are logged and end the search empty, like a miss.
+     */
+    public Mono<SpotifyTrackDto> searchTrackAsync(String cleanedQuery, int expectedDurationMs, String accessToken) {
+        return search(cleanedQuery, expectedDurationMs, accessToken)
+                .onErrorResume(searchFailed(cleanedQuery, null));
+    }
+
+    private record SearchOutcome(SpotifyBatchSearchResultDto.Status status, SpotifyTrackDto track) {
+    }
+
+    // Shared by every query that normalizes to the same text, hence cached
+    private Mono<SearchOutcome> batchSearch(String cleanedQuery, String accessToken) {
+        return search(cleanedQuery, 0, accessToken)
+                .map(track -> new SearchOutcome(SpotifyBatchSearchResultDto.Status.FOUND, track))
+                .defaultIfEmpty(new SearchOutcome(SpotifyBatchSearchResultDto.Status.NOT_FOUND, null))
+                .onErrorResume(searchFailed(cleanedQuery, new SearchOutcome(SpotifyBatchSearchResultDto.Status.ERROR, null)))
+                .cache();
+    }
+
+    /** Error handler of the non-blocking searches: logs the failure and ends with the fallback (or empty). */
+    private static <T> Function<Throwable, Mono<T>> searchFailed(String cleanedQuery, T fallback) {
+        return e -> {
+            if (e instanceof ProviderUnavailableException) {
+                log.warn("Skipped Spotify search for query '{}': {}", cleanedQuery, e.getMessage());
+            } else if (e instanceof WebClientResponseException wcre) {
+                log.error("WebClient Error searching Spotify for query '{}': Status {}, Body {}", cleanedQuery, wcre.getStatusCode(), wcre.getResponseBodyAsString());
+            } else {
+                log.error("Generic Error searching Spotify for query '{}': {}", cleanedQuery, e.getMessage());
+            }
+            return Mono.justOrEmpty(fallback);
+        };
+    }
+
+    private Mono<SpotifyTrackDto> search(String cleanedQuery, int expectedDurationMs, String accessToken) {
+        return searchResponse(cleanedQuery, expectedDurationMs, accessToken).mapNotNull(ResponseEntity::getBody);
+    }
+
+    // The chosen track (or none) along with the response status, for the JFR event of blocking searches
+    private Mono<ResponseEntity<SpotifyTrackDto>> searchResponse(String cleanedQuery, int expectedDurationMs, String accessToken) {
+        // Request only necessary fields for the track item
+        final String fields = "tracks.items(id,name,uri,duration_ms,artists(name))";
+        // Only the top result, unless there is a duration to pick candidates by
+        final int limit = expectedDurationMs > 0 ? DURATION_MATCH_CANDIDATES : 1;
+
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(spotifyApiBaseUrl + "/search")
+                .queryParam("q", cleanedQuery)
+                .queryParam("type", "track") // Search only for tracks
+                .queryParam("limit", limit)
+                .queryParam("fields", fields); // Request minimal fields
+
+        URI url = uriBuilder.encode().build().toUri(); // A URI, not a String: WebClient would encode it again ("%2520")
+        log.debug("Requesting Spotify search from URL: {}", url);
 
-    // ... existing searchTrack, getPlaylistTracks etc ...
+        // Decode the stream incrementally, keeping only the chosen track (see SpotifySearchResultDecoder)
+        return this.webClient.get()
+                .uri(url)
+                .headers(h -> h.setBearerAuth(accessToken))
+                .retrieve()
+                .toEntityFlux(DataBuffer.class)
+                .flatMap(response -> response.getBody()
+                        .collect(() -> new SpotifySearchResultDecoder(expectedDurationMs), StreamingJsonDecoder::feed)
+                        .map(decoder -> new ResponseEntity<>(decoder.finish(), response.getStatusCode())));
+    }
+
+    /**
+     * What {@link #findPlayableTracks} found out about stored tracks, in the user's market: the ones playable
+     * there (requested ID -> ID to use there, which differs when Spotify relinked the track) and the ones
+     * that exist but aren't playable there. {@code checked} holds the IDs of every batch Spotify answered;
+     * the IDs of a failed batch are in none of the three.
+     */
+    public record TrackLookup(Map<String, String> playable, Set<String> unplayable, Set<String> checked) {
+
+        /** Checked, but no longer on Spotify at all: gone for every user, not just in this market. */
+        public List<String> gone() {
+            return checked.stream().filter(id -> !playable.containsKey(id) && !unplayable.contains(id)).toList();
+        }
+    }
+
+    /**
+     * Checks previously matched tracks with the batch {@code GET /tracks?ids=} endpoint, 50 IDs per call,
+     * instead of searching for each of them again. A batch that fails is logged and left unchecked.
+     *
+     * @param trackIds    Spotify track IDs to check.
+     * @param accessToken The user's Spotify OAuth access token.
+     * @return The result per track, for the market of the token's user.
+     */
+    public TrackLookup findPlayableTracks(List<String> trackIds, String accessToken) {
+        Map<String, String> playable = new HashMap<>();
+        Set<String> unplayable = new HashSet<>();
+        Set<String> checked = new HashSet<>();
+        for (List<String> batch : batches(trackIds, TRACKS_LOOKUP_BATCH_SIZE)) {
+            String url = UriComponentsBuilder.fromUriString(spotifyApiBaseUrl + "/tracks")
+                    .queryParam("ids", String.join(",", batch))
+                    .queryParam("market", "from_token") // Makes Spotify report is_playable and relink tracks
+                    .encode()
+                    .toUriString();
+            try {
+                SpotifyTracksLookupDecoder.Tracks found = this.webClient.get()
+                        .uri(url)
+                        .headers(h -> h.setBearerAuth(accessToken))
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class)
+                        .collect(SpotifyTracksLookupDecoder::new, StreamingJsonDecoder::feed)
+                        .map(StreamingJsonDecoder::finish)
+                        .block();
+                if (found != null) {
+                    playable.putAll(found.playable());
+                    unplayable.addAll(found.unplayable());
+                    checked.addAll(batch);
+                }
+            } catch (WebClientResponseException wcre) {
+                log.error("WebClient Error looking up {} Spotify tracks: Status {}, Body {}", batch.size(), wcre.getStatusCode(), wcre.getResponseBodyAsString(), wcre);
+                // Don't throw, these tracks are searched for again
+            } catch (ProviderUnavailableException e) {
+                log.warn("Skipped looking up {} Spotify tracks: {}", batch.size(), e.getMessage());
+            } catch (Exception e) {
+                TransferCancelledException.rethrowIfInterrupted(e);
+                log.error("Generic Error looking up {} Spotify tracks: {}", batch.size(), e.getMessage(), e);
+            }
+        }
+        log.debug("{} of {} stored Spotify tracks are still playable ({} checked)", playable.size(), trackIds.size(), checked.size());
+        return new TrackLookup(playable, unplayable, checked);
+    }
 
     // --- NEW METHOD: Get Current Spotify User ID ---
     /**
@@ -98,7 +293,7 @@ public class SpotifyApiService {
      */
     public SpotifyUserDto getCurrentSpotifyUser(String accessToken) {
         log.info("Fetching current Spotify user profile (for ID)...");
-        String url = SPOTIFY_API_BASE_URL + "/me?fields=id"; // Only request the ID
+        String url = spotifyApiBaseUrl + "/me?fields=id"; // Only request the ID
 
         try {
             SpotifyUserDto userDto = this.webClient.get()
@@ -119,11 +314,36 @@ public class SpotifyApiService {
             log.error("WebClient Error fetching Spotify user profile: Status {}, Body {}", wcre.getStatusCode(), wcre.getResponseBodyAsString(), wcre);
             throw new RuntimeException("API Error fetching Spotify user profile: " + wcre.getMessage(), wcre);
         } catch (Exception e) {
+            TransferCancelledException.rethrowIfInterrupted(e);
             log.error("Generic Error fetching Spotify user profile: {}", e.getMessage(), e);
             throw new RuntimeException("Error fetching Spotify user profile: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Number of tracks in a playlist, for appending to it at an explicit position.
+     *
+     * @throws RuntimeException if the playlist can't be read (deleted, or no longer the user's).
+     */
+    public int getPlaylistTrackCount(String playlistId, String accessToken) {
+        String url = spotifyApiBaseUrl + "/playlists/" + playlistId + "?fields=tracks.total";
+        try {
+            SpotifyPlaylistDto playlist = this.webClient.get()
+                    .uri(url)
+                    .headers(h -> h.setBearerAuth(accessToken))
+                    .retrieve()
+                    .bodyToMono(SpotifyPlaylistDto.class)
+                    .block();
+            if (playlist == null || playlist.getTracks() == null) {
+                throw new RuntimeException("Spotify returned no track count for playlist " + playlistId);
+            }
+            return playlist.getTracks().getTotal();
+        } catch (WebClientResponseException wcre) {
+            log.error("WebClient Error fetching Spotify playlist {}: Status {}, Body {}", playlistId, wcre.getStatusCode(), wcre.getResponseBodyAsString());
+            throw new RuntimeException("API Error fetching Spotify playlist " + playlistId + ": " + wcre.getMessage(), wcre);
+        }
+    }
+
     // --- NEW METHOD: Create Spotify Playlist ---
     /**
      * Creates a new playlist for a given Spotify user.
@@ -136,7 +356,7 @@ public class SpotifyApiService {
      */
     public SpotifyPlaylistDto createPlaylist(String userId, String name, String description, boolean isPublic, String accessToken) {
         log.info("Creating Spotify playlist '{}' for user ID: {}", name, userId);
-        String url = SPOTIFY_API_BASE_URL + "/users/" + userId + "/playlists";
+        String url = spotifyApiBaseUrl + "/users/" + userId + "/playlists";
 
         SpotifyCreatePlaylistRequestDto requestBody = new SpotifyCreatePlaylistRequestDto(name, description, isPublic, false); // Name, Desc, Public, Collaborative
 
@@ -163,64 +383,12 @@ public class SpotifyApiService {
             log.error("WebClient Error creating Spotify playlist '{}': Status {}, Body {}", name, wcre.getStatusCode(), wcre.getResponseBodyAsString(), wcre);
             throw new RuntimeException("API Error creating Spotify playlist '" + name + "': " + wcre.getMessage(), wcre);
         } catch (Exception e) {
+            TransferCancelledException.rethrowIfInterrupted(e);
             log.error("Generic Error creating Spotify playlist '{}': {}", name, e.getMessage(), e);
             throw new RuntimeException("Error creating Spotify playlist '" + name + "': " + e.getMessage(), e);
         }
     }
 
-    // --- NEW METHOD: Add Tracks to Spotify Playlist ---
-    /**
-     * Adds tracks to a specific Spotify playlist. Handles batching (max 100 per request).
-     * @param playlistId The ID of the target Spotify playlist.
-     * @param trackUris A List of Spotify Track URIs (e.g., "spotify:track:xxxx").
-     * @param accessToken The user's Spotify OAuth access token.
-     */
-    public void addTracksToPlaylist(String playlistId, List<String> trackUris, String accessToken) {
-        if (trackUris == null || trackUris.isEmpty()) {
-            log.warn("No track URIs provided to add to playlist {}", playlistId);
-            return;
-        }
-        log.info("Attempting to add {} tracks to Spotify playlist ID: {}", trackUris.size(), playlistId);
-        String url = SPOTIFY_API_BASE_URL + "/playlists/" + playlistId + "/tracks";
-        int batchSize = 100; // Spotify API limit
-
-        // Process in batches of 100
-        for (int i = 0; i < trackUris.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, trackUris.size());
-            List<String> batch = trackUris.subList(i, end);
-            Map<String, Object> requestBody = Collections.singletonMap("uris", batch);
-            log.debug("Adding batch of {} tracks ({} - {}) to playlist {}", batch.size(), i+1, end, playlistId);
-
-            try {
-                SpotifySnapshotResponseDto response = this.webClient.post()
-                        .uri(url)
-                        .headers(h -> h.setBearerAuth(accessToken))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .bodyValue(requestBody)
-                        .retrieve()
-                        .bodyToMono(SpotifySnapshotResponseDto.class)
-                        .block(); // Block for simplicity, could make reactive
-
-                if (response != null && response.getSnapshot_id() != null) {
-                    log.debug("Successfully added batch ({} tracks) to playlist {}. Snapshot ID: {}", batch.size(), playlistId, response.getSnapshot_id());
-                } else {
-                    log.warn("Adding batch ({} tracks) to playlist {} might have failed or returned unexpected response.", batch.size(), playlistId);
-                    // Decide if we should stop or continue on partial failure
-                }
-                // Optional: Add delay between batches if hitting rate limits
-                // if (end < trackUris.size()) { try { Thread.sleep(200); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); } }
-
-            } catch (WebClientResponseException wcre) {
-                log.error("WebClient Error adding tracks batch to playlist {}: Status {}, Body {}", playlistId, wcre.getStatusCode(), wcre.getResponseBodyAsString(), wcre);
-                // Decide if we should stop or continue on batch failure
-                throw new RuntimeException("API Error adding tracks to playlist " + playlistId + ": " + wcre.getMessage(), wcre); // Rethrow for now
-            } catch (Exception e) {
-                log.error("Generic Error adding tracks batch to playlist {}: {}", playlistId, e.getMessage(), e);
-                // Decide if we should stop or continue on batch failure
-                throw new RuntimeException("Error adding tracks to playlist " + playlistId + ": " + e.getMessage(), e); // Rethrow for now
-            }
-        } // End batch loop
-        log.info("Finished adding all batches (total {} URIs) to playlist {}", trackUris.size(), playlistId);
-    }
+    // Adding tracks lives in SpotifyPlaylistWriter (concurrent, position-based batches)
 
 }
@@ -0,0 +1,351 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyPlaylistDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifySnapshotResponseDto;
+import com.nexon.yt2spotify.jfr.SpotifyAddTracksEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds tracks to a Spotify playlist with several 100-URI batches in flight at once, keeping the
+ * requested order.
+ * <p>
+ * Every batch is sent with an explicit {@code position}: the number of tracks of all earlier batches
+ * that are (or will be) in the playlist. Spotify rejects a position past the end of the playlist, so a
+ * batch that overtakes an earlier, still in-flight one is bounced with a 400 and simply re-sent once
+ * the earlier batch lands. The playlist therefore only ever grows as a prefix of the requested order,
+ * whatever order the server applies the requests in.
+ * <p>
+ * Transient failures (5xx, I/O, 429 after the filter's own retries) are retried per batch with
+ * backoff; only the failed batches are re-sent. A batch that still fails is reported in
+ * {@link PlaylistWriteResult#failedUris()}, and the positions of later batches close the gap.
+ * Re-sending is only safe for a request Spotify never applied: a 429, a failed connect, or a call the
+ * guard didn't let out. After any other failure (a 5xx, a response timeout, a dropped connection) the
+ * batch may have landed all the same, so once the batches before it are resolved, the playlist's
+ * {@code tracks.total} is read first: if the batch is there it counts as committed and is not sent again.
+ * <p>
+ * Interrupting the writing thread (a cancelled transfer) stops it: no further batch is sent, the
+ * ones in flight are cancelled and reported as not committed, and the batches already committed are
+ * returned as usual. The thread's interrupt flag stays set.
+ * <p>
+ * Intended for playlists this app is the only writer of while it writes: one it just created, or a
+ * watched playlist it appends a sync's new tracks to.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SpotifyPlaylistWriter {
+
+    /** Progress callback, invoked on the calling thread as batches are acknowledged. */
+    @FunctionalInterface
+    public interface Listener {
+        void batchCommitted(int fromIndex, int count, String snapshotId);
+    }
+
+    private static final long RETRY_BACKOFF_MILLIS = 250;
+    // Spacing between consecutive sends, so requests reach the server in the order they were sent
+    // (sent in the same instant they race each other and mostly get bounced)
+    private static final long LAUNCH_SPACING_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final WebClient webClient;
+    @Value("${yt2spotify.spotify.api-base-url:https://api.spotify.com/v1}")
+    private final String spotifyApiBaseUrl;
+    @Value("${yt2spotify.spotify.write-concurrency:4}")
+    private final int concurrency; // Batches in flight per playlist
+    @Value("${yt2spotify.spotify.write-max-attempts:3}")
+    private final int maxAttempts; // Per batch, not counting out-of-order bounces
+
+    private enum BatchState { PENDING, IN_FLIGHT, COMMITTED, FAILED }
+
+    private record Outcome(int batch, int position, boolean mayOvertake, SpotifyAddTracksEvent event, int httpStatus,
+                           String snapshotId, Throwable error) {
+    }
+
+    public PlaylistWriteResult write(String playlistId, List<String> trackUris, String accessToken) {
+        return write(playlistId, trackUris, accessToken, (fromIndex, count, snapshotId) -> { });
+    }
+
+    /**
+     * Writes {@code trackUris} to the end of the playlist, in order, and blocks until every batch is
+     * committed or has given up.
+     */
+    public PlaylistWriteResult write(String playlistId, List<String> trackUris, String accessToken, Listener listener) {
+        return write(playlistId, trackUris, accessToken, 0, listener);
+    }
+
+    /**
+     * Same as {@link #write(String, List, String, Listener)} for a playlist that already holds
+     * {@code startPosition} tracks, which the new ones are appended after.
+     */
+    public PlaylistWriteResult write(String playlistId, List<String> trackUris, String accessToken, int startPosition,
+                                     Listener listener) {
+        String url = spotifyApiBaseUrl + "/playlists/" + playlistId + "/tracks";
+        List<List<String>> batches = SpotifyApiService.batches(trackUris, SpotifyApiService.ADD_TRACKS_BATCH_SIZE);
+        int batchCount = batches.size();
+        BatchState[] states = new BatchState[batchCount];
+        Arrays.fill(states, BatchState.PENDING);
+        int[] attempts = new int[batchCount];
+        long[] notBefore = new long[batchCount];
+        boolean[] bounced = new boolean[batchCount];
+        boolean[] unconfirmed = new boolean[batchCount]; // The last attempt may have landed; check before re-sending
+        String[] snapshotIds = new String[batchCount];
+        Disposable[] inFlight = new Disposable[batchCount];
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        int resolved = 0;
+        int inFlightCount = 0;
+        int requests = 0;
+        int retries = 0;
+        long lastLaunch = 0;
+
+        log.info("Writing {} tracks to Spotify playlist {} in {} batches ({} in flight)",
+                trackUris.size(), playlistId, batchCount, concurrency);
+        try {
+            while (resolved < batchCount) {
+                // Launch in order. A batch waiting out a backoff, or one already bounced for overtaking,
+                // holds back the ones after it: they would only be bounced as out of range too
+                long now = System.nanoTime();
+                long nextWakeUp = Long.MAX_VALUE;
+                for (int b = 0; b < batchCount && inFlightCount < concurrency; b++) {
+                    if (states[b] == BatchState.PENDING) {
+                        if (notBefore[b] > now) {
+                            nextWakeUp = Math.min(nextWakeUp, notBefore[b]);
+                            break;
+                        }
+                        if ((bounced[b] || unconfirmed[b]) && hasUnresolvedBefore(b, states)) {
+                            break;
+                        }
+                        if (inFlightCount > 0 && now - lastLaunch < LAUNCH_SPACING_NANOS) {
+                            nextWakeUp = Math.min(nextWakeUp, lastLaunch + LAUNCH_SPACING_NANOS);
+                            break;
+                        }
+                        lastLaunch = now;
+                        bounced[b] = false;
+                        int position = startPosition + expectedPosition(b, batches, states);
+                        boolean mayOvertake = hasUnresolvedBefore(b, states);
+                        inFlight[b] = send(url, b, position, mayOvertake, unconfirmed[b], batches.get(b), accessToken, playlistId, outcomes);
+                        unconfirmed[b] = false;
+                        states[b] = BatchState.IN_FLIGHT;
+                        inFlightCount++;
+                        requests++;
+                    }
+                }
+
+                Outcome outcome = nextWakeUp == Long.MAX_VALUE
+                        ? outcomes.take()
+                        : outcomes.poll(nextWakeUp - now, TimeUnit.NANOSECONDS);
+                if (outcome == null) {
+                    continue; // A backoff expired
+                }
+                int b = outcome.batch();
+                commitEvent(outcome);
+                inFlightCount--;
+                inFlight[b] = null;
+                List<String> batch = batches.get(b);
+                int fromIndex = b * SpotifyApiService.ADD_TRACKS_BATCH_SIZE;
+
+                if (outcome.error() == null) {
+                    states[b] = BatchState.COMMITTED;
+                    snapshotIds[b] = outcome.snapshotId();
+                    resolved++;
+                    log.debug("   -> Batch {} ({} - {}) committed at position {}, snapshot {}",
+                            b, fromIndex + 1, fromIndex + batch.size(), outcome.position(), outcome.snapshotId());
+                    listener.batchCommitted(fromIndex, batch.size(), outcome.snapshotId());
+                } else if (isOutOfRange(outcome.error())
+                        && (outcome.mayOvertake() || outcome.position() != startPosition + expectedPosition(b, batches, states))) {
+                    // Overtook an earlier batch that was still in flight (or gave up since): re-send, not a failure
+                    states[b] = BatchState.PENDING;
+                    notBefore[b] = 0;
+                    bounced[b] = true;
+                } else if (isRetryable(outcome.error()) && ++attempts[b] < maxAttempts) {
+                    states[b] = BatchState.PENDING;
+                    unconfirmed[b] = !provesNotApplied(outcome.error());
+                    notBefore[b] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_BACKOFF_MILLIS << (attempts[b] - 1));
+                    retries++;
+                    log.warn("   -> Batch {} ({} - {}) failed (attempt {}/{}), retrying: {}",
+                            b, fromIndex + 1, fromIndex + batch.size(), attempts[b], maxAttempts, outcome.error().getMessage());
+                } else {
+                    states[b] = BatchState.FAILED;
+                    resolved++;
+                    log.error("   -> Batch {} ({} - {}) could not be added to playlist {}: {}",
+                            b, fromIndex + 1, fromIndex + batch.size(), playlistId, describe(outcome.error()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Disposable disposable : inFlight) {
+                if (disposable != null) {
+                    disposable.dispose();
+                }
+            }
+            // Batches acknowledged before the cancel are committed all the same
+            for (Outcome outcome = outcomes.poll(); outcome != null; outcome = outcomes.poll()) {
+                commitEvent(outcome);
+                int b = outcome.batch();
+                if (outcome.error() == null && states[b] == BatchState.IN_FLIGHT) {
+                    states[b] = BatchState.COMMITTED;
+                    snapshotIds[b] = outcome.snapshotId();
+                    listener.batchCommitted(b * SpotifyApiService.ADD_TRACKS_BATCH_SIZE, batches.get(b).size(), outcome.snapshotId());
+                }
+            }
+            // A cancelled request may still have reached Spotify; it is reported as not committed
+            log.warn("Interrupted while writing to playlist {}, stopped with {} of {} batches committed",
+                    playlistId, Arrays.stream(states).filter(state -> state == BatchState.COMMITTED).count(), batchCount);
+        }
+
+        BitSet committed = new BitSet(trackUris.size());
+        List<String> committedSnapshots = new ArrayList<>();
+        String lastSnapshotId = null; // Batches are applied in index order, so the highest committed one is the latest
+        for (int b = 0; b < batchCount; b++) {
+            int fromIndex = b * SpotifyApiService.ADD_TRACKS_BATCH_SIZE;
+            List<String> batch = batches.get(b);
+            if (states[b] == BatchState.COMMITTED) {
+                committed.set(fromIndex, fromIndex + batch.size());
+                committedSnapshots.add(snapshotIds[b]);
+                lastSnapshotId = snapshotIds[b];
+            }
+        }
+        log.info("Finished writing to playlist {}: {} of {} tracks committed, {} requests ({} retries)",
+                playlistId, committed.cardinality(), trackUris.size(), requests, retries);
+        return new PlaylistWriteResult(trackUris, committed, committedSnapshots, lastSnapshotId, requests, retries);
+    }
+
+    /**
+     * Sends a batch, or with {@code confirmFirst} reads the playlist first and only sends the batch if
+     * it didn't land in an earlier attempt. All batches before it are resolved by then, and none after
+     * it can land before it, so the playlist holds {@code position} tracks unless the batch is there.
+     */
+    private Disposable send(String url, int batchIndex, int position, boolean mayOvertake, boolean confirmFirst, List<String> batch,
+                            String accessToken, String playlistId, BlockingQueue<Outcome> outcomes) {
+        Mono<Outcome> add = Mono.defer(() -> addTracks(url, batchIndex, position, mayOvertake, batch, accessToken, playlistId));
+        Mono<Outcome> attempt = confirmFirst
+                ? landedSnapshot(playlistId, position + batch.size(), accessToken)
+                        .map(snapshotId -> {
+                            log.info("   -> Batch {} landed in playlist {} before its failure, not sent again", batchIndex, playlistId);
+                            return new Outcome(batchIndex, position, mayOvertake, null, 0, snapshotId, null);
+                        })
+                        .switchIfEmpty(add)
+                : add;
+        // Subscribed on this thread, so the WebClient filter still attributes the call to the running transfer,
+        // and the transfer's priority travels with the subscription rather than the thread it runs on
+        return attempt
+                .contextWrite(CallPriority.capture())
+                .subscribe(outcomes::add, error -> outcomes.add(new Outcome(batchIndex, position, mayOvertake, null, 0, null, error)));
+    }
+
+    private Mono<Outcome> addTracks(String url, int batchIndex, int position, boolean mayOvertake, List<String> batch,
+                                    String accessToken, String playlistId) {
+        SpotifyAddTracksEvent event = new SpotifyAddTracksEvent();
+        event.begin();
+        event.playlistId = playlistId;
+        event.itemIndex = batchIndex * SpotifyApiService.ADD_TRACKS_BATCH_SIZE;
+        event.position = position;
+        event.trackCount = batch.size();
+        Map<String, Object> requestBody = Map.of("uris", batch, "position", position);
+        return this.webClient.post()
+                .uri(url)
+                .headers(h -> h.setBearerAuth(accessToken))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .toEntity(SpotifySnapshotResponseDto.class)
+                .map(response -> new Outcome(batchIndex, position, mayOvertake, event, response.getStatusCode().value(),
+                        response.hasBody() ? response.getBody().getSnapshot_id() : null, null))
+                .onErrorResume(error -> Mono.just(new Outcome(batchIndex, position, mayOvertake, event,
+                        error instanceof WebClientResponseException wcre ? wcre.getStatusCode().value() : 0, null, error)));
+    }
+
+    /** The playlist's snapshot if it holds at least {@code tracks} tracks, empty if it holds fewer. */
+    private Mono<String> landedSnapshot(String playlistId, int tracks, String accessToken) {
+        return this.webClient.get()
+                .uri(spotifyApiBaseUrl + "/playlists/" + playlistId + "?fields=snapshot_id,tracks.total")
+                .headers(h -> h.setBearerAuth(accessToken))
+                .retrieve()
+                .bodyToMono(SpotifyPlaylistDto.class)
+                .filter(playlist -> playlist.getTracks() != null && playlist.getTracks().getTotal() >= tracks)
+                .map(playlist -> playlist.getSnapshot_id() != null ? playlist.getSnapshot_id() : "");
+    }
+
+    private static void commitEvent(Outcome outcome) {
+        SpotifyAddTracksEvent event = outcome.event();
+        if (event == null) {
+            return; // The outcome of a playlist read, not of an add-tracks call
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.httpStatus = outcome.httpStatus();
+            event.commit();
+        }
+    }
+
+    /** Tracks of all earlier batches that are, or may still become, part of the playlist. */
+    private static int expectedPosition(int batch, List<List<String>> batches, BatchState[] states) {
+        int position = 0;
+        for (int b = 0; b < batch; b++) {
+            if (states[b] != BatchState.FAILED) {
+                position += batches.get(b).size();
+            }
+        }
+        return position;
+    }
+
+    private static boolean hasUnresolvedBefore(int batch, BatchState[] states) {
+        for (int b = 0; b < batch; b++) {
+            if (states[b] == BatchState.PENDING || states[b] == BatchState.IN_FLIGHT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOutOfRange(Throwable error) {
+        return error instanceof WebClientResponseException wcre && wcre.getStatusCode().value() == HttpStatus.BAD_REQUEST.value();
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException wcre) {
+            return wcre.getStatusCode().is5xxServerError() || wcre.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return error instanceof WebClientRequestException // Connection reset, timeout, ...
+                || error instanceof ProviderUnavailableException; // Circuit open or bulkhead full, worth a later attempt
+    }
+
+    /** Whether a retryable failure shows Spotify never got to apply the request, so it can be re-sent as is. */
+    private static boolean provesNotApplied(Throwable error) {
+        if (error instanceof WebClientResponseException wcre) {
+            return wcre.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        if (error instanceof WebClientRequestException) {
+            // ConnectException covers Netty's connect timeout too; a timeout or reset after that is unknown
+            Throwable cause = error.getCause();
+            return cause instanceof ConnectException || cause instanceof UnknownHostException;
+        }
+        return error instanceof ProviderUnavailableException; // Never sent
+    }
+
+    private static String describe(Throwable error) {
+        return error instanceof WebClientResponseException wcre
+                ? wcre.getStatusCode() + " " + wcre.getResponseBodyAsString()
+                : error.getMessage();
+    }
+}
@@ -0,0 +1,101 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nexon.yt2spotify.dto.sotify.SpotifyArtistDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Streams a track search response and keeps only one track (id, name, uri, duration, artist names).
+ * Albums, markets, images etc. are skipped token by token without being materialized.
+ * <p>
+ * Without an expected duration the first track is kept and the rest are not even built. With one, the
+ * track closest to it wins, as long as it is within {@link #DURATION_TOLERANCE_MS} (or 10%); if none
+ * is, the first track is still returned, like a plain search.
+ */
+public class SpotifySearchResultDecoder extends StreamingJsonDecoder<SpotifyTrackDto> {
+
+    static final int DURATION_TOLERANCE_MS = 10_000;
+
+    private static final String[] TRACK = {"tracks", "items", ARRAY_ELEMENT};
+    private static final String[] ARTIST = {"tracks", "items", ARRAY_ELEMENT, "artists", ARRAY_ELEMENT};
+
+    private final int expectedDurationMs;
+    private int trackIndex = -1;
+    private SpotifyTrackDto track; // The one being decoded, null when it is skipped
+    private SpotifyTrackDto first;
+    private SpotifyTrackDto closest;
+
+    public SpotifySearchResultDecoder() {
+        this(0);
+    }
+
+    /** @param expectedDurationMs Duration of the source video, or 0 if unknown. */
+    public SpotifySearchResultDecoder(int expectedDurationMs) {
+        this.expectedDurationMs = expectedDurationMs;
+    }
+
+    @Override
+    protected void onValue(String name, JsonToken token, JsonParser parser) throws IOException {
+        if (track == null) {
+            return;
+        }
+        if (inside(TRACK)) {
+            if (token == JsonToken.VALUE_NUMBER_INT && "duration_ms".equals(name)) {
+                track.setDurationMs(parser.getIntValue());
+            } else if (token == JsonToken.VALUE_STRING) {
+                switch (name) {
+                    case "id" -> track.setId(parser.getText());
+                    case "name" -> track.setName(parser.getText());
+                    case "uri" -> track.setUri(parser.getText());
+                    default -> {
+                    }
+                }
+            }
+        } else if (inside(ARTIST) && "name".equals(name) && token == JsonToken.VALUE_STRING) {
+            track.getArtists().get(track.getArtists().size() - 1).setName(parser.getText());
+        }
+    }
+
+    @Override
+    protected void onStartContainer(boolean array) {
+        if (array) {
+            return;
+        }
+        if (inside(TRACK)) {
+            trackIndex++;
+            if (trackIndex == 0 || expectedDurationMs > 0) {
+                track = new SpotifyTrackDto();
+                track.setArtists(new ArrayList<>(2));
+            }
+        } else if (track != null && inside(ARTIST)) {
+            track.getArtists().add(new SpotifyArtistDto());
+        }
+    }
+
+    @Override
+    protected void onEndContainer(boolean array) {
+        if (array || track == null || !inside(TRACK)) {
+            return;
+        }
+        if (first == null) {
+            first = track;
+        }
+        if (expectedDurationMs > 0 && track.getDurationMs() != null) {
+            int difference = Math.abs(track.getDurationMs() - expectedDurationMs);
+            if (difference <= Math.max(DURATION_TOLERANCE_MS, expectedDurationMs / 10)
+                    && (closest == null || difference < Math.abs(closest.getDurationMs() - expectedDurationMs))) {
+                closest = track;
+            }
+        }
+        track = null;
+    }
+
+    @Override
+    protected SpotifyTrackDto result() {
+        return closest != null ? closest : first;
+    }
+}
@@ -0,0 +1,72 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams a {@code GET /tracks?ids=} response and keeps, for every track that is playable in the
+ * requested market, the requested ID and the ID to use there. Those differ when Spotify relinked the
+ * track ({@code linked_from} holds the requested one). Tracks flagged {@code is_playable: false} are
+ * kept apart by requested ID; tracks that are gone come back as {@code null} elements, so they are the
+ * requested IDs in neither.
+ */
+public class SpotifyTracksLookupDecoder extends StreamingJsonDecoder<SpotifyTracksLookupDecoder.Tracks> {
+
+    private static final String[] TRACK = {"tracks", ARRAY_ELEMENT};
+    private static final String[] LINKED_FROM = {"tracks", ARRAY_ELEMENT, "linked_from"};
+
+    /** Requested ID -> ID to use, and the requested IDs that exist but can't be played in the market. */
+    public record Tracks(Map<String, String> playable, Set<String> unplayable) {
+    }
+
+    private final Map<String, String> playable = new HashMap<>();
+    private final Set<String> unplayable = new HashSet<>();
+    private String id;
+    private String linkedFromId;
+    private boolean isPlayable;
+
+    @Override
+    protected void onValue(String name, JsonToken token, JsonParser parser) throws IOException {
+        if (inside(TRACK)) {
+            if ("id".equals(name) && token == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else if ("is_playable".equals(name)) {
+                isPlayable = token != JsonToken.VALUE_FALSE;
+            }
+        } else if (inside(LINKED_FROM) && "id".equals(name) && token == JsonToken.VALUE_STRING) {
+            linkedFromId = parser.getText();
+        }
+    }
+
+    @Override
+    protected void onStartContainer(boolean array) {
+        if (!array && inside(TRACK)) {
+            id = null;
+            linkedFromId = null;
+            isPlayable = true; // Only reported when a market is given
+        }
+    }
+
+    @Override
+    protected void onEndContainer(boolean array) {
+        if (!array && inside(TRACK) && id != null) {
+            String requestedId = linkedFromId != null ? linkedFromId : id;
+            if (isPlayable) {
+                playable.put(requestedId, id);
+            } else {
+                unplayable.add(requestedId);
+            }
+        }
+    }
+
+    @Override
+    protected Tracks result() {
+        return new Tracks(playable, unplayable);
+    }
+}
@@ -0,0 +1,145 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Incremental JSON decoder for API response bodies.
+ * <p>
+ * Chunks of the body are fed as they arrive from the network and parsed with Jackson's non-blocking
+ * parser, then released right away. Only the current chunk and the parser's small token buffer are
+ * held, never the whole body, and subclasses keep just the fields they need instead of binding the
+ * full DTO graph.
+ * <p>
+ * Subclasses see every scalar value together with the path of containers it sits in. Array
+ * elements appear as {@code "[]"} in the path, so {@code items[0].snippet.title} is the value
+ * {@code title} inside {@code {"items", "[]", "snippet"}}.
+ *
+ * Typical use with WebClient:
+ * <pre>
+ * .retrieve()
+ * .bodyToFlux(DataBuffer.class)
+ * .collect(SomeDecoder::new, StreamingJsonDecoder::feed)
+ * .mapNotNull(StreamingJsonDecoder::finish)
+ * </pre>
+ *
+ * @param <T> What the decoder produces once the body is complete.
+ */
+public abstract class StreamingJsonDecoder<T> {
+
+    protected static final String ARRAY_ELEMENT = "[]";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int MAX_DEPTH = 32;
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final String[] path = new String[MAX_DEPTH];
+    private final boolean[] arrays = new boolean[MAX_DEPTH];
+    private int depth; // Number of open containers, the root object is path[0]
+    private String fieldName;
+
+    protected StreamingJsonDecoder() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create non-blocking JSON parser", e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses all complete tokens in the given chunk, then releases it.
+     */
+    public void feed(DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+            while (chunks.hasNext()) {
+                feeder.feedInput(chunks.next());
+                drain();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed JSON in API response: " + e.getMessage(), e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Signals the end of the body and returns the decoded result (may be null if the body had nothing of interest).
+     */
+    public T finish() {
+        try {
+            feeder.endOfInput();
+            drain();
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed JSON in API response: " + e.getMessage(), e);
+        }
+        return result();
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case FIELD_NAME -> fieldName = parser.currentName();
+                case START_OBJECT, START_ARRAY -> {
+                    if (depth == MAX_DEPTH) {
+                        throw new IOException("JSON nested deeper than " + MAX_DEPTH + " levels");
+                    }
+                    path[depth] = segment();
+                    arrays[depth] = token == JsonToken.START_ARRAY;
+                    depth++;
+                    fieldName = null;
+                    onStartContainer(token == JsonToken.START_ARRAY);
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    onEndContainer(token == JsonToken.END_ARRAY);
+                    depth--;
+                    fieldName = null;
+                }
+                default -> {
+                    onValue(segment(), token, parser);
+                    fieldName = null;
+                }
+            }
+        }
+    }
+
+    private String segment() {
+        return depth > 0 && arrays[depth - 1] ? ARRAY_ELEMENT : fieldName;
+    }
+
+    /**
+     * Whether the current position is exactly inside the given containers (root excluded).
+     * During {@link #onStartContainer} / {@link #onEndContainer} the container itself is the last one.
+     */
+    protected boolean inside(String[] containers) {
+        if (depth - 1 != containers.length) {
+            return false;
+        }
+        for (int i = 0; i < containers.length; i++) {
+            if (!containers[i].equals(path[i + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Called for every scalar value; {@code name} is the field name, or {@code "[]"} inside arrays. */
+    protected abstract void onValue(String name, JsonToken token, JsonParser parser) throws IOException;
+
+    protected void onStartContainer(boolean array) {
+    }
+
+    protected void onEndContainer(boolean array) {
+    }
+
+    protected abstract T result();
+}
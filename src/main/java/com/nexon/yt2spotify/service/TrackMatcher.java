@@ -0,0 +1,253 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyArtistDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the Spotify track for a YouTube video. The first search is the plain {@code title + channel}
+ * query; when its result looks wrong (low {@link #confidence}) or there is none, a few alternative
+ * queries are sent at once: parsed artist and title, title only, and a {@code track:/artist:}
+ * field-filtered query. The first result above {@code confidence-threshold} wins and the searches
+ * still running are cancelled; if none gets there, the best result of all is kept.
+ * <p>
+ * These extra searches are capped per transfer by a {@link HedgeBudget}, at {@code max-extra-searches}
+ * times the items to search, so hedging can't multiply a transfer's API usage.
+ * <p>
+ * Before any of that, the {@link LocalTrackIndex} of tracks matched before is asked: a known track
+ * scoring at least {@code local-index.min-confidence} is used without searching at all.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrackMatcher {
+
+    private final SpotifyApiService spotifyApiService;
+    private final LocalTrackIndex localTrackIndex;
+    @Value("${yt2spotify.transfer.hedge.confidence-threshold:0.6}")
+    private final double confidenceThreshold; // A first result scoring below this is hedged
+    @Value("${yt2spotify.transfer.hedge.max-extra-searches:0.2}")
+    private final double maxExtraSearches; // Per transfer, as a share of its items to search; 0 = no hedging
+    @Value("${yt2spotify.transfer.local-index.min-confidence:0.9}")
+    private final double localMinConfidence; // A known track scoring this is used without searching
+
+    private static final int LOCAL_CANDIDATES = 8;
+    private static final int DURATION_TOLERANCE_MS = SpotifySearchResultDecoder.DURATION_TOLERANCE_MS;
+    // "Artist - Title", with the dash variants YouTube titles use
+    private static final Pattern ARTIST_TITLE_SEPARATOR = Pattern.compile("\\s+[-\u2013\u2014|]\\s+");
+    private static final Pattern FEATURING = Pattern.compile("(?i)\\s+(feat\\.?|ft\\.?|featuring)\\s+.*$");
+    private static final Pattern CHANNEL_SUFFIX = Pattern.compile("(?i)(\\s*-\\s*topic|vevo|\\s+official)$");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> IGNORED_WORDS = Set.of("the", "a", "an", "and", "feat", "ft", "featuring",
+            "official", "video", "audio", "lyrics", "lyric", "hd", "hq", "remastered", "remaster", "topic", "vevo");
+
+    /** The track found (or null), how sure we are of it, what hedging it took, and whether the local index had it. */
+    public record Match(SpotifyTrackDto track, double confidence, String query, int hedgeSearches, boolean hedgeWon, boolean local) {
+
+        public Optional<SpotifyTrackDto> result() {
+            return Optional.ofNullable(track);
+        }
+    }
+
+    /** Artist and title as read from a video's title and channel. */
+    record ParsedTitle(String artist, String title) {
+    }
+
+    private record Candidate(String query, SpotifyTrackDto track, double confidence) {
+    }
+
+    /**
+     * Extra searches one transfer may still send. Used by the transfer thread only.
+     */
+    public static final class HedgeBudget {
+
+        private int remaining;
+
+        HedgeBudget(int searches) {
+            this.remaining = searches;
+        }
+
+        public int remaining() {
+            return remaining;
+        }
+
+        private int take(int wanted) {
+            int taken = Math.min(wanted, remaining);
+            remaining -= taken;
+            return taken;
+        }
+
+        private void refund(int searches) {
+            remaining += searches;
+        }
+    }
+
+    /** The hedging budget of a transfer that has {@code itemsToSearch} items left to search. */
+    public HedgeBudget budget(int itemsToSearch) {
+        return new HedgeBudget((int) Math.floor(Math.max(0, maxExtraSearches) * itemsToSearch));
+    }
+
+    /**
+     * Matches one video, blocking. Hedge searches are taken from {@code budget}; each of them counts
+     * once sent, even if it is then cancelled.
+     *
+     * @param expectedDurationMs Duration of the video in milliseconds, or 0 if unknown.
+     */
+    public Match match(String videoTitle, String channelTitle, int expectedDurationMs, String accessToken, HedgeBudget budget) {
+        String query = videoTitle + " " + channelTitle;
+        ParsedTitle parsed = parse(videoTitle, channelTitle);
+        Candidate known = localMatch(parsed, expectedDurationMs);
+        if (known != null) {
+            return new Match(known.track(), known.confidence(), known.query(), 0, false, true);
+        }
+        SpotifyTrackDto first = spotifyApiService.searchTrack(query, expectedDurationMs, accessToken).orElse(null);
+        double firstConfidence = first != null ? confidence(first, parsed, expectedDurationMs) : 0;
+        if (firstConfidence >= confidenceThreshold) {
+            return new Match(first, firstConfidence, query, 0, false, false);
+        }
+
+        List<String> variants = variants(parsed, SpotifyApiService.normalizeQuery(query));
+        int searches = budget.take(variants.size());
+        if (searches == 0) {
+            return new Match(first, firstConfidence, query, 0, false, false);
+        }
+        AtomicInteger sent = new AtomicInteger();
+        Candidate best = Flux.fromIterable(variants.subList(0, searches))
+                .flatMap(variant -> Mono.defer(() -> {
+                    sent.incrementAndGet();
+                    return spotifyApiService.searchTrackAsync(variant, expectedDurationMs, accessToken);
+                }).map(track -> new Candidate(variant, track, confidence(track, parsed, expectedDurationMs))), searches)
+                .takeUntil(candidate -> candidate.confidence() >= confidenceThreshold) // Cancels the searches still running
+                .reduce((a, b) -> b.confidence() > a.confidence() ? b : a)
+                .contextWrite(CallPriority.capture()) // Hedges may be sent from Reactor threads
+                .block();
+        budget.refund(searches - sent.get()); // Not sent: a result came back before they were
+        searches = sent.get();
+        if (best == null || best.confidence() <= firstConfidence) {
+            log.debug("   -> Hedged with {} searches, kept the first result ({})", searches, String.format("%.2f", firstConfidence));
+            return new Match(first, firstConfidence, query, searches, false, false);
+        }
+        log.debug("   -> Hedged with {} searches: '{}' scored {} over {}", searches, best.query(),
+                String.format("%.2f", best.confidence()), String.format("%.2f", firstConfidence));
+        return new Match(best.track(), best.confidence(), best.query(), searches, true, false);
+    }
+
+    /** The best known track, if it scores at least {@code localMinConfidence}. */
+    private Candidate localMatch(ParsedTitle parsed, int expectedDurationMs) {
+        if (!localTrackIndex.isEnabled()) {
+            return null;
+        }
+        String text = parsed.artist() + " " + parsed.title();
+        Candidate best = null;
+        for (SpotifyTrackDto track : localTrackIndex.candidates(text, LOCAL_CANDIDATES)) {
+            double confidence = confidence(track, parsed, expectedDurationMs);
+            if (confidence >= localMinConfidence && (best == null || confidence > best.confidence())) {
+                best = new Candidate(text, track, confidence);
+            }
+        }
+        if (best != null) {
+            log.debug("   -> Known track '{}' ({}), not searched", best.track().getName(), String.format("%.2f", best.confidence()));
+        }
+        return best;
+    }
+
+    /** Reads "Artist - Title" from the video title; otherwise the channel (minus "VEVO", "- Topic") is the artist. */
+    static ParsedTitle parse(String videoTitle, String channelTitle) {
+        String title = SpotifyApiService.normalizeQuery(videoTitle);
+        String channel = channelTitle != null ? CHANNEL_SUFFIX.matcher(channelTitle.trim()).replaceAll("").trim() : "";
+        String[] parts = ARTIST_TITLE_SEPARATOR.split(title, 2);
+        if (parts.length == 2 && !parts[0].isBlank() && !parts[1].isBlank()) {
+            return new ParsedTitle(parts[0].trim(), FEATURING.matcher(parts[1]).replaceAll("").trim());
+        }
+        return new ParsedTitle(channel, FEATURING.matcher(title).replaceAll("").trim());
+    }
+
+    /** The alternative queries, most specific first, without the one already searched. */
+    static List<String> variants(ParsedTitle parsed, String searchedQuery) {
+        Set<String> variants = new LinkedHashSet<>();
+        if (!parsed.artist().isEmpty()) {
+            variants.add(parsed.artist() + " " + parsed.title());
+        }
+        variants.add(parsed.title());
+        if (!parsed.artist().isEmpty()) {
+            variants.add("track:\"" + parsed.title().replace("\"", "") + "\" artist:\"" + parsed.artist().replace("\"", "") + "\"");
+        }
+        variants.remove(searchedQuery);
+        variants.removeIf(String::isBlank);
+        return new ArrayList<>(variants);
+    }
+
+    /**
+     * How well a track fits the video, from 0 to 1: the track name's words found in the video title
+     * (half of it), an artist found in the title or channel, and a duration within tolerance.
+     */
+    static double confidence(SpotifyTrackDto track, ParsedTitle parsed, int expectedDurationMs) {
+        Set<String> titleWords = words(parsed.title());
+        double titleScore = overlap(words(track.getName()), titleWords);
+
+        String source = parsed.artist() + " " + parsed.title();
+        Set<String> sourceWords = words(source);
+        String compactSource = compact(source);
+        double artistScore = 0;
+        if (track.getArtists() != null) {
+            for (SpotifyArtistDto artist : track.getArtists()) {
+                String compactArtist = compact(artist.getName());
+                double score = compactArtist.length() >= 3 && compactSource.contains(compactArtist) ? 1 // "DaftPunkVEVO"
+                        : overlap(words(artist.getName()), sourceWords);
+                artistScore = Math.max(artistScore, score);
+            }
+        }
+
+        double durationScore = 0.5; // Unknown on either side
+        if (expectedDurationMs > 0 && track.getDurationMs() != null) {
+            int difference = Math.abs(track.getDurationMs() - expectedDurationMs);
+            durationScore = difference <= Math.max(DURATION_TOLERANCE_MS, expectedDurationMs / 10) ? 1 : 0;
+        }
+        return 0.5 * titleScore + 0.35 * artistScore + 0.15 * durationScore;
+    }
+
+    /** Share of {@code words} that are in {@code in}. */
+    private static double overlap(Set<String> words, Set<String> in) {
+        if (words.isEmpty()) {
+            return 0;
+        }
+        int found = 0;
+        for (String word : words) {
+            if (in.contains(word)) {
+                found++;
+            }
+        }
+        return (double) found / words.size();
+    }
+
+    /** Lower-cased words of {@code text}, without filler such as "official" or "video". */
+    static Set<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return Set.of();
+        }
+        Set<String> words = new HashSet<>(Arrays.asList(NON_WORD.split(text.toLowerCase(Locale.ROOT))));
+        words.removeAll(IGNORED_WORDS);
+        words.remove("");
+        return words;
+    }
+
+    private static String compact(String text) {
+        return text == null ? "" : NON_WORD.matcher(text.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+}
@@ -0,0 +1,30 @@
+package com.nexon.yt2spotify.service;
+
+import reactor.core.Exceptions;
+
+/**
+ * Thrown on the transfer thread where a cancelled transfer stops (see {@link TransferJob#cancel}):
+ * the job then ends as CANCELLED with what it got done so far.
+ */
+public class TransferCancelledException extends RuntimeException {
+
+    public TransferCancelledException(String message) {
+        super(message);
+    }
+
+    public TransferCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * For the catch-alls around blocking provider calls: a call cut short by interrupting its thread
+     * (how a transfer is cancelled) has no outcome to record, so it is rethrown instead of logged as an
+     * error and reported as "not found". The thread stays interrupted.
+     */
+    static void rethrowIfInterrupted(Exception e) {
+        if (Thread.currentThread().isInterrupted() || Exceptions.unwrap(e) instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            throw new TransferCancelledException("Interrupted while waiting for a provider call", e);
+        }
+    }
+}
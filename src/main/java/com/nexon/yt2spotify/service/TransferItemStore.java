@@ -0,0 +1,384 @@
+package com.nexon.yt2spotify.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact per-job store of the items of one transfer.
+ * <p>
+ * Instead of a DTO tree and a handful of Strings per item, everything lives in a few flat arrays:
+ * <ul>
+ *     <li>video IDs packed into one long: 10 base64url chars of 6 bits plus a last char that only
+ *     ever carries 4 bits</li>
+ *     <li>matched Spotify IDs decoded from 22-char base62 into two longs (128 bits); the
+ *     {@code spotify:track:} URI is only rebuilt when a batch is sent</li>
+ *     <li>titles as UTF-8 bytes in one shared buffer, addressed by offset</li>
+ *     <li>channel and artist names interned into a per-job name table, referenced by a 16-bit slot</li>
+ *     <li>video duration in seconds as one char (0 = unknown)</li>
+ *     <li>item status as one byte</li>
+ * </ul>
+ * IDs that don't have the expected shape (including non-track URIs such as {@code spotify:local:}) are
+ * kept verbatim in a small side map, so nothing is lost.
+ * <p>
+ * Not thread-safe: written only by the transfer thread.
+ */
+public class TransferItemStore {
+
+    public enum ItemStatus {
+        PENDING, MATCHED, NOT_FOUND, ADDED, FAILED,
+        SKIPPED, // Not music, or not available on YouTube: never searched
+        SYNCED; // Handled by an earlier sync of the watched playlist: left alone
+
+        private static final ItemStatus[] VALUES = values();
+    }
+
+    /** Visitor for {@link #forEach(ItemStatus, ItemVisitor)}. */
+    @FunctionalInterface
+    public interface ItemVisitor {
+        void visit(int index);
+    }
+
+    public static final String TRACK_URI_PREFIX = "spotify:track:";
+    private static final String URI_SCHEME = "spotify:";
+
+    static final int VIDEO_ID_LENGTH = 11;
+    static final int TRACK_ID_LENGTH = 22;
+    private static final String BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final char NO_NAME = 0xFFFF;
+    private static final char OVERFLOW_NAME = 0xFFFE; // name table full, name kept in overflowNames
+
+    private int size;
+    private long[] videoIds;
+    private byte[] titleBytes;
+    private int titleBytesUsed;
+    private int[] titleEnds;
+    private char[] channelRefs;
+    private char[] artistRefs;
+    private long[] trackIdHigh;
+    private long[] trackIdLow;
+    private char[] durations;
+    private byte[] status;
+    private final int[] statusCounts = new int[ItemStatus.VALUES.length];
+
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    // IDs and names that don't fit the compact encodings, keyed by item index (negative index = artist)
+    private final Map<Integer, String> irregularVideoIds = new HashMap<>(0);
+    private final Map<Integer, String> irregularTrackIds = new HashMap<>(0);
+    private final Map<Integer, String> overflowNames = new HashMap<>(0);
+
+    public TransferItemStore(int expectedItems) {
+        int capacity = Math.max(16, expectedItems);
+        videoIds = new long[capacity];
+        titleBytes = new byte[capacity * 16];
+        titleEnds = new int[capacity];
+        channelRefs = new char[capacity];
+        artistRefs = new char[capacity];
+        trackIdHigh = new long[capacity];
+        trackIdLow = new long[capacity];
+        durations = new char[capacity];
+        status = new byte[capacity];
+    }
+
+    /** Appends an item in {@link ItemStatus#PENDING} state and returns its index. */
+    public int add(String videoId, String title, String channelTitle) {
+        if (size == status.length) {
+            grow(size + (size >> 1));
+        }
+        int index = size++;
+        if (!packVideoId(videoId, index)) {
+            irregularVideoIds.put(index, videoId);
+        }
+        byte[] encodedTitle = title != null ? title.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (titleBytesUsed + encodedTitle.length > titleBytes.length) {
+            titleBytes = Arrays.copyOf(titleBytes, Math.max(titleBytes.length + (titleBytes.length >> 1), titleBytesUsed + encodedTitle.length));
+        }
+        System.arraycopy(encodedTitle, 0, titleBytes, titleBytesUsed, encodedTitle.length);
+        titleBytesUsed += encodedTitle.length;
+        titleEnds[index] = titleBytesUsed;
+        channelRefs[index] = intern(channelTitle, index);
+        artistRefs[index] = NO_NAME;
+        statusCounts[ItemStatus.PENDING.ordinal()]++;
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String videoId(int index) {
+        checkIndex(index);
+        String irregular = irregularVideoIds.isEmpty() ? null : irregularVideoIds.get(index);
+        return irregular != null ? irregular : unpackVideoId(videoIds[index]);
+    }
+
+    public String title(int index) {
+        checkIndex(index);
+        int start = index == 0 ? 0 : titleEnds[index - 1];
+        return new String(titleBytes, start, titleEnds[index] - start, StandardCharsets.UTF_8);
+    }
+
+    public String channelTitle(int index) {
+        checkIndex(index);
+        return name(channelRefs[index], index);
+    }
+
+    /** First artist of the matched track, or null if the item has no match. */
+    public String artistName(int index) {
+        checkIndex(index);
+        return name(artistRefs[index], -index - 1);
+    }
+
+    /** Video duration in seconds, or 0 if unknown. */
+    public int durationSeconds(int index) {
+        checkIndex(index);
+        return durations[index];
+    }
+
+    public void setDurationSeconds(int index, int seconds) {
+        checkIndex(index);
+        durations[index] = (char) Math.clamp(seconds, 0, Character.MAX_VALUE); // 18h is plenty for a track
+    }
+
+    public ItemStatus status(int index) {
+        checkIndex(index);
+        return ItemStatus.VALUES[status[index]];
+    }
+
+    public int count(ItemStatus itemStatus) {
+        return statusCounts[itemStatus.ordinal()];
+    }
+
+    /** Spotify track ID of a matched (or added) item, or null. */
+    public String trackId(int index) {
+        checkIndex(index);
+        byte itemStatus = status[index];
+        if (itemStatus != ItemStatus.MATCHED.ordinal() && itemStatus != ItemStatus.ADDED.ordinal()) {
+            return null;
+        }
+        String irregular = irregularTrackIds.isEmpty() ? null : irregularTrackIds.get(index);
+        if (irregular != null) {
+            return irregular.startsWith(TRACK_URI_PREFIX) ? irregular.substring(TRACK_URI_PREFIX.length()) : irregular;
+        }
+        return encodeBase62(trackIdHigh[index], trackIdLow[index]);
+    }
+
+    /** Track URI of a matched (or added) item, or null. A URI that was kept verbatim comes back unchanged. */
+    public String trackUri(int index) {
+        String trackId = trackId(index);
+        if (trackId == null) {
+            return null;
+        }
+        String irregular = irregularTrackIds.isEmpty() ? null : irregularTrackIds.get(index);
+        return irregular != null && irregular.startsWith(URI_SCHEME) ? irregular : TRACK_URI_PREFIX + trackId;
+    }
+
+    /** Records a search hit. Accepts either a {@code spotify:track:} URI or a bare track ID. */
+    public void matched(int index, String trackUri, String artistName) {
+        checkIndex(index);
+        String trackId = trackUri.startsWith(TRACK_URI_PREFIX) ? trackUri.substring(TRACK_URI_PREFIX.length()) : trackUri;
+        irregularTrackIds.remove(index);
+        if (!decodeBase62(trackId, index)) {
+            irregularTrackIds.put(index, trackUri);
+        }
+        artistRefs[index] = intern(artistName, -index - 1);
+        setStatus(index, ItemStatus.MATCHED);
+    }
+
+    public void setStatus(int index, ItemStatus itemStatus) {
+        checkIndex(index);
+        statusCounts[status[index]]--;
+        statusCounts[itemStatus.ordinal()]++;
+        status[index] = (byte) itemStatus.ordinal();
+    }
+
+    /** Visits, in playlist order, the index of every item currently in the given status. */
+    public void forEach(ItemStatus itemStatus, ItemVisitor visitor) {
+        byte wanted = (byte) itemStatus.ordinal();
+        for (int i = 0; i < size; i++) {
+            if (status[i] == wanted) {
+                visitor.visit(i);
+            }
+        }
+    }
+
+    /** Indexes of the items in the given status, in playlist order. */
+    public int[] indexesOf(ItemStatus itemStatus) {
+        int[] indexes = new int[count(itemStatus)];
+        int n = 0;
+        byte wanted = (byte) itemStatus.ordinal();
+        for (int i = 0; i < size && n < indexes.length; i++) {
+            if (status[i] == wanted) {
+                indexes[n++] = i;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Read-only view of the track URIs of the given items. Each URI is built on access, so handing the
+     * view to a batch writer only materializes the batch being sent.
+     */
+    public List<String> trackUris(int[] indexes) {
+        return new AbstractList<>() {
+            @Override
+            public String get(int i) {
+                return trackUri(indexes[i]);
+            }
+
+            @Override
+            public int size() {
+                return indexes.length;
+            }
+        };
+    }
+
+    /** Track URIs of {@code indexes[from, to)}, e.g. one add-tracks batch. */
+    public List<String> trackUris(int[] indexes, int from, int to) {
+        List<String> uris = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            uris.add(trackUri(indexes[i]));
+        }
+        return uris;
+    }
+
+    /** Drops the spare capacity left by growth, once all items are in. */
+    public void trimToSize() {
+        if (status.length > size) {
+            grow(size);
+        }
+        if (titleBytes.length > titleBytesUsed) {
+            titleBytes = Arrays.copyOf(titleBytes, titleBytesUsed);
+        }
+    }
+
+    private void grow(int capacity) {
+        videoIds = Arrays.copyOf(videoIds, capacity);
+        titleEnds = Arrays.copyOf(titleEnds, capacity);
+        channelRefs = Arrays.copyOf(channelRefs, capacity);
+        artistRefs = Arrays.copyOf(artistRefs, capacity);
+        trackIdHigh = Arrays.copyOf(trackIdHigh, capacity);
+        trackIdLow = Arrays.copyOf(trackIdLow, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        status = Arrays.copyOf(status, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Item " + index + " out of " + size);
+        }
+    }
+
+    private char intern(String name, int overflowKey) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        Integer ref = nameIndex.get(name);
+        if (ref == null) {
+            if (names.size() == OVERFLOW_NAME) {
+                overflowNames.put(overflowKey, name);
+                return OVERFLOW_NAME;
+            }
+            ref = names.size();
+            names.add(name);
+            nameIndex.put(name, ref);
+        }
+        return (char) ref.intValue();
+    }
+
+    private String name(char ref, int overflowKey) {
+        return switch (ref) {
+            case NO_NAME -> null;
+            case OVERFLOW_NAME -> overflowNames.get(overflowKey);
+            default -> names.get(ref);
+        };
+    }
+
+    /** Packs an 11-char video ID into 64 bits; false if it doesn't have that shape. */
+    private boolean packVideoId(String videoId, int index) {
+        if (videoId == null || videoId.length() != VIDEO_ID_LENGTH) {
+            return false;
+        }
+        long packed = 0;
+        for (int i = 0; i < VIDEO_ID_LENGTH - 1; i++) {
+            int digit = BASE64URL.indexOf(videoId.charAt(i));
+            if (digit < 0) {
+                return false;
+            }
+            packed = packed << 6 | digit;
+        }
+        // The last char encodes the remaining 4 bits of a 64-bit ID, so it is always a multiple of 4
+        int last = BASE64URL.indexOf(videoId.charAt(VIDEO_ID_LENGTH - 1));
+        if (last < 0 || (last & 3) != 0) {
+            return false;
+        }
+        videoIds[index] = packed << 4 | last >> 2;
+        return true;
+    }
+
+    private static String unpackVideoId(long packed) {
+        char[] chars = new char[VIDEO_ID_LENGTH];
+        chars[VIDEO_ID_LENGTH - 1] = BASE64URL.charAt((int) (packed & 0xF) << 2);
+        packed >>>= 4;
+        for (int i = VIDEO_ID_LENGTH - 2; i >= 0; i--) {
+            chars[i] = BASE64URL.charAt((int) (packed & 0x3F));
+            packed >>>= 6;
+        }
+        return new String(chars);
+    }
+
+    /** Decodes a 22-char base62 ID into 128 bits; false if it isn't one (or doesn't fit). */
+    private boolean decodeBase62(String trackId, int index) {
+        if (trackId.length() != TRACK_ID_LENGTH) {
+            return false;
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < TRACK_ID_LENGTH; i++) {
+            int digit = BASE62.indexOf(trackId.charAt(i));
+            if (digit < 0 || Math.unsignedMultiplyHigh(high, 62) != 0) {
+                return false;
+            }
+            long carry = Math.unsignedMultiplyHigh(low, 62);
+            long newHigh = high * 62 + carry;
+            if (Long.compareUnsigned(newHigh, high * 62) < 0) {
+                return false;
+            }
+            low *= 62;
+            long newLow = low + digit;
+            if (Long.compareUnsigned(newLow, low) < 0) {
+                if (newHigh == -1L) {
+                    return false;
+                }
+                newHigh++;
+            }
+            high = newHigh;
+            low = newLow;
+        }
+        trackIdHigh[index] = high;
+        trackIdLow[index] = low;
+        return true;
+    }
+
+    static String encodeBase62(long high, long low) {
+        // 128-bit long division by 62, using 32-bit limbs so each step fits a long
+        long[] limbs = {high >>> 32, high & 0xFFFFFFFFL, low >>> 32, low & 0xFFFFFFFFL};
+        char[] chars = new char[TRACK_ID_LENGTH];
+        for (int pos = TRACK_ID_LENGTH - 1; pos >= 0; pos--) {
+            long remainder = 0;
+            for (int l = 0; l < limbs.length; l++) {
+                long current = (remainder << 32) | limbs[l];
+                limbs[l] = current / 62;
+                remainder = current % 62;
+            }
+            chars[pos] = BASE62.charAt((int) remainder);
+        }
+        return new String(chars);
+    }
+}
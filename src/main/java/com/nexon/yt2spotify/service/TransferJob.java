@@ -0,0 +1,323 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.transfer.TransferItemDto;
+import com.nexon.yt2spotify.dto.transfer.TransferJobDto;
+import com.nexon.yt2spotify.dto.transfer.TransferProgressEventDto;
+import com.nexon.yt2spotify.dto.transfer.TransferTimelineDto;
+import lombok.AccessLevel;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory state of one YouTube -> Spotify transfer. Written by the transfer thread,
+ * read by the API, so the mutable fields are volatile and only ever set by one writer.
+ * <p>
+ * {@link #cancel} is the exception: any thread may call it. It interrupts the transfer thread, so a
+ * blocked call is cancelled at once, and the transfer stops at its next check.
+ */
+@Getter
+public class TransferJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id;
+    private final String ownerName;
+    private final String youtubePlaylistId;
+    private final boolean preview; // Match preview: fetches and matches, writes nothing to Spotify
+    private final String previewJobId; // The preview whose matches this transfer takes over, or null
+    private final Long watchId; // Sync of this watched playlist: only its new videos, appended; or null
+    private final Instant createdAt = Instant.now();
+    private final TransferTimeline timeline;
+    private final TransferItemStore items = new TransferItemStore(64); // Written by the transfer thread only
+    @Getter(AccessLevel.NONE)
+    private final TransferProgressPublisher progress = new TransferProgressPublisher();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile TransferTimeline.Stage stage;
+    private volatile String spotifyPlaylistId;
+    private volatile String spotifySnapshotId;
+    private volatile int totalItems;
+    private volatile int processedItems;
+    private volatile int matchedCount;
+    private volatile int notFoundCount;
+    private volatile int skippedCount;
+    private volatile int addedCount;
+    private volatile int hedgedItems; // Items searched again with alternative queries
+    private volatile int hedgeSearches;
+    private volatile int hedgeWins; // Hedged items where an alternative query found a better match
+    private volatile int localMatches; // Items matched from the local track index, without searching
+    private volatile int alreadySyncedCount; // Items of a sync that an earlier sync handled
+    private volatile Instant finishedAt;
+    private volatile String failureReason;
+    private volatile String cancelReason; // Set once cancel() was called, the transfer stops at its next check
+    private volatile String commitJobId; // Preview only: the transfer that committed it, set once
+    @Getter(AccessLevel.NONE)
+    private Thread runner; // The thread running the transfer, guarded by this
+
+    public TransferJob(String id, String ownerName, String youtubePlaylistId, int timelineCapacity) {
+        this(id, ownerName, youtubePlaylistId, timelineCapacity, false, null);
+    }
+
+    public TransferJob(String id, String ownerName, String youtubePlaylistId, int timelineCapacity,
+                       boolean preview, String previewJobId) {
+        this(id, ownerName, youtubePlaylistId, timelineCapacity, preview, previewJobId, null, null);
+    }
+
+    /** A sync of a watched playlist, into its Spotify playlist (null: the sync creates one). */
+    public TransferJob(String id, String ownerName, String youtubePlaylistId, int timelineCapacity,
+                       long watchId, String spotifyPlaylistId) {
+        this(id, ownerName, youtubePlaylistId, timelineCapacity, false, null, watchId, spotifyPlaylistId);
+    }
+
+    private TransferJob(String id, String ownerName, String youtubePlaylistId, int timelineCapacity,
+                        boolean preview, String previewJobId, Long watchId, String spotifyPlaylistId) {
+        this.id = id;
+        this.ownerName = ownerName;
+        this.youtubePlaylistId = youtubePlaylistId;
+        this.preview = preview;
+        this.previewJobId = previewJobId;
+        this.watchId = watchId;
+        this.spotifyPlaylistId = spotifyPlaylistId;
+        this.timeline = new TransferTimeline(youtubePlaylistId, timelineCapacity);
+    }
+
+    public boolean isSync() {
+        return watchId != null;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelReason != null;
+    }
+
+    /**
+     * Asks the transfer to stop: a running one is interrupted, which cancels the call it is blocked on
+     * (freeing its bulkhead permit and rate budget), and ends as CANCELLED at its next check, keeping
+     * the tracks already added. A queued one ends as soon as it starts.
+     *
+     * @return False if the job had already finished.
+     */
+    public synchronized boolean cancel(String reason) {
+        if (isFinished()) {
+            return false;
+        }
+        if (cancelReason == null) {
+            cancelReason = reason;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+        return true;
+    }
+
+    /** Claims a preview for the transfer that commits it; false if another commit claimed it first. */
+    synchronized boolean claimCommit(String jobId) {
+        if (commitJobId != null) {
+            return false;
+        }
+        commitJobId = jobId;
+        return true;
+    }
+
+    /** Throws {@link TransferCancelledException} if the job was cancelled; called where a transfer may stop. */
+    void throwIfCancelled() {
+        String reason = cancelReason;
+        if (reason != null) {
+            throw new TransferCancelledException(reason);
+        }
+    }
+
+    synchronized void markRunning() {
+        runner = Thread.currentThread();
+        status = Status.RUNNING;
+    }
+
+    /**
+     * Called by the transfer thread when it is done with the job: no interrupt reaches the thread after
+     * this, and one that arrived late is cleared, so the next task on the thread isn't hit by it.
+     */
+    synchronized void detach() {
+        if (runner == Thread.currentThread()) {
+            runner = null;
+            Thread.interrupted();
+        }
+    }
+
+    void setSpotifyPlaylistId(String spotifyPlaylistId) {
+        this.spotifyPlaylistId = spotifyPlaylistId;
+    }
+
+    void setSpotifySnapshotId(String spotifySnapshotId) {
+        this.spotifySnapshotId = spotifySnapshotId;
+    }
+
+    void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+
+    /** Moves on to the next stage, unless the job was cancelled: stage boundaries are where a transfer stops. */
+    void enterStage(TransferTimeline.Stage stage) {
+        throwIfCancelled();
+        timeline.enterStage(stage);
+        this.stage = stage;
+        progress.publish(() -> event(TransferProgressEventDto.Type.STAGE_CHANGED).build());
+    }
+
+    void itemProcessed(int index, boolean matched) {
+        processedItems++;
+        if (matched) {
+            matchedCount++;
+        } else {
+            notFoundCount++;
+        }
+        progress.publish(() -> event(matched ? TransferProgressEventDto.Type.ITEM_MATCHED : TransferProgressEventDto.Type.ITEM_NOT_FOUND)
+                .itemIndex(index)
+                .itemTitle(items.title(index))
+                .build());
+    }
+
+    void itemHedged(int searches, boolean won) {
+        hedgedItems++;
+        hedgeSearches += searches;
+        if (won) {
+            hedgeWins++;
+        }
+    }
+
+    void itemMatchedLocally() {
+        localMatches++;
+    }
+
+    void itemsAlreadySynced(int count) {
+        processedItems += count;
+        alreadySyncedCount += count;
+    }
+
+    void itemSkipped(int index) {
+        processedItems++;
+        skippedCount++;
+        progress.publish(() -> event(TransferProgressEventDto.Type.ITEM_SKIPPED)
+                .itemIndex(index)
+                .itemTitle(items.title(index))
+                .build());
+    }
+
+    void tracksAdded(int count) {
+        addedCount += count;
+        progress.publish(() -> event(TransferProgressEventDto.Type.BATCH_ADDED).batchSize(count).build());
+    }
+
+    void complete() {
+        timeline.finish();
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+        progress.finish(event(TransferProgressEventDto.Type.FINISHED).build());
+    }
+
+    void cancelled() {
+        timeline.finish();
+        failureReason = cancelReason;
+        finishedAt = Instant.now();
+        status = Status.CANCELLED;
+        progress.finish(event(TransferProgressEventDto.Type.FINISHED).build());
+    }
+
+    void fail(String reason) {
+        timeline.finish();
+        failureReason = reason;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+        progress.finish(event(TransferProgressEventDto.Type.FINISHED).build());
+    }
+
+    /**
+     * Progress of this job as it happens, starting with a snapshot of where it is now. Completes after
+     * the {@code FINISHED} event; for a job that is already over that event is all there is.
+     */
+    public Flux<TransferProgressEventDto> progressEvents() {
+        return progress.events(() -> event(isFinished()
+                ? TransferProgressEventDto.Type.FINISHED : TransferProgressEventDto.Type.SNAPSHOT).build());
+    }
+
+    private TransferProgressEventDto.TransferProgressEventDtoBuilder event(TransferProgressEventDto.Type type) {
+        TransferTimeline.Stage currentStage = stage;
+        return TransferProgressEventDto.builder()
+                .type(type)
+                .jobId(id)
+                .status(status.name())
+                .stage(currentStage != null ? currentStage.name() : null)
+                .totalItems(totalItems)
+                .processedItems(processedItems)
+                .matchedCount(matchedCount)
+                .notFoundCount(notFoundCount)
+                .skippedCount(skippedCount)
+                .addedCount(addedCount)
+                .failureReason(failureReason);
+    }
+
+    public TransferJobDto toDto() {
+        return TransferJobDto.builder()
+                .jobId(id)
+                .status(status.name())
+                .youtubePlaylistId(youtubePlaylistId)
+                .preview(preview ? Boolean.TRUE : null)
+                .previewJobId(previewJobId)
+                .commitJobId(commitJobId)
+                .watchId(watchId)
+                .spotifyPlaylistId(spotifyPlaylistId)
+                .spotifySnapshotId(spotifySnapshotId)
+                .totalItems(totalItems)
+                .processedItems(processedItems)
+                .matchedCount(matchedCount)
+                .notFoundCount(notFoundCount)
+                .skippedCount(skippedCount)
+                .addedCount(addedCount)
+                .hedgedItems(hedgedItems)
+                .hedgeSearches(hedgeSearches)
+                .hedgeWins(hedgeWins)
+                .localMatches(localMatches)
+                .alreadySyncedCount(alreadySyncedCount)
+                .createdAt(createdAt)
+                .finishedAt(finishedAt)
+                .failureReason(failureReason)
+                .cancelRequested(cancelReason != null && !isFinished() ? Boolean.TRUE : null)
+                .build();
+    }
+
+    /**
+     * Every item with its outcome, in playlist order. Only for a finished job: the item store is
+     * written by the transfer thread without locking.
+     */
+    public List<TransferItemDto> itemDtos() {
+        if (!isFinished()) {
+            throw new IllegalStateException("Transfer " + id + " is still " + status);
+        }
+        List<TransferItemDto> dtos = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            dtos.add(TransferItemDto.builder()
+                    .index(i)
+                    .videoId(items.videoId(i))
+                    .title(items.title(i))
+                    .channelTitle(items.channelTitle(i))
+                    .status(items.status(i).name())
+                    .spotifyTrackId(items.trackId(i))
+                    .artistName(items.artistName(i))
+                    .build());
+        }
+        return dtos;
+    }
+
+    public TransferTimelineDto timelineDto(boolean includeEvents) {
+        TransferTimelineDto dto = timeline.snapshot(includeEvents);
+        dto.setJobId(id);
+        dto.setStatus(status.name());
+        return dto;
+    }
+}
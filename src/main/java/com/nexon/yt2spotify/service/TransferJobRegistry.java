@@ -0,0 +1,112 @@
+package com.nexon.yt2spotify.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps track of the transfers started on this node. Only the most recent jobs are retained;
+ * once the limit is hit the oldest finished job is dropped.
+ */
+@Slf4j
+@Component
+public class TransferJobRegistry {
+
+    private final Map<String, TransferJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> creationOrder = new ConcurrentLinkedDeque<>();
+    private final int maxRetainedJobs;
+    private final int timelineCapacity;
+
+    public TransferJobRegistry(
+            @Value("${yt2spotify.transfer.max-retained-jobs:500}") int maxRetainedJobs,
+            @Value("${yt2spotify.transfer.timeline-capacity:2048}") int timelineCapacity) {
+        this.maxRetainedJobs = maxRetainedJobs;
+        this.timelineCapacity = timelineCapacity;
+    }
+
+    public TransferJob create(String ownerName, String youtubePlaylistId) {
+        return register(new TransferJob(UUID.randomUUID().toString(), ownerName, youtubePlaylistId, timelineCapacity));
+    }
+
+    /** A match preview of the playlist: fetched and matched, nothing written to Spotify. */
+    public TransferJob createPreview(String ownerName, String youtubePlaylistId) {
+        return register(new TransferJob(UUID.randomUUID().toString(), ownerName, youtubePlaylistId, timelineCapacity, true, null));
+    }
+
+    /**
+     * A transfer of the preview's playlist that takes over the preview's matches, or empty if the
+     * preview was committed already: a preview is committed once, its commit job is
+     * {@link TransferJob#getCommitJobId}.
+     */
+    public Optional<TransferJob> createCommit(TransferJob preview) {
+        TransferJob job = new TransferJob(UUID.randomUUID().toString(), preview.getOwnerName(), preview.getYoutubePlaylistId(),
+                timelineCapacity, false, preview.getId());
+        if (!preview.claimCommit(job.getId())) {
+            return Optional.empty();
+        }
+        return Optional.of(register(job));
+    }
+
+    /** A sync of a watched playlist's new videos into its Spotify playlist (null: created by the sync). */
+    public TransferJob createSync(String ownerName, String youtubePlaylistId, long watchId, String spotifyPlaylistId) {
+        return register(new TransferJob(UUID.randomUUID().toString(), ownerName, youtubePlaylistId, timelineCapacity,
+                watchId, spotifyPlaylistId));
+    }
+
+    private TransferJob register(TransferJob job) {
+        jobs.put(job.getId(), job);
+        creationOrder.addLast(job.getId());
+        evictIfNeeded();
+        log.debug("Registered {} job {} for playlist {} (owner {})", job.isPreview() ? "preview" : job.isSync() ? "sync" : "transfer",
+                job.getId(), job.getYoutubePlaylistId(), job.getOwnerName());
+        return job;
+    }
+
+    /**
+     * Finds a job, but only if it belongs to the given principal.
+     */
+    public Optional<TransferJob> find(String jobId, String ownerName) {
+        TransferJob job = jobs.get(jobId);
+        if (job == null || !job.getOwnerName().equals(ownerName)) {
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    /**
+     * Work still ahead of the transfers on this node: items not yet processed, and 1 for a job that
+     * hasn't listed its playlist yet. Roughly the Spotify calls this node is about to make.
+     */
+    public int queuedWork() {
+        int queued = 0;
+        for (TransferJob job : jobs.values()) {
+            if (!job.isFinished()) {
+                queued += Math.max(1, job.getTotalItems() - job.getProcessedItems());
+            }
+        }
+        return queued;
+    }
+
+    private void evictIfNeeded() {
+        if (jobs.size() <= maxRetainedJobs) {
+            return;
+        }
+        Iterator<String> it = creationOrder.iterator();
+        while (it.hasNext() && jobs.size() > maxRetainedJobs) {
+            String id = it.next();
+            TransferJob job = jobs.get(id);
+            if (job == null || job.isFinished()) {
+                it.remove();
+                jobs.remove(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.transfer.TransferProgressEventDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.Supplier;
+
+/**
+ * Fans the progress events of one transfer out to any number of subscribers (SSE clients).
+ * <p>
+ * The transfer thread only hands each event to a multicast sink, never waits for a subscriber, and
+ * doesn't even build the event while nobody listens. Each subscriber reads through its own
+ * {@code onBackpressureLatest} slot: a client that falls behind skips intermediate events and gets the
+ * most recent one, which is enough because every event carries the job's running totals. The final
+ * event is never skipped, it is always the latest.
+ * <p>
+ * Events are published by the transfer thread only.
+ */
+public class TransferProgressPublisher {
+
+    private final Sinks.Many<TransferProgressEventDto> sink = Sinks.many().multicast().directBestEffort();
+    private volatile long sequence;
+
+    /** Publishes the event built by {@code event}, if anyone is subscribed. */
+    void publish(Supplier<TransferProgressEventDto> event) {
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        TransferProgressEventDto dto = event.get();
+        dto.setSequence(++sequence);
+        sink.tryEmitNext(dto); // Never blocks: subscribers without demand coalesce downstream
+    }
+
+    /** Publishes the last event and completes every subscriber. */
+    void finish(TransferProgressEventDto finalEvent) {
+        finalEvent.setSequence(++sequence);
+        sink.tryEmitNext(finalEvent);
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * Events from now on, starting with {@code snapshot} (the job's current state) so a client that
+     * connects mid-transfer has something to show right away. For a finished job the snapshot, built as
+     * a {@code FINISHED} event, is all there is.
+     */
+    public Flux<TransferProgressEventDto> events(Supplier<TransferProgressEventDto> snapshot) {
+        return Flux.defer(() -> {
+            TransferProgressEventDto first = numbered(snapshot.get());
+            if (first.getType() == TransferProgressEventDto.Type.FINISHED) {
+                return Flux.just(first);
+            }
+            Flux<TransferProgressEventDto> live = sink.asFlux()
+                    .onBackpressureLatest() // Coalesce for this subscriber only
+                    .publishOn(Schedulers.boundedElastic(), 1) // Deliver (and write) off the transfer thread
+                    // Finished between the snapshot and subscribing: the sink is already complete
+                    .switchIfEmpty(Mono.fromSupplier(() -> numbered(snapshot.get())));
+            return Flux.just(first).concatWith(live);
+        });
+    }
+
+    private TransferProgressEventDto numbered(TransferProgressEventDto dto) {
+        dto.setSequence(sequence);
+        return dto;
+    }
+}
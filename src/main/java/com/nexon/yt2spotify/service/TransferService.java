@@ -3,37 +3,107 @@ package com.nexon.yt2spotify.service;
 import com.nexon.yt2spotify.dto.sotify.SpotifyPlaylistDto;
 import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
 import com.nexon.yt2spotify.dto.sotify.SpotifyUserDto;
-import com.nexon.yt2spotify.dto.yt.YoutubePlaylistItemDto;
 import com.nexon.yt2spotify.dto.yt.YoutubeSimplifiedPlaylistDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoDetailsDto;
+import com.nexon.yt2spotify.jfr.TransferItemEvent;
+import com.nexon.yt2spotify.jfr.TransferJobEvent;
+import com.nexon.yt2spotify.model.TrackMatch;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransferService {
     private final SpotifyApiService spotifyApiService;
+    private final TrackMatcher trackMatcher;
     private final YoutubeApiService youtubeApiService;
-    private static final int SPOTIFY_BATCH_SIZE = 100; // Spotify limit for adding tracks
+    private final SpotifyPlaylistWriter spotifyPlaylistWriter;
+    private final TrackMatchRepository trackMatchRepository;
+    private final LocalTrackIndex localTrackIndex;
+    @Value("${yt2spotify.transfer.skip-category-ids:}")
+    private final Set<String> skipCategoryIds; // YouTube categories that never hold music
+    @Value("${yt2spotify.transfer.max-item-duration-seconds:0}")
+    private final int maxItemDurationSeconds; // Longer videos are skipped, 0 = no limit
+    @Value("${yt2spotify.transfer.deadline:1h}")
+    private final Duration deadline; // A job still running this long after it started is cancelled, 0 = none
+    private static final int SPOTIFY_BATCH_SIZE = SpotifyApiService.ADD_TRACKS_BATCH_SIZE; // Spotify limit for adding tracks
+    private static final int MATCH_LOOKUP_CHUNK_SIZE = 500; // Video IDs per findAllById, keeps the IN list bounded
 
+    /**
+     * Runs a transfer, or for a {@link TransferJob#isPreview() preview} job only its fetch and match
+     * stages: no playlist is created and nothing is written to Spotify.
+     */
     @Async("taskExecutor") // Specify the bean name of your configured TaskExecutor
-    public void transferYoutubePlaylistAsync(String youtubePlaylistId, String spotifyToken, String googleToken) {
+    public void transferYoutubePlaylistAsync(TransferJob job, String spotifyToken, String googleToken) {
+        transfer(job, null, null, spotifyToken, googleToken);
+    }
+
+    /**
+     * Runs a transfer that takes over the matches of a finished preview. Items of videos the preview
+     * covered keep its outcome; only videos added to the playlist since are enriched and searched, so
+     * an unchanged playlist costs no search at all.
+     */
+    @Async("taskExecutor")
+    public void commitPreviewAsync(TransferJob job, TransferJob preview, String spotifyToken, String googleToken) {
+        transfer(job, preview, null, spotifyToken, googleToken);
+    }
+
+    /**
+     * Syncs a watched playlist, blocking: items of the videos in {@code syncedVideoIds} are marked
+     * SYNCED and left alone, the others go through the usual stages and their tracks are appended to
+     * the job's Spotify playlist (created first if the job has none). Its calls have
+     * {@link CallPriority#BACKGROUND} priority.
+     */
+    public void sync(TransferJob job, Set<String> syncedVideoIds, String spotifyToken, String googleToken) {
+        transfer(job, null, syncedVideoIds, spotifyToken, googleToken);
+    }
+
+    private void transfer(TransferJob job, TransferJob preview, Set<String> syncedVideoIds, String spotifyToken, String googleToken) {
 
-        log.info("Starting ASYNC transfer for YouTube Playlist ID: {}", youtubePlaylistId);
+        String youtubePlaylistId = job.getYoutubePlaylistId();
+        log.info("Starting ASYNC {} for YouTube Playlist ID: {} (job {})",
+                job.isPreview() ? "match preview" : job.isSync() ? "sync" : "transfer", youtubePlaylistId, job.getId());
         long startTime = System.currentTimeMillis();
+        TransferTimeline timeline = job.getTimeline();
+        TransferTimeline.bind(timeline); // Lets the WebClient filter attribute outbound calls to this job
+        // Interactive calls of other users go first, and scheduled syncs only get what transfers leave
+        CallPriority.bind(job.isSync() ? CallPriority.BACKGROUND : CallPriority.TRANSFER);
+        job.markRunning();
+        Disposable deadlineTimer = deadline.isZero() ? Disposables.disposed() : Schedulers.parallel().schedule(
+                () -> job.cancel("Deadline of " + deadline.toSeconds() + " s exceeded"), deadline.toMillis(), TimeUnit.MILLISECONDS);
+        TransferJobEvent jobEvent = new TransferJobEvent();
+        jobEvent.begin();
+        List<TrackMatch> newMatches = new ArrayList<>(); // Stored even if the transfer is cancelled
 
         try {
             // 1. Get YouTube Playlist Details (Name for Spotify)
             log.debug("Fetching YouTube playlist details...");
+            job.enterStage(TransferTimeline.Stage.FETCH_PLAYLIST_DETAILS);
             YoutubeSimplifiedPlaylistDto ytPlaylist = youtubeApiService.getPlaylistDetails(youtubePlaylistId, googleToken);
             if (ytPlaylist == null || ytPlaylist.getSnippet() == null || ytPlaylist.getSnippet().getTitle() == null) {
+                job.throwIfCancelled(); // The call was cancelled, not failed
                 log.error("Cannot proceed: Failed to get valid details for YouTube playlist {}", youtubePlaylistId);
+                job.fail("Could not fetch details for YouTube playlist " + youtubePlaylistId);
                 return;
             }
             String newSpotifyPlaylistName = ytPlaylist.getSnippet().getTitle();
@@ -41,111 +111,438 @@ public class TransferService {
             String newSpotifyPlaylistDesc = "Transferred from YouTube Playlist: " + newSpotifyPlaylistName; // Default description
             log.info("Source YouTube Playlist Name: '{}'", newSpotifyPlaylistName);
 
-            // 2. Get Spotify User ID (needed to create playlist)
-            log.debug("Fetching Spotify user ID...");
-            SpotifyUserDto spotifyUser = spotifyApiService.getCurrentSpotifyUser(spotifyToken);
-            if (spotifyUser == null || spotifyUser.getId() == null) {
-                log.error("Cannot proceed: Failed to get Spotify User ID.");
-                return;
-            }
-            String spotifyUserId = spotifyUser.getId();
-            log.info("Target Spotify User ID: {}", spotifyUserId);
-
-            // 3. Create new Spotify Playlist
-            log.debug("Creating new Spotify playlist '{}'...", newSpotifyPlaylistName);
-            SpotifyPlaylistDto newSpotifyPlaylist = spotifyApiService.createPlaylist(
-                    spotifyUserId, newSpotifyPlaylistName, newSpotifyPlaylistDesc, false, spotifyToken // false = private
-            );
-            if (newSpotifyPlaylist == null || newSpotifyPlaylist.getId() == null) {
-                log.error("Cannot proceed: Failed to create Spotify playlist '{}'", newSpotifyPlaylistName);
-                return;
+            // 2.-3. Create the Spotify playlist; a preview writes nothing to Spotify, a sync appends to its playlist
+            String newSpotifyPlaylistId = job.getSpotifyPlaylistId();
+            if (!job.isPreview() && newSpotifyPlaylistId == null) {
+                newSpotifyPlaylistId = createSpotifyPlaylist(job, newSpotifyPlaylistName, newSpotifyPlaylistDesc, spotifyToken);
+                if (newSpotifyPlaylistId == null) {
+                    return;
+                }
             }
-            String newSpotifyPlaylistId = newSpotifyPlaylist.getId();
-            log.info("Created Spotify playlist '{}' with ID: {}", newSpotifyPlaylistName, newSpotifyPlaylistId);
 
             // 4. Get YouTube Playlist Items
             log.debug("Fetching YouTube playlist items for ID: {}", youtubePlaylistId);
-            List<YoutubePlaylistItemDto> ytItems = youtubeApiService.getPlaylistItems(youtubePlaylistId, googleToken);
-            int totalYtItems = ytItems.size();
+            job.enterStage(TransferTimeline.Stage.FETCH_PLAYLIST_ITEMS);
+            TransferItemStore items = job.getItems();
+            int totalYtItems = youtubeApiService.fetchPlaylistItems(youtubePlaylistId, googleToken, items);
+            items.trimToSize(); // The store outlives the transfer (status API), so drop growth slack
+            job.setTotalItems(totalYtItems);
             log.info("Found {} items in YouTube playlist {}", totalYtItems, youtubePlaylistId);
 
             if (totalYtItems == 0) {
                 log.info("Source YouTube playlist is empty. Transfer complete.");
+                job.complete();
                 return;
             }
 
-            // 5. Process Items: Search Spotify & Collect URIs
-            log.info("Starting Spotify search for {} YouTube items...", totalYtItems);
-            List<String> spotifyTrackUris = new ArrayList<>();
+            // 4b. Take over the outcome of the preview being committed, for the videos it covered
+            int previewedCount = preview != null ? applyPreview(job, items, preview) : 0;
+            // 4c. A sync leaves the videos of earlier syncs alone
+            if (syncedVideoIds != null) {
+                leaveOutSyncedItems(job, items, syncedVideoIds);
+            }
+
+            // 5. Skip what can't be on Spotify (not music, deleted, private), 50 videos per call
+            job.enterStage(TransferTimeline.Stage.ENRICH_VIDEOS);
+            int skippedCount = skipNonMusicItems(job, items, googleToken);
+
+            // 6. Reuse matches from earlier transfers that are still playable (50 tracks per call, no search)
+            job.enterStage(TransferTimeline.Stage.REVALIDATE_MATCHES);
+            int reusedCount = reuseStoredMatches(job, items, spotifyToken);
+
+            // 7. Process Remaining Items: Search Spotify & Collect URIs
+            log.info("Starting Spotify search for {} YouTube items ({} skipped, {} reused from earlier transfers, {} from the preview)...",
+                    items.count(TransferItemStore.ItemStatus.PENDING), skippedCount, reusedCount, previewedCount);
+            job.enterStage(TransferTimeline.Stage.SEARCH_TRACKS);
             int notFoundCount = 0;
+            TrackMatcher.HedgeBudget hedgeBudget = trackMatcher.budget(items.count(TransferItemStore.ItemStatus.PENDING));
 
             for (int i = 0; i < totalYtItems; i++) {
-                YoutubePlaylistItemDto item = ytItems.get(i);
-                String ytTitle = item.getSnippet() != null ? item.getSnippet().getTitle() : "Unknown Title";
-                String ytChannel = item.getSnippet() != null ? item.getSnippet().getVideoOwnerChannelTitle() : "";
-
-                log.info("[Item {}/{}] Processing YT Video: '{}' by '{}'", (i + 1), totalYtItems, ytTitle, ytChannel);
+                if (items.status(i) != TransferItemStore.ItemStatus.PENDING) {
+                    continue; // Skipped or revalidated above
+                }
+                job.throwIfCancelled();
+                String ytTitle = items.title(i);
+                if (ytTitle.isEmpty()) {
+                    ytTitle = "Unknown Title";
+                }
+                String ytChannel = items.channelTitle(i) != null ? items.channelTitle(i) : "";
 
-                // Basic Search Query Construction (can be improved)
-                // Often YouTube titles include "Artist - Title" or just "Title"
-                // Using title + channel might help sometimes
-                String query = ytTitle + " " + ytChannel; // Combine title and channel
+                log.debug("[Item {}/{}] Processing YT Video: '{}' by '{}'", (i + 1), totalYtItems, ytTitle, ytChannel);
+                timeline.beginItem(i);
+                TransferItemEvent itemEvent = new TransferItemEvent();
+                itemEvent.begin();
+                boolean matched = false;
 
-                // Search Spotify
-                Optional<SpotifyTrackDto> searchResult = spotifyApiService.searchTrack(query, spotifyToken);
+                // Search Spotify for title + channel, preferring the candidate closest to the video's duration
+                // when it is known, and hedging with alternative queries when the result looks wrong
+                TrackMatcher.Match match = trackMatcher.match(ytTitle, ytChannel, items.durationSeconds(i) * 1000, spotifyToken, hedgeBudget);
+                job.throwIfCancelled(); // A search cut short by the cancel found nothing, but the item isn't "not found"
+                Optional<SpotifyTrackDto> searchResult = match.result();
+                String query = match.query();
+                if (match.hedgeSearches() > 0) {
+                    job.itemHedged(match.hedgeSearches(), match.hedgeWon());
+                }
+                if (match.local()) {
+                    job.itemMatchedLocally();
+                }
 
                 if (searchResult.isPresent()) {
                     SpotifyTrackDto track = searchResult.get();
                     if (track.getUri() != null && !track.getUri().isBlank()) {
                         log.debug("   -> Found Spotify Track: '{}' ({})", track.getName(), track.getUri());
-                        spotifyTrackUris.add(track.getUri());
+                        String artist = track.getArtists() != null && !track.getArtists().isEmpty()
+                                ? track.getArtists().get(0).getName() : null;
+                        items.matched(i, track.getUri(), artist);
+                        if (items.videoId(i) != null) {
+                            newMatches.add(new TrackMatch(items.videoId(i), items.trackId(i), artist, track.getName(), track.getDurationMs()));
+                        }
+                        matched = true;
                     } else {
                         log.warn("   -> Found Spotify track '{}' but it has no URI. Skipping.", track.getName());
+                        items.setStatus(i, TransferItemStore.ItemStatus.NOT_FOUND);
                         notFoundCount++;
                     }
                 } else {
                     log.warn("   -> No Spotify track found for query: '{}'. Skipping.", query);
+                    items.setStatus(i, TransferItemStore.ItemStatus.NOT_FOUND);
                     notFoundCount++;
                 }
+                timeline.endItem(ytTitle, matched);
+                job.itemProcessed(i, matched);
+                itemEvent.end();
+                if (itemEvent.shouldCommit()) {
+                    itemEvent.playlistId = youtubePlaylistId;
+                    itemEvent.itemIndex = i;
+                    itemEvent.queryLength = query.length();
+                    itemEvent.matched = matched;
+                    itemEvent.hedgeSearches = match.hedgeSearches();
+                    itemEvent.commit();
+                }
                 // Optional Delay to prevent hitting rate limits aggressively
                 // try { Thread.sleep(200); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
             } // End YT Item loop
+            saveMatches(newMatches);
+            localTrackIndex.addAll(newMatches);
+            newMatches.clear(); // Stored
 
-            log.info("Spotify search complete. Found {} potential tracks to add.", spotifyTrackUris.size());
+            int matchedCount = items.count(TransferItemStore.ItemStatus.MATCHED);
+            log.info("Spotify search complete. Found {} potential tracks to add.", matchedCount);
+            if (job.getLocalMatches() > 0) {
+                log.info("{} items matched from the local track index without searching", job.getLocalMatches());
+            }
+            if (job.getHedgedItems() > 0) {
+                log.info("Hedged {} low-confidence items with {} extra searches, {} of them matched better ({} searches left in budget)",
+                        job.getHedgedItems(), job.getHedgeSearches(), job.getHedgeWins(), hedgeBudget.remaining());
+            }
+            if (job.isPreview()) {
+                log.info("Match preview of YouTube playlist {} done in {} ms: {} matched, {} not found, {} skipped",
+                        youtubePlaylistId, System.currentTimeMillis() - startTime, matchedCount,
+                        items.count(TransferItemStore.ItemStatus.NOT_FOUND), items.count(TransferItemStore.ItemStatus.SKIPPED));
+                job.complete();
+                return;
+            }
 
-            // 6. Add Found Tracks to Spotify Playlist in Batches
-            if (!spotifyTrackUris.isEmpty()) {
+            // 8. Add Found Tracks to Spotify Playlist in Batches
+            if (matchedCount > 0) {
+                job.enterStage(TransferTimeline.Stage.ADD_TRACKS);
                 log.info("Adding {} tracks to Spotify playlist '{}' in batches of {}...",
-                        spotifyTrackUris.size(), newSpotifyPlaylistId, SPOTIFY_BATCH_SIZE);
-
-                int addedCount = 0;
-                for (int i = 0; i < spotifyTrackUris.size(); i += SPOTIFY_BATCH_SIZE) {
-                    int end = Math.min(i + SPOTIFY_BATCH_SIZE, spotifyTrackUris.size());
-                    List<String> batch = spotifyTrackUris.subList(i, end);
-                    try {
-                        spotifyApiService.addTracksToPlaylist(newSpotifyPlaylistId, batch, spotifyToken);
-                        addedCount += batch.size();
-                        log.debug("   -> Added batch {} - {} successfully.", i + 1, end);
-                        // Optional Delay
-                        // if (end < spotifyTrackUris.size()) { try { Thread.sleep(300); } catch (InterruptedException e) { Thread.currentThread().interrupt(); } }
-                    } catch (Exception e) {
-                        log.error("   -> Failed to add batch {} - {}: {}", i + 1, end, e.getMessage());
-                        // Decide whether to stop or continue - continuing for now
+                        matchedCount, newSpotifyPlaylistId, SPOTIFY_BATCH_SIZE);
+
+                int[] matchedItems = items.indexesOf(TransferItemStore.ItemStatus.MATCHED);
+                // A sync appends after what the playlist holds now (earlier syncs, and whatever the user added)
+                int startPosition = job.isSync() ? spotifyApiService.getPlaylistTrackCount(newSpotifyPlaylistId, spotifyToken) : 0;
+                // Batches go out concurrently at explicit positions; progress is reported as each one lands
+                PlaylistWriteResult writeResult = spotifyPlaylistWriter.write(newSpotifyPlaylistId,
+                        items.trackUris(matchedItems), spotifyToken, startPosition, (fromIndex, count, snapshotId) -> {
+                            for (int m = fromIndex; m < fromIndex + count; m++) {
+                                items.setStatus(matchedItems[m], TransferItemStore.ItemStatus.ADDED);
+                            }
+                            job.tracksAdded(count);
+                        });
+                for (int m = 0; m < matchedItems.length; m++) {
+                    if (!writeResult.committed().get(m)) {
+                        items.setStatus(matchedItems[m], TransferItemStore.ItemStatus.FAILED);
                     }
                 }
+                job.setSpotifySnapshotId(writeResult.lastSnapshotId());
+                job.throwIfCancelled(); // The writer stopped early, the batches it got in stay
+                int addedCount = writeResult.committedCount();
+                if (!writeResult.isComplete()) {
+                    log.warn("{} of {} tracks could not be added to Spotify playlist {}",
+                            matchedItems.length - addedCount, matchedItems.length, newSpotifyPlaylistId);
+                }
                 log.info("Finished adding tracks to Spotify. Successfully added: {}", addedCount);
             } else {
                 log.info("No Spotify tracks found to add to the new playlist.");
             }
 
             long duration = System.currentTimeMillis() - startTime;
-            log.info("Transfer completed for YouTube Playlist ID: {}. Duration: {} ms. Found on Spotify: {}, Not Found/Skipped: {}",
-                    youtubePlaylistId, duration, spotifyTrackUris.size(), notFoundCount);
+            log.info("Transfer completed for YouTube Playlist ID: {}. Duration: {} ms. Found on Spotify: {} ({} reused), Not Found: {}, Skipped: {}",
+                    youtubePlaylistId, duration, matchedCount, reusedCount, job.getNotFoundCount(), job.getSkippedCount());
+            job.complete();
 
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
+            if (job.isCancelRequested()) {
+                // Whatever was interrupted: the blocked call was cancelled, so the error is the cancellation
+                Thread.interrupted(); // Cleared, so the matches found so far can still be stored
+                saveMatches(newMatches);
+                localTrackIndex.addAll(newMatches);
+                log.info("Transfer of YouTube playlist {} cancelled after {} ms ({}): {} of {} items processed, {} tracks added",
+                        youtubePlaylistId, duration, e.getMessage(), job.getProcessedItems(), job.getTotalItems(), job.getAddedCount());
+                job.cancelled();
+                return;
+            }
             log.error("Transfer failed catastrophically for YouTube Playlist ID {}: {} (Duration: {} ms)",
                     youtubePlaylistId, e.getMessage(), duration, e); // Log exception details
+            job.fail(e.getMessage());
+        } finally {
+            deadlineTimer.dispose();
+            job.detach();
+            TransferTimeline.unbind();
+            CallPriority.unbind();
+            jobEvent.end();
+            if (jobEvent.shouldCommit()) {
+                jobEvent.jobId = job.getId();
+                jobEvent.playlistId = youtubePlaylistId;
+                jobEvent.totalItems = job.getTotalItems();
+                jobEvent.matchedItems = job.getMatchedCount();
+                jobEvent.addedTracks = job.getAddedCount();
+                jobEvent.status = job.getStatus().name();
+                jobEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Creates the private Spotify playlist the tracks go to.
+     *
+     * @return Its ID, or null if it could not be created (the job has failed then).
+     */
+    private String createSpotifyPlaylist(TransferJob job, String newSpotifyPlaylistName, String newSpotifyPlaylistDesc, String spotifyToken) {
+        // 2. Get Spotify User ID (needed to create playlist)
+        log.debug("Fetching Spotify user ID...");
+        job.enterStage(TransferTimeline.Stage.FETCH_SPOTIFY_USER);
+        SpotifyUserDto spotifyUser = spotifyApiService.getCurrentSpotifyUser(spotifyToken);
+        if (spotifyUser == null || spotifyUser.getId() == null) {
+            job.throwIfCancelled(); // The call was cancelled, not failed
+            log.error("Cannot proceed: Failed to get Spotify User ID.");
+            job.fail("Could not fetch Spotify user ID");
+            return null;
+        }
+        String spotifyUserId = spotifyUser.getId();
+        log.info("Target Spotify User ID: {}", spotifyUserId);
+
+        // 3. Create new Spotify Playlist
+        log.debug("Creating new Spotify playlist '{}'...", newSpotifyPlaylistName);
+        job.enterStage(TransferTimeline.Stage.CREATE_SPOTIFY_PLAYLIST);
+        SpotifyPlaylistDto newSpotifyPlaylist = spotifyApiService.createPlaylist(
+                spotifyUserId, newSpotifyPlaylistName, newSpotifyPlaylistDesc, false, spotifyToken // false = private
+        );
+        if (newSpotifyPlaylist == null || newSpotifyPlaylist.getId() == null) {
+            job.throwIfCancelled(); // The call was cancelled, not failed
+            log.error("Cannot proceed: Failed to create Spotify playlist '{}'", newSpotifyPlaylistName);
+            job.fail("Could not create Spotify playlist '" + newSpotifyPlaylistName + "'");
+            return null;
+        }
+        String newSpotifyPlaylistId = newSpotifyPlaylist.getId();
+        job.setSpotifyPlaylistId(newSpotifyPlaylistId);
+        log.info("Created Spotify playlist '{}' with ID: {}", newSpotifyPlaylistName, newSpotifyPlaylistId);
+        return newSpotifyPlaylistId;
+    }
+
+    /**
+     * Gives every item whose video was in the preview the preview's outcome: its match, or not found,
+     * or skipped. Items of videos added to the playlist since stay PENDING and go through the usual
+     * stages.
+     *
+     * @return The number of items that took over an outcome.
+     */
+    private int applyPreview(TransferJob job, TransferItemStore items, TransferJob preview) {
+        TransferItemStore previewed = preview.getItems(); // Finished, so no longer written
+        Map<String, Integer> previewedIndexes = new HashMap<>();
+        for (int p = 0; p < previewed.size(); p++) {
+            if (previewed.videoId(p) != null) {
+                previewedIndexes.putIfAbsent(previewed.videoId(p), p);
+            }
+        }
+        int applied = 0;
+        for (int i = 0; i < items.size(); i++) {
+            Integer p = items.videoId(i) != null ? previewedIndexes.get(items.videoId(i)) : null;
+            if (p == null) {
+                continue; // New since the preview
+            }
+            switch (previewed.status(p)) {
+                case MATCHED -> {
+                    items.matched(i, previewed.trackId(p), previewed.artistName(p));
+                    job.itemProcessed(i, true);
+                }
+                case NOT_FOUND -> {
+                    items.setStatus(i, TransferItemStore.ItemStatus.NOT_FOUND);
+                    job.itemProcessed(i, false);
+                }
+                case SKIPPED -> {
+                    items.setStatus(i, TransferItemStore.ItemStatus.SKIPPED);
+                    job.itemSkipped(i);
+                }
+                default -> {
+                    continue; // The preview didn't get to it
+                }
+            }
+            items.setDurationSeconds(i, previewed.durationSeconds(p));
+            applied++;
+        }
+        log.info("{} of {} items take over the outcome of preview {}, {} are new", applied, items.size(), preview.getId(),
+                items.count(TransferItemStore.ItemStatus.PENDING));
+        return applied;
+    }
+
+    /**
+     * Marks the items whose video an earlier sync of the watched playlist handled as SYNCED, so only
+     * videos added since are enriched, matched and written.
+     */
+    private void leaveOutSyncedItems(TransferJob job, TransferItemStore items, Set<String> syncedVideoIds) {
+        int synced = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.status(i) == TransferItemStore.ItemStatus.PENDING && items.videoId(i) != null
+                    && syncedVideoIds.contains(items.videoId(i))) {
+                items.setStatus(i, TransferItemStore.ItemStatus.SYNCED);
+                synced++;
+            }
+        }
+        job.itemsAlreadySynced(synced);
+        log.info("{} of {} items were synced before, {} are new", synced, items.size(),
+                items.count(TransferItemStore.ItemStatus.PENDING));
+    }
+
+    /**
+     * Fetches category, duration and availability of every pending item with videos.list (50 videos per call)
+     * and marks the ones that cannot end up on Spotify as SKIPPED: deleted or private videos, categories
+     * in {@code skip-category-ids}, and videos longer than {@code max-item-duration-seconds} (podcasts,
+     * streams). The others keep their duration for matching. Items whose details could not be fetched
+     * are searched as before.
+     *
+     * @return The number of skipped items.
+     */
+    private int skipNonMusicItems(TransferJob job, TransferItemStore items, String googleToken) {
+        Set<String> videoIds = new LinkedHashSet<>(); // A video can be in a playlist more than once
+        for (int i = 0; i < items.size(); i++) {
+            if (items.status(i) == TransferItemStore.ItemStatus.PENDING && items.videoId(i) != null) {
+                videoIds.add(items.videoId(i));
+            }
+        }
+        if (videoIds.isEmpty()) {
+            return 0; // All taken over from a preview
+        }
+        Map<String, YoutubeVideoDetailsDto> details = youtubeApiService.getVideoDetails(new ArrayList<>(videoIds), googleToken);
+
+        int skipped = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.status(i) != TransferItemStore.ItemStatus.PENDING) {
+                continue;
+            }
+            YoutubeVideoDetailsDto video = items.videoId(i) != null ? details.get(items.videoId(i)) : null;
+            if (video == null) {
+                continue; // Unknown, search anyway
+            }
+            String reason = skipReason(video);
+            if (reason != null) {
+                log.debug("[Item {}/{}] Skipping '{}': {}", i + 1, items.size(), items.title(i), reason);
+                items.setStatus(i, TransferItemStore.ItemStatus.SKIPPED);
+                job.itemSkipped(i);
+                skipped++;
+            } else {
+                items.setDurationSeconds(i, video.getDurationSeconds());
+            }
+        }
+        log.info("Skipping {} of {} items that are not music or not available on YouTube", skipped, items.size());
+        return skipped;
+    }
+
+    private String skipReason(YoutubeVideoDetailsDto video) {
+        if (!video.isAvailable()) {
+            return "video is deleted, private or not processed";
+        }
+        if (video.getCategoryId() != null && skipCategoryIds.contains(video.getCategoryId())) {
+            return "YouTube category " + video.getCategoryId() + " is not music";
+        }
+        if (maxItemDurationSeconds > 0 && video.getDurationSeconds() > maxItemDurationSeconds) {
+            return "longer than " + maxItemDurationSeconds + " s";
+        }
+        return null;
+    }
+
+    /**
+     * Marks items whose video was matched by an earlier transfer as MATCHED again, as long as Spotify
+     * still has the stored track and it is playable. Stored tracks are checked in batches of 50, so
+     * only the items that were never matched, or whose track is gone, are searched for afterwards.
+     *
+     * @return The number of items that were matched this way.
+     */
+    private int reuseStoredMatches(TransferJob job, TransferItemStore items, String spotifyToken) {
+        Map<String, TrackMatch> stored = new HashMap<>();
+        try {
+            List<String> videoIds = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                if (items.status(i) == TransferItemStore.ItemStatus.PENDING && items.videoId(i) != null) {
+                    videoIds.add(items.videoId(i));
+                }
+            }
+            for (List<String> chunk : SpotifyApiService.batches(videoIds, MATCH_LOOKUP_CHUNK_SIZE)) {
+                for (TrackMatch match : trackMatchRepository.findAllById(chunk)) {
+                    stored.put(match.getVideoId(), match);
+                }
+            }
+        } catch (Exception e) {
+            // The cache is an optimization, a transfer must not fail because of it
+            log.warn("Could not load stored track matches, searching every item: {}", e.getMessage());
+            return 0;
+        }
+        if (stored.isEmpty()) {
+            return 0;
+        }
+
+        List<String> trackIds = stored.values().stream().map(TrackMatch::getSpotifyTrackId).distinct().toList();
+        log.info("Revalidating {} stored Spotify tracks for {} YouTube items...", trackIds.size(), items.size());
+        SpotifyApiService.TrackLookup lookup = spotifyApiService.findPlayableTracks(trackIds, spotifyToken);
+
+        Instant now = Instant.now();
+        Set<TrackMatch> revalidated = new LinkedHashSet<>(); // Once per video, even if it is in the playlist twice
+        int reused = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.status(i) != TransferItemStore.ItemStatus.PENDING) {
+                continue;
+            }
+            TrackMatch match = items.videoId(i) != null ? stored.get(items.videoId(i)) : null;
+            String trackId = match != null ? lookup.playable().get(match.getSpotifyTrackId()) : null;
+            if (trackId == null) {
+                continue; // Never matched, gone, not playable here or not checked: searched again
+            }
+            items.matched(i, trackId, match.getArtistName()); // Relinked for this user's market, if Spotify did
+            job.itemProcessed(i, true);
+            match.setValidatedAt(now); // The stored ID stays: a relinked one is only valid in this market
+            revalidated.add(match);
+            reused++;
+        }
+        List<String> gone = lookup.gone();
+        log.info("{} of {} items reuse a stored match; of the stored tracks {} are gone, {} not playable in the user's market, {} not checked",
+                reused, items.size(), gone.size(), lookup.unplayable().size(), trackIds.size() - lookup.checked().size());
+        // Not offered to later matches any more; a track matched again by search comes back. Tracks only
+        // unplayable in this user's market (or not checked) stay, the index serves every user
+        localTrackIndex.removeAll(gone);
+        saveMatches(revalidated);
+        return reused;
+    }
+
+    private void saveMatches(Collection<TrackMatch> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        try {
+            trackMatchRepository.saveAll(matches);
+        } catch (Exception e) {
+            log.warn("Could not store {} track matches: {}", matches.size(), e.getMessage());
         }
     }
 }
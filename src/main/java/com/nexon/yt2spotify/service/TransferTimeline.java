@@ -0,0 +1,328 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.transfer.TransferTimelineDto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, bounded record of what a single transfer spent its time on.
+ * <p>
+ * Events (stages, items and outbound HTTP calls) are written into a fixed-size ring buffer
+ * made of parallel primitive arrays, so recording never allocates and a 10k-item playlist
+ * cannot grow the timeline beyond its capacity. Stage boundaries, running totals and the
+ * slowest items are kept outside the ring so they survive eviction of older events.
+ */
+public class TransferTimeline {
+
+    public enum Kind { STAGE, ITEM, CALL }
+
+    public enum Stage {
+        FETCH_PLAYLIST_DETAILS,
+        FETCH_SPOTIFY_USER,
+        CREATE_SPOTIFY_PLAYLIST,
+        FETCH_PLAYLIST_ITEMS,
+        ENRICH_VIDEOS,
+        REVALIDATE_MATCHES,
+        SEARCH_TRACKS,
+        ADD_TRACKS
+    }
+
+    public enum Operation {
+        YOUTUBE_PLAYLISTS,
+        YOUTUBE_PLAYLIST_ITEMS,
+        YOUTUBE_VIDEOS,
+        SPOTIFY_SEARCH,
+        SPOTIFY_ME,
+        SPOTIFY_CREATE_PLAYLIST,
+        SPOTIFY_ADD_TRACKS,
+        SPOTIFY_TRACKS,
+        OTHER;
+
+        /**
+         * Maps a request path onto the operation it belongs to. Only suffixes are checked so the
+         * mapping does not depend on which base URL the call was sent to.
+         */
+        public static Operation classify(String path) {
+            if (path == null) {
+                return OTHER;
+            }
+            if (path.endsWith("/playlistItems")) {
+                return YOUTUBE_PLAYLIST_ITEMS;
+            }
+            if (path.endsWith("/videos")) {
+                return YOUTUBE_VIDEOS;
+            }
+            if (path.contains("/users/") && path.endsWith("/playlists")) {
+                return SPOTIFY_CREATE_PLAYLIST;
+            }
+            if (path.endsWith("/playlists")) {
+                return YOUTUBE_PLAYLISTS;
+            }
+            if (path.endsWith("/search")) {
+                return SPOTIFY_SEARCH;
+            }
+            if (path.endsWith("/me")) {
+                return SPOTIFY_ME;
+            }
+            if (path.contains("/playlists/") && path.endsWith("/tracks")) {
+                return SPOTIFY_ADD_TRACKS;
+            }
+            if (path.endsWith("/tracks")) {
+                return SPOTIFY_TRACKS;
+            }
+            return OTHER;
+        }
+    }
+
+    private static final int SLOWEST_ITEMS = 10;
+    private static final ThreadLocal<TransferTimeline> CURRENT = new ThreadLocal<>();
+
+    private final String playlistId;
+    private final Instant startedAt = Instant.now();
+    private final long originNanos = System.nanoTime();
+
+    // --- Ring buffer (one slot per event, indexed by written & mask) ---
+    private final int mask;
+    private final byte[] kinds;
+    private final byte[] codes;
+    private final int[] items;
+    private final long[] starts;
+    private final long[] durations;
+    private final short[] statuses;
+    private final short[] retries;
+    private final long[] waits;
+    private final long[] bytes;
+    private long written;
+
+    // --- Stage boundaries, never evicted ---
+    private final long[] stageStarts = new long[Stage.values().length];
+    private final long[] stageEnds = new long[Stage.values().length];
+    private Stage currentStage;
+
+    // --- Running totals ---
+    private long callCount;
+    private long retryCount;
+    private long rateLimitWaitNanos;
+    private long bytesReceived;
+
+    // --- Slowest items (small fixed top-N, replaced in place) ---
+    private final int[] slowIndexes = new int[SLOWEST_ITEMS];
+    private final long[] slowDurations = new long[SLOWEST_ITEMS];
+    private final int[] slowCalls = new int[SLOWEST_ITEMS];
+    private final String[] slowLabels = new String[SLOWEST_ITEMS];
+    private int slowCount;
+
+    // --- Item currently being processed by the transfer thread ---
+    private volatile int currentItem = -1;
+    private long itemStart;
+    private int itemCalls;
+
+    public TransferTimeline(String playlistId, int capacity) {
+        this.playlistId = playlistId;
+        int size = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1; // Next power of two
+        this.mask = size - 1;
+        this.kinds = new byte[size];
+        this.codes = new byte[size];
+        this.items = new int[size];
+        this.starts = new long[size];
+        this.durations = new long[size];
+        this.statuses = new short[size];
+        this.retries = new short[size];
+        this.waits = new long[size];
+        this.bytes = new long[size];
+        Arrays.fill(stageStarts, -1);
+        Arrays.fill(stageEnds, -1);
+    }
+
+    // ---- Binding to the transfer thread, so outbound calls can find the active timeline ----
+
+    public static void bind(TransferTimeline timeline) {
+        CURRENT.set(timeline);
+    }
+
+    public static TransferTimeline current() {
+        return CURRENT.get();
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public long now() {
+        return System.nanoTime() - originNanos;
+    }
+
+    public int currentItem() {
+        return currentItem;
+    }
+
+    public String playlistId() {
+        return playlistId;
+    }
+
+    // ---- Recording ----
+
+    /** Closes the currently open stage (if any) and opens the given one. */
+    public synchronized void enterStage(Stage stage) {
+        long now = now();
+        closeStage(now);
+        currentStage = stage;
+        stageStarts[stage.ordinal()] = now;
+    }
+
+    /** Closes the last open stage; called once the transfer is over, successful or not. */
+    public synchronized void finish() {
+        closeStage(now());
+        currentItem = -1;
+    }
+
+    private void closeStage(long now) {
+        if (currentStage == null) {
+            return;
+        }
+        int ordinal = currentStage.ordinal();
+        stageEnds[ordinal] = now;
+        append(Kind.STAGE, ordinal, -1, stageStarts[ordinal], now - stageStarts[ordinal], 0, 0, 0, 0);
+        currentStage = null;
+    }
+
+    public synchronized void beginItem(int index) {
+        currentItem = index;
+        itemStart = now();
+        itemCalls = 0;
+    }
+
+    /**
+     * Records the end of the current item.
+     *
+     * @param label   Human readable label (the YouTube title); only retained for the slowest items.
+     * @param matched Whether a Spotify track was found for the item.
+     */
+    public synchronized void endItem(String label, boolean matched) {
+        int index = currentItem;
+        if (index < 0) {
+            return;
+        }
+        long duration = now() - itemStart;
+        append(Kind.ITEM, matched ? 1 : 0, index, itemStart, duration, 0, 0, 0, 0);
+        offerSlowItem(index, duration, itemCalls, label);
+        currentItem = -1;
+    }
+
+    /**
+     * Records one outbound HTTP exchange, including any rate-limit retries it needed.
+     */
+    public synchronized void recordCall(Operation operation, int item, long start, long duration,
+                                        int status, int retryCount, long waitNanos, long byteCount) {
+        append(Kind.CALL, operation.ordinal(), item, start, duration, status, retryCount, waitNanos, byteCount);
+        callCount++;
+        this.retryCount += retryCount;
+        rateLimitWaitNanos += waitNanos;
+        bytesReceived += byteCount;
+        if (item >= 0 && item == currentItem) {
+            itemCalls++;
+        }
+    }
+
+    private void append(Kind kind, int code, int item, long start, long duration,
+                        int status, int retryCount, long waitNanos, long byteCount) {
+        int slot = (int) (written++ & mask);
+        kinds[slot] = (byte) kind.ordinal();
+        codes[slot] = (byte) code;
+        items[slot] = item;
+        starts[slot] = start;
+        durations[slot] = duration;
+        statuses[slot] = (short) status;
+        retries[slot] = (short) Math.min(retryCount, Short.MAX_VALUE);
+        waits[slot] = waitNanos;
+        bytes[slot] = byteCount;
+    }
+
+    private void offerSlowItem(int index, long duration, int calls, String label) {
+        int target;
+        if (slowCount < SLOWEST_ITEMS) {
+            target = slowCount++;
+        } else {
+            target = 0;
+            for (int i = 1; i < SLOWEST_ITEMS; i++) {
+                if (slowDurations[i] < slowDurations[target]) {
+                    target = i;
+                }
+            }
+            if (slowDurations[target] >= duration) {
+                return;
+            }
+        }
+        slowIndexes[target] = index;
+        slowDurations[target] = duration;
+        slowCalls[target] = calls;
+        slowLabels[target] = label;
+    }
+
+    // ---- Reading ----
+
+    /**
+     * Builds a point-in-time view of the timeline. Allocation happens here, on the (rare) read path.
+     *
+     * @param includeEvents Whether to include the raw events still held in the ring buffer.
+     */
+    public synchronized TransferTimelineDto snapshot(boolean includeEvents) {
+        TransferTimelineDto dto = new TransferTimelineDto();
+        dto.setStartedAt(startedAt);
+        dto.setElapsedMs(toMillis(now()));
+        dto.setCallCount(callCount);
+        dto.setRetryCount(retryCount);
+        dto.setRateLimitWaitMs(toMillis(rateLimitWaitNanos));
+        dto.setBytesReceived(bytesReceived);
+        dto.setEventsRecorded(written);
+        dto.setEventsDropped(Math.max(0, written - (mask + 1L)));
+
+        List<TransferTimelineDto.StageDto> stages = new ArrayList<>();
+        long now = now();
+        for (Stage stage : Stage.values()) {
+            long start = stageStarts[stage.ordinal()];
+            if (start < 0) {
+                continue;
+            }
+            long end = stageEnds[stage.ordinal()];
+            boolean open = stage == currentStage;
+            stages.add(new TransferTimelineDto.StageDto(stage.name(), toMillis(start),
+                    toMillis((open || end < 0 ? now : end) - start), open));
+        }
+        dto.setStages(stages);
+
+        List<TransferTimelineDto.SlowItemDto> slowest = new ArrayList<>(slowCount);
+        for (int i = 0; i < slowCount; i++) {
+            slowest.add(new TransferTimelineDto.SlowItemDto(slowIndexes[i], slowLabels[i],
+                    toMillis(slowDurations[i]), slowCalls[i]));
+        }
+        slowest.sort((a, b) -> Long.compare(b.getDurationMs(), a.getDurationMs()));
+        dto.setSlowestItems(slowest);
+
+        if (includeEvents) {
+            long first = Math.max(0, written - (mask + 1L));
+            List<TransferTimelineDto.EventDto> events = new ArrayList<>((int) (written - first));
+            for (long seq = first; seq < written; seq++) {
+                int slot = (int) (seq & mask);
+                Kind kind = Kind.values()[kinds[slot]];
+                String name = switch (kind) {
+                    case STAGE -> Stage.values()[codes[slot]].name();
+                    case ITEM -> codes[slot] == 1 ? "MATCHED" : "NOT_FOUND";
+                    case CALL -> Operation.values()[codes[slot]].name();
+                };
+                events.add(new TransferTimelineDto.EventDto(kind.name(), name, items[slot],
+                        toMillis(starts[slot]), toMillis(durations[slot]), statuses[slot],
+                        retries[slot], toMillis(waits[slot]), bytes[slot]));
+            }
+            dto.setEvents(events);
+        }
+        return dto;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+}
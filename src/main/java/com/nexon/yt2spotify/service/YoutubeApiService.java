@@ -1,19 +1,30 @@
 package com.nexon.yt2spotify.service;
 
+import com.nexon.yt2spotify.dto.yt.YoutubeMinimalPlaylistItemResourceIdDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeMinimalPlaylistItemSnippetDto;
 import com.nexon.yt2spotify.dto.yt.YoutubePlaylistItemDto;
-import com.nexon.yt2spotify.dto.yt.YoutubePlaylistItemListResponseDto;
 import com.nexon.yt2spotify.dto.yt.YoutubePlaylistListResponseDto;
 import com.nexon.yt2spotify.dto.yt.YoutubeSimplifiedPlaylistDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoDetailsDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoItemDto;
+import com.nexon.yt2spotify.jfr.YoutubePlaylistItemsPageEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -21,7 +32,13 @@ import java.util.stream.Collectors;
 public class YoutubeApiService {
 
     private final WebClient webClient;
-    private final String YOUTUBE_API_BASE_URL =  "https://www.googleapis.com/youtube/v3";
+    @Value("${yt2spotify.youtube.api-base-url:https://www.googleapis.com/youtube/v3}")
+    private final String youtubeApiBaseUrl; // Configurable so load tests can point at a local stub
+    public static final int VIDEOS_BATCH_SIZE = 50; // videos.list limit for the id parameter
+    private static final String PLAYLISTS_FIELDS = "nextPageToken,items(id,etag,snippet(title),contentDetails(itemCount))";
+    // Specify only the fields needed for searching Spotify
+    private static final String PLAYLIST_STATES_FIELDS = "items(id,etag,contentDetails(itemCount))";
+    private static final String PLAYLIST_ITEMS_FIELDS = "nextPageToken,items(id,snippet(title,resourceId(videoId),videoOwnerChannelTitle))";
 
 
     /**
@@ -38,29 +55,9 @@ public class YoutubeApiService {
         log.info("Fetching current user Youtube playlists (minimal fields) ....");
         List<YoutubeSimplifiedPlaylistDto> allPlaylists = new ArrayList<>();
         String nextPageToken = null;
-        final String fieldsToRequest = "nextPageToken,items(id,snippet(title),contentDetails(itemCount))";
         try {
             do {
-                // Build URI with parameters including fields and pagination token
-                UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(YOUTUBE_API_BASE_URL + "/playlists")
-                        .queryParam("part", "snippet,contentDetails") // Need these parts to contain the fields
-                        .queryParam("mine", "true")
-                        .queryParam("maxResults", 50)
-                        .queryParam("fields", fieldsToRequest); // Add the fields parameter!
-
-                if (nextPageToken != null) {
-                    uriBuilder.queryParam("pageToken", nextPageToken);
-                }
-                String currentUrl = uriBuilder.encode().toUriString();
-
-                log.debug("Requesting YouTube playlists from URL: {}", currentUrl);
-
-                YoutubePlaylistListResponseDto page = this.webClient.get()
-                        .uri(currentUrl)
-                        .headers(h -> h.setBearerAuth(accessToken)) // Set header manually
-                        .retrieve()
-                        .bodyToMono(YoutubePlaylistListResponseDto.class) // Use the specific Response DTO
-                        .block(); // Synchronous call
+                YoutubePlaylistListResponseDto page = userPlaylistsPage(accessToken, nextPageToken).block(); // Synchronous call
 
                 if (page != null && page.getItems() != null) {
                     allPlaylists.addAll(page.getItems());
@@ -86,56 +83,138 @@ public class YoutubeApiService {
         return allPlaylists;
     }
 
+    /**
+     * Streaming variant of {@link #getCurrentUserPlaylists(String)}: playlists are emitted as each page
+     * arrives. Pages are requested on demand (at most one ahead of the subscriber), so a slow client
+     * holds back the paging instead of making it buffer.
+     */
+    public Flux<YoutubeSimplifiedPlaylistDto> streamCurrentUserPlaylists(String accessToken) {
+        return userPlaylistsPage(accessToken, null)
+                .expand(page -> page.getNextPageToken() != null
+                        ? userPlaylistsPage(accessToken, page.getNextPageToken())
+                        : Mono.empty())
+                .flatMapIterable(page -> page.getItems() != null ? page.getItems() : List.of(), 1)
+                .doOnError(e -> log.error("Error streaming YouTube playlists: {}", e.getMessage(), e));
+    }
+
+    private Mono<YoutubePlaylistListResponseDto> userPlaylistsPage(String accessToken, String pageToken) {
+        // Build URI with parameters including fields and pagination token
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(youtubeApiBaseUrl + "/playlists")
+                .queryParam("part", "snippet,contentDetails") // Need these parts to contain the fields
+                .queryParam("mine", "true")
+                .queryParam("maxResults", 50)
+                .queryParam("fields", PLAYLISTS_FIELDS); // Add the fields parameter!
+
+        if (pageToken != null) {
+            uriBuilder.queryParam("pageToken", pageToken);
+        }
+        String currentUrl = uriBuilder.encode().toUriString();
+
+        log.debug("Requesting YouTube playlists from URL: {}", currentUrl);
+
+        return this.webClient.get()
+                .uri(currentUrl)
+                .headers(h -> h.setBearerAuth(accessToken)) // Set header manually
+                .retrieve()
+                .bodyToMono(YoutubePlaylistListResponseDto.class); // Use the specific Response DTO
+    }
+
     /**
      * Fetches the video items from a specific YouTube playlist.
      * Requests minimal fields (title, videoId, channelTitle) using the 'fields' parameter.
-     * Handles pagination.
+     * Handles pagination. Each page is decoded incrementally from the response stream
+     * (see {@link YoutubePlaylistItemsDecoder}), so the full body is never buffered.
      *
      * @param youtubePlaylistId The ID of the YouTube playlist.
      * @param accessToken       The user's Google OAuth access token.
-     * @return A list of playlist item DTOs.
+     * @return A list of playlist items in YouTube's shape (id, snippet with title, resourceId and channel).
      */
 
     public List<YoutubePlaylistItemDto> getPlaylistItems(String youtubePlaylistId, String accessToken) {
-        log.info("Fetching items for YouTube playlist ID: {} (minimal fields)...", youtubePlaylistId);
         List<YoutubePlaylistItemDto> allItems = new ArrayList<>();
+        readPlaylistItems(youtubePlaylistId, accessToken, item -> allItems.add(toPlaylistItemDto(item)));
+        return allItems;
+    }
+
+    // The shape GET /api/youtube/playlists/{id}/items has always returned; transfers keep the flat item
+    private static YoutubePlaylistItemDto toPlaylistItemDto(YoutubeVideoItemDto item) {
+        YoutubeMinimalPlaylistItemResourceIdDto resourceId = new YoutubeMinimalPlaylistItemResourceIdDto();
+        resourceId.setVideoId(item.getVideoId());
+        YoutubeMinimalPlaylistItemSnippetDto snippet = new YoutubeMinimalPlaylistItemSnippetDto();
+        snippet.setTitle(item.getTitle());
+        snippet.setVideoOwnerChannelTitle(item.getChannelTitle());
+        snippet.setResourceId(resourceId);
+        YoutubePlaylistItemDto dto = new YoutubePlaylistItemDto();
+        dto.setId(item.getItemId());
+        dto.setSnippet(snippet);
+        return dto;
+    }
+
+    /**
+     * Same as {@link #getPlaylistItems(String, String)}, but appends each page straight into the
+     * transfer's {@link TransferItemStore}, so at most one page of DTOs is alive at a time.
+     *
+     * @return The number of items appended.
+     */
+    public int fetchPlaylistItems(String youtubePlaylistId, String accessToken, TransferItemStore store) {
+        return readPlaylistItems(youtubePlaylistId, accessToken,
+                item -> store.add(item.getVideoId(), item.getTitle(), item.getChannelTitle()));
+    }
+
+    /**
+     * Streaming variant of {@link #getPlaylistItems(String, String)}: items are emitted as each page
+     * arrives and is decoded. Pages are requested on demand (at most one ahead of the subscriber), so
+     * only about two pages are ever held, whatever the playlist size, and a slow client holds back the
+     * paging instead of making it buffer.
+     */
+    public Flux<YoutubeVideoItemDto> streamPlaylistItems(String youtubePlaylistId, String accessToken) {
+        return playlistItemsPage(youtubePlaylistId, accessToken, null)
+                .expand(page -> page.nextPageToken() != null
+                        ? playlistItemsPage(youtubePlaylistId, accessToken, page.nextPageToken())
+                        : Mono.empty())
+                .flatMapIterable(YoutubePlaylistItemsDecoder.Page::items, 1)
+                .doOnError(e -> log.error("Error streaming items of YouTube playlist {}: {}", youtubePlaylistId, e.getMessage(), e));
+    }
+
+    private int readPlaylistItems(String youtubePlaylistId, String accessToken, Consumer<YoutubeVideoItemDto> sink) {
+        log.info("Fetching items for YouTube playlist ID: {} (minimal fields)...", youtubePlaylistId);
+        int itemCount = 0;
         String nextPageToken = null;
-        // Specify only the fields needed for searching Spotify
-        final String fieldsToRequest = "nextPageToken,items(id,snippet(title,resourceId(videoId),videoOwnerChannelTitle))";
+        int pageIndex = 0;
 
         try {
             do {
-                UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(YOUTUBE_API_BASE_URL + "/playlistItems")
-                        .queryParam("part", "snippet") // Need snippet to contain the fields we want
-                        .queryParam("playlistId", youtubePlaylistId)
-                        .queryParam("maxResults", 50)
-                        .queryParam("fields", fieldsToRequest); // Add the fields parameter
-
-                if (nextPageToken != null) {
-                    uriBuilder.queryParam("pageToken", nextPageToken);
+                YoutubePlaylistItemsPageEvent event = new YoutubePlaylistItemsPageEvent();
+                int httpStatus = 0;
+                event.begin();
+                YoutubePlaylistItemsDecoder.Page page = null;
+                try {
+                    ResponseEntity<YoutubePlaylistItemsDecoder.Page> response =
+                            playlistItemsResponse(youtubePlaylistId, accessToken, nextPageToken).block(); // Synchronous call
+                    httpStatus = response != null ? response.getStatusCode().value() : 0;
+                    page = response != null ? response.getBody() : null;
+                } catch (WebClientResponseException wcre) {
+                    httpStatus = wcre.getStatusCode().value();
+                    throw wcre;
+                } finally {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.playlistId = youtubePlaylistId;
+                        event.pageIndex = pageIndex;
+                        event.itemIndex = itemCount;
+                        event.httpStatus = httpStatus;
+                        event.itemCount = page != null ? page.items().size() : 0;
+                        event.commit();
+                    }
                 }
-                String currentUrl = uriBuilder.encode().toUriString();
-
-                log.debug("Requesting YouTube playlist items from URL: {}", currentUrl);
-
-                YoutubePlaylistItemListResponseDto page = this.webClient.get()
-                        .uri(currentUrl)
-                        .headers(h -> h.setBearerAuth(accessToken)) // Set header manually
-                        .retrieve()
-                        .bodyToMono(YoutubePlaylistItemListResponseDto.class) // Use the specific List Response DTO
-                        .block(); // Synchronous call
-
-                if (page != null && page.getItems() != null) {
-                    // Filter out items that might not have a video ID (rare, but possible)
-                    List<YoutubePlaylistItemDto> validItems = page.getItems().stream()
-                            .filter(item -> item.getSnippet() != null &&
-                                    item.getSnippet().getResourceId() != null &&
-                                    item.getSnippet().getResourceId().getVideoId() != null)
-                            .collect(Collectors.toList());
-
-                    allItems.addAll(validItems);
-                    nextPageToken = page.getNextPageToken();
-                    log.debug("Fetched {} valid items this page, next page token: {}", validItems.size(), nextPageToken);
+                pageIndex++;
+
+                if (page != null) {
+                    // Items without a video ID (rare, but possible) are already dropped by the decoder
+                    page.items().forEach(sink);
+                    itemCount += page.items().size();
+                    nextPageToken = page.nextPageToken();
+                    log.debug("Fetched {} valid items this page, next page token: {}", page.items().size(), nextPageToken);
                 } else {
                     log.warn("Received null page or null items from YouTube playlistItems endpoint.");
                     nextPageToken = null; // Stop looping
@@ -151,9 +230,129 @@ public class YoutubeApiService {
             throw new RuntimeException("Error fetching items for YouTube playlist " + youtubePlaylistId + ": " + e.getMessage(), e);
         }
 
-        log.info("Successfully fetched {} valid items for YouTube playlist ID: {}.", allItems.size(), youtubePlaylistId);
-        return allItems;
+        log.info("Successfully fetched {} valid items for YouTube playlist ID: {}.", itemCount, youtubePlaylistId);
+        return itemCount;
+
+    }
+
+    private Mono<YoutubePlaylistItemsDecoder.Page> playlistItemsPage(String youtubePlaylistId, String accessToken, String pageToken) {
+        return playlistItemsResponse(youtubePlaylistId, accessToken, pageToken).mapNotNull(ResponseEntity::getBody);
+    }
+
+    // The decoded page along with the response status, for the JFR event of the blocking reader
+    private Mono<ResponseEntity<YoutubePlaylistItemsDecoder.Page>> playlistItemsResponse(String youtubePlaylistId, String accessToken,
+                                                                                         String pageToken) {
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(youtubeApiBaseUrl + "/playlistItems")
+                .queryParam("part", "snippet") // Need snippet to contain the fields we want
+                .queryParam("playlistId", youtubePlaylistId)
+                .queryParam("maxResults", 50)
+                .queryParam("fields", PLAYLIST_ITEMS_FIELDS); // Add the fields parameter
+
+        if (pageToken != null) {
+            uriBuilder.queryParam("pageToken", pageToken);
+        }
+        String currentUrl = uriBuilder.encode().toUriString();
+
+        log.debug("Requesting YouTube playlist items from URL: {}", currentUrl);
+
+        return this.webClient.get()
+                .uri(currentUrl)
+                .headers(h -> h.setBearerAuth(accessToken)) // Set header manually
+                .retrieve()
+                .toEntityFlux(DataBuffer.class) // Decode chunk by chunk, see YoutubePlaylistItemsDecoder
+                .flatMap(response -> response.getBody()
+                        .collect(YoutubePlaylistItemsDecoder::new, StreamingJsonDecoder::feed)
+                        .map(decoder -> new ResponseEntity<>(decoder.finish(), response.getStatusCode())));
+    }
+
+    /**
+     * Fetches category, duration and availability of videos with videos.list, 50 IDs per request
+     * (one quota unit each).
+     *
+     * @param videoIds    The YouTube video IDs.
+     * @param accessToken The user's Google OAuth access token.
+     * @return Details by video ID. IDs of a successful request that YouTube didn't return (deleted or
+     * private videos) map to an unavailable entry; IDs of a failed request are missing, so callers
+     * can tell "unknown" from "gone".
+     */
+    public Map<String, YoutubeVideoDetailsDto> getVideoDetails(List<String> videoIds, String accessToken) {
+        log.info("Fetching details for {} YouTube videos...", videoIds.size());
+        Map<String, YoutubeVideoDetailsDto> details = new HashMap<>();
+        final String fieldsToRequest = "items(id,snippet(categoryId),contentDetails(duration),status(uploadStatus,privacyStatus))";
+
+        for (List<String> batch : SpotifyApiService.batches(videoIds, VIDEOS_BATCH_SIZE)) {
+            String url = UriComponentsBuilder.fromUriString(youtubeApiBaseUrl + "/videos")
+                    .queryParam("part", "snippet,contentDetails,status")
+                    .queryParam("id", String.join(",", batch))
+                    .queryParam("maxResults", VIDEOS_BATCH_SIZE)
+                    .queryParam("fields", fieldsToRequest)
+                    .encode()
+                    .toUriString();
+            try {
+                List<YoutubeVideoDetailsDto> videos = this.webClient.get()
+                        .uri(url)
+                        .headers(h -> h.setBearerAuth(accessToken))
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class)
+                        .collect(YoutubeVideosDecoder::new, StreamingJsonDecoder::feed)
+                        .map(StreamingJsonDecoder::finish)
+                        .block();
+                for (String videoId : batch) {
+                    details.put(videoId, new YoutubeVideoDetailsDto(videoId, null, 0, false));
+                }
+                if (videos != null) {
+                    videos.forEach(video -> details.put(video.getVideoId(), video));
+                }
+            } catch (WebClientResponseException wcre) {
+                log.error("WebClient Error fetching details for {} YouTube videos: Status {}, Body {}", batch.size(), wcre.getStatusCode(), wcre.getResponseBodyAsString(), wcre);
+                // Don't throw, these items are simply not filtered
+            } catch (ProviderUnavailableException e) {
+                log.warn("Skipped fetching details for {} YouTube videos: {}", batch.size(), e.getMessage());
+            } catch (Exception e) {
+                TransferCancelledException.rethrowIfInterrupted(e);
+                log.error("Generic Error fetching details for {} YouTube videos: {}", batch.size(), e.getMessage(), e);
+            }
+        }
+        return details;
+    }
 
+    /**
+     * Fetches the etag and item count of playlists with playlists.list, 50 IDs per request (one quota
+     * unit each), which is all it takes to tell whether a playlist changed.
+     *
+     * @param playlistIds The YouTube playlist IDs.
+     * @param accessToken The user's Google OAuth access token.
+     * @return Playlists by ID, with only id, etag and contentDetails set. Playlists YouTube didn't
+     * return (deleted, or private to someone else) are missing.
+     * @throws RuntimeException if a request fails.
+     */
+    public Map<String, YoutubeSimplifiedPlaylistDto> getPlaylistStates(List<String> playlistIds, String accessToken) {
+        log.debug("Fetching the state of {} YouTube playlists...", playlistIds.size());
+        Map<String, YoutubeSimplifiedPlaylistDto> states = new HashMap<>();
+        for (List<String> batch : SpotifyApiService.batches(playlistIds, VIDEOS_BATCH_SIZE)) {
+            String url = UriComponentsBuilder.fromUriString(youtubeApiBaseUrl + "/playlists")
+                    .queryParam("part", "contentDetails") // The etag comes with every part
+                    .queryParam("id", String.join(",", batch))
+                    .queryParam("maxResults", VIDEOS_BATCH_SIZE)
+                    .queryParam("fields", PLAYLIST_STATES_FIELDS)
+                    .encode()
+                    .toUriString();
+            try {
+                YoutubePlaylistListResponseDto response = this.webClient.get()
+                        .uri(url)
+                        .headers(h -> h.setBearerAuth(accessToken))
+                        .retrieve()
+                        .bodyToMono(YoutubePlaylistListResponseDto.class)
+                        .block();
+                if (response != null && response.getItems() != null) {
+                    response.getItems().forEach(playlist -> states.put(playlist.getId(), playlist));
+                }
+            } catch (WebClientResponseException wcre) {
+                log.error("WebClient Error fetching the state of {} YouTube playlists: Status {}, Body {}", batch.size(), wcre.getStatusCode(), wcre.getResponseBodyAsString());
+                throw new RuntimeException("API Error fetching the state of YouTube playlists: " + wcre.getMessage(), wcre);
+            }
+        }
+        return states;
     }
 
     /**
@@ -172,7 +371,7 @@ public class YoutubeApiService {
         final String fieldsToRequest = "items(id,snippet(title,description))"; // Added description
 
         try {
-            UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(YOUTUBE_API_BASE_URL + "/playlists")
+            UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(youtubeApiBaseUrl + "/playlists")
                     .queryParam("part", "snippet") // Snippet contains title and description
                     .queryParam("id", youtubePlaylistId) // Filter by specific ID
                     .queryParam("maxResults", 1) // Expect only one result
@@ -203,6 +402,7 @@ public class YoutubeApiService {
             // Return null or throw specific exception (e.g., PlaylistNotFound)
             return null;
         } catch (Exception e) {
+            TransferCancelledException.rethrowIfInterrupted(e);
             log.error("Generic Error fetching details for YouTube playlist {}: {}", youtubePlaylistId, e.getMessage(), e);
             return null; // Indicate error
         }
@@ -0,0 +1,77 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoItemDto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams one playlistItems page, keeping only nextPageToken and each item's ID, videoId, title and
+ * channel. Items without a videoId (deleted / private videos) are dropped.
+ */
+public class YoutubePlaylistItemsDecoder extends StreamingJsonDecoder<YoutubePlaylistItemsDecoder.Page> {
+
+    private static final String[] ROOT = {};
+    private static final String[] ITEM = {"items", ARRAY_ELEMENT};
+    private static final String[] SNIPPET = {"items", ARRAY_ELEMENT, "snippet"};
+    private static final String[] RESOURCE_ID = {"items", ARRAY_ELEMENT, "snippet", "resourceId"};
+
+    public record Page(String nextPageToken, List<YoutubeVideoItemDto> items) {
+    }
+
+    private final List<YoutubeVideoItemDto> items = new ArrayList<>(50); // maxResults per page
+    private String nextPageToken;
+    private String videoId;
+    private String title;
+    private String channelTitle;
+    private String itemId;
+
+    @Override
+    protected void onValue(String name, JsonToken token, JsonParser parser) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            return;
+        }
+        if (inside(SNIPPET)) {
+            if ("title".equals(name)) {
+                title = parser.getText();
+            } else if ("videoOwnerChannelTitle".equals(name)) {
+                channelTitle = parser.getText();
+            }
+        } else if (inside(RESOURCE_ID)) {
+            if ("videoId".equals(name)) {
+                videoId = parser.getText();
+            }
+        } else if (inside(ITEM)) {
+            if ("id".equals(name)) {
+                itemId = parser.getText();
+            }
+        } else if (inside(ROOT) && "nextPageToken".equals(name)) {
+            nextPageToken = parser.getText();
+        }
+    }
+
+    @Override
+    protected void onStartContainer(boolean array) {
+        if (!array && inside(ITEM)) {
+            videoId = null;
+            title = null;
+            channelTitle = null;
+            itemId = null;
+        }
+    }
+
+    @Override
+    protected void onEndContainer(boolean array) {
+        if (!array && inside(ITEM) && videoId != null) {
+            items.add(new YoutubeVideoItemDto(videoId, title, channelTitle, itemId));
+        }
+    }
+
+    @Override
+    protected Page result() {
+        return new Page(nextPageToken, items);
+    }
+}
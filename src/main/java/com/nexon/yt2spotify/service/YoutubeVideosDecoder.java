@@ -0,0 +1,82 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoDetailsDto;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a videos.list response, keeping each video's id, categoryId, duration and whether it can be
+ * played (uploadStatus {@code processed} and not private). Deleted and private videos are usually not
+ * returned at all; callers treat requested IDs that are missing as unavailable.
+ */
+public class YoutubeVideosDecoder extends StreamingJsonDecoder<List<YoutubeVideoDetailsDto>> {
+
+    private static final String[] ITEM = {"items", ARRAY_ELEMENT};
+    private static final String[] SNIPPET = {"items", ARRAY_ELEMENT, "snippet"};
+    private static final String[] CONTENT_DETAILS = {"items", ARRAY_ELEMENT, "contentDetails"};
+    private static final String[] STATUS = {"items", ARRAY_ELEMENT, "status"};
+
+    private final List<YoutubeVideoDetailsDto> videos = new ArrayList<>(50); // maxResults per request
+    private YoutubeVideoDetailsDto video;
+    private String uploadStatus;
+    private String privacyStatus;
+
+    @Override
+    protected void onValue(String name, JsonToken token, JsonParser parser) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            return;
+        }
+        if (inside(ITEM) && "id".equals(name)) {
+            video.setVideoId(parser.getText());
+        } else if (inside(SNIPPET) && "categoryId".equals(name)) {
+            video.setCategoryId(parser.getText());
+        } else if (inside(CONTENT_DETAILS) && "duration".equals(name)) {
+            video.setDurationSeconds(parseDuration(parser.getText()));
+        } else if (inside(STATUS)) {
+            if ("uploadStatus".equals(name)) {
+                uploadStatus = parser.getText();
+            } else if ("privacyStatus".equals(name)) {
+                privacyStatus = parser.getText();
+            }
+        }
+    }
+
+    @Override
+    protected void onStartContainer(boolean array) {
+        if (!array && inside(ITEM)) {
+            video = new YoutubeVideoDetailsDto();
+            uploadStatus = null;
+            privacyStatus = null;
+        }
+    }
+
+    @Override
+    protected void onEndContainer(boolean array) {
+        if (!array && inside(ITEM) && video.getVideoId() != null) {
+            // Missing status fields (not requested) count as available
+            video.setAvailable((uploadStatus == null || "processed".equals(uploadStatus))
+                    && !"private".equals(privacyStatus));
+            videos.add(video);
+        }
+    }
+
+    @Override
+    protected List<YoutubeVideoDetailsDto> result() {
+        return videos;
+    }
+
+    /** ISO-8601 duration as sent by YouTube ("PT4M13S", "P1DT2H", "P0D" for live streams). */
+    static int parseDuration(String isoDuration) {
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, Duration.parse(isoDuration).getSeconds());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+-- Baseline: the tables as Hibernate's ddl-auto used to create them. IF NOT EXISTS, so a database that
+-- was set up that way is adopted as it is, and a new one ends up with the same schema.
+
+CREATE TABLE IF NOT EXISTS app_users (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    spotify_id   VARCHAR(255),
+    google_id    VARCHAR(255),
+    email        VARCHAR(255),
+    display_name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_app_users_spotify_id UNIQUE (spotify_id),  -- Principal lookups (findBySpotifyId)
+    CONSTRAINT uk_app_users_google_id UNIQUE (google_id)     -- Principal lookups (findByGoogleId)
+);
+
+CREATE TABLE IF NOT EXISTS track_matches (
+    video_id         VARCHAR(64) PRIMARY KEY,
+    spotify_track_id VARCHAR(64) NOT NULL,
+    artist_name      VARCHAR(255),
+    matched_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    validated_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- JdbcOAuth2AuthorizedClientService (Spring Security's schema, PostgreSQL flavour). Looked up by its
+-- primary key on every API call that needs a provider token.
+CREATE TABLE IF NOT EXISTS oauth2_authorized_client (
+    client_registration_id  VARCHAR(100)  NOT NULL,
+    principal_name          VARCHAR(200)  NOT NULL,
+    access_token_type       VARCHAR(100)  NOT NULL,
+    access_token_value      BYTEA         NOT NULL,
+    access_token_issued_at  TIMESTAMP     NOT NULL,
+    access_token_expires_at TIMESTAMP     NOT NULL,
+    access_token_scopes     VARCHAR(1000) DEFAULT NULL,
+    refresh_token_value     BYTEA         DEFAULT NULL,
+    refresh_token_issued_at TIMESTAMP     DEFAULT NULL,
+    created_at              TIMESTAMP     DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (client_registration_id, principal_name)
+);
@@ -0,0 +1,3 @@
+-- Login linking finds an existing account by email, case-insensitively (UserRepository.findByEmail
+-- compares lower(email)). Without this every first login of a second provider scans app_users.
+CREATE INDEX IF NOT EXISTS idx_app_users_email_lower ON app_users (lower(email));
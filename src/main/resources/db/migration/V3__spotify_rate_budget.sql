@@ -0,0 +1,9 @@
+-- One row per running node, for the cluster-wide Spotify rate budget (SpotifyRateBudgetFilter). Every node
+-- heartbeats its queued work each lease interval and takes its share of the app-wide rate from the live rows.
+CREATE TABLE rate_budget_nodes (
+    node_id          VARCHAR(100) PRIMARY KEY,
+    queued_work      INT NOT NULL,
+    leased_rate      DOUBLE PRECISION NOT NULL DEFAULT 0,  -- Requests per second granted by the last lease
+    heartbeat_at     TIMESTAMP WITH TIME ZONE NOT NULL,
+    lease_expires_at TIMESTAMP WITH TIME ZONE
+);
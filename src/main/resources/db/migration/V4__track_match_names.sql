@@ -0,0 +1,4 @@
+-- Name and duration of the matched track, so LocalTrackIndex can resolve later videos of the same
+-- song without a search. Rows from before stay NULL and are simply not indexed.
+ALTER TABLE track_matches ADD COLUMN track_name VARCHAR(255);
+ALTER TABLE track_matches ADD COLUMN duration_ms INT;
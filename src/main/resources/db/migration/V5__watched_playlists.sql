@@ -0,0 +1,26 @@
+-- YouTube playlists whose new videos are synced into a Spotify playlist (PlaylistWatchScheduler). Due rows
+-- are claimed with FOR UPDATE SKIP LOCKED, so every node checks a different set.
+CREATE TABLE watched_playlists (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    owner_name          VARCHAR(200) NOT NULL,  -- Principal name, resolved to provider tokens like a logged in user's
+    youtube_playlist_id VARCHAR(64) NOT NULL,
+    spotify_playlist_id VARCHAR(64),            -- NULL until the first sync creates it
+    etag                VARCHAR(100),           -- Of the playlist resource at the last complete sync
+    item_count          INT,
+    last_sync_job_id    VARCHAR(36),
+    next_check_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    last_checked_at     TIMESTAMP(6) WITH TIME ZONE,
+    last_synced_at      TIMESTAMP(6) WITH TIME ZONE,
+    created_at          TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT uk_watched_playlists_owner_playlist UNIQUE (owner_name, youtube_playlist_id)
+);
+
+CREATE INDEX idx_watched_playlists_next_check_at ON watched_playlists (next_check_at);
+
+-- Videos handled by the syncs of a watched playlist, one row each: a sync inserts the videos it added (and
+-- deletes the few removed from the playlist) instead of rewriting the whole list.
+CREATE TABLE watched_playlist_video (
+    watch_id BIGINT      NOT NULL REFERENCES watched_playlists (id) ON DELETE CASCADE,
+    video_id VARCHAR(64) NOT NULL,
+    PRIMARY KEY (watch_id, video_id)
+);
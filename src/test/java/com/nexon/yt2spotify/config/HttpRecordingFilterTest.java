@@ -0,0 +1,115 @@
+package com.nexon.yt2spotify.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HttpRecordingFilterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void exchangesAreRecordedWithoutCredentialsAndStillReachTheCaller() throws IOException {
+        HttpRecordingFilter recording = new HttpRecordingFilter(directory.toString());
+        WebClient webClient = WebClient.builder()
+                .filter(recording)
+                .exchangeFunction(this::exchange)
+                .build();
+
+        String playlists = webClient.get()
+                .uri("http://youtube.test/youtube/v3/playlists?part=snippet&id=PL1&key=secret-key")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer secret-token")
+                .retrieve().bodyToMono(String.class).block();
+        String snapshot = webClient.post()
+                .uri("http://spotify.test/v1/playlists/sp1/tracks")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer secret-token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("uris", List.of("spotify:track:1")))
+                .retrieve().bodyToMono(String.class).block();
+        recording.close();
+
+        assertEquals("{\"items\":[{\"id\":\"PL1\"}]}", playlists);
+        assertEquals("{\"snapshot_id\":\"snap\",\"request\":{\"uris\":[\"spotify:track:1\"]}}", snapshot);
+        try (var files = Files.list(directory)) {
+            String recorded = Files.readString(files.findFirst().orElseThrow());
+            assertFalse(recorded.contains("secret"));
+            ObjectMapper objectMapper = new ObjectMapper();
+            List<RecordedExchange> exchanges = recorded.lines().map(line -> {
+                try {
+                    return objectMapper.readValue(line, RecordedExchange.class);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+            assertEquals(2, exchanges.size());
+            assertEquals("http://youtube.test/youtube/v3/playlists?part=snippet&id=PL1&key=REDACTED", exchanges.get(0).url());
+            assertNull(exchanges.get(0).requestBody());
+            assertEquals(playlists, exchanges.get(0).body());
+            assertEquals("\"etag1\"", exchanges.get(0).headers().get(HttpHeaders.ETAG));
+            assertEquals("POST", exchanges.get(1).method());
+            assertEquals("{\"uris\":[\"spotify:track:1\"]}", exchanges.get(1).requestBody());
+            assertEquals(201, exchanges.get(1).status());
+            assertEquals(snapshot, exchanges.get(1).body());
+        }
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request) {
+        if (request.url().getPath().endsWith("/tracks")) {
+            // Sends the body, as the real connector does, and echoes it
+            MockClientHttpRequest sent = new MockClientHttpRequest(request.method(), request.url());
+            return request.body().insert(sent, context()).then(Mono.defer(sent::getBodyAsString))
+                    .map(body -> json(HttpStatus.CREATED, "{\"snapshot_id\":\"snap\",\"request\":" + body + "}").build());
+        }
+        return Mono.just(json(HttpStatus.OK, "{\"items\":[{\"id\":\"PL1\"}]}").header(HttpHeaders.ETAG, "\"etag1\"").build());
+    }
+
+    private static ClientResponse.Builder json(HttpStatus status, String body) {
+        return ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header("X-Request-Id", "not-recorded")
+                .body(body);
+    }
+
+    private static BodyInserter.Context context() {
+        return new BodyInserter.Context() {
+            @Override
+            public List<HttpMessageWriter<?>> messageWriters() {
+                return ExchangeStrategies.withDefaults().messageWriters();
+            }
+
+            @Override
+            public Optional<ServerHttpRequest> serverRequest() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Map<String, Object> hints() {
+                return Map.of();
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.CallPriority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OutboundCallFilterTest {
+
+    private final List<CallPriority> sent = new CopyOnWriteArrayList<>();
+    private final WebClient webClient = WebClient.builder()
+            .defaultRequest(CallPriority::tag)
+            .filter(new OutboundCallFilter())
+            .exchangeFunction(request -> {
+                sent.add(CallPriority.of(request));
+                return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+            })
+            .build();
+
+    @AfterEach
+    void unbind() {
+        CallPriority.unbind();
+    }
+
+    @Test
+    void callsKeepThePriorityOfTheThreadThatBuiltThem() {
+        CallPriority.bind(CallPriority.TRANSFER);
+        Mono<Void> call = call(); // Built here, subscribed on a Reactor thread
+        CallPriority.unbind();
+
+        Mono.delay(Duration.ofMillis(1)).then(call).block();
+
+        assertEquals(List.of(CallPriority.TRANSFER), sent);
+    }
+
+    @Test
+    void fanOutsBuiltOnReactorThreadsTakeThePriorityFromTheirContext() {
+        CallPriority.bind(CallPriority.BACKGROUND);
+
+        Flux.range(0, 4)
+                .flatMap(i -> Mono.delay(Duration.ofMillis(i)).then(Mono.defer(this::call)))
+                .contextWrite(CallPriority.capture())
+                .blockLast();
+        Flux.range(0, 2)
+                .flatMap(i -> Mono.delay(Duration.ofMillis(i)).then(Mono.defer(this::call)))
+                .blockLast(); // Nothing captured: the tag of the Reactor thread, i.e. interactive
+
+        assertEquals(List.of(CallPriority.BACKGROUND, CallPriority.BACKGROUND, CallPriority.BACKGROUND, CallPriority.BACKGROUND,
+                CallPriority.INTERACTIVE, CallPriority.INTERACTIVE), sent);
+    }
+
+    private Mono<Void> call() {
+        return webClient.get().uri("http://api.test/v1/search").retrieve().bodyToMono(Void.class);
+    }
+}
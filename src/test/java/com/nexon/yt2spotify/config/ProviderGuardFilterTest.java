@@ -0,0 +1,143 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.CallPriority;
+import com.nexon.yt2spotify.service.ProviderUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProviderGuardFilterTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(200);
+    private static final Duration SLOW_CALL = Duration.ofMillis(100);
+
+    @Test
+    void circuitOpensOnFailuresFailsFastAndClosesAfterSuccessfulProbes() throws InterruptedException {
+        AtomicReference<HttpStatus> status = new AtomicReference<>(HttpStatus.SERVICE_UNAVAILABLE);
+        AtomicInteger sent = new AtomicInteger();
+        WebClient webClient = webClient(guard(2), request -> {
+            sent.incrementAndGet();
+            return Mono.just(ClientResponse.create(status.get()).build());
+        });
+
+        for (int i = 0; i < 10; i++) {
+            status(webClient, "/v1/search"); // 5xx: recorded as failures
+        }
+        assertEquals(10, sent.get());
+        assertThrows(ProviderUnavailableException.class, () -> status(webClient, "/v1/search"));
+        assertEquals(10, sent.get()); // Failed fast, nothing sent
+        status.set(HttpStatus.OK);
+        assertEquals(200, status(webClient, "/youtube/v3/playlistItems").value()); // Other operations are unaffected
+        assertEquals(200, status(webClient, "/v1/me").value());
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 50);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status(webClient, "/v1/search").value()); // Probes
+        }
+        assertEquals(200, status(webClient, "/v1/search").value()); // Closed again
+    }
+
+    @Test
+    void slowCallsOpenTheCircuit() {
+        WebClient webClient = webClient(guard(2), request ->
+                Mono.delay(SLOW_CALL.plusMillis(20)).thenReturn(ClientResponse.create(HttpStatus.OK).build()));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, status(webClient, "/youtube/v3/videos").value());
+        }
+        assertThrows(ProviderUnavailableException.class, () -> status(webClient, "/youtube/v3/videos"));
+    }
+
+    @Test
+    void aSaturatedProviderDoesNotHoldUpTheOther() {
+        WebClient webClient = webClient(guard(2), request -> request.url().getPath().startsWith("/youtube")
+                ? Mono.never() // YouTube hangs
+                : Mono.just(ClientResponse.create(HttpStatus.OK).build()));
+        status(webClient, "/v1/search"); // Warm-up
+
+        webClient.get().uri("http://api.test/youtube/v3/playlistItems").retrieve().toBodilessEntity().subscribe();
+        webClient.get().uri("http://api.test/youtube/v3/playlistItems").retrieve().toBodilessEntity().subscribe();
+
+        long start = System.nanoTime();
+        assertEquals(200, status(webClient, "/v1/search").value());
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(150).toNanos());
+        // A third YouTube call waits for a permit, then gives up
+        ProviderUnavailableException e = assertThrows(ProviderUnavailableException.class, () -> status(webClient, "/youtube/v3/playlists"));
+        assertTrue(e.getMessage().contains("YOUTUBE bulkhead full"), e.getMessage());
+    }
+
+    @Test
+    void waitingCallsGetThePermitsOfFinishedOnes() {
+        ProviderGuardFilter.Bulkhead bulkhead = new ProviderGuardFilter.Bulkhead(1, 0);
+        bulkhead.acquire(CallPriority.INTERACTIVE).block();
+        AtomicInteger acquired = new AtomicInteger();
+        bulkhead.acquire(CallPriority.INTERACTIVE).subscribe(v -> { }, e -> { }, acquired::incrementAndGet);
+        bulkhead.acquire(CallPriority.INTERACTIVE).timeout(Duration.ofMillis(10)).onErrorResume(e -> Mono.empty()).block(); // Gives up
+        assertEquals(0, acquired.get());
+
+        bulkhead.release();
+        assertEquals(1, acquired.get());
+        assertEquals(1, bulkhead.inUse());
+        bulkhead.release();
+        assertEquals(0, bulkhead.inUse());
+    }
+
+    @Test
+    void transfersLeaveReservedPermitsAndWaitBehindInteractiveCalls() {
+        ProviderGuardFilter.Bulkhead bulkhead = new ProviderGuardFilter.Bulkhead(4, 2);
+        AtomicInteger transfers = new AtomicInteger();
+        AtomicInteger resyncs = new AtomicInteger();
+        AtomicInteger interactive = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            bulkhead.acquire(CallPriority.TRANSFER).subscribe(v -> { }, e -> { }, transfers::incrementAndGet);
+        }
+        bulkhead.acquire(CallPriority.BACKGROUND).subscribe(v -> { }, e -> { }, resyncs::incrementAndGet);
+        assertEquals(2, transfers.get()); // The other two permits are kept for interactive calls
+
+        bulkhead.acquire(CallPriority.INTERACTIVE).block(Duration.ofSeconds(1));
+        bulkhead.acquire(CallPriority.INTERACTIVE).block(Duration.ofSeconds(1));
+        bulkhead.acquire(CallPriority.INTERACTIVE).subscribe(v -> { }, e -> { }, interactive::incrementAndGet);
+        assertEquals(4, bulkhead.inUse());
+
+        bulkhead.release(); // A transfer call finished: the waiting interactive call goes first
+        assertEquals(1, interactive.get());
+        assertEquals(2, transfers.get());
+        bulkhead.release();
+        bulkhead.release();
+        assertEquals(2, transfers.get()); // Still at the transfer limit
+        bulkhead.release(); // Back under the transfer limit
+        assertEquals(3, transfers.get());
+        assertEquals(0, resyncs.get()); // Gets nothing while a transfer call is waiting or the limit is used
+        bulkhead.release();
+        bulkhead.release();
+        assertEquals(1, resyncs.get());
+    }
+
+    private static ProviderGuardFilter guard(int maxConcurrent) {
+        return new ProviderGuardFilter(20, 10, 50, SLOW_CALL, 80, OPEN_DURATION, 3,
+                maxConcurrent, maxConcurrent, 0, Duration.ofMillis(200));
+    }
+
+    private static WebClient webClient(ProviderGuardFilter guard,
+                                       Function<ClientRequest, Mono<ClientResponse>> exchange) {
+        return WebClient.builder().filter(guard).exchangeFunction(exchange::apply).build();
+    }
+
+    private static HttpStatus status(WebClient webClient, String path) {
+        return webClient.get().uri("http://api.test" + path)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(HttpStatus.valueOf(response.statusCode().value())))
+                .block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,118 @@
+package com.nexon.yt2spotify.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigratorTest {
+
+    @Test
+    void migrationsAreFoundInVersionOrder() {
+        List<SchemaMigrator.Migration> migrations = SchemaMigrator.migrations();
+
+        assertEquals(List.of(1, 2, 3, 4, 5), migrations.stream().map(SchemaMigrator.Migration::version).toList());
+        assertEquals("baseline", migrations.get(0).description());
+        assertEquals("identity lookup indexes", migrations.get(1).description());
+    }
+
+    /**
+     * Query plans of the login lookups on a migrated schema with 1M users. Needs a Postgres to work
+     * in, e.g. {@code YT2SPOTIFY_TEST_DB_URL=jdbc:postgresql://localhost:5000/db?user=admin_user&password=password};
+     * everything is created in a schema of its own that is dropped afterwards.
+     */
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @EnabledIfEnvironmentVariable(named = "YT2SPOTIFY_TEST_DB_URL", matches = ".+")
+    class QueryPlans {
+
+        private static final String SCHEMA = "yt2spotify_query_plans";
+        private static final int USERS = 1_000_000;
+
+        private SingleConnectionDataSource dataSource;
+        private JdbcTemplate jdbc;
+
+        @BeforeAll
+        void migrateAndSeed() {
+            dataSource = new SingleConnectionDataSource(System.getenv("YT2SPOTIFY_TEST_DB_URL"), true);
+            jdbc = new JdbcTemplate(dataSource);
+            jdbc.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            jdbc.execute("CREATE SCHEMA " + SCHEMA);
+            jdbc.execute("SET search_path TO " + SCHEMA);
+
+            new SchemaMigrator(dataSource, true).afterPropertiesSet();
+            new SchemaMigrator(dataSource, true).afterPropertiesSet(); // Second node: nothing left to apply
+
+            jdbc.update("""
+                    INSERT INTO app_users (spotify_id, google_id, email, display_name)
+                    SELECT CASE WHEN n % 2 = 0 THEN 'spotify-' || n END,
+                           CASE WHEN n % 3 = 0 THEN 'google-' || n END,
+                           'User.' || n || '@Example.com',
+                           'User ' || n
+                    FROM generate_series(1, ?) AS n""", USERS);
+            jdbc.execute("ANALYZE app_users");
+        }
+
+        @AfterAll
+        void dropSchema() {
+            jdbc.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            dataSource.destroy();
+        }
+
+        @Test
+        void everyMigrationIsRecordedOnce() {
+            assertEquals(List.of(1, 2, 3, 4, 5), jdbc.queryForList("SELECT version FROM schema_migrations ORDER BY version", Integer.class));
+        }
+
+        @Test
+        void emailLookupIgnoresCaseAndUsesTheIndex() {
+            // As generated for UserRepository.findByEmail
+            String sql = "SELECT id FROM app_users WHERE lower(email) = lower(?) ORDER BY id FETCH FIRST 1 ROWS ONLY";
+            assertEquals(List.of(424242L), jdbc.queryForList(sql, Long.class, "user.424242@EXAMPLE.com"));
+            assertIndexScan(sql, "user.424242@example.com");
+        }
+
+        @Test
+        void providerLookupsUseTheirIndexes() {
+            assertIndexScan("SELECT id FROM app_users WHERE spotify_id = ?", "spotify-424242");
+            assertIndexScan("SELECT id FROM app_users WHERE google_id = ?", "google-424242");
+        }
+
+        private void assertIndexScan(String sql, String parameter) {
+            String plan = jdbc.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, parameter);
+            List<String> nodeTypes = nodeTypes(plan);
+            assertFalse(nodeTypes.contains("Seq Scan"), sql + " scans app_users: " + nodeTypes);
+            assertTrue(nodeTypes.stream().anyMatch(type -> type.contains("Index")), sql + ": " + nodeTypes);
+        }
+
+        private List<String> nodeTypes(String json) {
+            try {
+                List<String> types = new ArrayList<>();
+                collect(new ObjectMapper().readTree(json).get(0).get("Plan"), types);
+                return types;
+            } catch (Exception e) {
+                throw new RuntimeException("Unreadable plan: " + json, e);
+            }
+        }
+
+        private void collect(JsonNode plan, List<String> types) {
+            types.add(plan.get("Node Type").asText());
+            if (plan.has("Plans")) {
+                plan.get("Plans").forEach(child -> collect(child, types));
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.nexon.yt2spotify.config;
+
+import com.nexon.yt2spotify.service.CallPriority;
+import com.nexon.yt2spotify.service.ProviderUnavailableException;
+import com.nexon.yt2spotify.service.TransferJobRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpotifyRateBudgetFilterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    void sharesAddUpToTheAppRateInProportionToQueuedWork() {
+        int[] queuedWork = {0, 99, 300};
+        long total = IntStream.of(queuedWork).sum();
+        double[] shares = IntStream.of(queuedWork)
+                .mapToDouble(queued -> SpotifyRateBudgetFilter.share(20, queued, queuedWork.length, total)).toArray();
+
+        assertEquals(20, shares[0] + shares[1] + shares[2], 1e-9);
+        assertEquals(3 * shares[1], shares[2], 0.1);
+        assertTrue(shares[0] > 0, "an idle node can still make a call");
+    }
+
+    @Test
+    void limiterKeepsAReserveForInteractiveCalls() {
+        SpotifyRateBudgetFilter.RateLimiter limiter = new SpotifyRateBudgetFilter.RateLimiter(10, 0.2, 0);
+        assertTrue(limiter.tryAcquire(CallPriority.INTERACTIVE, 0));
+        assertFalse(limiter.tryAcquire(CallPriority.TRANSFER, 0));
+
+        long now = 5 * SECOND; // Idle for a while: one second of calls saved up, not five
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limiter.tryAcquire(CallPriority.TRANSFER, now));
+        }
+        assertFalse(limiter.tryAcquire(CallPriority.TRANSFER, now)); // Two calls are kept in reserve
+        assertTrue(limiter.tryAcquire(CallPriority.INTERACTIVE, now));
+        assertTrue(limiter.tryAcquire(CallPriority.INTERACTIVE, now));
+        assertFalse(limiter.tryAcquire(CallPriority.INTERACTIVE, now));
+
+        now += SECOND / 10;
+        assertFalse(limiter.tryAcquire(CallPriority.BACKGROUND, now));
+        assertTrue(limiter.tryAcquire(CallPriority.INTERACTIVE, now));
+
+        limiter.setRate(2, now); // New lease
+        assertTrue(limiter.tryAcquire(CallPriority.INTERACTIVE, now + SECOND / 2));
+        assertFalse(limiter.tryAcquire(CallPriority.TRANSFER, now + SECOND)); // Needs 1.4 tokens
+        assertTrue(limiter.tryAcquire(CallPriority.TRANSFER, now + SECOND / 2 + 3 * SECOND / 4));
+    }
+
+    @Test
+    void waitingInteractiveCallsGoBeforeWaitingTransferCalls() {
+        SpotifyRateBudgetFilter.RateLimiter limiter = new SpotifyRateBudgetFilter.RateLimiter(20, 0, System.nanoTime());
+        List<CallPriority> order = new CopyOnWriteArrayList<>();
+        List<Mono<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(limiter.acquire(CallPriority.TRANSFER, SECOND).doOnSuccess(v -> order.add(CallPriority.TRANSFER)).cache());
+        }
+        calls.add(limiter.acquire(CallPriority.BACKGROUND, SECOND).doOnSuccess(v -> order.add(CallPriority.BACKGROUND)).cache());
+        calls.add(limiter.acquire(CallPriority.INTERACTIVE, SECOND).doOnSuccess(v -> order.add(CallPriority.INTERACTIVE)).cache());
+        calls.forEach(Mono::subscribe);
+        assertEquals(6, limiter.waiting()); // The first transfer call went at once
+
+        Mono.when(calls).block(Duration.ofSeconds(5));
+        assertEquals(List.of(CallPriority.TRANSFER, CallPriority.INTERACTIVE, CallPriority.TRANSFER, CallPriority.TRANSFER,
+                CallPriority.TRANSFER, CallPriority.TRANSFER, CallPriority.BACKGROUND), order);
+    }
+
+    @Test
+    void spotifyCallsArePacedAndOtherCallsAreNot() {
+        SpotifyRateBudgetFilter budget = new SpotifyRateBudgetFilter(null, new TransferJobRegistry(10, 16),
+                true, 10, Duration.ofSeconds(2), Duration.ofSeconds(2), 0.2);
+        WebClient webClient = WebClient.builder().filter(budget)
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).build();
+
+        long start = System.nanoTime();
+        assertEquals(50, calls(webClient, "/youtube/v3/playlistItems", 50));
+        assertTrue(System.nanoTime() - start < SECOND / 4, "YouTube calls were paced");
+
+        start = System.nanoTime();
+        assertEquals(15, calls(webClient, "/v1/search", 15)); // One at once, the rest 100 ms apart
+        assertTrue(System.nanoTime() - start >= SECOND / 2 - SECOND / 100, "not paced at 10/s");
+
+        // The calls already waiting take more than max-wait: fails fast instead of queueing
+        assertThrows(ProviderUnavailableException.class, () -> calls(webClient, "/v1/search", 30));
+    }
+
+    @Test
+    void interactiveSearchesDontQueueBehindATransfer() throws InterruptedException {
+        SpotifyRateBudgetFilter budget = new SpotifyRateBudgetFilter(null, new TransferJobRegistry(10, 16),
+                true, 10, Duration.ofSeconds(2), Duration.ofSeconds(5), 0.2);
+        WebClient webClient = WebClient.builder().filter(budget)
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).build();
+        AtomicInteger transferCalls = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            webClient.get().uri("http://api.test/v1/search").attribute(CallPriority.ATTRIBUTE, CallPriority.TRANSFER)
+                    .retrieve().toBodilessEntity().subscribe(response -> transferCalls.incrementAndGet());
+        }
+        Thread.sleep(300); // Transfer calls are being paced
+
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            assertEquals(1, calls(webClient, "/v1/search", 1));
+            assertTrue(System.nanoTime() - start < SECOND / 10, "interactive search waited for the transfer");
+        }
+        assertTrue(transferCalls.get() < 5, transferCalls + " transfer calls already went");
+    }
+
+    private static long calls(WebClient webClient, String path, int count) {
+        return Flux.range(0, count)
+                .flatMap(i -> webClient.get().uri("http://api.test" + path).retrieve().toBodilessEntity())
+                .count()
+                .block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,47 @@
+package com.nexon.yt2spotify.controller;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyBatchSearchRequestDto;
+import com.nexon.yt2spotify.service.AuthorizationHelper;
+import com.nexon.yt2spotify.service.FakeProviderExchange;
+import com.nexon.yt2spotify.service.SpotifyApiService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.ClientAuthorizationRequiredException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpotifyControllerTest {
+
+    private final Authentication user = new UsernamePasswordAuthenticationToken("user", null);
+
+    @Test
+    void aBatchSearchWithoutSpotifyAuthorizationIsUnauthorized() {
+        assertEquals(HttpStatus.UNAUTHORIZED, batchSearchStatus(() -> new ClientAuthorizationRequiredException("spotify")));
+        assertEquals(HttpStatus.UNAUTHORIZED, batchSearchStatus(() -> new RuntimeException(
+                "Stored spotify authorization failed or token missing. Please try logging in to spotify again.")));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, batchSearchStatus(() -> new IllegalStateException("Database down")));
+    }
+
+    private HttpStatus batchSearchStatus(Supplier<RuntimeException> tokenFailure) {
+        AuthorizationHelper authorizationHelper = new AuthorizationHelper(null, null, null, null) {
+            @Override
+            public String getAccessToken(Authentication authentication, String clientRegistrationId) {
+                throw tokenFailure.get();
+            }
+        };
+        SpotifyApiService spotifyApiService = new SpotifyApiService(
+                new FakeProviderExchange().webClient(), FakeProviderExchange.SPOTIFY_BASE_URL, 4);
+        SpotifyController controller = new SpotifyController(spotifyApiService, authorizationHelper);
+        SpotifyBatchSearchRequestDto request = new SpotifyBatchSearchRequestDto(List.of("Song 0"));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> controller.searchSpotifyTracks(request, user));
+        return HttpStatus.valueOf(e.getStatusCode().value());
+    }
+}
@@ -0,0 +1,189 @@
+package com.nexon.yt2spotify.controller;
+
+import com.nexon.yt2spotify.dto.transfer.TransferJobDto;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import com.nexon.yt2spotify.service.AuthorizationHelper;
+import com.nexon.yt2spotify.service.FakeProviderExchange;
+import com.nexon.yt2spotify.service.InMemoryTrackMatchRepository;
+import com.nexon.yt2spotify.service.LocalTrackIndex;
+import com.nexon.yt2spotify.service.SpotifyApiService;
+import com.nexon.yt2spotify.service.SpotifyPlaylistWriter;
+import com.nexon.yt2spotify.service.TrackMatcher;
+import com.nexon.yt2spotify.service.TransferJob;
+import com.nexon.yt2spotify.service.TransferJobRegistry;
+import com.nexon.yt2spotify.service.TransferService;
+import com.nexon.yt2spotify.service.YoutubeApiService;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterRegistration;
+import jakarta.servlet.ServletRegistration;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.context.support.GenericWebApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferControllerTest {
+
+    private final FakeProviderExchange apis = new FakeProviderExchange().playlistSize(4);
+    private final Authentication user = new UsernamePasswordAuthenticationToken("user", null);
+
+    @Test
+    void aPreviewIsCommittedOnceEvenByConcurrentRequests() throws Exception {
+        TransferService transferService = transferService();
+        TransferJobRegistry registry = new TransferJobRegistry(10, 64);
+        TransferController controller = new TransferController(transferService, registry, authorizationHelper(), Duration.ofHours(1), Duration.ZERO);
+        TransferJob preview = registry.createPreview("user", "PL1");
+        transferService.transferYoutubePlaylistAsync(preview, "spotify", "google"); // No Spring proxy: runs right here
+
+        List<ResponseEntity<?>> responses = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            List<Future<ResponseEntity<?>>> commits = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                commits.add(executor.submit(() -> {
+                    start.await();
+                    return controller.commitPreview(preview.getId(), user);
+                }));
+            }
+            start.countDown();
+            for (Future<ResponseEntity<?>> commit : commits) {
+                responses.add(commit.get());
+            }
+        }
+        responses.add(controller.commitPreview(preview.getId(), user)); // And once more after both are done
+
+        List<ResponseEntity<?>> accepted = responses.stream().filter(response -> response.getStatusCode() == HttpStatus.ACCEPTED).toList();
+        assertEquals(1, accepted.size());
+        String commitJobId = ((TransferJobDto) accepted.get(0).getBody()).getJobId();
+        for (ResponseEntity<?> response : responses) {
+            if (response != accepted.get(0)) {
+                assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+                assertEquals(commitJobId, ((TransferJobDto) response.getBody()).getJobId());
+            }
+        }
+        assertEquals(commitJobId, preview.toDto().getCommitJobId());
+        assertEquals(1, apis.calls("POST /v1/users/spotify-user/playlists"));
+    }
+
+    @Test
+    void theEventStreamOutlivesTheRequestTimeoutWithHeartbeats() throws Exception {
+        apis.searchHangsAfter(0); // The job stays in matching until cancelled
+        TransferService transferService = transferService();
+        TransferJobRegistry registry = new TransferJobRegistry(10, 64);
+        TransferController controller = new TransferController(transferService, registry, authorizationHelper(), Duration.ofHours(1), Duration.ofMillis(200));
+        TransferJob job = registry.create("user", "PL1");
+        WebServer server = server(controller, Duration.ofSeconds(1));
+        server.start();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newHttpClient()) {
+            executor.submit(() -> transferService.transferYoutubePlaylistAsync(job, "spotify", "google"));
+            executor.submit(() -> {
+                Thread.sleep(3000); // Three request timeouts
+                return job.cancel("Cancelled by the test");
+            });
+            long start = System.nanoTime();
+            List<String> lines = client.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/api/transfers/" + job.getId() + "/events"))
+                            .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                            .build(),
+                    HttpResponse.BodyHandlers.ofLines()).body().toList();
+            Duration open = Duration.ofNanos(System.nanoTime() - start);
+
+            assertTrue(open.compareTo(Duration.ofSeconds(3)) >= 0, "stream closed after " + open);
+            assertTrue(lines.stream().filter(":heartbeat"::equals).count() >= 5, "heartbeats: " + lines);
+            assertEquals("event:FINISHED", lines.stream().filter(line -> line.startsWith("event:")).reduce((first, last) -> last).orElseThrow());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /** The controller on embedded Tomcat, with Spring MVC's async request timeout set to {@code asyncTimeout}. */
+    private WebServer server(TransferController controller, Duration asyncTimeout) {
+        GenericWebApplicationContext context = new GenericWebApplicationContext();
+        AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
+        context.registerBean(WebMvc.class);
+        context.getBeanFactory().registerSingleton("transferController", controller); // As built, no @Value injection
+        context.registerBean(WebMvcConfigurer.class, () -> new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setDefaultTimeout(asyncTimeout.toMillis());
+            }
+        });
+        return new TomcatServletWebServerFactory(0).getWebServer(servletContext -> {
+            context.setServletContext(servletContext);
+            FilterRegistration.Dynamic login = servletContext.addFilter("login", (Filter) (request, response, chain) ->
+                    chain.doFilter(new HttpServletRequestWrapper((HttpServletRequest) request) {
+                        @Override
+                        public Principal getUserPrincipal() {
+                            return user;
+                        }
+                    }, response));
+            login.setAsyncSupported(true);
+            login.addMappingForUrlPatterns(null, false, "/*");
+            ServletRegistration.Dynamic dispatcher = servletContext.addServlet("dispatcher", new DispatcherServlet(context));
+            dispatcher.setAsyncSupported(true);
+            dispatcher.setLoadOnStartup(1);
+            dispatcher.addMapping("/");
+        });
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class WebMvc {
+    }
+
+    private TransferService transferService() {
+        WebClient webClient = apis.webClient();
+        SpotifyApiService spotifyApiService = new SpotifyApiService(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 4);
+        TrackMatchRepository trackMatchRepository = new InMemoryTrackMatchRepository(false).repository();
+        LocalTrackIndex localTrackIndex = new LocalTrackIndex(trackMatchRepository, false);
+        return new TransferService(
+                spotifyApiService,
+                new TrackMatcher(spotifyApiService, localTrackIndex, 0.6, 0, 0.9),
+                new YoutubeApiService(webClient, FakeProviderExchange.YOUTUBE_BASE_URL),
+                new SpotifyPlaylistWriter(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 2, 3),
+                trackMatchRepository,
+                localTrackIndex,
+                Set.of(), 0, Duration.ZERO);
+    }
+
+    private static AuthorizationHelper authorizationHelper() {
+        return new AuthorizationHelper(null, null, null, null) {
+            @Override
+            public String getAccessToken(Authentication authentication, String clientRegistrationId) {
+                return clientRegistrationId;
+            }
+        };
+    }
+}
@@ -0,0 +1,231 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The YouTube and Spotify APIs as far as a transfer uses them, answered in memory, for transfer tests.
+ * Every YouTube playlist has {@link #playlistSize} videos "Song 0", "Song 1", ... ({@code video0}, ...), all
+ * music, and each is found on Spotify as {@code track0}, ... unless listed in {@link #missingSongs}. The
+ * Spotify user is {@code spotify-user}, and the playlist a transfer creates is {@code pl}.
+ * <p>
+ * Requests are logged, so tests can count calls ({@code "GET /v1/search"}) and read their query
+ * parameters; the add-tracks bodies are kept as JSON.
+ */
+public class FakeProviderExchange implements ExchangeFunction {
+
+    public static final String YOUTUBE_BASE_URL = "http://youtube.test/youtube/v3";
+    public static final String SPOTIFY_BASE_URL = "http://spotify.test/v1";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+    private final List<JsonNode> addedBatches = new CopyOnWriteArrayList<>();
+    private final AtomicInteger searches = new AtomicInteger();
+    private final AtomicInteger cancelledCalls = new AtomicInteger();
+    private final Map<String, String> playlistEtags = new ConcurrentHashMap<>();
+    private final Map<String, Integer> playlistItemCounts = new ConcurrentHashMap<>();
+    private volatile int playlistSize = 3;
+    private volatile Set<Integer> missingSongs = Set.of();
+    private volatile int searchHangsAfter = Integer.MAX_VALUE;
+    private volatile int spotifyPlaylistTotal;
+    private volatile Function<ClientRequest, Mono<ClientResponse>> addTracks = request -> json("{\"snapshot_id\":\"snap\"}");
+
+    public WebClient webClient() {
+        return WebClient.builder().exchangeFunction(this).build();
+    }
+
+    public FakeProviderExchange playlistSize(int videos) {
+        this.playlistSize = videos;
+        return this;
+    }
+
+    /** Songs with no Spotify search result. */
+    public FakeProviderExchange missingSongs(Integer... songs) {
+        this.missingSongs = Set.of(songs);
+        return this;
+    }
+
+    /** Searches after the first {@code searches} never answer (see {@link #hang}). */
+    public FakeProviderExchange searchHangsAfter(int searches) {
+        this.searchHangsAfter = searches;
+        return this;
+    }
+
+    /** What playlists.list reports for a playlist with {@code part=contentDetails}. */
+    public FakeProviderExchange playlistState(String youtubePlaylistId, String etag, int itemCount) {
+        playlistEtags.put(youtubePlaylistId, etag);
+        playlistItemCounts.put(youtubePlaylistId, itemCount);
+        return this;
+    }
+
+    /** Tracks in any Spotify playlist read, for appending to it. */
+    public FakeProviderExchange spotifyPlaylistTotal(int tracks) {
+        this.spotifyPlaylistTotal = tracks;
+        return this;
+    }
+
+    /** The answer to add-tracks calls, instead of a snapshot ID. */
+    public FakeProviderExchange addTracks(Function<ClientRequest, Mono<ClientResponse>> response) {
+        this.addTracks = response;
+        return this;
+    }
+
+    /** Calls of the form {@code "GET /v1/search"} since the last {@link #clearCalls}. */
+    public int calls(String call) {
+        return queries(call).size();
+    }
+
+    /** The query parameters of those calls, in order. */
+    public List<Map<String, String>> queries(String call) {
+        List<Map<String, String>> queries = new ArrayList<>();
+        for (ClientRequest request : requests) {
+            if (call.equals(request.method() + " " + request.url().getPath())) {
+                queries.add(UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().toSingleValueMap());
+            }
+        }
+        return queries;
+    }
+
+    public void clearCalls() {
+        requests.clear();
+        addedBatches.clear();
+    }
+
+    /** The bodies of the add-tracks calls ({@code uris}, {@code position}), in the order they were sent. */
+    public List<JsonNode> addedBatches() {
+        return addedBatches;
+    }
+
+    /** A call that never answers, like a hung connection; counted in {@link #cancelledCalls} once cancelled. */
+    public Mono<ClientResponse> hang() {
+        return Mono.<ClientResponse>never().doOnCancel(cancelledCalls::incrementAndGet);
+    }
+
+    public int cancelledCalls() {
+        return cancelledCalls.get();
+    }
+
+    @Override
+    public Mono<ClientResponse> exchange(ClientRequest request) {
+        requests.add(request);
+        String path = request.url().getPath();
+        Map<String, String> query = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().toSingleValueMap();
+        if (request.method() == HttpMethod.GET) {
+            return switch (path) {
+                case "/youtube/v3/playlists" -> json(query.get("part").equals("contentDetails")
+                        ? playlistStates(query.get("id"))
+                        : "{\"items\":[{\"id\":\"" + query.get("id") + "\",\"snippet\":{\"title\":\"Mix\"}}]}");
+                case "/youtube/v3/playlistItems" -> json(playlistItems());
+                case "/youtube/v3/videos" -> json(videos(query.get("id")));
+                case "/v1/me" -> json("{\"id\":\"spotify-user\"}");
+                case "/v1/search" -> searches.incrementAndGet() > searchHangsAfter ? hang() : json(search(request.url().getQuery()));
+                default -> path.startsWith("/v1/playlists/")
+                        ? json("{\"tracks\":{\"total\":" + spotifyPlaylistTotal + "}}")
+                        : Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+            };
+        }
+        if (path.equals("/v1/users/spotify-user/playlists")) {
+            return json("{\"id\":\"pl\"}");
+        }
+        if (path.startsWith("/v1/playlists/") && path.endsWith("/tracks")) {
+            addedBatches.add(body(request));
+            return addTracks.apply(request);
+        }
+        return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+    }
+
+    public static Mono<ClientResponse> json(String body) {
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+
+    private String playlistStates(String ids) {
+        List<String> items = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            if (playlistEtags.containsKey(id)) {
+                items.add("{\"id\":\"" + id + "\",\"etag\":\"" + playlistEtags.get(id)
+                        + "\",\"contentDetails\":{\"itemCount\":" + playlistItemCounts.get(id) + "}}");
+            }
+        }
+        return "{\"items\":[" + String.join(",", items) + "]}";
+    }
+
+    private String playlistItems() {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < playlistSize; i++) {
+            items.add("{\"snippet\":{\"title\":\"Song " + i + "\",\"resourceId\":{\"videoId\":\"video" + i + "\"}}}");
+        }
+        return "{\"items\":[" + String.join(",", items) + "]}";
+    }
+
+    private static String videos(String ids) {
+        List<String> videos = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            videos.add("{\"id\":\"" + id + "\",\"snippet\":{\"categoryId\":\"10\"},\"contentDetails\":{\"duration\":\"PT3M\"},"
+                    + "\"status\":{\"uploadStatus\":\"processed\",\"privacyStatus\":\"public\"}}");
+        }
+        return "{\"items\":[" + String.join(",", videos) + "]}";
+    }
+
+    private String search(String query) {
+        int song = Integer.parseInt(query.replaceAll(".*Song (\\d+).*", "$1"));
+        return missingSongs.contains(song) ? "{\"tracks\":{\"items\":[]}}"
+                : "{\"tracks\":{\"items\":[{\"id\":\"track" + song + "\",\"name\":\"Song " + song
+                + "\",\"uri\":\"spotify:track:track" + song + "\"}]}}";
+    }
+
+    private static JsonNode body(ClientRequest request) {
+        MockClientHttpRequest mock = new MockClientHttpRequest(request.method(), request.url());
+        request.body().insert(mock, new BodyInserter.Context() {
+            @Override
+            public List<HttpMessageWriter<?>> messageWriters() {
+                return ExchangeStrategies.withDefaults().messageWriters();
+            }
+
+            @Override
+            public Optional<ServerHttpRequest> serverRequest() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Map<String, Object> hints() {
+                return Map.of();
+            }
+        }).block();
+        try {
+            return MAPPER.readTree(mock.getBodyAsString().block());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.model.TrackMatch;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory stand-in for the JPA {@link TrackMatchRepository}, for transfer tests and benchmarks. It keeps
+ * what is saved, by video ID. Only with {@code findsSaved} are those matches found again; otherwise every
+ * transfer searches each item like a first-time transfer. Supports the calls of TransferService and
+ * LocalTrackIndex; anything else throws.
+ */
+public final class InMemoryTrackMatchRepository {
+
+    private final NavigableMap<String, TrackMatch> saved = new ConcurrentSkipListMap<>();
+    private final boolean findsSaved;
+    private final TrackMatchRepository repository;
+
+    public InMemoryTrackMatchRepository(boolean findsSaved) {
+        this.findsSaved = findsSaved;
+        this.repository = (TrackMatchRepository) Proxy.newProxyInstance(
+                TrackMatchRepository.class.getClassLoader(),
+                new Class<?>[]{TrackMatchRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAllById" -> findAllById((Iterable<?>) args[0]);
+                    case "saveAll" -> saveAll((Iterable<?>) args[0]);
+                    case "findByVideoIdGreaterThanAndTrackNameIsNotNullOrderByVideoId" -> findAfter((String) args[0], (Limit) args[1]);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    public TrackMatchRepository repository() {
+        return repository;
+    }
+
+    /** Everything saved so far, by video ID. */
+    public Map<String, TrackMatch> saved() {
+        return Collections.unmodifiableMap(saved);
+    }
+
+    private List<TrackMatch> findAllById(Iterable<?> videoIds) {
+        List<TrackMatch> found = new ArrayList<>();
+        for (Object videoId : videoIds) {
+            TrackMatch match = findsSaved ? saved.get((String) videoId) : null;
+            if (match != null) {
+                found.add(match);
+            }
+        }
+        return found;
+    }
+
+    private List<TrackMatch> saveAll(Iterable<?> matches) {
+        List<TrackMatch> stored = new ArrayList<>();
+        for (Object match : matches) {
+            saved.put(((TrackMatch) match).getVideoId(), (TrackMatch) match);
+            stored.add((TrackMatch) match);
+        }
+        return stored;
+    }
+
+    private List<TrackMatch> findAfter(String videoId, Limit limit) {
+        if (!findsSaved) {
+            return List.of();
+        }
+        return saved.tailMap(videoId, false).values().stream()
+                .filter(match -> match.getTrackName() != null)
+                .limit(limit.max())
+                .toList();
+    }
+}
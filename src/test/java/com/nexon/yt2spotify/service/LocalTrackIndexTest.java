@@ -0,0 +1,87 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import com.nexon.yt2spotify.model.TrackMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocalTrackIndexTest {
+
+    @Test
+    void candidatesShareTheMostWordsAndGrowWithNewMatches() {
+        LocalTrackIndex index = new LocalTrackIndex(null, true);
+        List<TrackMatch> matches = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) { // Grows the arrays and posting lists past their initial size
+            matches.add(new TrackMatch("video" + i, "track" + i, "Artist " + (i % 50), "Song number " + i, null));
+        }
+        index.addAll(matches);
+        index.addAll(List.of(new TrackMatch("v", "one", "Daft Punk", "One More Time", 320_000),
+                new TrackMatch("w", "more", "Daft Punk", "More Than Once", null),
+                new TrackMatch("x", "nameless", "Daft Punk", null, null))); // Stored before track names were
+
+        assertEquals(3002, index.size());
+        assertEquals(List.of("one", "more"), ids(index.candidates("Daft Punk - One More Time (Official Video)", 8)));
+        assertEquals(List.of("track2999"), ids(index.candidates("song number 2999", 1)));
+        SpotifyTrackDto track = index.candidates("one more time", 1).get(0);
+        assertEquals(320_000, track.getDurationMs());
+        assertEquals("Daft Punk", track.getArtists().get(0).getName());
+        assertEquals("spotify:track:one", track.getUri());
+        assertEquals("track12", index.candidates("song number 12", 8).get(0).getId()); // Before "Artist 12"'s other songs
+    }
+
+    @Test
+    void goneTracksAreDroppedUntilMatchedAgain() {
+        LocalTrackIndex index = new LocalTrackIndex(null, true);
+        TrackMatch match = new TrackMatch("v", "one", "Daft Punk", "One More Time", 320_000);
+        index.addAll(List.of(match));
+
+        index.removeAll(List.of("one", "unknown"));
+        assertEquals(List.of(), index.candidates("one more time", 8));
+        assertEquals(0, index.size());
+
+        index.addAll(List.of(match));
+        assertEquals(List.of("one"), ids(index.candidates("one more time", 8)));
+    }
+
+    @Test
+    void namesAreDecodedFromTheSharedBuffer() {
+        LocalTrackIndex index = new LocalTrackIndex(null, true);
+        index.addAll(List.of(new TrackMatch("v", "halo", "Beyoncé", "Halo", null),
+                new TrackMatch("w", "untitled", null, "Untitled Track", null)));
+
+        SpotifyTrackDto halo = index.candidates("Beyoncé - Halo", 1).get(0);
+        assertEquals("Halo", halo.getName());
+        assertEquals("Beyoncé", halo.getArtists().get(0).getName());
+        SpotifyTrackDto untitled = index.candidates("untitled track", 1).get(0);
+        assertEquals("Untitled Track", untitled.getName());
+        assertNull(untitled.getArtists());
+    }
+
+    @Test
+    void stringTableFindsEveryStringAcrossRehashes() {
+        LocalTrackIndex.StringTable table = new LocalTrackIndex.StringTable();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, table.add("word" + i));
+        }
+        assertEquals(5000, table.add("AaAaAax"));
+        assertEquals(5001, table.add("BBBBBBx")); // Same String.hashCode() as "AaAaAax" (and "AaAaBBx")
+
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, table.find("word" + i));
+            assertEquals("word" + i, table.get(i));
+        }
+        assertEquals(5000, table.find("AaAaAax"));
+        assertEquals(5001, table.find("BBBBBBx"));
+        assertEquals(-1, table.find("word5000"));
+        assertEquals(-1, table.find("AaAaBBx"));
+    }
+
+    private static List<String> ids(List<SpotifyTrackDto> tracks) {
+        return tracks.stream().map(SpotifyTrackDto::getId).toList();
+    }
+}
@@ -0,0 +1,108 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.model.WatchedPlaylist;
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import com.nexon.yt2spotify.repository.WatchedPlaylistRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaylistWatchSchedulerTest {
+
+    private final FakeProviderExchange apis = new FakeProviderExchange()
+            .playlistState("PLA", "a1", 2)
+            .playlistState("PLB", "b2", 3)
+            .spotifyPlaylistTotal(2);
+    private final Map<Long, Set<String>> syncedVideoIds = new HashMap<>();
+
+    @Test
+    void onlyChangedPlaylistsAreFetchedAndTheirNewVideosAppended() {
+        WatchedPlaylist unchanged = watch(1L, "PLA", "a1", 2, "spa");
+        WatchedPlaylist changed = watch(2L, "PLB", "b1", 2, "spb");
+        syncedVideoIds.put(2L, new LinkedHashSet<>(List.of("video0", "video1")));
+        TransferJobRegistry registry = new TransferJobRegistry(10, 64);
+
+        scheduler(List.of(unchanged, changed), registry).poll();
+
+        // One playlists.list call checks both; only the changed one has its items fetched and searched
+        assertEquals(List.of("PLA,PLB"), apis.queries("GET /youtube/v3/playlists").stream()
+                .filter(query -> query.get("part").equals("contentDetails")).map(query -> query.get("id")).toList());
+        assertEquals(List.of("PLB"), apis.queries("GET /youtube/v3/playlistItems").stream().map(query -> query.get("playlistId")).toList());
+        assertEquals(List.of("video2"), apis.queries("GET /youtube/v3/videos").stream().map(query -> query.get("id")).toList());
+        assertEquals(1, apis.calls("GET /v1/search"));
+
+        // Appended after the two tracks of earlier syncs
+        assertEquals(1, apis.addedBatches().size());
+        assertEquals(2, apis.addedBatches().get(0).get("position").asInt());
+        assertEquals("spotify:track:track2", apis.addedBatches().get(0).get("uris").get(0).asText());
+
+        assertEquals(List.of("video0", "video1", "video2"), List.copyOf(syncedVideoIds.get(2L)));
+        assertEquals("b2", changed.getEtag());
+        assertEquals(3, changed.getItemCount());
+        assertEquals("a1", unchanged.getEtag());
+        TransferJob job = registry.find(changed.getLastSyncJobId(), "user").orElseThrow();
+        assertEquals(TransferJob.Status.COMPLETED, job.getStatus());
+        assertEquals(2, job.getAlreadySyncedCount());
+        assertNotNull(unchanged.getLastCheckedAt());
+    }
+
+    private PlaylistWatchScheduler scheduler(List<WatchedPlaylist> watches, TransferJobRegistry registry) {
+        WebClient webClient = apis.webClient();
+        SpotifyApiService spotifyApiService = new SpotifyApiService(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 4);
+        YoutubeApiService youtubeApiService = new YoutubeApiService(webClient, FakeProviderExchange.YOUTUBE_BASE_URL);
+        TrackMatchRepository trackMatchRepository = new InMemoryTrackMatchRepository(false).repository();
+        LocalTrackIndex localTrackIndex = new LocalTrackIndex(trackMatchRepository, false);
+        TransferService transferService = new TransferService(spotifyApiService,
+                new TrackMatcher(spotifyApiService, localTrackIndex, 0.6, 0, 0.9), youtubeApiService,
+                new SpotifyPlaylistWriter(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 2, 3), trackMatchRepository, localTrackIndex, Set.of(), 0, Duration.ZERO);
+
+        WatchedPlaylistRepository repository = proxy(WatchedPlaylistRepository.class, (name, args) -> switch (name) {
+            case "findDueForUpdate" -> watches;
+            case "findById" -> watches.stream().filter(watch -> watch.getId().equals(args[0])).findFirst();
+            case "findSyncedVideoIds" -> List.copyOf(syncedVideoIds.getOrDefault((Long) args[0], Set.of()));
+            case "addSyncedVideoIds" -> {
+                syncedVideoIds.computeIfAbsent((Long) args[0], id -> new LinkedHashSet<>()).addAll(List.of(((String) args[1]).split(",")));
+                yield 1;
+            }
+            default -> throw new UnsupportedOperationException(name);
+        });
+        AuthorizationHelper tokens = new AuthorizationHelper(null, null, null, null) {
+            @Override
+            public String getAccessToken(String principalName, String clientRegistrationId) {
+                return clientRegistrationId + "-token";
+            }
+        };
+        return new PlaylistWatchScheduler(new PlaylistWatchService(repository, Duration.ofMinutes(15), 0.2, Duration.ofHours(1)),
+                youtubeApiService, tokens, registry, transferService, Runnable::run, true, 500, 2);
+    }
+
+    private static WatchedPlaylist watch(long id, String youtubePlaylistId, String etag, int itemCount, String spotifyPlaylistId) {
+        WatchedPlaylist watch = new WatchedPlaylist("user", youtubePlaylistId, spotifyPlaylistId, Instant.now());
+        watch.setId(id);
+        watch.setEtag(etag);
+        watch.setItemCount(itemCount);
+        return watch;
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method.getName(), args));
+    }
+}
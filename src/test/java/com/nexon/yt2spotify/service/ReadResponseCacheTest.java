@@ -0,0 +1,62 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadResponseCacheTest {
+
+    @Test
+    void freshEntriesAreServedWithoutLoadingPerUser() {
+        ReadResponseCache cache = new ReadResponseCache(new ObjectMapper(), Duration.ofMinutes(1), 64);
+        AtomicInteger loads = new AtomicInteger();
+
+        ReadResponseCache.Entry first = cache.get("alice", "youtube:playlists", () -> List.of("PL" + loads.incrementAndGet()));
+        assertSame(first, cache.get("alice", "youtube:playlists", () -> List.of("PL" + loads.incrementAndGet())));
+        assertEquals(1, loads.get());
+        assertEquals("[\"PL1\"]", new String(first.body(), StandardCharsets.UTF_8));
+        cache.get("bob", "youtube:playlists", () -> List.of("PL" + loads.incrementAndGet()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void expiredEntriesAreEvicted() {
+        ReadResponseCache cache = new ReadResponseCache(new ObjectMapper(), Duration.ZERO, 64); // Expire at once
+        cache.get("alice", "youtube:playlists", List::of);
+        cache.get("bob", "youtube:playlist-items:PL1", List::of);
+        assertEquals(2, cache.size());
+
+        cache.evictExpired();
+
+        assertEquals(0, cache.size());
+        assertEquals("[]", new String(cache.get("alice", "youtube:playlists", List::of).body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void etagOnlyChangesWithTheContent() {
+        ReadResponseCache cache = new ReadResponseCache(new ObjectMapper(), Duration.ZERO, 64); // Always reloads
+        String etag = cache.get("alice", "k", () -> List.of("a", "b")).etag();
+
+        assertEquals(etag, cache.get("alice", "k", () -> List.of("a", "b")).etag());
+        assertNotEquals(etag, cache.get("alice", "k", () -> List.of("a", "c")).etag());
+        assertEquals('"', etag.charAt(0)); // Strong: quoted, no W/ prefix
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        ReadResponseCache cache = new ReadResponseCache(new ObjectMapper(), Duration.ofMinutes(1), 64);
+        assertThrows(RuntimeException.class, () -> cache.get("alice", "k", () -> {
+            throw new RuntimeException("YouTube is down");
+        }));
+        assertEquals("[]", new String(cache.get("alice", "k", List::of).body(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyBatchSearchResultDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpotifyApiServiceTest {
+
+    private static final int CONCURRENCY = 4;
+
+    @Test
+    void batchSearchRunsConcurrentlyAndKeepsTheQueryOrder() {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            queries.add("Song " + i);
+        }
+        queries.add("Song 3 (Official Video)"); // Same search as "Song 3"
+        queries.add("missing song");
+        queries.add("failing song");
+        queries.add(" ");
+
+        List<String> searched = new CopyOnWriteArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        SpotifyApiService service = service(request -> {
+            String q = UriComponentsBuilder.fromUri(request.url()).build(true).getQueryParams().getFirst("q").replace("%20", " ");
+            searched.add(q);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            ClientResponse response = q.startsWith("failing")
+                    ? ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()
+                    : json(q.startsWith("missing") ? "{\"tracks\":{\"items\":[]}}"
+                    : "{\"tracks\":{\"items\":[{\"id\":\"" + q.replace(' ', '_') + "\",\"name\":\"" + q + "\"}]}}");
+            // Later queries answer sooner, so completion order is the reverse of the query order
+            long delay = 5 + (queries.size() - queries.indexOf(q)) % 7 * 3L;
+            return Mono.delay(Duration.ofMillis(delay)).doOnNext(t -> inFlight.decrementAndGet()).thenReturn(response);
+        });
+
+        List<SpotifyBatchSearchResultDto> results = service.searchTracks(queries, "token").collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, results.get(i).getIndex());
+            assertEquals(SpotifyBatchSearchResultDto.Status.FOUND, results.get(i).getStatus());
+            assertEquals("Song_" + i, results.get(i).getTrack().getId());
+        }
+        assertEquals("Song_3", results.get(40).getTrack().getId());
+        assertEquals("Song 3 (Official Video)", results.get(40).getQuery());
+        assertEquals(SpotifyBatchSearchResultDto.Status.NOT_FOUND, results.get(41).getStatus());
+        assertEquals(SpotifyBatchSearchResultDto.Status.ERROR, results.get(42).getStatus());
+        assertNull(results.get(42).getTrack());
+        assertEquals(SpotifyBatchSearchResultDto.Status.NOT_FOUND, results.get(43).getStatus());
+
+        assertEquals(42, searched.size()); // The duplicate and the blank query cost no call
+        assertTrue(maxInFlight.get() > 1 && maxInFlight.get() <= CONCURRENCY, "max in flight: " + maxInFlight.get());
+    }
+
+    @Test
+    void trackLookupOnlyReportsTheBatchesSpotifyAnswered() {
+        List<String> trackIds = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            trackIds.add("t" + i);
+        }
+        SpotifyApiService service = service(request -> {
+            String ids = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().getFirst("ids");
+            if (!ids.startsWith("t0,")) {
+                return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()); // The second batch
+            }
+            List<String> tracks = new ArrayList<>(List.of("{\"id\":\"t0\",\"is_playable\":true}",
+                    "{\"id\":\"t1\",\"is_playable\":false}",
+                    "{\"id\":\"n2\",\"linked_from\":{\"id\":\"t2\"},\"is_playable\":true}"));
+            while (tracks.size() < 50) {
+                tracks.add("null");
+            }
+            return Mono.just(json("{\"tracks\":[" + String.join(",", tracks) + "]}"));
+        });
+
+        SpotifyApiService.TrackLookup lookup = service.findPlayableTracks(trackIds, "token");
+
+        assertEquals(Map.of("t0", "t0", "t2", "n2"), lookup.playable());
+        assertEquals(Set.of("t1"), lookup.unplayable());
+        assertEquals(Set.copyOf(trackIds.subList(0, 50)), lookup.checked());
+        assertEquals(Set.copyOf(trackIds.subList(3, 50)), Set.copyOf(lookup.gone())); // Not the unchecked t50..t59
+    }
+
+    private static SpotifyApiService service(java.util.function.Function<ClientRequest, Mono<ClientResponse>> exchange) {
+        WebClient webClient = WebClient.builder().exchangeFunction(exchange::apply).build();
+        return new SpotifyApiService(webClient, "http://spotify.test/v1", CONCURRENCY);
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+}
@@ -0,0 +1,226 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexon.yt2spotify.jfr.SpotifyAddTracksEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpotifyPlaylistWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void concurrentBatchesLandInRequestedOrder() {
+        FakePlaylist playlist = new FakePlaylist(batch -> false);
+        List<String> uris = uris(2_350);
+
+        PlaylistWriteResult result = writer(playlist, 6).write("pl", uris, "token");
+
+        assertEquals(uris, playlist.tracks);
+        assertTrue(result.isComplete());
+        assertEquals(24, result.snapshotIds().size());
+        assertEquals(result.snapshotIds().get(23), result.lastSnapshotId());
+    }
+
+    @Test
+    void onlyFailedBatchesAreRetriedAndPermanentFailuresAreReported() {
+        AtomicInteger batch3Attempts = new AtomicInteger();
+        FakePlaylist playlist = new FakePlaylist(batch -> batch == 7 || batch == 3 && batch3Attempts.getAndIncrement() == 0);
+        List<String> uris = uris(1_000);
+
+        PlaylistWriteResult result = writer(playlist, 4).write("pl", uris, "token");
+
+        List<String> expected = new ArrayList<>(uris);
+        expected.subList(700, 800).clear();
+        assertEquals(expected, playlist.tracks);
+        assertEquals(uris.subList(700, 800), result.failedUris());
+        assertEquals(900, result.committedCount());
+        assertFalse(result.committed().get(750));
+        assertEquals(2, batch3Attempts.get());
+        assertEquals(3, playlist.attempts.get(7)); // write-max-attempts
+        assertEquals(3, result.retries()); // batch 3 once, batch 7 twice; out-of-order bounces are not retries
+    }
+
+    @Test
+    void aBatchThatLandedBeforeItsResponseTimedOutIsNotSentAgain() {
+        AtomicInteger batch1Attempts = new AtomicInteger();
+        FakePlaylist playlist = new FakePlaylist(batch -> false);
+        playlist.responseLost = batch -> batch == 1 && batch1Attempts.getAndIncrement() == 0;
+        List<String> uris = uris(400);
+
+        PlaylistWriteResult result = writer(playlist, 4).write("pl", uris, "token");
+
+        assertEquals(uris, playlist.tracks); // Batch 1 once, not twice
+        assertTrue(result.isComplete());
+        assertEquals(1, playlist.attempts.get(1));
+        assertEquals(1, playlist.reads.get());
+        assertEquals(1, result.retries());
+    }
+
+    @Test
+    void addTracksEventsCarryTheResponseStatusOfEachAttempt() throws IOException {
+        FakePlaylist playlist = new FakePlaylist(batch -> batch == 1);
+        playlist.committedStatus = HttpStatus.OK; // Not what Spotify documents, so a hardcoded 201 would show
+        List<String> uris = uris(250);
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(SpotifyAddTracksEvent.class).withoutThreshold();
+            recording.start();
+            writer(playlist, 1).write("pl", uris, "token");
+            recording.stop();
+            Path dump = Files.createTempFile("add-tracks", ".jfr");
+            try {
+                recording.dump(dump);
+                events = RecordingFile.readAllEvents(dump).stream()
+                        .filter(event -> event.getEventType().getName().equals("com.nexon.yt2spotify.SpotifyAddTracks"))
+                        .toList();
+            } finally {
+                Files.delete(dump);
+            }
+        }
+
+        assertEquals(5, events.size()); // Batch 1 is tried three times
+        for (RecordedEvent event : events) {
+            assertEquals("pl", event.getString("playlistId"));
+            int itemIndex = event.getInt("itemIndex");
+            assertEquals(itemIndex == 100 ? 503 : 200, event.getInt("httpStatus"));
+            assertEquals(itemIndex == 200 ? 50 : 100, event.getInt("trackCount"));
+            assertEquals(itemIndex == 200 ? 100 : itemIndex, event.getInt("position")); // Batch 2 closes the gap
+            assertFalse(event.getDuration().isNegative());
+        }
+    }
+
+    private static SpotifyPlaylistWriter writer(FakePlaylist playlist, int concurrency) {
+        WebClient webClient = WebClient.builder().exchangeFunction(playlist::exchange).build();
+        return new SpotifyPlaylistWriter(webClient, "http://spotify.test/v1", concurrency, 3);
+    }
+
+    private static List<String> uris(int count) {
+        List<String> uris = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uris.add("spotify:track:" + String.format("%022d", i)); // URI encodes its own index
+        }
+        return uris;
+    }
+
+    /**
+     * Applies add-tracks requests after a random delay, so they land in arbitrary order, and rejects
+     * positions past the end like Spotify does. Batches matching {@code failing} get a 5xx instead;
+     * those matching {@code responseLost} are applied, but the call times out.
+     */
+    private static class FakePlaylist {
+
+        final List<String> tracks = new ArrayList<>();
+        final Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+        final AtomicInteger reads = new AtomicInteger();
+        HttpStatus committedStatus = HttpStatus.CREATED;
+        IntPredicate responseLost = batch -> false;
+        private final IntPredicate failing;
+        private final AtomicInteger snapshots = new AtomicInteger();
+
+        FakePlaylist(IntPredicate failing) {
+            this.failing = failing;
+        }
+
+        Mono<ClientResponse> exchange(ClientRequest request) {
+            if (request.method() == HttpMethod.GET) {
+                reads.incrementAndGet();
+                synchronized (tracks) {
+                    return Mono.just(response(HttpStatus.OK, "{\"snapshot_id\":\"snap" + snapshots.get()
+                            + "\",\"tracks\":{\"total\":" + tracks.size() + "}}"));
+                }
+            }
+            JsonNode body = body(request);
+            List<String> uris = new ArrayList<>();
+            body.get("uris").forEach(uri -> uris.add(uri.asText()));
+            int position = body.get("position").asInt();
+            int batch = Integer.parseInt(uris.get(0).substring(uris.get(0).length() - 6)) / 100;
+            return Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextInt(15))).map(tick -> {
+                attempts.merge(batch, 1, Integer::sum);
+                if (failing.test(batch)) {
+                    return response(HttpStatus.SERVICE_UNAVAILABLE, "{}");
+                }
+                synchronized (tracks) {
+                    if (position > tracks.size()) {
+                        return response(HttpStatus.BAD_REQUEST, "{\"error\":{\"status\":400,\"message\":\"Index out of bounds\"}}");
+                    }
+                    tracks.addAll(position, uris);
+                }
+                if (responseLost.test(batch)) {
+                    throw new WebClientRequestException(new TimeoutException("No response within 20000 ms"),
+                            request.method(), request.url(), request.headers());
+                }
+                return response(committedStatus, "{\"snapshot_id\":\"snap" + snapshots.incrementAndGet() + "\"}");
+            });
+        }
+
+        private static ClientResponse response(HttpStatus status, String json) {
+            return ClientResponse.create(status)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(json)
+                    .build();
+        }
+
+        private static JsonNode body(ClientRequest request) {
+            MockClientHttpRequest mock = new MockClientHttpRequest(request.method(), request.url());
+            request.body().insert(mock, new BodyInserter.Context() {
+                @Override
+                public List<HttpMessageWriter<?>> messageWriters() {
+                    return ExchangeStrategies.withDefaults().messageWriters();
+                }
+
+                @Override
+                public Optional<ServerHttpRequest> serverRequest() {
+                    return Optional.empty();
+                }
+
+                @Override
+                public Map<String, Object> hints() {
+                    return Map.of();
+                }
+            }).block();
+            try {
+                return MAPPER.readTree(mock.getBodyAsString().block());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
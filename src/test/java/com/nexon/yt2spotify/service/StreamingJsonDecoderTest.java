@@ -0,0 +1,119 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoDetailsDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamingJsonDecoderTest {
+
+    private static <T> T decode(StreamingJsonDecoder<T> decoder, String json, int chunkSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            byte[] chunk = Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + chunkSize));
+            decoder.feed(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+        }
+        return decoder.finish();
+    }
+
+    @Test
+    void playlistItemsAreDecodedAcrossChunkBoundaries() {
+        String json = "{\"nextPageToken\":\"CDIQAA\",\"items\":["
+                + "{\"id\":\"x1\",\"snippet\":{\"title\":\"Daft Punk - Get Lucky (Official Video)\","
+                + "\"resourceId\":{\"kind\":\"youtube#video\",\"videoId\":\"5NV6Rdv1a3I\"},\"videoOwnerChannelTitle\":\"DaftPunkVEVO\"}},"
+                + "{\"id\":\"x2\",\"snippet\":{\"title\":\"Deleted video\",\"resourceId\":{}}},"
+                + "{\"id\":\"x3\",\"snippet\":{\"resourceId\":{\"videoId\":\"dQw4w9WgXcQ\"},\"title\":\"Ünïcödé – title\","
+                + "\"thumbnails\":{\"default\":{\"title\":\"not this one\"}}}}]}";
+
+        for (int chunkSize : new int[]{1, 7, 64, json.length()}) {
+            YoutubePlaylistItemsDecoder.Page page = decode(new YoutubePlaylistItemsDecoder(), json, chunkSize);
+            assertEquals("CDIQAA", page.nextPageToken());
+            assertEquals(2, page.items().size());
+            assertEquals("5NV6Rdv1a3I", page.items().get(0).getVideoId());
+            assertEquals("x1", page.items().get(0).getItemId());
+            assertEquals("Daft Punk - Get Lucky (Official Video)", page.items().get(0).getTitle());
+            assertEquals("DaftPunkVEVO", page.items().get(0).getChannelTitle());
+            assertEquals("dQw4w9WgXcQ", page.items().get(1).getVideoId());
+            assertEquals("Ünïcödé – title", page.items().get(1).getTitle());
+            assertNull(page.items().get(1).getChannelTitle());
+        }
+    }
+
+    @Test
+    void searchKeepsOnlyTheFirstTrack() {
+        String json = "{\"tracks\":{\"items\":["
+                + "{\"album\":{\"id\":\"album1\",\"name\":\"RAM\"},\"artists\":[{\"id\":\"a1\",\"name\":\"Daft Punk\"},"
+                + "{\"id\":\"a2\",\"name\":\"Pharrell Williams\"}],\"id\":\"69kOkLUCkxIZYexIgSG8rq\",\"name\":\"Get Lucky\","
+                + "\"uri\":\"spotify:track:69kOkLUCkxIZYexIgSG8rq\"},"
+                + "{\"id\":\"other\",\"name\":\"Other\",\"uri\":\"spotify:track:other\"}],\"limit\":2,\"total\":2}}";
+
+        SpotifyTrackDto track = decode(new SpotifySearchResultDecoder(), json, 5);
+        assertEquals("69kOkLUCkxIZYexIgSG8rq", track.getId());
+        assertEquals("Get Lucky", track.getName());
+        assertEquals("spotify:track:69kOkLUCkxIZYexIgSG8rq", track.getUri());
+        assertEquals(2, track.getArtists().size());
+        assertEquals("Pharrell Williams", track.getArtists().get(1).getName());
+
+        assertNull(decode(new SpotifySearchResultDecoder(), "{\"tracks\":{\"items\":[],\"total\":0}}", 8));
+    }
+
+    @Test
+    void trackLookupKeysPlayableAndUnplayableTracksByRequestedId() {
+        String json = "{\"tracks\":["
+                + "{\"album\":{\"id\":\"album1\"},\"id\":\"69kOkLUCkxIZYexIgSG8rq\",\"is_playable\":true,\"name\":\"Get Lucky\"},"
+                + "null,"
+                + "{\"id\":\"4uLU6hMCjMI75M1A2tKUQC\",\"is_playable\":false},"
+                + "{\"id\":\"2Foc5Q5nqNiosCNqttzHof\",\"linked_from\":{\"id\":\"0eGsygTp906u18L0Oimnem\",\"type\":\"track\"},"
+                + "\"is_playable\":true,\"artists\":[{\"id\":\"artist\"}]}]}";
+
+        SpotifyTracksLookupDecoder.Tracks tracks = decode(new SpotifyTracksLookupDecoder(), json, 6);
+        assertEquals(Map.of("69kOkLUCkxIZYexIgSG8rq", "69kOkLUCkxIZYexIgSG8rq",
+                "0eGsygTp906u18L0Oimnem", "2Foc5Q5nqNiosCNqttzHof"), tracks.playable());
+        assertEquals(Set.of("4uLU6hMCjMI75M1A2tKUQC"), tracks.unplayable()); // The null element is simply gone
+    }
+
+    @Test
+    void searchPrefersTheCandidateClosestToTheVideoDuration() {
+        String json = "{\"tracks\":{\"items\":["
+                + "{\"id\":\"live\",\"name\":\"Get Lucky (Live)\",\"duration_ms\":412000,\"artists\":[{\"name\":\"Daft Punk\"}]},"
+                + "{\"id\":\"radio\",\"name\":\"Get Lucky (Radio Edit)\",\"duration_ms\":248000,\"artists\":[{\"name\":\"Daft Punk\"}]},"
+                + "{\"id\":\"album\",\"name\":\"Get Lucky\",\"duration_ms\":369000,\"artists\":[{\"name\":\"Daft Punk\"}]}]}}";
+
+        assertEquals("album", decode(new SpotifySearchResultDecoder(367_000), json, 9).getId());
+        assertEquals("radio", decode(new SpotifySearchResultDecoder(250_000), json, 9).getId());
+        assertEquals("Daft Punk", decode(new SpotifySearchResultDecoder(250_000), json, 9).getArtists().get(0).getName());
+        // Nothing close enough: the top hit, as without a duration
+        assertEquals("live", decode(new SpotifySearchResultDecoder(60_000), json, 9).getId());
+        assertEquals("live", decode(new SpotifySearchResultDecoder(), json, 9).getId());
+    }
+
+    @Test
+    void videoDetailsCarryCategoryDurationAndAvailability() {
+        String json = "{\"items\":["
+                + "{\"id\":\"5NV6Rdv1a3I\",\"snippet\":{\"categoryId\":\"10\"},\"contentDetails\":{\"duration\":\"PT6M9S\"},"
+                + "\"status\":{\"uploadStatus\":\"processed\",\"privacyStatus\":\"public\"}},"
+                + "{\"id\":\"liveStream1\",\"snippet\":{\"categoryId\":\"20\"},\"contentDetails\":{\"duration\":\"P0D\"},"
+                + "\"status\":{\"uploadStatus\":\"uploaded\",\"privacyStatus\":\"public\"}},"
+                + "{\"id\":\"privateVid1\",\"snippet\":{\"categoryId\":\"22\"},\"contentDetails\":{\"duration\":\"PT1H2M\"},"
+                + "\"status\":{\"uploadStatus\":\"processed\",\"privacyStatus\":\"private\"}}]}";
+
+        List<YoutubeVideoDetailsDto> videos = decode(new YoutubeVideosDecoder(), json, 11);
+        assertEquals(List.of(
+                new YoutubeVideoDetailsDto("5NV6Rdv1a3I", "10", 369, true),
+                new YoutubeVideoDetailsDto("liveStream1", "20", 0, false),
+                new YoutubeVideoDetailsDto("privateVid1", "22", 3720, false)), videos);
+        assertEquals(93_600, YoutubeVideosDecoder.parseDuration("P1DT2H"));
+        assertEquals(0, YoutubeVideosDecoder.parseDuration("not a duration"));
+        assertFalse(decode(new YoutubeVideosDecoder(), "{\"items\":[]}", 4).iterator().hasNext());
+    }
+}
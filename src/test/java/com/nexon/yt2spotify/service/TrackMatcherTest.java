@@ -0,0 +1,148 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.sotify.SpotifyArtistDto;
+import com.nexon.yt2spotify.dto.sotify.SpotifyTrackDto;
+import com.nexon.yt2spotify.model.TrackMatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackMatcherTest {
+
+    private static final String FIELD_QUERY = "track:\"Around the World\" artist:\"Daft Punk\"";
+
+    private final List<String> searched = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean slowSearchCancelled = new AtomicBoolean();
+
+    @Test
+    void variantsComeFromTheParsedArtistAndTitle() {
+        TrackMatcher.ParsedTitle parsed = TrackMatcher.parse("Daft Punk - Around the World (Official Video)", "DaftPunkVEVO");
+        assertEquals(new TrackMatcher.ParsedTitle("Daft Punk", "Around the World"), parsed);
+        assertEquals(new TrackMatcher.ParsedTitle("Daft Punk", "Around the World"), TrackMatcher.parse("Around the World", "Daft Punk - Topic"));
+
+        assertEquals(List.of("Daft Punk Around the World", "Around the World", FIELD_QUERY),
+                TrackMatcher.variants(parsed, SpotifyApiService.normalizeQuery("Daft Punk - Around the World (Official Video) DaftPunkVEVO")));
+
+        assertTrue(TrackMatcher.confidence(track("right", "Around the World", "Daft Punk"), parsed, 0) > 0.9);
+        assertTrue(TrackMatcher.confidence(track("cover", "Around the World (Karaoke Version)", "Karaoke Kings"), parsed, 0) < 0.6);
+        assertTrue(TrackMatcher.confidence(track("right", "Around the World", "Daft Punk"),
+                TrackMatcher.parse("Around the World", "DaftPunkVEVO"), 0) > 0.9, "artist read from the channel");
+    }
+
+    @Test
+    void aDoubtfulFirstResultIsHedgedWithinTheBudget() throws InterruptedException {
+        TrackMatcher matcher = matcher();
+        TrackMatcher.HedgeBudget budget = matcher.budget(15); // 0.2 x 15: three extra searches
+
+        TrackMatcher.Match match = matcher.match("Daft Punk - Around the World (Official Video)", "DaftPunkVEVO", 0, "token", budget);
+
+        assertEquals("right", match.track().getId());
+        assertEquals("Daft Punk Around the World", match.query());
+        assertTrue(match.hedgeWon());
+        assertEquals(3, match.hedgeSearches());
+        for (int i = 0; i < 50 && !slowSearchCancelled.get(); i++) {
+            Thread.sleep(10); // flatMap cancels its other searches as it finishes draining, maybe after block() returned
+        }
+        assertTrue(slowSearchCancelled.get(), "the title-only search was left running");
+        assertEquals(0, budget.remaining());
+
+        searched.clear();
+        match = matcher.match("Daft Punk - Around the World (Official Video)", "DaftPunkVEVO", 0, "token", budget);
+        assertEquals("cover", match.track().getId()); // Budget used up: the first result stands
+        assertFalse(match.hedgeWon());
+        assertEquals(1, searched.size());
+    }
+
+    @Test
+    void aConfidentFirstResultIsNotHedged() {
+        TrackMatcher matcher = matcher();
+        TrackMatcher.Match match = matcher.match("Around the World", "Daft Punk", 0, "token", matcher.budget(100));
+
+        assertEquals("right", match.track().getId());
+        assertEquals(0, match.hedgeSearches());
+        assertEquals(List.of("Around the World Daft Punk"), searched);
+    }
+
+    @Test
+    void aKnownTrackIsMatchedWithoutSearching() {
+        LocalTrackIndex index = new LocalTrackIndex(null, true);
+        index.addAll(List.of(new TrackMatch("video1", "right", "Daft Punk", "Around the World", 429_000),
+                new TrackMatch("video2", "cover", "Karaoke Kings", "Around the World (Karaoke Version)", 431_000)));
+        TrackMatcher matcher = matcher(index);
+
+        TrackMatcher.Match match = matcher.match("Daft Punk - Around the World (Official Video)", "DaftPunkVEVO", 430_000, "token", matcher.budget(10));
+        assertEquals("right", match.track().getId());
+        assertEquals("spotify:track:right", match.track().getUri());
+        assertTrue(match.local());
+        assertEquals(List.of(), searched);
+
+        match = matcher.match("Around the World", "Daft Punk", 120_000, "token", matcher.budget(10)); // Not the same recording
+        assertFalse(match.local());
+        assertEquals(List.of("Around the World Daft Punk"), searched);
+    }
+
+    private TrackMatcher matcher() {
+        return matcher(new LocalTrackIndex(null, false));
+    }
+
+    private TrackMatcher matcher(LocalTrackIndex index) {
+        WebClient webClient = WebClient.builder().exchangeFunction(this::exchange).build();
+        return new TrackMatcher(new SpotifyApiService(webClient, "http://spotify.test/v1", 4), index, 0.6, 0.2, 0.9);
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request) {
+        String query = request.url().getQuery();
+        String q = query.substring("q=".length(), query.indexOf("&type=")).replaceAll("\\s+", " ");
+        searched.add(q);
+        Map<String, String> results = Map.of(
+                "Daft Punk - Around the World DaftPunkVEVO", "cover",
+                "Around the World Daft Punk", "right",
+                "Daft Punk Around the World", "right",
+                "Around the World", "cover",
+                FIELD_QUERY, "right");
+        Mono<ClientResponse> response = json(results.getOrDefault(q, "none"));
+        return switch (q) {
+            case "Around the World" -> Mono.delay(Duration.ofMillis(500)).then(response).doOnCancel(() -> slowSearchCancelled.set(true));
+            case FIELD_QUERY -> Mono.delay(Duration.ofMillis(100)).then(response); // Would win too, but comes later
+            default -> Mono.delay(Duration.ofMillis(20)).then(response);
+        };
+    }
+
+    private static Mono<ClientResponse> json(String trackId) {
+        String items = switch (trackId) {
+            case "right" -> "{\"id\":\"right\",\"name\":\"Around the World\",\"uri\":\"spotify:track:right\",\"artists\":[{\"name\":\"Daft Punk\"}]}";
+            case "cover" -> "{\"id\":\"cover\",\"name\":\"Around the World (Karaoke Version)\",\"uri\":\"spotify:track:cover\","
+                    + "\"artists\":[{\"name\":\"Karaoke Kings\"}]}";
+            default -> "";
+        };
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"tracks\":{\"items\":[" + items + "]}}")
+                .build());
+    }
+
+    private static SpotifyTrackDto track(String id, String name, String artist) {
+        SpotifyTrackDto track = new SpotifyTrackDto();
+        track.setId(id);
+        track.setName(name);
+        SpotifyArtistDto artistDto = new SpotifyArtistDto();
+        artistDto.setName(artist);
+        track.setArtists(List.of(artistDto));
+        return track;
+    }
+}
@@ -0,0 +1,91 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.transfer.TransferItemDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferCancellationTest {
+
+    private static final int ITEMS = 250;
+
+    private final FakeProviderExchange apis = new FakeProviderExchange().playlistSize(ITEMS);
+    private final InMemoryTrackMatchRepository storedMatches = new InMemoryTrackMatchRepository(false);
+    private final AtomicInteger writes = new AtomicInteger();
+    private volatile TransferJob job;
+
+    @Test
+    void aCancelledTransferStopsTheWriteInFlightAndKeepsTheCommittedBatches() {
+        // The first batch lands, the second hangs until the transfer is cancelled
+        apis.addTracks(request -> {
+            if (writes.incrementAndGet() == 1) {
+                return FakeProviderExchange.json("{\"snapshot_id\":\"snap1\"}");
+            }
+            Schedulers.parallel().schedule(() -> job.cancel("Cancelled by the user"), 100, TimeUnit.MILLISECONDS);
+            return apis.hang();
+        });
+        TransferService service = service(Duration.ZERO);
+        job = new TransferJob("job", "user", "PL1", 64);
+
+        long start = System.nanoTime();
+        service.transferYoutubePlaylistAsync(job, "spotify", "google"); // No Spring proxy: runs right here
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(TransferJob.Status.CANCELLED, job.getStatus());
+        assertEquals("Cancelled by the user", job.getFailureReason());
+        assertEquals(2, writes.get()); // The third batch was never sent
+        assertEquals(1, apis.cancelledCalls());
+        assertEquals(100, job.getAddedCount());
+        assertEquals("snap1", job.getSpotifySnapshotId());
+        Map<String, Long> statuses = job.itemDtos().stream().collect(Collectors.groupingBy(TransferItemDto::getStatus, Collectors.counting()));
+        assertEquals(Map.of("ADDED", 100L, "FAILED", 150L), statuses);
+        assertEquals(ITEMS, storedMatches.saved().size()); // Stored as usual once searching was done
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertFalse(job.cancel("again"));
+    }
+
+    @Test
+    void aTransferPastItsDeadlineIsCancelledWithTheMatchesFoundSoFar() {
+        apis.searchHangsAfter(10); // The 11th search hangs until the deadline cancels the transfer
+        TransferService service = service(Duration.ofMillis(300));
+        job = new TransferJob("job", "user", "PL1", 64);
+
+        service.transferYoutubePlaylistAsync(job, "spotify", "google");
+
+        assertEquals(TransferJob.Status.CANCELLED, job.getStatus());
+        assertTrue(job.getFailureReason().startsWith("Deadline of"));
+        assertEquals(11, apis.calls("GET /v1/search"));
+        assertEquals(1, apis.cancelledCalls());
+        assertEquals(10, job.getMatchedCount());
+        assertEquals(0, job.getNotFoundCount()); // The cancelled search is no miss
+        assertEquals(TransferItemStore.ItemStatus.PENDING, job.getItems().status(10));
+        assertEquals(0, apis.addedBatches().size() + job.getAddedCount());
+        assertEquals(10, storedMatches.saved().size());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    private TransferService service(Duration deadline) {
+        WebClient webClient = apis.webClient();
+        SpotifyApiService spotifyApiService = new SpotifyApiService(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 4);
+        LocalTrackIndex localTrackIndex = new LocalTrackIndex(storedMatches.repository(), false);
+        return new TransferService(
+                spotifyApiService,
+                new TrackMatcher(spotifyApiService, localTrackIndex, 0.6, 0, 0.9),
+                new YoutubeApiService(webClient, FakeProviderExchange.YOUTUBE_BASE_URL),
+                new SpotifyPlaylistWriter(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 1, 3),
+                storedMatches.repository(),
+                localTrackIndex,
+                Set.of(), 0, deadline);
+    }
+}
@@ -0,0 +1,136 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.yt.YoutubeMinimalPlaylistItemResourceIdDto;
+import com.nexon.yt2spotify.dto.yt.YoutubeMinimalPlaylistItemSnippetDto;
+import com.nexon.yt2spotify.dto.yt.YoutubePlaylistItemDto;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferItemStoreTest {
+
+    private static final int ITEMS = 10_000;
+    private static final String ID_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    @Test
+    void itemsRoundTripThroughTheCompactEncoding() {
+        TransferItemStore store = new TransferItemStore(2);
+        store.add("5NV6Rdv1a3I", "Daft Punk - Get Lucky", "DaftPunkVEVO");
+        store.add("not-a-video-id", "Ünïcödé – title", "DaftPunkVEVO");
+        store.add("dQw4w9WgXcQ", null, null);
+        store.add("-_9zAbCdEf8", "", "Other");
+        store.matched(0, "spotify:track:2Foc5Q5nqNiosCNqttzHof", "Daft Punk");
+        store.matched(1, "spotify:track:0000000000000000000000", "Daft Punk");
+        store.matched(2, "spotify:local:whatever", null); // doesn't fit base62, kept verbatim
+        store.setStatus(1, TransferItemStore.ItemStatus.ADDED);
+        store.setStatus(3, TransferItemStore.ItemStatus.SKIPPED);
+        store.setDurationSeconds(0, 369);
+        store.setDurationSeconds(2, 100_000);
+
+        assertEquals("5NV6Rdv1a3I", store.videoId(0));
+        assertEquals("not-a-video-id", store.videoId(1));
+        assertEquals("dQw4w9WgXcQ", store.videoId(2));
+        assertEquals("-_9zAbCdEf8", store.videoId(3));
+        assertEquals("Ünïcödé – title", store.title(1));
+        assertEquals("", store.title(2));
+        assertEquals("DaftPunkVEVO", store.channelTitle(1));
+        assertNull(store.channelTitle(2));
+        assertEquals("spotify:track:2Foc5Q5nqNiosCNqttzHof", store.trackUri(0));
+        assertEquals("0000000000000000000000", store.trackId(1));
+        assertEquals("spotify:local:whatever", store.trackUri(2));
+        assertEquals("spotify:local:whatever", store.trackId(2));
+        assertEquals("Daft Punk", store.artistName(0));
+        assertEquals(369, store.durationSeconds(0));
+        assertEquals(65_535, store.durationSeconds(2)); // clamped
+        assertEquals(0, store.durationSeconds(1));
+        assertEquals(1, store.count(TransferItemStore.ItemStatus.SKIPPED));
+        assertEquals(2, store.count(TransferItemStore.ItemStatus.MATCHED));
+        assertArrayEquals(new int[]{0, 2}, store.indexesOf(TransferItemStore.ItemStatus.MATCHED));
+        assertEquals(List.of("spotify:track:2Foc5Q5nqNiosCNqttzHof"),
+                store.trackUris(store.indexesOf(TransferItemStore.ItemStatus.MATCHED), 0, 1));
+    }
+
+    @Test
+    void tenThousandItemJobIsSeveralTimesSmallerThanDtosAndUriStrings() {
+        long dtoBytes = retainedBytes(() -> dtoRepresentation(TransferItemStoreTest::title));
+        long compactBytes = retainedBytes(() -> compactRepresentation(TransferItemStoreTest::title));
+        long dtoIdsOnly = retainedBytes(() -> dtoRepresentation(i -> ""));
+        long compactIdsOnly = retainedBytes(() -> compactRepresentation(i -> ""));
+        // Title text has to be kept either way (~5x overall); IDs, names, URIs and object headers shrink ~8.5x
+        assertTrue(compactIdsOnly * 8 < dtoIdsOnly, "ids/names/status: " + compactIdsOnly + " vs " + dtoIdsOnly);
+        assertTrue(compactBytes * 4 < dtoBytes, "with titles: " + compactBytes + " vs " + dtoBytes);
+    }
+
+    private static Object dtoRepresentation(IntFunction<String> titles) {
+        Random random = new Random(42);
+        List<YoutubePlaylistItemDto> items = new ArrayList<>(ITEMS);
+        List<String> spotifyTrackUris = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            YoutubeMinimalPlaylistItemResourceIdDto resourceId = new YoutubeMinimalPlaylistItemResourceIdDto();
+            resourceId.setVideoId(videoId(random));
+            YoutubeMinimalPlaylistItemSnippetDto snippet = new YoutubeMinimalPlaylistItemSnippetDto();
+            snippet.setTitle(titles.apply(i));
+            snippet.setVideoOwnerChannelTitle(new String(channel(i))); // a fresh String per item, as Jackson binds it
+            snippet.setResourceId(resourceId);
+            YoutubePlaylistItemDto item = new YoutubePlaylistItemDto();
+            item.setId(randomId(random, ID_ALPHABET, 48));
+            item.setSnippet(snippet);
+            items.add(item);
+            spotifyTrackUris.add("spotify:track:" + trackId(random));
+        }
+        return List.of(items, spotifyTrackUris);
+    }
+
+    private static Object compactRepresentation(IntFunction<String> titles) {
+        Random random = new Random(42);
+        TransferItemStore store = new TransferItemStore(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            String videoId = videoId(random);
+            randomId(random, ID_ALPHABET, 48); // playlist item id, not kept
+            int index = store.add(videoId, titles.apply(i), new String(channel(i)));
+            store.matched(index, "spotify:track:" + trackId(random), new String(channel(i)));
+        }
+        store.trimToSize();
+        return store;
+    }
+
+    private static String title(int i) {
+        return "Artist " + (i % 500) + " - Some Song Title " + i + " (Official Video)";
+    }
+
+    private static String channel(int i) {
+        return "Artist " + (i % 500) + " VEVO";
+    }
+
+    private static String videoId(Random random) {
+        // 64-bit IDs: the 11th char only carries 4 bits
+        return randomId(random, ID_ALPHABET, 10) + ID_ALPHABET.charAt(random.nextInt(16) * 4);
+    }
+
+    private static String trackId(Random random) {
+        return TransferItemStore.encodeBase62(random.nextLong(), random.nextLong()); // Spotify IDs are 128-bit
+    }
+
+    private static String randomId(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    /** Deep size of everything reachable from the built object. */
+    private static long retainedBytes(Supplier<Object> builder) {
+        return GraphLayout.parseInstance(builder.get()).totalSize();
+    }
+}
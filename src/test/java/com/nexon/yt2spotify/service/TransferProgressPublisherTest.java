@@ -0,0 +1,116 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.transfer.TransferProgressEventDto;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferProgressPublisherTest {
+
+    private static final int EVENTS = 10_000;
+
+    @Test
+    void everySubscriberGetsTheSnapshotTheEventsAndTheFinalEvent() {
+        TransferProgressPublisher publisher = new TransferProgressPublisher();
+        List<List<TransferProgressEventDto>> received = new CopyOnWriteArrayList<>();
+        List<CountDownLatch> done = new CopyOnWriteArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            List<TransferProgressEventDto> events = new CopyOnWriteArrayList<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            received.add(events);
+            done.add(latch);
+            publisher.events(() -> event(TransferProgressEventDto.Type.SNAPSHOT, 0)).subscribe(events::add, e -> { }, latch::countDown);
+        }
+
+        publisher.publish(() -> event(TransferProgressEventDto.Type.ITEM_MATCHED, 1));
+        publisher.finish(event(TransferProgressEventDto.Type.FINISHED, 1));
+
+        done.forEach(TransferProgressPublisherTest::await);
+        for (List<TransferProgressEventDto> events : received) {
+            assertEquals(List.of(TransferProgressEventDto.Type.SNAPSHOT, TransferProgressEventDto.Type.ITEM_MATCHED,
+                    TransferProgressEventDto.Type.FINISHED), events.stream().map(TransferProgressEventDto::getType).toList());
+            assertEquals(List.of(0L, 1L, 2L), events.stream().map(TransferProgressEventDto::getSequence).toList());
+        }
+    }
+
+    @Test
+    void aSlowSubscriberIsCoalescedWithoutHoldingUpThePublisher() {
+        TransferProgressPublisher publisher = new TransferProgressPublisher();
+        List<TransferProgressEventDto> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        publisher.events(() -> event(TransferProgressEventDto.Type.SNAPSHOT, 0)).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(TransferProgressEventDto value) {
+                received.add(value);
+                if (received.size() == 2) {
+                    await(release); // Stuck writing to a slow connection
+                }
+                request(1);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                done.countDown();
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= EVENTS; i++) {
+            int processed = i;
+            publisher.publish(() -> event(TransferProgressEventDto.Type.ITEM_MATCHED, processed));
+        }
+        publisher.finish(event(TransferProgressEventDto.Type.FINISHED, EVENTS));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos(), "publisher was held up");
+        release.countDown();
+
+        await(done);
+        assertTrue(received.size() < EVENTS / 2, "events delivered: " + received.size());
+        TransferProgressEventDto last = received.get(received.size() - 1);
+        assertEquals(TransferProgressEventDto.Type.FINISHED, last.getType());
+        assertEquals(EVENTS, last.getProcessedItems());
+    }
+
+    @Test
+    void aFinishedJobOnlySendsItsFinalState() {
+        TransferProgressPublisher publisher = new TransferProgressPublisher();
+        publisher.finish(event(TransferProgressEventDto.Type.FINISHED, 5));
+
+        List<TransferProgressEventDto> events = publisher.events(() -> event(TransferProgressEventDto.Type.FINISHED, 5))
+                .collectList().block(Duration.ofSeconds(5));
+        assertEquals(1, events.size());
+        assertEquals(TransferProgressEventDto.Type.FINISHED, events.get(0).getType());
+
+        // Finished between taking the snapshot and subscribing to the live events
+        List<TransferProgressEventDto> late = publisher.events(() -> event(TransferProgressEventDto.Type.SNAPSHOT, 4))
+                .collectList().block(Duration.ofSeconds(5));
+        assertEquals(2, late.size());
+    }
+
+    private static TransferProgressEventDto event(TransferProgressEventDto.Type type, int processedItems) {
+        return TransferProgressEventDto.builder().type(type).jobId("job").processedItems(processedItems).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.repository.TrackMatchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransferServicePreviewTest {
+
+    private final FakeProviderExchange apis = new FakeProviderExchange().playlistSize(6).missingSongs(3);
+
+    @Test
+    void aCommittedPreviewOnlyWritesWhenThePlaylistIsUnchanged() {
+        TransferService service = service();
+        TransferJob preview = new TransferJob("preview", "user", "PL1", 64, true, null);
+        service.transferYoutubePlaylistAsync(preview, "spotify", "google"); // No Spring proxy: runs right here
+
+        assertEquals(TransferJob.Status.COMPLETED, preview.getStatus());
+        assertEquals(5, preview.getMatchedCount()); // "Song 3" isn't on Spotify
+        assertNull(preview.getSpotifyPlaylistId());
+        assertEquals(6, apis.calls("GET /v1/search"));
+        assertEquals(0, apis.calls("GET /v1/me") + apis.calls("POST /v1/users/spotify-user/playlists") + apis.calls("POST /v1/playlists/pl/tracks"));
+
+        apis.clearCalls();
+        TransferJob commit = new TransferJob("commit", "user", "PL1", 64, false, preview.getId());
+        service.commitPreviewAsync(commit, preview, "spotify", "google");
+
+        assertEquals(TransferJob.Status.COMPLETED, commit.getStatus());
+        assertEquals("pl", commit.getSpotifyPlaylistId());
+        assertEquals(5, commit.getAddedCount());
+        assertEquals(1, commit.getNotFoundCount());
+        assertEquals(0, apis.calls("GET /v1/search") + apis.calls("GET /youtube/v3/videos"));
+        assertEquals(1, apis.calls("POST /v1/playlists/pl/tracks"));
+        assertEquals(List.of("MATCHED", "MATCHED", "MATCHED", "NOT_FOUND"),
+                preview.itemDtos().stream().limit(4).map(item -> item.getStatus()).toList());
+    }
+
+    @Test
+    void onlyVideosAddedSinceThePreviewAreSearched() {
+        TransferService service = service();
+        TransferJob preview = new TransferJob("preview", "user", "PL1", 64, true, null);
+        service.transferYoutubePlaylistAsync(preview, "spotify", "google");
+
+        apis.playlistSize(8).clearCalls();
+        TransferJob commit = new TransferJob("commit", "user", "PL1", 64, false, preview.getId());
+        service.commitPreviewAsync(commit, preview, "spotify", "google");
+
+        assertEquals(2, apis.calls("GET /v1/search"));
+        assertEquals(7, commit.getAddedCount());
+        assertFalse(commit.itemDtos().stream().anyMatch(item -> item.getStatus().equals("PENDING")));
+    }
+
+    private TransferService service() {
+        WebClient webClient = apis.webClient();
+        SpotifyApiService spotifyApiService = new SpotifyApiService(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 4);
+        TrackMatchRepository trackMatchRepository = new InMemoryTrackMatchRepository(false).repository();
+        LocalTrackIndex localTrackIndex = new LocalTrackIndex(trackMatchRepository, false);
+        return new TransferService(
+                spotifyApiService,
+                new TrackMatcher(spotifyApiService, localTrackIndex, 0.6, 0, 0.9),
+                new YoutubeApiService(webClient, FakeProviderExchange.YOUTUBE_BASE_URL),
+                new SpotifyPlaylistWriter(webClient, FakeProviderExchange.SPOTIFY_BASE_URL, 2, 3),
+                trackMatchRepository,
+                localTrackIndex,
+                Set.of(), 0, Duration.ZERO);
+    }
+}
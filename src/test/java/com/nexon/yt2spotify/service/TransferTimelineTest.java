@@ -0,0 +1,50 @@
+package com.nexon.yt2spotify.service;
+
+import com.nexon.yt2spotify.dto.transfer.TransferTimelineDto;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferTimelineTest {
+
+    @Test
+    void ringBufferKeepsOnlyTheMostRecentEventsButTotalsSurvive() {
+        TransferTimeline timeline = new TransferTimeline("PL-test", 16);
+        timeline.enterStage(TransferTimeline.Stage.SEARCH_TRACKS);
+        for (int i = 0; i < 100; i++) {
+            timeline.beginItem(i);
+            timeline.recordCall(TransferTimeline.Operation.SPOTIFY_SEARCH, i, timeline.now(), 1_000_000L * i, 200, 1, 5_000_000L, 10);
+            timeline.endItem("item-" + i, i % 2 == 0);
+        }
+        timeline.finish();
+
+        TransferTimelineDto dto = timeline.snapshot(true);
+        assertEquals(100, dto.getCallCount());
+        assertEquals(100, dto.getRetryCount());
+        assertEquals(500, dto.getRateLimitWaitMs());
+        assertEquals(1000, dto.getBytesReceived());
+        assertEquals(16, dto.getEvents().size());
+        assertEquals(201 - 16, dto.getEventsDropped());
+        assertEquals(1, dto.getStages().size());
+        assertEquals("SEARCH_TRACKS", dto.getStages().get(0).getStage());
+    }
+
+    @Test
+    void slowestItemsAreRankedByDuration() throws InterruptedException {
+        TransferTimeline timeline = new TransferTimeline("PL-test", 64);
+        for (int i = 0; i < 15; i++) {
+            timeline.beginItem(i);
+            if (i == 7) {
+                Thread.sleep(20);
+            }
+            timeline.endItem("item-" + i, true);
+        }
+
+        TransferTimelineDto dto = timeline.snapshot(false);
+        assertEquals(10, dto.getSlowestItems().size());
+        assertEquals(7, dto.getSlowestItems().get(0).getItemIndex());
+        assertEquals("item-7", dto.getSlowestItems().get(0).getTitle());
+        assertTrue(dto.getSlowestItems().get(0).getDurationMs() >= 20);
+    }
+}
@@ -0,0 +1,106 @@
+package com.nexon.yt2spotify.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexon.yt2spotify.dto.yt.YoutubeVideoItemDto;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YoutubeApiServiceTest {
+
+    private static final int PAGES = 20;
+    private static final int PAGE_SIZE = 50;
+
+    @Test
+    void streamedItemsArriveInOrderAcrossAllPages() {
+        List<String> pageTokens = new CopyOnWriteArrayList<>();
+        List<YoutubeVideoItemDto> items = service(pageTokens).streamPlaylistItems("PL1", "token").collectList().block();
+
+        assertEquals(PAGES * PAGE_SIZE, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals("video" + i, items.get(i).getVideoId());
+        }
+        assertEquals(PAGES, pageTokens.size());
+    }
+
+    @Test
+    void listedItemsKeepYoutubesPlaylistItemShape() {
+        List<String> pageTokens = new CopyOnWriteArrayList<>();
+        JsonNode items = new ObjectMapper().valueToTree(service(pageTokens).getPlaylistItems("PL1", "token"));
+
+        assertEquals(PAGES * PAGE_SIZE, items.size());
+        JsonNode item = items.get(PAGE_SIZE + 1);
+        assertEquals("item51", item.get("id").asText());
+        assertEquals("Song 51", item.get("snippet").get("title").asText());
+        assertEquals("video51", item.get("snippet").get("resourceId").get("videoId").asText());
+        assertEquals("Channel 51", item.get("snippet").get("videoOwnerChannelTitle").asText());
+    }
+
+    @Test
+    void pagesAreOnlyFetchedAsTheSubscriberAsksForItems() {
+        List<String> pageTokens = new CopyOnWriteArrayList<>();
+        List<YoutubeVideoItemDto> received = new CopyOnWriteArrayList<>();
+        BaseSubscriber<YoutubeVideoItemDto> slowClient = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(PAGE_SIZE + 1); // The first page and one item of the second
+            }
+
+            @Override
+            protected void hookOnNext(YoutubeVideoItemDto value) {
+                received.add(value);
+            }
+        };
+
+        service(pageTokens).streamPlaylistItems("PL1", "token").subscribe(slowClient);
+
+        assertEquals(PAGE_SIZE + 1, received.size());
+        // The page being consumed plus at most one fetched ahead, not the whole playlist
+        assertTrue(pageTokens.size() <= 3, "pages fetched: " + pageTokens.size());
+        slowClient.dispose();
+    }
+
+    private static YoutubeApiService service(List<String> pageTokens) {
+        WebClient webClient = WebClient.builder().exchangeFunction(request -> page(request, pageTokens)).build();
+        return new YoutubeApiService(webClient, "http://youtube.test/youtube/v3");
+    }
+
+    // Answers synchronously, so the test observes exactly what was requested at each point
+    private static Mono<ClientResponse> page(ClientRequest request, List<String> pageTokens) {
+        String pageToken = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().getFirst("pageToken");
+        pageTokens.add(String.valueOf(pageToken));
+        int pageIndex = pageToken == null ? 0 : Integer.parseInt(pageToken);
+        StringBuilder json = new StringBuilder("{");
+        if (pageIndex + 1 < PAGES) {
+            json.append("\"nextPageToken\":\"").append(pageIndex + 1).append("\",");
+        }
+        json.append("\"items\":[");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            int index = pageIndex * PAGE_SIZE + i;
+            json.append(i > 0 ? "," : "")
+                    .append("{\"id\":\"item").append(index).append("\",\"snippet\":{\"title\":\"Song ").append(index)
+                    .append("\",\"videoOwnerChannelTitle\":\"Channel ").append(index)
+                    .append("\",\"resourceId\":{\"videoId\":\"video").append(index).append("\"}}}");
+        }
+        json.append("]}");
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(json.toString())
+                .build());
+    }
+}